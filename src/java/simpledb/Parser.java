@@ -15,8 +15,9 @@ import simpledb.common.Type;
 import simpledb.execution.*;
 import simpledb.optimizer.LogicalPlan;
 import simpledb.optimizer.TableStats;
-import simpledb.storage.IntField;
-import simpledb.storage.StringField;
+import simpledb.storage.Field;
+import simpledb.storage.NullField;
+import simpledb.storage.PageWriter;
 import simpledb.storage.Tuple;
 import simpledb.storage.TupleDesc;
 import simpledb.transaction.Transaction;
@@ -48,6 +49,19 @@ public class Parser {
         throw new simpledb.ParsingException("Unknown predicate " + s);
     }
 
+    /**
+     * Parses a constant of an INSERT statement as a value of the column type.
+     */
+    static Field parseConstant(Type type, String value)
+            throws simpledb.ParsingException {
+        try {
+            return type.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new simpledb.ParsingException("Value " + value
+                    + " is not a valid " + type + ".");
+        }
+    }
+
     void processExpression(TransactionId tid, ZExpression wx, LogicalPlan lp)
             throws simpledb.ParsingException, IOException, ParseException {
         if (wx.getOperator().equals("AND")) {
@@ -63,6 +77,17 @@ public class Parser {
         } else if (wx.getOperator().equals("OR")) {
             throw new simpledb.ParsingException(
                     "OR expressions currently unsupported.");
+        } else if (wx.getOperator().equals("IS NULL")
+                || wx.getOperator().equals("IS NOT NULL")) {
+            // a IS [NOT] NULL  只有一个操作数
+            if (wx.nbOperands() != 1 || !(wx.getOperand(0) instanceof ZConstant)
+                    || ((ZConstant) wx.getOperand(0)).getType() != ZConstant.COLUMNNAME) {
+                throw new simpledb.ParsingException(
+                        "Only a field can be tested with " + wx.getOperator() + ".");
+            }
+            Predicate.Op op = wx.getOperator().equals("IS NULL") ? Predicate.Op.IS_NULL
+                    : Predicate.Op.IS_NOT_NULL;
+            lp.addFilter(((ZConstant) wx.getOperand(0)).getValue(), op, null);
         } else {
             // this is a binary expression comparing two constants
             @SuppressWarnings("unchecked")
@@ -124,10 +149,10 @@ public class Parser {
                 ZConstant op2 = (ZConstant) ops.get(1);
                 if (op1.getType() == ZConstant.COLUMNNAME) {
                     column = op1.getValue();
-                    compValue = op2.getValue();
+                    compValue = op2.getType() == ZConstant.NULL ? null : op2.getValue();
                 } else {
                     column = op2.getValue();
-                    compValue = op1.getValue();
+                    compValue = op1.getType() == ZConstant.NULL ? null : op1.getValue();
                 }
 
                 lp.addFilter(column, op, compValue);
@@ -352,23 +377,25 @@ public class Parser {
                     throw new simpledb.ParsingException(
                             "Complex expressions not allowed in INSERT statements.");
                 ZConstant zc = (ZConstant) e;
-                if (zc.getType() == ZConstant.NUMBER) {
-                    if (td.getFieldType(i) != Type.INT_TYPE) {
+                Type type = td.getFieldType(i);
+                if (zc.getType() == ZConstant.NULL) {
+                    // 列不能为NULL时插入会失败
+                    t.setField(i, NullField.of(type));
+                } else if (zc.getType() == ZConstant.NUMBER) {
+                    if (type == Type.STRING_TYPE || type == Type.DATE_TYPE) {
                         throw new simpledb.ParsingException("Value "
                                 + zc.getValue()
-                                + " is not an integer, expected a string.");
+                                + " is a number, expected a " + type + ".");
                     }
-                    IntField f = new IntField(new Integer(zc.getValue()));
-                    t.setField(i, f);
+                    t.setField(i, parseConstant(type, zc.getValue()));
                 } else if (zc.getType() == ZConstant.STRING) {
-                    if (td.getFieldType(i) != Type.STRING_TYPE) {
+                    if (type == Type.INT_TYPE || type == Type.LONG_TYPE || type == Type.DOUBLE_TYPE) {
                         throw new simpledb.ParsingException("Value "
                                 + zc.getValue()
-                                + " is a string, expected an integer.");
+                                + " is a string, expected a " + type + ".");
                     }
-                    StringField f = new StringField(zc.getValue(),
-                            Type.STRING_LEN);
-                    t.setField(i, f);
+                    // dates and booleans are written as strings, e.g. '2021-06-01'
+                    t.setField(i, parseConstant(type, zc.getValue()));
                 } else {
                     throw new simpledb.ParsingException(
                             "Only string or int fields are supported.");
@@ -567,7 +594,7 @@ public class Parser {
     // Basic SQL completions
     public static final String[] SQL_COMMANDS = { "select", "from", "where",
             "group by", "max(", "min(", "avg(", "count", "rollback", "commit",
-            "insert", "delete", "values", "into" };
+            "insert", "delete", "values", "into", "metrics" };
 
     public static void main(String[] argv) throws IOException {
 
@@ -581,7 +608,7 @@ public class Parser {
         p.start(argv);
     }
 
-    static final String usage = "Usage: parser catalogFile [-explain] [-f queryFile]";
+    static final String usage = "Usage: parser catalogFile [-explain] [-metrics] [-f queryFile]";
     static final int SLEEP_TIME = 1000;
 
     protected void shutdown() {
@@ -590,10 +617,17 @@ public class Parser {
 
     protected boolean interactive = true;
 
+    //跑完查询文件后打印缓冲池的统计
+    protected boolean metrics = false;
+
     protected void start(String[] argv) throws IOException {
         // first add tables to database
         Database.getCatalog().loadSchema(argv[0]);
         TableStats.computeStatistics();
+        //提交不再写盘  命令行下在后台写回已提交事务的脏页  -D指定了间隔(包括0)时按指定的
+        if (System.getProperty(PageWriter.INTERVAL_PROPERTY) == null) {
+            Database.getBufferPool().getPageWriter().setInterval(PageWriter.BACKGROUND_INTERVAL_MILLIS);
+        }
 
         String queryFile = null;
 
@@ -602,6 +636,8 @@ public class Parser {
                 if (argv[i].equals("-explain")) {
                     explain = true;
                     System.out.println("Explain mode enabled.");
+                } else if (argv[i].equals("-metrics")) {
+                    metrics = true;
                 } else if (argv[i].equals("-f")) {
                     interactive = false;
                     if (i++ == argv.length) {
@@ -632,6 +668,9 @@ public class Parser {
                 long time = System.currentTimeMillis() - startTime;
                 System.out.printf("----------------\n%.2f seconds\n\n",
                         ((double) time / 1000.0));
+                if (metrics) {
+                    Database.getBufferPool().getMetrics().dump(System.out);
+                }
                 System.out.println("Press Enter to exit");
                 System.in.read();
                 this.shutdown();
@@ -667,6 +706,19 @@ public class Parser {
                         quit = true;
                         break;
                     }
+                    //缓冲池的命中率、淘汰和读写耗时  metrics reset; 清零
+                    if (cmd.equalsIgnoreCase("metrics;")) {
+                        Database.getBufferPool().getMetrics().dump(System.out);
+                        line = line.substring(split + 1);
+                        buffer = new StringBuilder();
+                        continue;
+                    }
+                    if (cmd.replaceAll("\\s+", " ").equalsIgnoreCase("metrics reset;")) {
+                        Database.getBufferPool().getMetrics().reset();
+                        line = line.substring(split + 1);
+                        buffer = new StringBuilder();
+                        continue;
+                    }
 
                     long startTime = System.currentTimeMillis();
                     processNextStatement(new ByteArrayInputStream(
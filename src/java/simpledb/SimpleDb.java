@@ -17,7 +17,10 @@ public class SimpleDb {
         switch (args[0]) {
             case "convert":
                 try {
-                    if (args.length < 3 || args.length > 5) {
+                    //convert 文件 列数 [类型 [分隔符 [页大小]]]  页大小如16k  不写时用默认页大小
+                    //类型后面可以和catalog一样跟注解：null 可以为NULL  dict 字典编码  例如 "int,int null,string dict"
+                    //catalog里带null、dict的列导入时也要带上  否则表文件里没有NULL位图、字典  按catalog读出来是乱的
+                    if (args.length < 3 || args.length > 6) {
                         System.err.println("Unexpected number of arguments to convert ");
                         return;
                     }
@@ -25,6 +28,9 @@ public class SimpleDb {
                     File targetDatFile = new File(args[1].replaceAll(".txt", ".dat"));
                     int numOfAttributes = Integer.parseInt(args[2]);
                     Type[] ts = new Type[numOfAttributes];
+                    //没有列带注解时为null  和原来一样不写NULL位图、不建字典
+                    boolean[] nullable = null;
+                    boolean[] dictionary = null;
                     char fieldSeparator = ',';
 
                     if (args.length == 3)
@@ -39,21 +45,35 @@ public class SimpleDb {
                         }
                         int index = 0;
                         for (String s : typeStringAr) {
-                            if (s.equalsIgnoreCase("int"))
-                                ts[index++] = Type.INT_TYPE;
-                            else if (s.equalsIgnoreCase("string"))
-                                ts[index++] = Type.STRING_TYPE;
-                            else {
-                                System.err.println("Unknown type " + s);
+                            String[] words = s.trim().split(" +");
+                            Type type = Type.forName(words[0]);
+                            if (type == null) {
+                                System.err.println("Unknown type " + words[0]);
                                 return;
                             }
+                            for (int k = 1; k < words.length; k++) {
+                                if (words[k].equalsIgnoreCase("null")) {
+                                    if (nullable == null)
+                                        nullable = new boolean[numOfAttributes];
+                                    nullable[index] = true;
+                                } else if (words[k].equalsIgnoreCase("dict")) {
+                                    if (dictionary == null)
+                                        dictionary = new boolean[numOfAttributes];
+                                    dictionary[index] = true;
+                                } else {
+                                    System.err.println("Unknown annotation " + words[k]);
+                                    return;
+                                }
+                            }
+                            ts[index++] = type;
                         }
-                        if (args.length == 5)
+                        if (args.length >= 5)
                             fieldSeparator = args[4].charAt(0);
                     }
+                    int pageSize = args.length == 6 ? (int) BufferPool.parseBytes(args[5]) : BufferPool.getPageSize();
 
                     HeapFileEncoder.convert(sourceTxtFile, targetDatFile,
-                            BufferPool.getPageSize(), numOfAttributes, ts, fieldSeparator);
+                            pageSize, numOfAttributes, ts, nullable, dictionary, fieldSeparator);
 
                 } catch (IOException e) {
                     throw new RuntimeException(e);
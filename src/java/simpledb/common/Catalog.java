@@ -1,8 +1,12 @@
 package simpledb.common;
 
 import simpledb.common.Type;
+import simpledb.storage.BufferPool;
 import simpledb.storage.DbFile;
 import simpledb.storage.HeapFile;
+import simpledb.storage.MappedHeapFile;
+import simpledb.storage.PageCompression;
+import simpledb.storage.PageLayout;
 import simpledb.storage.TupleDesc;
 
 import java.io.BufferedReader;
@@ -166,6 +170,21 @@ public class Catalog {
         throw new NoSuchElementException("not found DatabaseFile for table:"+tableid);
     }
 
+    /**
+     * Returns the page size of the specified table, as recorded in its file.
+     * @param tableid The id of the table, as specified by the DbFile.getId()
+     *     function passed to addTable
+     * @throws NoSuchElementException if the table doesn't exist
+     * @see DbFile#getPageSize()
+     */
+    public int getPageSize(int tableid) throws NoSuchElementException {
+        Table table = hashTable.getOrDefault(tableid, null);
+        if(table!=null){
+            return table.dbFile.getPageSize();
+        }
+        throw new NoSuchElementException("not found PageSize for table:"+tableid);
+    }
+
     public String getPrimaryKey(int tableid) {
         // some code goes here
         Table table = hashTable.getOrDefault(tableid, null);
@@ -192,6 +211,14 @@ public class Catalog {
     /** Delete all tables from the catalog */
     public void clear() {
         // some code goes here
+        //先关掉各个表文件长期持有的FileChannel  再清空
+        for(Table table:hashTable.values()){
+            try {
+                table.dbFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         hashTable.clear();
     }
     
@@ -213,37 +240,86 @@ public class Catalog {
                 String[] els = fields.split(",");
                 ArrayList<String> names = new ArrayList<>();
                 ArrayList<Type> types = new ArrayList<>();
+                ArrayList<Boolean> nullable = new ArrayList<>();
+                ArrayList<Boolean> dictionary = new ArrayList<>();
                 String primaryKey = "";
                 for (String e : els) {
                     String[] els2 = e.trim().split(" ");
                     names.add(els2[0].trim());
-                    if (els2[1].trim().equalsIgnoreCase("int"))
-                        types.add(Type.INT_TYPE);
-                    else if (els2[1].trim().equalsIgnoreCase("string"))
-                        types.add(Type.STRING_TYPE);
+                    //int string long double date boolean
+                    Type type = Type.forName(els2[1]);
+                    if (type != null)
+                        types.add(type);
                     else {
                         System.out.println("Unknown type " + els2[1]);
                         System.exit(0);
                     }
-                    if (els2.length == 3) {
-                        if (els2[2].trim().equals("pk"))
+                    //类型后面的注解：pk 主键  null 可以为NULL  dict 字典编码(只用于string)
+                    boolean isNullable = false;
+                    boolean isDictionary = false;
+                    for (int k = 2; k < els2.length; k++) {
+                        if (els2[k].trim().equals("pk"))
                             primaryKey = els2[0].trim();
+                        else if (els2[k].trim().equalsIgnoreCase("null"))
+                            isNullable = true;
+                        else if (els2[k].trim().equalsIgnoreCase("dict"))
+                            isDictionary = true;
                         else {
-                            System.out.println("Unknown annotation " + els2[2]);
+                            System.out.println("Unknown annotation " + els2[k]);
                             System.exit(0);
                         }
                     }
+                    nullable.add(isNullable);
+                    dictionary.add(isDictionary);
                 }
                 Type[] typeAr = types.toArray(new Type[0]);
                 String[] namesAr = names.toArray(new String[0]);
-                TupleDesc t = new TupleDesc(typeAr, namesAr);
-                HeapFile tabHf = new HeapFile(new File(baseFolder+"/"+name + ".dat"), t);
+                boolean[] nullableAr = new boolean[nullable.size()];
+                for (int k = 0; k < nullableAr.length; k++)
+                    nullableAr[k] = nullable.get(k);
+                boolean[] dictionaryAr = new boolean[dictionary.size()];
+                for (int k = 0; k < dictionaryAr.length; k++)
+                    dictionaryAr[k] = dictionary.get(k);
+                TupleDesc t = new TupleDesc(typeAr, namesAr, nullableAr, dictionaryAr);
+                //括号后面可以跟表的选项：mapped 只读的内存映射表  pagesize=16k 这张表的页大小(写在文件头里)
+                //layout=slotted 这张表的页格式(也写在文件头里)  compression=lz4 这张表的页压缩方式(也写在文件头里)
+                boolean mapped = false;
+                int pageSize = 0;
+                PageLayout layout = null;
+                PageCompression compression = null;
+                for (String option : line.substring(line.indexOf(")") + 1).trim().split("\\s+")) {
+                    if (option.isEmpty())
+                        continue;
+                    if (option.equalsIgnoreCase("mapped"))
+                        mapped = true;
+                    else if (option.toLowerCase().startsWith("pagesize="))
+                        pageSize = (int) BufferPool.parseBytes(option.substring("pagesize=".length()));
+                    else if (option.toLowerCase().startsWith("layout="))
+                        layout = PageLayout.valueOf(option.substring("layout=".length()).toUpperCase());
+                    else if (option.toLowerCase().startsWith("compression="))
+                        compression = PageCompression.valueOf(option.substring("compression=".length()).toUpperCase());
+                    else {
+                        System.out.println("Unknown table option " + option);
+                        System.exit(0);
+                        return;
+                    }
+                }
+                File tableFile = new File(baseFolder+"/"+name + ".dat");
+                if (mapped && compression != null && compression != PageCompression.NONE) {
+                    throw new IllegalArgumentException("a mapped table cannot be compressed");
+                }
+                HeapFile tabHf = mapped ? new MappedHeapFile(tableFile, t, pageSize, layout)
+                        : new HeapFile(tableFile, t, pageSize, layout, compression);
                 addTable(tabHf,name,primaryKey);
                 System.out.println("Added table : " + name + " with schema " + t);
             }
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(0);
+        } catch (IllegalArgumentException e) {
+            //页大小、页格式不支持或者和表文件里的不一致
+            System.out.println ("Invalid catalog entry : " + line + " (" + e.getMessage() + ")");
+            System.exit(0);
         } catch (IndexOutOfBoundsException e) {
             System.out.println ("Invalid catalog entry : " + line);
             System.exit(0);
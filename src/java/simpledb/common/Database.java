@@ -2,6 +2,7 @@ package simpledb.common;
 
 import simpledb.storage.BufferPool;
 import simpledb.storage.LogFile;
+import simpledb.storage.ReplacementPolicy;
 
 import java.io.*;
 import java.util.concurrent.atomic.AtomicReference;
@@ -26,7 +27,10 @@ public class Database {
 
     private Database() {
         _catalog = new Catalog();
-        _bufferpool = new BufferPool(BufferPool.DEFAULT_PAGES);
+        //指定了 -Dsimpledb.bufferpool.bytes 时按堆内存限制
+        _bufferpool = BufferPool.DEFAULT_BYTES > 0
+                ? new BufferPool(Integer.MAX_VALUE, BufferPool.DEFAULT_BYTES, BufferPool.DEFAULT_POLICY)
+                : new BufferPool(BufferPool.DEFAULT_PAGES);
         LogFile tmp = null;
         try {
             tmp = new LogFile(new File(LOGFILENAME));
@@ -58,11 +62,37 @@ public class Database {
      * return it
      */
     public static BufferPool resetBufferPool(int pages) {
+        return resetBufferPool(pages, BufferPool.DEFAULT_POLICY);
+    }
+
+    /**
+     * Method used for testing -- create a new instance of the buffer pool
+     * that evicts pages with the given replacement policy and return it
+     */
+    public static BufferPool resetBufferPool(int pages, ReplacementPolicy.Kind policy) {
+        return resetBufferPool(new BufferPool(pages, policy));
+    }
+
+    /**
+     * Method used for testing -- create a new instance of the buffer pool
+     * limited to maxBytes bytes of heap and return it
+     */
+    public static BufferPool resetBufferPoolBytes(long maxBytes) {
+        return resetBufferPool(new BufferPool(Integer.MAX_VALUE, maxBytes, BufferPool.DEFAULT_POLICY));
+    }
+
+    /**
+     * Method used for testing -- replace the buffer pool with the given
+     * one, for example one that keeps pages off-heap, and return it
+     */
+    public static BufferPool resetBufferPool(BufferPool pool) {
         java.lang.reflect.Field bufferPoolF=null;
         try {
             bufferPoolF = Database.class.getDeclaredField("_bufferpool");
             bufferPoolF.setAccessible(true);
-            bufferPoolF.set(_instance.get(), new BufferPool(pages));
+            //旧的缓冲池不再使用  停掉它的后台写回
+            _instance.get()._bufferpool.close();
+            bufferPoolF.set(_instance.get(), pool);
         } catch (NoSuchFieldException | IllegalAccessException | IllegalArgumentException | SecurityException e) {
             e.printStackTrace();
         }
@@ -72,7 +102,10 @@ public class Database {
 
     // reset the database, used for unit tests only.
     public static void reset() {
-        _instance.set(new Database());
+        //旧实例的目录不再使用  关掉它打开的表文件
+        Database old = _instance.getAndSet(new Database());
+        old._bufferpool.close();
+        old._catalog.clear();
     }
 
 }
@@ -1,11 +1,18 @@
 package simpledb.common;
 
+import simpledb.storage.BooleanField;
+import simpledb.storage.DateField;
+import simpledb.storage.DoubleField;
+import simpledb.storage.LongField;
 import simpledb.storage.StringField;
 import simpledb.storage.Field;
 import simpledb.storage.IntField;
 
 import java.text.ParseException;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 
 /**
  * Class representing a type in SimpleDB.
@@ -28,6 +35,16 @@ public enum Type implements Serializable {
             }
         }
 
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new IntField(buf.getInt(offset));
+        }
+
+        @Override
+        public Field fromString(String s) {
+            return new IntField(Integer.parseInt(s.trim()));
+        }
+
     }, STRING_TYPE() {
         @Override
         public int getLen() {
@@ -46,10 +63,169 @@ public enum Type implements Serializable {
                 throw new ParseException("couldn't parse", 0);
             }
         }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) throws ParseException {
+            int strLen = buf.getInt(offset);
+            if (strLen < 0 || strLen > STRING_LEN) {
+                throw new ParseException("couldn't parse", offset);
+            }
+            byte[] bs = new byte[strLen];
+            if (buf.hasArray()) {
+                System.arraycopy(buf.array(), buf.arrayOffset() + offset + 4, bs, 0, strLen);
+            } else {
+                ByteBuffer b = buf.duplicate();
+                b.position(offset + 4);
+                b.get(bs);
+            }
+            return new StringField(new String(bs), STRING_LEN);
+        }
+
+        @Override
+        public Field fromString(String s) {
+            return new StringField(s, STRING_LEN);
+        }
+    }, LONG_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new LongField(dis.readLong());
+            } catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new LongField(buf.getLong(offset));
+        }
+
+        @Override
+        public Field fromString(String s) {
+            return new LongField(Long.parseLong(s.trim()));
+        }
+    }, DOUBLE_TYPE() {
+        @Override
+        public int getLen() {
+            return 8;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new DoubleField(dis.readDouble());
+            } catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new DoubleField(buf.getDouble(offset));
+        }
+
+        @Override
+        public Field fromString(String s) {
+            return new DoubleField(Double.parseDouble(s.trim()));
+        }
+    }, DATE_TYPE() {
+        //1970-01-01以来的天数  和INT_TYPE一样4字节
+        @Override
+        public int getLen() {
+            return 4;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new DateField(dis.readInt());
+            } catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new DateField(buf.getInt(offset));
+        }
+
+        //yyyy-MM-dd
+        @Override
+        public Field fromString(String s) {
+            try {
+                return new DateField(LocalDate.parse(s.trim()));
+            } catch (DateTimeParseException | ArithmeticException e) {
+                throw new IllegalArgumentException("not a date: " + s, e);
+            }
+        }
+    }, BOOLEAN_TYPE() {
+        @Override
+        public int getLen() {
+            return 1;
+        }
+
+        @Override
+        public Field parse(DataInputStream dis) throws ParseException {
+            try {
+                return new BooleanField(dis.readBoolean());
+            } catch (IOException e) {
+                throw new ParseException("couldn't parse", 0);
+            }
+        }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) throws ParseException {
+            byte b = buf.get(offset);
+            if (b != 0 && b != 1) {
+                throw new ParseException("couldn't parse", offset);
+            }
+            return new BooleanField(b == 1);
+        }
+
+        //true/false  也接受t/f和1/0
+        @Override
+        public Field fromString(String s) {
+            String v = s.trim();
+            if (v.equalsIgnoreCase("true") || v.equalsIgnoreCase("t") || v.equals("1"))
+                return new BooleanField(true);
+            if (v.equalsIgnoreCase("false") || v.equalsIgnoreCase("f") || v.equals("0"))
+                return new BooleanField(false);
+            throw new IllegalArgumentException("not a boolean: " + s);
+        }
     };
     
     public static final int STRING_LEN = 128;
 
+  /**
+   * @return the type named name in a schema, e.g. "int" or "date", ignoring
+   *   case, or null if there is no such type. "bool" is accepted for
+   *   BOOLEAN_TYPE.
+   */
+    public static Type forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "int":
+                return INT_TYPE;
+            case "string":
+                return STRING_TYPE;
+            case "long":
+                return LONG_TYPE;
+            case "double":
+                return DOUBLE_TYPE;
+            case "date":
+                return DATE_TYPE;
+            case "boolean":
+            case "bool":
+                return BOOLEAN_TYPE;
+            default:
+                return null;
+        }
+    }
+
   /**
    * @return the number of bytes required to store a field of this type.
    */
@@ -64,4 +240,26 @@ public enum Type implements Serializable {
    */
     public abstract Field parse(DataInputStream dis) throws ParseException;
 
+  /**
+   * Decodes a field in place, without a stream and without moving the
+   * buffer's position.
+   *
+   * @return a Field object of the same type as this object, read from the
+   *   getLen() bytes of buf starting at the absolute index offset.
+   * @param buf the buffer holding the serialized field
+   * @param offset absolute index of the field in buf
+   * @throws ParseException if the bytes are not a valid field of this type.
+   */
+    public abstract Field parse(ByteBuffer buf, int offset) throws ParseException;
+
+  /**
+   * Parses the text form of a value, as found in data files and query
+   * constants. Surrounding whitespace is ignored except for strings.
+   *
+   * @return a Field object of the same type as this object holding the value
+   * @param s the text to parse
+   * @throws IllegalArgumentException if s is not a value of this type.
+   */
+    public abstract Field fromString(String s);
+
 }
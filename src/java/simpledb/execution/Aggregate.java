@@ -3,6 +3,7 @@ package simpledb.execution;
 import simpledb.common.DbException;
 import simpledb.common.Type;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleDesc;
 import simpledb.transaction.TransactionAbortedException;
 
@@ -67,6 +68,9 @@ public class Aggregate extends Operator {
             aggregator=new IntegerAggregator(gfield,gfieldType,afield,aop);
         }else if(aFieldType==Type.STRING_TYPE){
             aggregator=new StringAggregator(gfield,gfieldType,afield,aop);
+        }else{
+            //long double date boolean
+            aggregator=new NumericAggregator(gfield,gfieldType,afield,aFieldType,aop);
         }
 
         // 组建 TupleDesc
@@ -76,7 +80,9 @@ public class Aggregate extends Operator {
             typeList.add(gfieldType);
             nameList.add(child.getTupleDesc().getFieldName(gfield));
         }
-        typeList.add(child.getTupleDesc().getFieldType(afield));
+        //新加的类型按聚合器实际输出的类型  例如long列的COUNT是int
+        typeList.add(aggregator instanceof NumericAggregator ? NumericAggregator.resultType(aFieldType,aop)
+                : child.getTupleDesc().getFieldType(afield));
         nameList.add(child.getTupleDesc().getFieldName(afield));
         tupleDesc=new TupleDesc(typeList.toArray(new Type[typeList.size()]),nameList.toArray(new String[nameList.size()]));
 
@@ -139,9 +145,10 @@ public class Aggregate extends Operator {
         // some code goes here
         //聚合所有的tuple
         child.open();
-        while(child.hasNext()){
-            Tuple next = child.next();
-            aggregator.mergeTupleIntoGroup(next);
+        //一批一批地合并  子算子能按批输出时整个子树都按批执行
+        TupleBatch batch;
+        while((batch=child.nextBatch())!=null){
+            aggregator.mergeBatch(batch);
         }
         //获取聚合结果的迭代器
         opIterator=aggregator.iterator();
@@ -1,6 +1,7 @@
 package simpledb.execution;
 
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleIterator;
 
 import java.io.Serializable;
@@ -79,6 +80,21 @@ public interface Aggregator extends Serializable {
      */
     void mergeTupleIntoGroup(Tuple tup);
 
+    /**
+     * Merges the selected rows of a batch, as
+     * {@link #mergeTupleIntoGroup} does for each of them. Aggregators that
+     * can aggregate the columns of a batch directly override it; the
+     * default merges the rows one tuple at a time.
+     *
+     * @param batch a batch of tuples containing an aggregate field and a group-by field
+     */
+    default void mergeBatch(TupleBatch batch) {
+        int[] sel = batch.getSelection();
+        for (int k = 0; k < batch.size(); k++) {
+            mergeTupleIntoGroup(batch.getTuple(sel[k]));
+        }
+    }
+
     /**
      * Create a OpIterator over group aggregate results.
      * @see TupleIterator for a possible helper
@@ -3,6 +3,7 @@ package simpledb.execution;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.common.DbException;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleDesc;
 
 import java.util.*;
@@ -83,6 +84,24 @@ public class Filter extends Operator {
         return null;
     }
 
+    /**
+     * Narrows the selection of each batch of the child to the tuples that
+     * pass the predicate, skipping batches where none does.
+     *
+     * @see Predicate#filter(TupleBatch)
+     */
+    @Override
+    protected TupleBatch fetchNextBatch() throws TransactionAbortedException, DbException {
+        TupleBatch batch;
+        while((batch=child.nextBatch())!=null){
+            p.filter(batch);
+            if(batch.size()>0){
+                return batch;
+            }
+        }
+        return null;
+    }
+
     @Override
     public OpIterator[] getChildren() {
         // some code goes here
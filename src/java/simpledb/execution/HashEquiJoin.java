@@ -2,7 +2,9 @@ package simpledb.execution;
 
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.common.DbException;
+import simpledb.storage.Field;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleDesc;
 
 import java.util.*;
@@ -63,7 +65,11 @@ public class HashEquiJoin extends Operator {
         map.clear();
         while (child1.hasNext()) {
             t1 = child1.next();
-            List<Tuple> list = map.computeIfAbsent(t1.getField(pred.getField1()), k -> new ArrayList<>());
+            Field key = t1.getField(pred.getField1());
+            //NULL和任何值都不相等  NullField.equals只用于分组  不能放进哈希表
+            if (key.isNull())
+                continue;
+            List<Tuple> list = map.computeIfAbsent(key, k -> new ArrayList<>());
             list.add(t1);
             if (cnt++ == MAP_SIZE)
                 return true;
@@ -72,11 +78,13 @@ public class HashEquiJoin extends Operator {
 
     }
 
+    //第一次fetchNext时才读child1  用nextBatch读的时候child1要从头开始
+    transient private boolean mapLoaded = false;
+
     public void open() throws DbException, NoSuchElementException,
             TransactionAbortedException {
         child1.open();
         child2.open();
-        loadMap();
         super.open();
     }
 
@@ -88,11 +96,25 @@ public class HashEquiJoin extends Operator {
         this.t2=null;
         this.listIt=null;
         this.map.clear();
+        this.mapLoaded=false;
+        this.build=null;
+        this.probe=null;
+        this.pending=null;
+        this.batchDone=false;
+        this.chainPos=-1;
     }
 
     public void rewind() throws DbException, TransactionAbortedException {
         child1.rewind();
         child2.rewind();
+        listIt=null;
+        map.clear();
+        mapLoaded=false;
+        build=null;
+        probe=null;
+        pending=null;
+        batchDone=false;
+        chainPos=-1;
     }
 
     transient Iterator<Tuple> listIt = null;
@@ -132,6 +154,11 @@ public class HashEquiJoin extends Operator {
     }
 
     protected Tuple fetchNext() throws TransactionAbortedException, DbException {
+        if (!mapLoaded) {
+            mapLoaded = true;
+            if (!loadMap())
+                return null;
+        }
         if (listIt != null && listIt.hasNext()) {
             return processList();
         }
@@ -160,6 +187,128 @@ public class HashEquiJoin extends Operator {
         return null;
     }
 
+    /*
+     * nextBatch的实现：child1每块最多MAP_SIZE行按列拷进build  用数组做链式哈希表
+     * buckets[h]是哈希值为h的第一行  chain[r]是同一个桶里r的下一行  -1表示没有
+     * INT的连接字段按int值哈希、比较  其他类型按Field.hashCode和equals  和map一样
+     * (IntField.hashCode就是它的值  两种列混在一起也能对上)
+     * 然后child2一批一批地探测  一块探测完child2从头再来  和fetchNext一样
+     */
+    transient private TupleBatch build;
+    transient private int[] buckets;
+    transient private int[] chain;
+    //child1读出来还没放进build的一批  和下一个要放的行在选择向量中的位置
+    transient private TupleBatch pending;
+    transient private int pendingPos;
+    transient private boolean child1Done;
+    //所有的块都探测完了
+    transient private boolean batchDone;
+    //当前探测的批、行在选择向量中的位置  以及这一行在桶里下一个要比较的build行
+    transient private TupleBatch probe;
+    transient private int probePos;
+    transient private int chainPos = -1;
+
+    //child1的下一块放进build  建哈希表  child1读完了返回false
+    private boolean loadBuild() throws DbException, TransactionAbortedException {
+        if (build == null) {
+            build = new TupleBatch(child1.getTupleDesc(), MAP_SIZE);
+            buckets = new int[Integer.highestOneBit(MAP_SIZE) * 2];
+            chain = new int[MAP_SIZE];
+            child1Done = false;
+        }
+        build.clear();
+        Arrays.fill(buckets, -1);
+        int f1 = pred.getField1();
+        while (!build.isFull()) {
+            if (pending == null || pendingPos >= pending.size()) {
+                pending = child1Done ? null : child1.nextBatch();
+                pendingPos = 0;
+                if (pending == null) {
+                    child1Done = true;
+                    break;
+                }
+            }
+            int r = pending.getSelection()[pendingPos++];
+            //NULL和任何值都不相等
+            if (pending.isNull(r, f1))
+                continue;
+            int row = build.addRow();
+            build.copy(row, 0, pending, r);
+            int h = hash(build, row, f1) & (buckets.length - 1);
+            chain[row] = buckets[h];
+            buckets[h] = row;
+        }
+        return build.getNumRows() > 0;
+    }
+
+    private static int hash(TupleBatch b, int row, int field) {
+        int h = b.isInt(field) ? b.getInts(field)[row] : b.getField(row, field).hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean keyEquals(TupleBatch b1, int row1, int field1, TupleBatch b2, int row2, int field2) {
+        if (b1.isInt(field1) && b2.isInt(field2))
+            return b1.getInts(field1)[row1] == b2.getInts(field2)[row2];
+        return b1.getField(row1, field1).equals(b2.getField(row2, field2));
+    }
+
+    @Override
+    protected TupleBatch fetchNextBatch() throws TransactionAbortedException, DbException {
+        if (batchDone)
+            return null;
+        if (build == null && !loadBuild()) {
+            batchDone = true;
+            return null;
+        }
+        TupleBatch out = new TupleBatch(comboTD);
+        int f1 = pred.getField1();
+        int f2 = pred.getField2();
+        int n1 = child1.getTupleDesc().numFields();
+        while (!out.isFull()) {
+            if (chainPos >= 0) {
+                //当前探测行在桶里还有没比较的build行
+                int r2 = probe.getSelection()[probePos];
+                while (chainPos >= 0 && !out.isFull()) {
+                    if (keyEquals(build, chainPos, f1, probe, r2, f2)) {
+                        int row = out.addRow();
+                        out.copy(row, 0, build, chainPos);
+                        out.copy(row, n1, probe, r2);
+                    }
+                    chainPos = chain[chainPos];
+                }
+                if (chainPos < 0)
+                    probePos++;
+                continue;
+            }
+            if (probe == null || probePos >= probe.size()) {
+                probe = child2.nextBatch();
+                probePos = 0;
+                if (probe == null) {
+                    //child2探测完了  child1的下一块
+                    if (child1Done && (pending == null || pendingPos >= pending.size())) {
+                        batchDone = true;
+                        break;
+                    }
+                    child2.rewind();
+                    if (!loadBuild()) {
+                        batchDone = true;
+                        break;
+                    }
+                }
+                continue;
+            }
+            int r2 = probe.getSelection()[probePos];
+            if (probe.isNull(r2, f2)) {
+                probePos++;
+                continue;
+            }
+            chainPos = buckets[hash(probe, r2, f2) & (buckets.length - 1)];
+            if (chainPos < 0)
+                probePos++;
+        }
+        return out.size() > 0 ? out : null;
+    }
+
     @Override
     public OpIterator[] getChildren() {
         return new OpIterator[]{this.child1, this.child2};
@@ -11,6 +11,8 @@ import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Inserts tuples read from the child operator into the tableId specified in the
@@ -20,6 +22,9 @@ public class Insert extends Operator {
 
     private static final long serialVersionUID = 1L;
 
+    //批量插入时一批的元组数
+    private static final int BATCH_SIZE = 4096;
+
     private TransactionId transactionId;
 
     // 插入的元组 的 迭代器
@@ -113,14 +118,19 @@ public class Insert extends Operator {
             inserted=true;
             //A 1-field tuple containing the number of inserted records
             //插入完毕
+            //攒够BATCH_SIZE个元组批量插入
+            List<Tuple> batch = new ArrayList<>(BATCH_SIZE);
             while (child.hasNext()) {
-                Tuple next = child.next();
-                try {
-                    Database.getBufferPool().insertTuple(transactionId, tableId, next);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                batch.add(child.next());
                 count++;
+                if (batch.size() == BATCH_SIZE || !child.hasNext()) {
+                    try {
+                        Database.getBufferPool().insertTuples(transactionId, tableId, batch.iterator());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    batch.clear();
+                }
             }
             intField = new IntField(count);
             TupleDesc tupleDesc = new TupleDesc(new Type[]{Type.INT_TYPE}, new String[]{"insert_count"});
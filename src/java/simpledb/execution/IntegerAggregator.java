@@ -5,6 +5,7 @@ import simpledb.storage.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -30,6 +31,8 @@ public class IntegerAggregator implements Aggregator {
     private Op what;
     //聚合处理器
     private AggHandler aggHandler;
+    //见过的所有分组  聚合字段全是NULL的分组不在aggResult里  但也要输出
+    private final Set<Field> groups = ConcurrentHashMap.newKeySet();
 
     //自定义 聚合处理抽象类
     private abstract class AggHandler{
@@ -40,6 +43,8 @@ public class IntegerAggregator implements Aggregator {
         //处理方法 子类实现
         //参数为分组字段  及 处理的聚合字段
         abstract void handle(Field gbField,IntField aField);
+        //合并一个分组一批里的部分结果  count>0
+        abstract void merge(Field gbField,int sum,int count,int min,int max);
         AggHandler(){
             aggResult=new ConcurrentHashMap<>();
         }
@@ -53,6 +58,10 @@ public class IntegerAggregator implements Aggregator {
 
             aggResult.put(gbField, aggResult.getOrDefault(gbField, 0) + (Integer) aField.getValue());
         }
+        @Override
+        void merge(Field gbField,int sum,int count,int min,int max) {
+            aggResult.put(gbField, aggResult.getOrDefault(gbField, 0) + sum);
+        }
     }
     private class CountAggHandler extends AggHandler{
         @Override
@@ -60,18 +69,30 @@ public class IntegerAggregator implements Aggregator {
 
             aggResult.put(gbField,aggResult.getOrDefault(gbField,0)+1);
         }
+        @Override
+        void merge(Field gbField,int sum,int count,int min,int max) {
+            aggResult.put(gbField,aggResult.getOrDefault(gbField,0)+count);
+        }
     }
     private class MaxAggHandler extends AggHandler{
         @Override
         void handle(Field gbField,IntField aField) {
             aggResult.put(gbField,Math.max(aggResult.getOrDefault(gbField,Integer.MIN_VALUE),(Integer) aField.getValue()));
         }
+        @Override
+        void merge(Field gbField,int sum,int count,int min,int max) {
+            aggResult.put(gbField,Math.max(aggResult.getOrDefault(gbField,Integer.MIN_VALUE),max));
+        }
     }
     private class MinAggHandler extends AggHandler{
         @Override
         void handle(Field gbField,IntField aField) {
             aggResult.put(gbField,Math.min(aggResult.getOrDefault(gbField,Integer.MAX_VALUE),(Integer) aField.getValue()));
         }
+        @Override
+        void merge(Field gbField,int sum,int count,int min,int max) {
+            aggResult.put(gbField,Math.min(aggResult.getOrDefault(gbField,Integer.MAX_VALUE),min));
+        }
     }
     private class AvgAggHandler extends AggHandler{
         //各组已经处理了多少个字段
@@ -104,6 +125,13 @@ public class IntegerAggregator implements Aggregator {
             int newField = sumAggHandler.getAggResult().get(gbField) / countAggHandler.getAggResult().get(gbField);
             this.aggResult.put(gbField, newField);
         }
+        @Override
+        void merge(Field gbField,int sum,int count,int min,int max) {
+            sumAggHandler.merge(gbField,sum,count,min,max);
+            countAggHandler.merge(gbField,sum,count,min,max);
+            int newField = sumAggHandler.getAggResult().get(gbField) / countAggHandler.getAggResult().get(gbField);
+            this.aggResult.put(gbField, newField);
+        }
 
 
     }
@@ -170,19 +198,117 @@ public class IntegerAggregator implements Aggregator {
         if(gbFieldType!=null&&!(gb.getType().equals(gbFieldType))){
             throw new IllegalArgumentException("Given tuple has wrong type");
         }
-        //得到聚合字段
-        IntField agg = (IntField) tup.getField(aField);
+        groups.add(gb);
+        //得到聚合字段  和SQL一样跳过NULL
+        Field f = tup.getField(aField);
+        if(f.isNull()){
+            return;
+        }
+        IntField agg = (IntField) f;
 
         aggHandler.handle(gb,agg);
     }
 
+    //一个分组在一批里的部分结果
+    private static final class Partial {
+        final Field group;
+        int sum;
+        int count;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+
+        Partial(Field group) {
+            this.group = group;
+        }
+
+        void add(int v) {
+            sum += v;
+            count++;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+    }
+
+    //按INT分组时每批的部分结果  key是分组的值
+    private transient LongHashMap<Partial> partials;
+
+    /**
+     * Merges a batch whose aggregate field (and INT group-by field, if
+     * any) are INT columns without creating a Field per row: the rows are
+     * first summed up per group in ints, then each group is merged once.
+     * Other batches are merged one tuple at a time.
+     */
+    @Override
+    public void mergeBatch(TupleBatch batch) {
+        boolean grouped = gbFieldIndex != NO_GROUPING;
+        if (!batch.isInt(aField) || grouped && (gbFieldType != Type.INT_TYPE || !batch.isInt(gbFieldIndex))) {
+            Aggregator.super.mergeBatch(batch);
+            return;
+        }
+        int[] sel = batch.getSelection();
+        int n = batch.size();
+        int[] values = batch.getInts(aField);
+        boolean[] nulls = batch.getNulls(aField);
+        if (!grouped) {
+            Partial p = new Partial(new IntField(NO_GROUPING));
+            for (int k = 0; k < n; k++) {
+                int r = sel[k];
+                if (!nulls[r]) {
+                    p.add(values[r]);
+                }
+            }
+            mergePartial(p);
+            return;
+        }
+        if (partials == null) {
+            partials = new LongHashMap<>();
+        }
+        int[] keys = batch.getInts(gbFieldIndex);
+        boolean[] nullKeys = batch.getNulls(gbFieldIndex);
+        //NULL自成一组
+        Partial nullGroup = null;
+        for (int k = 0; k < n; k++) {
+            int r = sel[k];
+            Partial p;
+            if (nullKeys[r]) {
+                if (nullGroup == null) {
+                    nullGroup = new Partial(NullField.of(Type.INT_TYPE));
+                }
+                p = nullGroup;
+            } else {
+                p = partials.get(keys[r]);
+                if (p == null) {
+                    p = new Partial(new IntField(keys[r]));
+                    partials.put(keys[r], p);
+                }
+            }
+            if (!nulls[r]) {
+                p.add(values[r]);
+            }
+        }
+        partials.forEachValue(this::mergePartial);
+        partials.clear();
+        if (nullGroup != null) {
+            mergePartial(nullGroup);
+        }
+    }
+
+    private void mergePartial(Partial p) {
+        groups.add(p.group);
+        if (p.count > 0) {
+            aggHandler.merge(p.group, p.sum, p.count, p.min, p.max);
+        }
+    }
+
     /**
      * Create a OpIterator over group aggregate results.
      * 
      * @return a OpIterator whose tuples are the pair (groupVal, aggregateVal)
      *         if using group, or a single (aggregateVal) if no grouping. The
      *         aggregateVal is determined by the type of aggregate specified in
-     *         the constructor.
+     *         the constructor. NULLs are skipped: a group with no other value
+     *         (or no input at all without grouping) gets 0 for COUNT and NULL
+     *         otherwise.
      */
     //返回GBHandler中聚合结果的迭代器
     //肯定返回一个TupleIterator就行
@@ -202,28 +328,31 @@ public class IntegerAggregator implements Aggregator {
             tupleDesc = new TupleDesc(types, names);
 
             tuple=new Tuple(tupleDesc);
-            Integer integer = aggResult.get(new IntField(NO_GROUPING));
-            IntField intField = new IntField(integer);
-            tuple.setField(0,intField);
+            tuple.setField(0,result(aggResult.get(new IntField(NO_GROUPING))));
             tupleList.add(tuple);
         }else{
             types=new Type[]{gbFieldType,Type.INT_TYPE};
             names=new String[]{"groupVal","aggregateVal"};
             tupleDesc = new TupleDesc(types, names);
 
-            for (Field field : aggResult.keySet()) {
+            for (Field field : groups) {
                 tuple=new Tuple(tupleDesc);
                 //先添加 被分组字段
-                if(gbFieldType == Type.INT_TYPE){
+                if(field.isNull()){
+                    //NULL自成一组
+                    tuple.setField(0,field);
+                }else if(gbFieldType == Type.INT_TYPE){
                     IntField intField = (IntField) field;
                     tuple.setField(0,intField);
                 }else if(gbFieldType == Type.STRING_TYPE){
                     StringField stringField = (StringField) field;
                     tuple.setField(0,stringField);
+                }else{
+                    //long double date boolean  分组字段原样放回
+                    tuple.setField(0,field);
                 }
                 //接着添加 聚集字段
-                Integer integer = aggResult.get(field);
-                tuple.setField(1,new IntField(integer));
+                tuple.setField(1,result(aggResult.get(field)));
 
                 //然后添加到集合
                 tupleList.add(tuple);
@@ -234,4 +363,12 @@ public class IntegerAggregator implements Aggregator {
         //throw new UnsupportedOperationException("please implement me for lab2");
     }
 
+    //一个分组的聚合结果  value为null表示这个分组没有非NULL的值
+    private Field result(Integer value) {
+        if(value!=null){
+            return new IntField(value);
+        }
+        return what==Op.COUNT ? new IntField(0) : NullField.of(Type.INT_TYPE);
+    }
+
 }
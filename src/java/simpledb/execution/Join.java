@@ -3,6 +3,7 @@ package simpledb.execution;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.common.DbException;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleDesc;
 
 import java.util.*;
@@ -29,6 +30,12 @@ public class Join extends Operator {
     //临时元组，保存上次迭代用的 child1 的 Tuple
     //这个主要用于下次遍历的时候，继续使用当前元组，因为可能有多个符合条件的结果，也就是一对多，所以不能够直接跳到下一条，使用临时值保存当前元组
 
+    //nextBatch的状态：当前外层批和内层批  以及下一对要比较的行在两批选择向量中的位置
+    private TupleBatch outer;
+    private TupleBatch inner;
+    private int outerPos;
+    private int innerPos;
+
     /**
      * Constructor. Accepts two children to join and the predicate to join them
      * on
@@ -100,6 +107,8 @@ public class Join extends Operator {
         child1.rewind();
         child2.rewind();
         tuple1=null;
+        outer=null;
+        inner=null;
     }
 
     /**
@@ -155,6 +164,55 @@ public class Join extends Operator {
         return null;
     }
 
+    /**
+     * Block nested loops join: for each batch of child1, child2 is rewound
+     * and each of its batches is compared with the whole batch of child1,
+     * so child2 is read once per batch of child1 instead of once per tuple.
+     * Matching pairs are copied into the output batch column by column.
+     */
+    @Override
+    protected TupleBatch fetchNextBatch() throws TransactionAbortedException, DbException {
+        TupleBatch out = new TupleBatch(getTupleDesc());
+        int n1 = child1.getTupleDesc().numFields();
+        while (!out.isFull()) {
+            if (outer == null) {
+                outer = child1.nextBatch();
+                if (outer == null) {
+                    break;
+                }
+                child2.rewind();
+                inner = null;
+            }
+            if (inner == null) {
+                inner = child2.nextBatch();
+                outerPos = 0;
+                innerPos = 0;
+                if (inner == null) {
+                    //child2读完了  换下一批外层
+                    outer = null;
+                    continue;
+                }
+            }
+            if (outerPos >= outer.size()) {
+                //这一批内层和外层比较完了
+                inner = null;
+                continue;
+            }
+            int r1 = outer.getSelection()[outerPos];
+            int r2 = inner.getSelection()[innerPos];
+            if (p.filter(outer, r1, inner, r2)) {
+                int row = out.addRow();
+                out.copy(row, 0, outer, r1);
+                out.copy(row, n1, inner, r2);
+            }
+            if (++innerPos >= inner.size()) {
+                innerPos = 0;
+                outerPos++;
+            }
+        }
+        return out.size() > 0 ? out : null;
+    }
+
     @Override
     public OpIterator[] getChildren() {
         // some code goes here
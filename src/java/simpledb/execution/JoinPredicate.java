@@ -2,6 +2,7 @@ package simpledb.execution;
 
 import simpledb.storage.Field;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 
 import java.io.Serializable;
 
@@ -47,13 +48,36 @@ public class JoinPredicate implements Serializable {
      * Apply the predicate to the two specified tuples. The comparison can be
      * made through Field's compare method.
      * 
-     * @return true if the tuples satisfy the predicate.
+     * @return true if the tuples satisfy the predicate; false if either
+     *         field is NULL.
      */
     public boolean filter(Tuple t1, Tuple t2) {
         // some code goes here
-        return t1.getField(field1).compare(op,t2.getField(field2));
+        Field f1 = t1.getField(field1);
+        Field f2 = t2.getField(field2);
+        if (f1.isNull() || f2.isNull())
+            return false;
+        return f1.compare(op,f2);
     }
     
+    /**
+     * Applies the predicate to a row of each of two batches, as
+     * {@link #filter(Tuple, Tuple)} does to two tuples. Two INT columns are
+     * compared as ints.
+     */
+    public boolean filter(TupleBatch b1, int row1, TupleBatch b2, int row2) {
+        if (b1.isInt(field1) && b2.isInt(field2)) {
+            if (b1.getNulls(field1)[row1] || b2.getNulls(field2)[row2])
+                return false;
+            return Predicate.compare(op, b1.getInts(field1)[row1], b2.getInts(field2)[row2]);
+        }
+        Field f1 = b1.getField(row1, field1);
+        Field f2 = b2.getField(row2, field2);
+        if (f1.isNull() || f2.isNull())
+            return false;
+        return f1.compare(op,f2);
+    }
+
     public int getField1()
     {
         // some code goes here
@@ -0,0 +1,209 @@
+package simpledb.execution;
+
+import simpledb.common.Type;
+import simpledb.storage.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Knows how to compute some aggregate over a set of LongFields,
+ * DoubleFields, DateFields or BooleanFields.
+ */
+
+/**
+ * long double date boolean列的聚合器
+ * 聚合时直接用基本类型累加、比较  不转成字符串或者int
+ *
+ * 结果的类型：
+ *   COUNT            int  和IntegerAggregator、StringAggregator一样
+ *   MIN MAX          和聚合字段相同
+ *   SUM AVG          long列为long(AVG截断  和IntegerAggregator一样)  double列为double
+ * date和boolean列只支持COUNT MIN MAX
+ * 和SQL一样跳过NULL  没有非NULL值的分组(不分组时没有输入)COUNT为0  其它为NULL
+ */
+public class NumericAggregator implements Aggregator {
+
+    private static final long serialVersionUID = 1L;
+
+    //分组字段  在传递的元组中的位置    没有分组则为NO_GROUPING -1
+    private final int gbFieldIndex;
+    //分组字段类型
+    private final Type gbFieldType;
+    //聚合字段 在元组中位置
+    private final int aField;
+    //聚合字段类型
+    private final Type aFieldType;
+    //聚合操作符 如sum min
+    private final Op what;
+
+    //每个分组的中间结果  key为分组字段  没有分组则为IntField(NO_GROUPING)
+    private final ConcurrentHashMap<Field, Acc> groups = new ConcurrentHashMap<>();
+
+    //一个分组的中间结果
+    private static class Acc {
+        long count;
+        //long列的和
+        long longSum;
+        //double列的和
+        double doubleSum;
+        Field min;
+        Field max;
+    }
+
+    /**
+     * @return 聚合字段类型为aFieldType时  what的结果的类型
+     * @throws IllegalArgumentException 这种类型不支持what
+     */
+    public static Type resultType(Type aFieldType, Op what) {
+        switch (what) {
+            case COUNT:
+                return Type.INT_TYPE;
+            case MIN:
+            case MAX:
+                return aFieldType;
+            case SUM:
+            case AVG:
+                if (aFieldType == Type.LONG_TYPE || aFieldType == Type.DOUBLE_TYPE) {
+                    return aFieldType;
+                }
+                break;
+            default:
+                break;
+        }
+        throw new IllegalArgumentException("聚合器不支持" + aFieldType + "的" + what);
+    }
+
+    /**
+     * Aggregate constructor
+     *
+     * @param gbfield
+     *            the 0-based index of the group-by field in the tuple, or
+     *            NO_GROUPING if there is no grouping
+     * @param gbfieldtype
+     *            the type of the group by field (e.g., Type.INT_TYPE), or null
+     *            if there is no grouping
+     * @param afield
+     *            the 0-based index of the aggregate field in the tuple
+     * @param afieldtype
+     *            the type of the aggregate field: LONG_TYPE, DOUBLE_TYPE,
+     *            DATE_TYPE or BOOLEAN_TYPE
+     * @param what
+     *            the aggregation operator
+     * @throws IllegalArgumentException if the operator is not supported for the type
+     */
+    public NumericAggregator(int gbfield, Type gbfieldtype, int afield, Type afieldtype, Op what) {
+        if (afieldtype == Type.INT_TYPE || afieldtype == Type.STRING_TYPE) {
+            throw new IllegalArgumentException("use IntegerAggregator or StringAggregator for " + afieldtype);
+        }
+        this.gbFieldIndex = gbfield;
+        this.gbFieldType = gbfieldtype;
+        this.aField = afield;
+        this.aFieldType = afieldtype;
+        this.what = what;
+        //提前检查类型和操作符
+        resultType(afieldtype, what);
+    }
+
+    /**
+     * Merge a new tuple into the aggregate, grouping as indicated in the
+     * constructor
+     *
+     * @param tup
+     *            the Tuple containing an aggregate field and a group-by field
+     */
+    public void mergeTupleIntoGroup(Tuple tup) {
+        Field gb;
+        if (gbFieldIndex == NO_GROUPING) {
+            gb = new IntField(NO_GROUPING);
+        } else {
+            gb = tup.getField(gbFieldIndex);
+        }
+        //查看分组类型是否匹配
+        if (gbFieldType != null && !(gb.getType().equals(gbFieldType))) {
+            throw new IllegalArgumentException("Given tuple has wrong type");
+        }
+        Field agg = tup.getField(aField);
+        Acc acc = groups.computeIfAbsent(gb, k -> new Acc());
+        if (agg.isNull()) {
+            return;
+        }
+        acc.count++;
+        switch (what) {
+            case SUM:
+            case AVG:
+                if (aFieldType == Type.LONG_TYPE) {
+                    acc.longSum += ((LongField) agg).getValue();
+                } else {
+                    acc.doubleSum += ((DoubleField) agg).getValue();
+                }
+                break;
+            case MIN:
+                if (acc.min == null || agg.compare(Predicate.Op.LESS_THAN, acc.min)) {
+                    acc.min = agg;
+                }
+                break;
+            case MAX:
+                if (acc.max == null || agg.compare(Predicate.Op.GREATER_THAN, acc.max)) {
+                    acc.max = agg;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    //一个分组的聚合结果
+    private Field result(Acc acc) {
+        if (acc.count == 0) {
+            return what == Op.COUNT ? new IntField(0) : NullField.of(resultType(aFieldType, what));
+        }
+        switch (what) {
+            case COUNT:
+                return new IntField((int) acc.count);
+            case MIN:
+                return acc.min;
+            case MAX:
+                return acc.max;
+            case SUM:
+                return aFieldType == Type.LONG_TYPE ? new LongField(acc.longSum) : new DoubleField(acc.doubleSum);
+            case AVG:
+                return aFieldType == Type.LONG_TYPE ? new LongField(acc.longSum / acc.count)
+                        : new DoubleField(acc.doubleSum / acc.count);
+            default:
+                throw new IllegalStateException("impossible to reach here");
+        }
+    }
+
+    /**
+     * Create a OpIterator over group aggregate results.
+     *
+     * @return a OpIterator whose tuples are the pair (groupVal, aggregateVal)
+     *         if using group, or a single (aggregateVal) if no grouping. The
+     *         type of aggregateVal is {@link #resultType}.
+     */
+    public OpIterator iterator() {
+        Type resultType = resultType(aFieldType, what);
+        TupleDesc tupleDesc;
+        List<Tuple> tupleList = new ArrayList<>();
+        if (gbFieldIndex == NO_GROUPING) {
+            tupleDesc = new TupleDesc(new Type[]{resultType}, new String[]{"aggregateVal"});
+            Acc acc = groups.getOrDefault(new IntField(NO_GROUPING), new Acc());
+            Tuple tuple = new Tuple(tupleDesc);
+            tuple.setField(0, result(acc));
+            tupleList.add(tuple);
+        } else {
+            tupleDesc = new TupleDesc(new Type[]{gbFieldType, resultType}, new String[]{"groupVal", "aggregateVal"});
+            for (Map.Entry<Field, Acc> e : groups.entrySet()) {
+                Tuple tuple = new Tuple(tupleDesc);
+                tuple.setField(0, e.getKey());
+                tuple.setField(1, result(e.getValue()));
+                tupleList.add(tuple);
+            }
+        }
+        return new TupleIterator(tupleDesc, tupleList);
+    }
+
+}
@@ -2,6 +2,7 @@ package simpledb.execution;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.common.DbException;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleDesc;
 
 import java.io.Serializable;
@@ -46,6 +47,28 @@ public interface OpIterator extends Serializable{
    */
   void rewind() throws DbException, TransactionAbortedException;
 
+  /**
+   * Returns the next batch of tuples, the vectorized counterpart of
+   * {@link #next()}. Every batch returned has at least one selected row.
+   * Operators that can work on whole batches override it; this default
+   * collects up to {@link TupleBatch#DEFAULT_CAPACITY} tuples from
+   * {@link #next()}, so any operator can feed a batch consumer.
+   * <p>
+   * Between two rewinds, a consumer reads an iterator either with next()
+   * or with nextBatch(), not both.
+   *
+   * @return the next batch, or null if there are no more tuples.
+   * @throws IllegalStateException If the iterator has not been opened
+   */
+  default TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+      if (!hasNext())
+          return null;
+      TupleBatch batch = new TupleBatch(getTupleDesc());
+      while (!batch.isFull() && hasNext())
+          batch.add(next());
+      return batch;
+  }
+
   /**
    * Returns the TupleDesc associated with this OpIterator.
    * @return the TupleDesc associated with this OpIterator.
@@ -3,6 +3,7 @@ package simpledb.execution;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.common.DbException;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleDesc;
 
 import java.util.NoSuchElementException;
@@ -49,6 +50,32 @@ public abstract class Operator implements OpIterator {
     protected abstract Tuple fetchNext() throws DbException,
             TransactionAbortedException;
 
+    /**
+     * Returns the next batch of tuples. Operators that work on whole
+     * batches implement {@link #fetchNextBatch}; a tuple already fetched by
+     * {@link #hasNext()} is returned first, in a batch collected from
+     * {@link #next()}.
+     */
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (!this.open)
+            throw new IllegalStateException("Operator not yet open");
+        if (next != null)
+            return OpIterator.super.nextBatch();
+        return fetchNextBatch();
+    }
+
+    /**
+     * Returns the next batch of tuples, or null if the iteration is
+     * finished. Operator uses this method to implement
+     * <code>nextBatch</code>; the default collects the tuples of
+     * {@link #fetchNext()}.
+     *
+     * 子类重写它就能一次处理一批  不用逐个元组调用fetchNext
+     */
+    protected TupleBatch fetchNextBatch() throws DbException, TransactionAbortedException {
+        return OpIterator.super.nextBatch();
+    }
+
     /**
      * Closes this iterator. If overridden by a subclass, they should call
      * super.close() in order for Operator's internal state to be consistent.
@@ -117,6 +117,11 @@ class TupleComparator implements Comparator<Tuple> {
     public int compare(Tuple o1, Tuple o2) {
         Field t1 = (o1).getField(field);
         Field t2 = (o2).getField(field);
+        //NULL比所有值都大  升序时排在最后
+        if (t1.isNull() || t2.isNull()) {
+            int c = Boolean.compare(t1.isNull(), t2.isNull());
+            return asc ? c : -c;
+        }
         if (t1.compare(Predicate.Op.EQUALS, t2))
             return 0;
         if (t1.compare(Predicate.Op.GREATER_THAN, t2))
@@ -1,7 +1,12 @@
 package simpledb.execution;
 
+import simpledb.storage.CodedStringField;
 import simpledb.storage.Field;
+import simpledb.storage.IntField;
+import simpledb.storage.StringDictionary;
+import simpledb.storage.StringField;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 
 import java.io.Serializable;
 
@@ -19,7 +24,9 @@ public class Predicate implements Serializable {
 
     /** Constants used for return codes in Field.compare */
     public enum Op implements Serializable {
-        EQUALS, GREATER_THAN, LESS_THAN, LESS_THAN_OR_EQ, GREATER_THAN_OR_EQ, LIKE, NOT_EQUALS;
+        EQUALS, GREATER_THAN, LESS_THAN, LESS_THAN_OR_EQ, GREATER_THAN_OR_EQ, LIKE, NOT_EQUALS,
+        //只用于Predicate  不传给Field.compare  操作数为null
+        IS_NULL, IS_NOT_NULL;
 
         /**
          * Interface to access operations by integer value for command-line
@@ -47,6 +54,10 @@ public class Predicate implements Serializable {
                 return "LIKE";
             if (this == NOT_EQUALS)
                 return "<>";
+            if (this == IS_NULL)
+                return "IS NULL";
+            if (this == IS_NOT_NULL)
+                return "IS NOT NULL";
             throw new IllegalStateException("impossible to reach here");
         }
 
@@ -60,6 +71,14 @@ public class Predicate implements Serializable {
     //1
     private final Field operand;
 
+    //字典编码的列上的等值比较：操作数在字典里的编码  之后每行只比较编码
+    //记下是哪个字典的哪一列  字段换了字典时重新查
+    private transient StringDictionary codeDictionary;
+    private transient int codeColumn;
+    private transient int operandCode;
+    //查的时候字典里有多少个值  操作数不在字典里时  编码更大的值是之后新加的  可能就是操作数  要重新查
+    private transient int codeLimit;
+
     /**
      * Constructor.
      * 
@@ -68,7 +87,8 @@ public class Predicate implements Serializable {
      * @param op
      *            operation to use for comparison
      * @param operand
-     *            field value to compare passed in tuples to
+     *            field value to compare passed in tuples to; null for
+     *            {@link Op#IS_NULL} and {@link Op#IS_NOT_NULL}
      */
     public Predicate(int field, Op op, Field operand) {
         // some code goes here
@@ -115,10 +135,175 @@ public class Predicate implements Serializable {
      * @return true if the comparison is true, false otherwise.
      *  即 返回 tuple t中的 a  是否 > 1
      *   a>1 来源于public Predicate(int field, Op op, Field operand)
+     *  和SQL一样  字段或操作数为NULL时比较的结果是unknown  返回false  只有IS NULL能选出NULL
      */
     public boolean filter(Tuple t) {
         // some code goes here
-        return t.getField(field).compare(op,operand);
+        return filter(t.getField(field));
+    }
+
+    /**
+     * Compares a value of the field this predicate is on to the operand, as
+     * {@link #filter(Tuple)} does for the field of a whole tuple. Lets a scan
+     * test a field it decoded on its own before building the tuple.
+     *
+     * @param f the value of field {@link #getField()}
+     * @return true if the comparison is true, false otherwise.
+     */
+    public boolean filter(Field f) {
+        if (op == Op.IS_NULL)
+            return f.isNull();
+        if (op == Op.IS_NOT_NULL)
+            return !f.isNull();
+        if (f.isNull() || operand == null || operand.isNull())
+            return false;
+        if (f instanceof CodedStringField && ((CodedStringField) f).getDictionary() != null
+                && operand instanceof StringField && (op == Op.EQUALS || op == Op.NOT_EQUALS)) {
+            CodedStringField c = (CodedStringField) f;
+            return (c.getCode() == operandCode(c)) == (op == Op.EQUALS);
+        }
+        return f.compare(op,operand);
+    }
+
+    /**
+     * Compares a non-NULL INT value of the field, read straight from a page,
+     * to an INT operand as {@link #filter(Field)} would, without creating a
+     * Field for it.
+     *
+     * @param v the value of field {@link #getField()}
+     * @return true if the comparison is true, false otherwise (also if the
+     *     operand is not an INT)
+     * @see simpledb.storage.TuplePage#matches
+     */
+    public boolean filter(int v) {
+        if (op == Op.IS_NOT_NULL)
+            return true;
+        if (!(operand instanceof IntField))
+            return false;
+        return compare(op, v, ((IntField) operand).getValue());
+    }
+
+    /**
+     * Narrows the selection vector of a batch to the rows whose field
+     * satisfies this predicate, as {@link #filter(Tuple)} would on each
+     * selected row. An INT column compared to an INT operand (or tested
+     * for NULL) is read as ints, without creating Fields.
+     *
+     * 只改选择向量  不搬动行
+     */
+    public void filter(TupleBatch batch) {
+        int[] sel = batch.getSelection();
+        int n = batch.size();
+        int k = 0;
+        if (batch.isInt(field) && (operand instanceof IntField || op == Op.IS_NULL || op == Op.IS_NOT_NULL)) {
+            int[] values = batch.getInts(field);
+            boolean[] nulls = batch.getNulls(field);
+            if (op == Op.IS_NULL) {
+                for (int j = 0; j < n; j++) {
+                    if (nulls[sel[j]])
+                        sel[k++] = sel[j];
+                }
+            } else if (op == Op.IS_NOT_NULL) {
+                for (int j = 0; j < n; j++) {
+                    if (!nulls[sel[j]])
+                        sel[k++] = sel[j];
+                }
+            } else {
+                int o = ((IntField) operand).getValue();
+                for (int j = 0; j < n; j++) {
+                    int r = sel[j];
+                    if (!nulls[r] && compare(op, values[r], o))
+                        sel[k++] = r;
+                }
+            }
+        } else {
+            for (int j = 0; j < n; j++) {
+                int r = sel[j];
+                if (filter(batch.getField(r, field)))
+                    sel[k++] = r;
+            }
+        }
+        batch.setSize(k);
+    }
+
+    /**
+     * Compares two ints as IntField.compare would.
+     *
+     * @return v op o; false for IS_NULL and IS_NOT_NULL
+     */
+    static boolean compare(Op op, int v, int o) {
+        switch (op) {
+            case EQUALS:
+            case LIKE:
+                return v == o;
+            case NOT_EQUALS:
+                return v != o;
+            case GREATER_THAN:
+                return v > o;
+            case GREATER_THAN_OR_EQ:
+                return v >= o;
+            case LESS_THAN:
+                return v < o;
+            case LESS_THAN_OR_EQ:
+                return v <= o;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tells whether some value in [min, max] could satisfy this predicate,
+     * so that a scan may skip a page whose values of the field all lie in
+     * that range. The answer errs on the side of true.
+     *
+     * 不能只把最小值、最大值代进去比较  要按操作符判断区间里有没有可能满足的值
+     * 不知道页里有没有NULL  IS NULL永远可能满足
+     *
+     * @param min the smallest non-NULL value of the field, or null if there
+     *     is none (the page has only NULLs, or no tuples)
+     * @param max the largest non-NULL value of the field, or null if there is none
+     * @return false only if no tuple with the field in [min, max] (or NULL)
+     *     can satisfy this predicate
+     * @see simpledb.storage.ZoneMap
+     */
+    public boolean mayMatch(Field min, Field max) {
+        if (op == Op.IS_NULL)
+            return true;
+        if (min == null || max == null)
+            //只有NULL  比较都是unknown  IS NOT NULL也不满足
+            return false;
+        if (op == Op.IS_NOT_NULL)
+            return true;
+        if (operand == null || operand.isNull() || operand.getType() != min.getType())
+            return true;
+        switch (op) {
+            case EQUALS:
+                return !min.compare(Op.GREATER_THAN, operand) && !max.compare(Op.LESS_THAN, operand);
+            case NOT_EQUALS:
+                return !(min.compare(Op.EQUALS, operand) && max.compare(Op.EQUALS, operand));
+            case GREATER_THAN:
+                return max.compare(Op.GREATER_THAN, operand);
+            case GREATER_THAN_OR_EQ:
+                return max.compare(Op.GREATER_THAN_OR_EQ, operand);
+            case LESS_THAN:
+                return min.compare(Op.LESS_THAN, operand);
+            case LESS_THAN_OR_EQ:
+                return min.compare(Op.LESS_THAN_OR_EQ, operand);
+            default:
+                return true;
+        }
+    }
+
+    //操作数在c的字典里的编码  不在字典里时为-1
+    private int operandCode(CodedStringField c) {
+        if (c.getDictionary() != codeDictionary || c.getColumn() != codeColumn
+                || operandCode < 0 && c.getCode() >= codeLimit) {
+            codeDictionary = c.getDictionary();
+            codeColumn = c.getColumn();
+            codeLimit = codeDictionary.size(codeColumn);
+            operandCode = codeDictionary.lookup(codeColumn, ((StringField) operand).getValue());
+        }
+        return operandCode;
     }
 
     /**
@@ -129,6 +314,6 @@ public class Predicate implements Serializable {
         // some code goes here
         return " field= " + field +
                 " op= " + op.toString() +
-                " operand= " + operand.toString();
+                " operand= " + String.valueOf(operand);
     }
 }
@@ -5,8 +5,11 @@ import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 import simpledb.common.Type;
 import simpledb.common.DbException;
+import simpledb.storage.DbFile;
 import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
 import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
 import simpledb.storage.TupleDesc;
 
 import java.util.*;
@@ -31,10 +34,23 @@ public class SeqScan implements OpIterator {
      */
     private int tableid;
     private String tableAlias;
+    /**
+     * 要读的字段  null表示全部
+     */
+    private final int[] columns;
+    /**
+     * 下推到扫描里的谓词  null表示没有
+     */
+    private final Predicate[] predicates;
     /**
      * 顺序扫描的指针
      */
     DbFileIterator dbFileIterator;
+    /**
+     * nextBatch返回的批的字段名  带别名前缀  和文件返回的批的TupleDesc  open时算一次
+     */
+    private TupleDesc batchDesc;
+    private TupleDesc fileDesc;
 
     /**
      * Creates a sequential scan over the specified table as a part of the
@@ -54,9 +70,43 @@ public class SeqScan implements OpIterator {
      */
     public SeqScan(TransactionId tid, int tableid, String tableAlias) {
         // some code goes here
+        this(tid, tableid, tableAlias, null);
+    }
+
+    /**
+     * Creates a sequential scan that only reads some of the fields of the
+     * table. The returned tuples, and {@link #getTupleDesc()}, have only
+     * the fields in columns, in that order.
+     *
+     * @param columns
+     *            indexes in the table of the fields the operators above this
+     *            scan use, at least one, or null to read all of them
+     * @see HeapFile#iterator(TransactionId, int[])
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, int[] columns) {
+        this(tid, tableid, tableAlias, columns, null);
+    }
+
+    /**
+     * Creates a sequential scan that only returns the tuples satisfying
+     * some predicates, as a Filter on top of it would. On a heap file, pages
+     * whose zone map rules out a predicate are not read at all.
+     *
+     * @param columns
+     *            indexes of the fields to read, or null to read all of them
+     * @param predicates
+     *            predicates on fields of the table (indexes as in
+     *            {@link #getTableDesc()}, they need not be in columns), or
+     *            null for none
+     * @see DbFile#iterator(TransactionId, int[], Predicate[])
+     * @see simpledb.storage.ZoneMap
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, int[] columns, Predicate[] predicates) {
         this.tid=tid;
         this.tableid = tableid;
         this.tableAlias=tableAlias;
+        this.columns=columns;
+        this.predicates=predicates;
     }
 
     /**
@@ -68,6 +118,20 @@ public class SeqScan implements OpIterator {
         return Database.getCatalog().getTableName(tableid);
     }
 
+    /**
+     * @return the indexes of the fields this scan reads, or null if it reads all of them
+     */
+    public int[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the predicates this scan filters its tuples with, or null if there are none
+     */
+    public Predicate[] getPredicates() {
+        return predicates;
+    }
+
     /**
      * @return Return the alias of the table this operator scans.
      * */
@@ -101,8 +165,17 @@ public class SeqScan implements OpIterator {
 
     public void open() throws DbException, TransactionAbortedException {
         // some code goes here
-        dbFileIterator=Database.getCatalog().getDatabaseFile(tableid).iterator(tid);
+        DbFile file = Database.getCatalog().getDatabaseFile(tableid);
+        //字段和谓词交给文件  堆文件只解码部分字段、在页上过滤、按zone map跳过页  其他文件读整个元组再过滤
+        if (columns != null || predicates != null) {
+            dbFileIterator=file.iterator(tid, columns, predicates);
+        } else {
+            dbFileIterator=file.iterator(tid);
+        }
         dbFileIterator.open();
+        batchDesc=getTupleDesc();
+        TupleDesc td=Database.getCatalog().getTupleDesc(tableid);
+        fileDesc=columns==null ? td : td.project(columns);
     }
 
     /**
@@ -113,9 +186,20 @@ public class SeqScan implements OpIterator {
      * (e.g., "alias.fieldName").
      *
      * @return the TupleDesc with field names from the underlying HeapFile,
-     *         prefixed with the tableAlias string from the constructor.
+     *         prefixed with the tableAlias string from the constructor;
+     *         only the fields this scan reads, see {@link #getColumns()}.
      */
     public TupleDesc getTupleDesc() {
+        TupleDesc td = getTableDesc();
+        return columns==null ? td : td.project(columns);
+    }
+
+    /**
+     * Returns the TupleDesc of the whole table, with field names prefixed
+     * like those of {@link #getTupleDesc()}. The indexes of the fields of
+     * {@link #getColumns()} and {@link #getPredicates()} are in it.
+     */
+    public TupleDesc getTableDesc() {
         // some code goes here
         String prefix = tableAlias != null? tableAlias : "null";
         TupleDesc tupleDesc = Database.getCatalog().getTupleDesc(tableid);
@@ -152,6 +236,20 @@ public class SeqScan implements OpIterator {
         return next;
     }
 
+    /**
+     * Returns the next batch of tuples of the table. A heap file fills
+     * the batch straight from a page, with the INT fields as ints; the
+     * fields of the batch are named like those of {@link #getTupleDesc()}.
+     */
+    public TupleBatch nextBatch() throws TransactionAbortedException, DbException {
+        if(dbFileIterator==null){
+            return null;
+        }
+        TupleBatch batch = dbFileIterator.nextBatch(fileDesc);
+        //共用同一批的列  只换字段名
+        return batch==null ? null : batch.view(batchDesc, null);
+    }
+
     public void close() {
         // some code goes here
         dbFileIterator.close();
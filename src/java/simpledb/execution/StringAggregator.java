@@ -4,6 +4,7 @@ import simpledb.common.Type;
 import simpledb.storage.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -27,21 +28,59 @@ public class StringAggregator implements Aggregator {
     //聚合类
     private abstract class StringAggHandler {
 
-        //key->分组的字段 如果没有分类则为 NO_HAVINGGROUP
+        //key->分组的字段 如果没有分类则为 IntField(NO_GROUPING)
+        //重构：原来key是分组字段的toString  输出时再解析回来  NULL分组的"null"解析不回来  改为直接用字段
         //value 因为只做 count
-        final  ConcurrentHashMap<String,Integer> aggResult;
+        final  ConcurrentHashMap<Field,Integer> aggResult;
         StringAggHandler(){
             this.aggResult=new ConcurrentHashMap<>();
         }
-        abstract void handle(String key, Field aField);
-        public ConcurrentHashMap<String, Integer> getAggResult(){
+        abstract void handle(Field key, Field aField);
+        public ConcurrentHashMap<Field, Integer> getAggResult(){
             return aggResult;
         }
     }
     private class CountStringAggHandler extends StringAggHandler{
+        //分组字段是字典编码的列时按编码计数  不用查哈希表
+        //codeCounts[编码] = 计数+1  0表示还没有这个分组
+        private CodedStringField codedGroup;
+        private int[] codeCounts;
+
+        @Override
+        void handle(Field key, Field aField) {
+            //NULL不计数  但分组仍然要输出
+            int add = aField.isNull()?0:1;
+            if(key instanceof CodedStringField && ((CodedStringField) key).getDictionary()!=null){
+                CodedStringField c=(CodedStringField) key;
+                if(codedGroup==null){
+                    codedGroup=c;
+                    codeCounts=new int[16];
+                }
+                if(c.sameColumn(codedGroup)){
+                    int code=c.getCode();
+                    if(code>=codeCounts.length){
+                        codeCounts=Arrays.copyOf(codeCounts,Math.max(code+1,codeCounts.length*2));
+                    }
+                    codeCounts[code]+=codeCounts[code]==0 ? 1+add : add;
+                    return;
+                }
+            }
+            aggResult.put(key,aggResult.getOrDefault(key,0)+add);
+        }
+
+        //按编码的计数并入哈希表  CodedStringField和同值的StringField相等  同一个分组会合并
         @Override
-        void handle(String key, Field aField) {
-            aggResult.put(key,aggResult.getOrDefault(key,0)+1);
+        public ConcurrentHashMap<Field, Integer> getAggResult(){
+            if(codeCounts!=null){
+                for(int code=0;code<codeCounts.length;code++){
+                    if(codeCounts[code]>0){
+                        Field key=codedGroup.getDictionary().decode(codedGroup.getColumn(),code);
+                        aggResult.merge(key,codeCounts[code]-1,Integer::sum);
+                    }
+                }
+                Arrays.fill(codeCounts,0);
+            }
+            return aggResult;
         }
     }
     /**
@@ -78,12 +117,12 @@ public class StringAggregator implements Aggregator {
             throw new IllegalArgumentException("Given tuple has wrong type");
         }
 
-        String key;
+        Field key;
         if(gbField==NO_GROUPING){
             //未分组
-            key = "NO_GROUPING";
+            key = new IntField(NO_GROUPING);
         }else{
-            key = tup.getField(gbField).toString();
+            key = tup.getField(gbField);
         }
 
         Field field = tup.getField(aField);
@@ -96,12 +135,12 @@ public class StringAggregator implements Aggregator {
      * @return a OpIterator whose tuples are the pair (groupVal,
      *   aggregateVal) if using group, or a single (aggregateVal) if no
      *   grouping. The aggregateVal is determined by the type of
-     *   aggregate specified in the constructor.
+     *   aggregate specified in the constructor. NULLs are not counted.
      */
     public OpIterator iterator() {
         // some code goes here
         //throw new UnsupportedOperationException("please implement me for lab2");
-        ConcurrentHashMap<String, Integer> aggResult = stringAggHandler.getAggResult();
+        ConcurrentHashMap<Field, Integer> aggResult = stringAggHandler.getAggResult();
         //构建TupleDesc
         Type[]types;
         String[]names;
@@ -115,21 +154,16 @@ public class StringAggregator implements Aggregator {
             tupleDesc=new TupleDesc(types,names);
 
             tuple=new Tuple(tupleDesc);
-            tuple.setField(0,new IntField(aggResult.get("NO_GROUPING")));
+            tuple.setField(0,new IntField(aggResult.getOrDefault(new IntField(NO_GROUPING),0)));
             tupleList.add(tuple);
         }else{
             types=new Type[]{gbFieldType,Type.INT_TYPE};
             names=new String[]{"groupVal","aggregateVal"};
             tupleDesc=new TupleDesc(types,names);
 
-            for(String key:aggResult.keySet()){
+            for(Field key:aggResult.keySet()){
                 tuple=new Tuple(tupleDesc);
-
-                if(gbFieldType==Type.INT_TYPE){
-                    tuple.setField(0,new IntField(Integer.parseInt(key)));
-                }else if(gbFieldType==Type.STRING_TYPE){
-                    tuple.setField(0,new StringField(key,key.length()));
-                }
+                tuple.setField(0,key);
                 tuple.setField(1,new IntField(aggResult.get(key)));
                 tupleList.add(tuple);
             }
@@ -0,0 +1,89 @@
+package simpledb.execution;
+
+import simpledb.common.DbException;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionAbortedException;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Runs its child in the vectorized execution mode: it reads the child with
+ * {@link OpIterator#nextBatch()} and hands the selected rows of each batch
+ * out one tuple at a time, so a plan under it runs batch at a time while
+ * whatever reads the plan still calls next().
+ * <p>
+ * Operators without a batch implementation in the plan collect their
+ * tuples into batches, so any plan gives the same tuples with or without
+ * this operator.
+ *
+ * 和OpIterator#nextBatch的默认实现方向相反：那个把元组攒成批  这个把批拆成元组
+ * LogicalPlan在 -Dsimpledb.vectorized=true 时把它放在计划的最上面
+ */
+public class Vectorized extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    private OpIterator child;
+    //正在拆的批  和下一行在选择向量中的位置
+    private transient TupleBatch batch;
+    private transient int pos;
+
+    public Vectorized(OpIterator child) {
+        this.child = child;
+    }
+
+    public TupleDesc getTupleDesc() {
+        return child.getTupleDesc();
+    }
+
+    public void open() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        child.open();
+        super.open();
+    }
+
+    public void close() {
+        super.close();
+        child.close();
+        batch = null;
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        child.rewind();
+        batch = null;
+    }
+
+    protected Tuple fetchNext() throws DbException, TransactionAbortedException {
+        while (batch == null || pos >= batch.size()) {
+            batch = child.nextBatch();
+            pos = 0;
+            if (batch == null)
+                return null;
+        }
+        return batch.getTuple(batch.getSelection()[pos++]);
+    }
+
+    /**
+     * Passes the batches of the child through, after the rest of a batch
+     * already partly read with next().
+     */
+    @Override
+    protected TupleBatch fetchNextBatch() throws DbException, TransactionAbortedException {
+        if (batch != null && pos < batch.size())
+            return super.fetchNextBatch();
+        batch = null;
+        return child.nextBatch();
+    }
+
+    @Override
+    public OpIterator[] getChildren() {
+        return new OpIterator[]{child};
+    }
+
+    @Override
+    public void setChildren(OpIterator[] children) {
+        this.child = children[0];
+    }
+}
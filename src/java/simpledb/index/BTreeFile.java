@@ -29,9 +29,13 @@ import simpledb.transaction.TransactionId;
 public class BTreeFile implements DbFile {
 
 	private final File f;
+	// long-lived channel for all page I/O on f
+	private final FileHandle handle;
 	private final TupleDesc td;
 	private final int tableid ;
 	private final int keyField;
+	// page size from the file header, 0 for a file without header
+	private final int pageSize;
 
 	/**
 	 * Constructs a B+ tree file backed by the specified file.
@@ -42,10 +46,36 @@ public class BTreeFile implements DbFile {
 	 * @param td - the tuple descriptor of tuples in the file
 	 */
 	public BTreeFile(File f, int key, TupleDesc td) {
+		this(f, key, td, 0);
+	}
+
+	/**
+	 * Constructs a B+ tree file with its own page size, e.g. large pages for
+	 * a higher fan-out. An empty file gets a header recording the page size,
+	 * followed by the root pointer page; an existing file must have been
+	 * created with the same page size.
+	 * 
+	 * @param f - the file that stores the on-disk backing store for this B+ tree
+	 *            file.
+	 * @param key - the field which index is keyed on
+	 * @param td - the tuple descriptor of tuples in the file
+	 * @param pageSize - the page size of the index, see {@link PageFileHeader#isSupported};
+	 *            0 to use the page size in the file header, or
+	 *            {@link BufferPool#getPageSize()} for a file without header
+	 * @throws IllegalArgumentException if the page size is not supported or
+	 *            does not match the page size of the file
+	 */
+	public BTreeFile(File f, int key, TupleDesc td, int pageSize) {
 		this.f = f;
+		this.handle = new FileHandle(f);
 		this.tableid = f.getAbsoluteFile().hashCode();
 		this.keyField = key;
 		this.td = td;
+		try {
+			this.pageSize = PageFileHeader.open(handle, pageSize);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("cannot read the header of " + f, e);
+		}
 	}
 
 	/**
@@ -77,6 +107,16 @@ public class BTreeFile implements DbFile {
 		return td;
 	}
 
+	/**
+	 * Returns the page size of the internal, leaf and header pages of this
+	 * file: the one in the file header, or {@link BufferPool#getPageSize()}
+	 * for a file without header.
+	 */
+	@Override
+	public int getPageSize() {
+		return pageSize > 0 ? pageSize : BufferPool.getPageSize();
+	}
+
 	/**
 	 * Read a page from the file on disk. This should not be called directly
 	 * but should be called from the BufferPool via getPage()
@@ -87,49 +127,43 @@ public class BTreeFile implements DbFile {
 	public Page readPage(PageId pid) {
 		BTreePageId id = (BTreePageId) pid;
 
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(f))) {
-            if (id.pgcateg() == BTreePageId.ROOT_PTR) {
-                byte[] pageBuf = new byte[BTreeRootPtrPage.getPageSize()];
-                int retval = bis.read(pageBuf, 0, BTreeRootPtrPage.getPageSize());
-                if (retval == -1) {
-                    throw new IllegalArgumentException("Read past end of table");
-                }
-                if (retval < BTreeRootPtrPage.getPageSize()) {
-                    throw new IllegalArgumentException("Unable to read "
-                            + BTreeRootPtrPage.getPageSize() + " bytes from BTreeFile");
-                }
-                Debug.log(1, "BTreeFile.readPage: read page %d", id.getPageNumber());
-                return new BTreeRootPtrPage(id, pageBuf);
-            } else {
-                byte[] pageBuf = new byte[BufferPool.getPageSize()];
-                if (bis.skip(BTreeRootPtrPage.getPageSize() + (long) (id.getPageNumber() - 1) * BufferPool.getPageSize()) !=
-                        BTreeRootPtrPage.getPageSize() + (long) (id.getPageNumber() - 1) * BufferPool.getPageSize()) {
-                    throw new IllegalArgumentException(
-                            "Unable to seek to correct place in BTreeFile");
-                }
-                int retval = bis.read(pageBuf, 0, BufferPool.getPageSize());
-                if (retval == -1) {
-                    throw new IllegalArgumentException("Read past end of table");
-                }
-                if (retval < BufferPool.getPageSize()) {
-                    throw new IllegalArgumentException("Unable to read "
-                            + BufferPool.getPageSize() + " bytes from BTreeFile");
-                }
-                Debug.log(1, "BTreeFile.readPage: read page %d", id.getPageNumber());
-                if (id.pgcateg() == BTreePageId.INTERNAL) {
-                    return new BTreeInternalPage(id, pageBuf, keyField);
-                } else if (id.pgcateg() == BTreePageId.LEAF) {
-                    return new BTreeLeafPage(id, pageBuf, keyField);
-                } else { // id.pgcateg() == BTreePageId.HEADER
-                    return new BTreeHeaderPage(id, pageBuf);
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        // Close the file on success or error
-        // Ignore failures closing the file
-    }
+		try {
+			if (id.pgcateg() == BTreePageId.ROOT_PTR) {
+				byte[] pageBuf = new byte[BTreeRootPtrPage.getPageSize()];
+				int retval = handle.read(pageBuf, rootPtrOffset());
+				if (retval == 0) {
+					throw new IllegalArgumentException("Read past end of table");
+				}
+				if (retval < BTreeRootPtrPage.getPageSize()) {
+					throw new IllegalArgumentException("Unable to read "
+							+ BTreeRootPtrPage.getPageSize() + " bytes from BTreeFile");
+				}
+				Debug.log(1, "BTreeFile.readPage: read page %d", id.getPageNumber());
+				return new BTreeRootPtrPage(id, pageBuf);
+			} else {
+				byte[] pageBuf = new byte[getPageSize()];
+				// positional read, so concurrent readers never share a file pointer
+				int retval = handle.read(pageBuf, pageOffset(id.getPageNumber()));
+				if (retval == 0) {
+					throw new IllegalArgumentException("Read past end of table");
+				}
+				if (retval < getPageSize()) {
+					throw new IllegalArgumentException("Unable to read "
+							+ getPageSize() + " bytes from BTreeFile");
+				}
+				Debug.log(1, "BTreeFile.readPage: read page %d", id.getPageNumber());
+				if (id.pgcateg() == BTreePageId.INTERNAL) {
+					return new BTreeInternalPage(id, pageBuf, keyField);
+				} else if (id.pgcateg() == BTreePageId.LEAF) {
+					return new BTreeLeafPage(id, pageBuf, keyField);
+				} else { // id.pgcateg() == BTreePageId.HEADER
+					return new BTreeHeaderPage(id, pageBuf);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
 
 	/**
 	 * Write a page to disk.  This should not be called directly but should 
@@ -141,24 +175,45 @@ public class BTreeFile implements DbFile {
 		BTreePageId id = (BTreePageId) page.getId();
 		
 		byte[] data = page.getPageData();
-		RandomAccessFile rf = new RandomAccessFile(f, "rw");
 		if(id.pgcateg() == BTreePageId.ROOT_PTR) {
-			rf.write(data);
-			rf.close();
+			handle.write(data, rootPtrOffset());
 		}
 		else {
-			rf.seek(BTreeRootPtrPage.getPageSize() + (long) (page.getId().getPageNumber() - 1) * BufferPool.getPageSize());
-			rf.write(data);
-			rf.close();
+			handle.write(data, pageOffset(id.getPageNumber()));
 		}
 	}
+
+	/**
+	 * Returns the byte offset of the root pointer page in the file: right
+	 * after the file header, which takes one page, if there is one.
+	 */
+	private long rootPtrOffset() {
+		return pageSize;
+	}
+
+	/**
+	 * Returns the byte offset of a non root pointer page in the file. Page
+	 * numbers start at 1, right after the root pointer page.
+	 */
+	private long pageOffset(int pgNo) {
+		return rootPtrOffset() + BTreeRootPtrPage.getPageSize() + (long) (pgNo - 1) * getPageSize();
+	}
+
+	/**
+	 * Closes the file channel held by this BTreeFile. It is reopened on the
+	 * next page read or write.
+	 */
+	@Override
+	public void close() throws IOException {
+		handle.close();
+	}
 	
 	/**
 	 * Returns the number of pages in this BTreeFile.
 	 */
 	public int numPages() {
 		// we only ever write full pages
-		return (int) ((f.length() - BTreeRootPtrPage.getPageSize())/ BufferPool.getPageSize());
+		return (int) (Math.max(0, handle.length() - pageOffset(1))/ getPageSize());
 	}
 
 	/**
@@ -405,7 +460,9 @@ public class BTreeFile implements DbFile {
 			return dirtypages.get(pid);
 		}
 		else {
-			Page p = Database.getBufferPool().getPage(tid, pid, perm);
+			// B+树的页都在堆上  被淘汰了页对象照样能用  要修改的页留在dirtypages里  所以不钉住
+			// 否则一个长事务经过的每一页都钉到事务结束  会把缓冲池钉满
+			Page p = Database.getBufferPool().getPage(tid, pid, perm, false, false);
 			if(perm == Permissions.READ_WRITE) {
 				dirtypages.put(pid, p);
 			}
@@ -830,15 +887,12 @@ public class BTreeFile implements DbFile {
 	 */
 	BTreeRootPtrPage getRootPtrPage(TransactionId tid, Map<PageId, Page> dirtypages) throws DbException, IOException, TransactionAbortedException {
 		synchronized(this) {
-			if(f.length() == 0) {
+			if(handle.length() <= rootPtrOffset()) {
 				// create the root pointer page and the root page
-				BufferedOutputStream bw = new BufferedOutputStream(
-						new FileOutputStream(f, true));
 				byte[] emptyRootPtrData = BTreeRootPtrPage.createEmptyPageData();
-				byte[] emptyLeafData = BTreeLeafPage.createEmptyPageData();
-				bw.write(emptyRootPtrData);
-				bw.write(emptyLeafData);
-				bw.close();
+				byte[] emptyLeafData = BTreeLeafPage.createEmptyPageData(getPageSize());
+				handle.write(emptyRootPtrData, rootPtrOffset());
+				handle.write(emptyLeafData, pageOffset(1));
 			}
 		}
 
@@ -885,7 +939,7 @@ public class BTreeFile implements DbFile {
 				headerPage = (BTreeHeaderPage) getPage(tid, dirtypages, headerId, Permissions.READ_WRITE);
 				int emptySlot = headerPage.getEmptySlot();
 				headerPage.markSlotUsed(emptySlot, true);
-				emptyPageNo = headerPageCount * BTreeHeaderPage.getNumSlots() + emptySlot;
+				emptyPageNo = headerPageCount * BTreeHeaderPage.getNumSlots(getPageSize()) + emptySlot;
 			}
 		}
 
@@ -894,11 +948,8 @@ public class BTreeFile implements DbFile {
 		if(headerId == null) {		
 			synchronized(this) {
 				// create the new page
-				BufferedOutputStream bw = new BufferedOutputStream(
-						new FileOutputStream(f, true));
-				byte[] emptyData = BTreeInternalPage.createEmptyPageData();
-				bw.write(emptyData);
-				bw.close();
+				byte[] emptyData = BTreeInternalPage.createEmptyPageData(getPageSize());
+				handle.append(emptyData);
 				emptyPageNo = numPages();
 			}
 		}
@@ -929,10 +980,7 @@ public class BTreeFile implements DbFile {
 		BTreePageId newPageId = new BTreePageId(tableid, emptyPageNo, pgcateg);
 		
 		// write empty page to disk
-		RandomAccessFile rf = new RandomAccessFile(f, "rw");
-		rf.seek(BTreeRootPtrPage.getPageSize() + (long) (emptyPageNo - 1) * BufferPool.getPageSize());
-		rf.write(BTreePage.createEmptyPageData());
-		rf.close();
+		handle.write(BTreePage.createEmptyPageData(getPageSize()), pageOffset(emptyPageNo));
 		
 		// make sure the page is not in the buffer pool	or in the local cache		
 		Database.getBufferPool().discardPage(newPageId);
@@ -997,7 +1045,7 @@ public class BTreeFile implements DbFile {
 
 		// iterate through all the existing header pages to find the one containing the slot
 		// corresponding to emptyPageNo
-		while(headerId != null && (headerPageCount + 1) * BTreeHeaderPage.getNumSlots() < emptyPageNo) {
+		while(headerId != null && (headerPageCount + 1) * BTreeHeaderPage.getNumSlots(getPageSize()) < emptyPageNo) {
 			BTreeHeaderPage headerPage = (BTreeHeaderPage) getPage(tid, dirtypages, headerId, Permissions.READ_ONLY);
 			prevId = headerId;
 			headerId = headerPage.getNextPageId();
@@ -1007,7 +1055,7 @@ public class BTreeFile implements DbFile {
 		// at this point headerId should either be null or set with 
 		// the headerPage containing the slot corresponding to emptyPageNo.
 		// Add header pages until we have one with a slot corresponding to emptyPageNo
-		while((headerPageCount + 1) * BTreeHeaderPage.getNumSlots() < emptyPageNo) {
+		while((headerPageCount + 1) * BTreeHeaderPage.getNumSlots(getPageSize()) < emptyPageNo) {
 			BTreeHeaderPage prevPage = (BTreeHeaderPage) getPage(tid, dirtypages, prevId, Permissions.READ_WRITE);
 			
 			BTreeHeaderPage headerPage = (BTreeHeaderPage) getEmptyPage(tid, dirtypages, BTreePageId.HEADER);
@@ -1023,7 +1071,7 @@ public class BTreeFile implements DbFile {
 		// now headerId should be set with the headerPage containing the slot corresponding to 
 		// emptyPageNo
 		BTreeHeaderPage headerPage = (BTreeHeaderPage) getPage(tid, dirtypages, headerId, Permissions.READ_WRITE);
-		int emptySlot = emptyPageNo - headerPageCount * BTreeHeaderPage.getNumSlots();
+		int emptySlot = emptyPageNo - headerPageCount * BTreeHeaderPage.getNumSlots(getPageSize());
 		headerPage.markSlotUsed(emptySlot, false);
 	}
 
@@ -1081,7 +1129,7 @@ class BTreeFileIterator extends AbstractDbFileIterator {
 	 */
 	public void open() throws DbException, TransactionAbortedException {
 		BTreeRootPtrPage rootPtr = (BTreeRootPtrPage) Database.getBufferPool().getPage(
-				tid, BTreeRootPtrPage.getId(f.getId()), Permissions.READ_ONLY);
+				tid, BTreeRootPtrPage.getId(f.getId()), Permissions.READ_ONLY, false, false);
 		BTreePageId root = rootPtr.getRootId();
 		curp = f.findLeafPage(tid, root, null);
 		it = curp.iterator();
@@ -1104,8 +1152,10 @@ class BTreeFileIterator extends AbstractDbFileIterator {
 				curp = null;
 			}
 			else {
+				// sequential walk along the leaves: pass the scan hint so that
+				// a full index scan does not flush the internal pages
 				curp = (BTreeLeafPage) Database.getBufferPool().getPage(tid,
-						nextp, Permissions.READ_ONLY);
+						nextp, Permissions.READ_ONLY, true, false);
 				it = curp.iterator();
 				if (!it.hasNext())
 					it = null;
@@ -1166,7 +1216,7 @@ class BTreeSearchIterator extends AbstractDbFileIterator {
 	 */
 	public void open() throws DbException, TransactionAbortedException {
 		BTreeRootPtrPage rootPtr = (BTreeRootPtrPage) Database.getBufferPool().getPage(
-				tid, BTreeRootPtrPage.getId(f.getId()), Permissions.READ_ONLY);
+				tid, BTreeRootPtrPage.getId(f.getId()), Permissions.READ_ONLY, false, false);
 		BTreePageId root = rootPtr.getRootId();
 		if(ipred.getOp() == Op.EQUALS || ipred.getOp() == Op.GREATER_THAN 
 				|| ipred.getOp() == Op.GREATER_THAN_OR_EQ) {
@@ -1214,7 +1264,7 @@ class BTreeSearchIterator extends AbstractDbFileIterator {
 			}
 			else {
 				curp = (BTreeLeafPage) Database.getBufferPool().getPage(tid,
-						nextp, Permissions.READ_ONLY);
+						nextp, Permissions.READ_ONLY, false, false);
 				it = curp.iterator();
 			}
 		}
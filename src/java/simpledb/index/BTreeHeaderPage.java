@@ -34,19 +34,20 @@ public class BTreeHeaderPage implements Page {
 	private int prevPage; // previous header page or 0
 
 	byte[] oldData;
-	private final Byte oldDataLock= (byte) 0;
+	private final Object oldDataLock = new Object();
 
 	/**
 	 * Create a BTreeHeaderPage from a set of bytes of data read from disk.
 	 * The format of a BTreeHeaderPage is two pointers to the next and previous
 	 * header pages, followed by a set of bytes indicating which pages in the file
-	 * are used or available
-	 * @see BufferPool#getPageSize()
+	 * are used or available. The page size is the length of data, which is
+	 * the page size of the index the page belongs to.
+	 * @see BTreeFile#getPageSize()
 	 * 
 	 */
 	public BTreeHeaderPage(BTreePageId id, byte[] data) throws IOException {
 		this.pid = id;
-		this.numSlots = getNumSlots();
+		this.numSlots = getNumSlots(data.length);
 		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
 
 		// Read the next and prev pointers
@@ -65,7 +66,7 @@ public class BTreeHeaderPage implements Page {
 		}
 
 		// allocate and read the header slots of this page
-		header = new byte[getHeaderSize()];
+		header = new byte[getHeaderSize(data.length)];
 		for (int i=0; i<header.length; i++)
 			header[i] = dis.readByte();
 
@@ -84,17 +85,25 @@ public class BTreeHeaderPage implements Page {
 	/**
 	 * Computes the number of bytes in the header while saving room for pointers
 	 */
-	private static int getHeaderSize() {        
+	private static int getHeaderSize(int pageSize) {        
 		// pointerBytes: nextPage and prevPage pointers
 		int pointerBytes = 2 * INDEX_SIZE; 
-		return BufferPool.getPageSize() - pointerBytes;
+		return pageSize - pointerBytes;
 	}
 
 	/**
 	 * Computes the number of slots in the header
 	 */
 	public static int getNumSlots() {        
-		return getHeaderSize() * 8;
+		return getNumSlots(BufferPool.getPageSize());
+	}
+
+	/**
+	 * Computes the number of slots in the header page of an index with its
+	 * own page size
+	 */
+	public static int getNumSlots(int pageSize) {        
+		return getHeaderSize(pageSize) * 8;
 	}
 
 	/** Return a view of this page before it was modified
@@ -141,7 +150,7 @@ public class BTreeHeaderPage implements Page {
 	 * @return A byte array correspond to the bytes of this page.
 	 */
 	public byte[] getPageData() {
-		int len = BufferPool.getPageSize();
+		int len = header.length + 2 * INDEX_SIZE;
 		ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
 		DataOutputStream dos = new DataOutputStream(baos);
 
@@ -54,7 +54,7 @@ public class BTreeInternalPage extends BTreePage {
 	 * has m+1 pointers to children), and the category of all child pages (either 
 	 * leaf or internal).
 	 *  Specifically, the number of entries is equal to: <p>
-	 *          floor((BufferPool.getPageSize()*8 - extra bytes*8) / (entry size * 8 + 1))
+	 *          floor((page size*8 - extra bytes*8) / (entry size * 8 + 1))
 	 * <p> where entry size is the size of entries in this index node
 	 * (key + child pointer), which can be determined via the key field and 
 	 * {@link Catalog#getTupleDesc}.
@@ -64,7 +64,7 @@ public class BTreeInternalPage extends BTreePage {
 	 * <p>
 	 * @see Database#getCatalog
 	 * @see Catalog#getTupleDesc
-	 * @see BufferPool#getPageSize()
+	 * @see Catalog#getPageSize
 	 * 
 	 * @param id - the id of this page
 	 * @param data - the raw data of this page
@@ -125,7 +125,7 @@ public class BTreeInternalPage extends BTreePage {
 		// extraBits are: one parent pointer, 1 byte for child page category, 
 		// one extra child pointer (node with m entries has m+1 pointers to children), 1 bit for extra header
 		int extraBits = 2 * INDEX_SIZE * 8 + 8 + 1;
-        return (BufferPool.getPageSize()*8 - extraBits) / bitsPerEntryIncludingHeader;
+        return (pageSize*8 - extraBits) / bitsPerEntryIncludingHeader;
 	}
 
 	/**
@@ -165,6 +165,21 @@ public class BTreeInternalPage extends BTreePage {
 		}
 	}
 
+	/**
+	 * Estimates the heap bytes held by this page: the header, the decoded
+	 * keys, the child pointers and the before image.
+	 */
+	@Override
+	public long getRetainedSize() {
+		long bytes = 96 + 16 + header.length + 16 + 4L * keys.length + 16 + 4L * children.length
+				+ getBeforeImageSize();
+		for (Field f : keys) {
+			if (f != null)
+				bytes += f.getRetainedSize();
+		}
+		return bytes;
+	}
+
 	/**
 	 * Read keys from the source file.
 	 */
@@ -236,7 +251,7 @@ public class BTreeInternalPage extends BTreePage {
 	 * @return A byte array correspond to the bytes of this page.
 	 */
 	public byte[] getPageData() {
-		int len = BufferPool.getPageSize();
+		int len = pageSize;
 		ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
 		DataOutputStream dos = new DataOutputStream(baos);
 
@@ -319,7 +334,7 @@ public class BTreeInternalPage extends BTreePage {
 		}
 
 		// padding
-		int zerolen = BufferPool.getPageSize() - (INDEX_SIZE + 1 + header.length + 
+		int zerolen = pageSize - (INDEX_SIZE + 1 + header.length + 
 				td.getFieldType(keyField).getLen() * (keys.length - 1) + INDEX_SIZE * children.length); 
 		byte[] zeroes = new byte[zerolen];
 		try {
@@ -28,8 +28,9 @@ public abstract class BTreePage implements Page {
 	protected final int keyField;
 
 	protected int parent; // parent is always internal node or 0 for root node
+	protected final int pageSize; // page size of this index, see Catalog#getPageSize
 	protected byte[] oldData;
-	protected final Byte oldDataLock= (byte) 0;
+	protected final Object oldDataLock = new Object();
 
 	/**
 	 * Create a BTreeInternalPage from a set of bytes of data read from disk.
@@ -39,7 +40,7 @@ public abstract class BTreePage implements Page {
 	 * has m+1 pointers to children), and the category of all child pages (either 
 	 * leaf or internal).
 	 *  Specifically, the number of entries is equal to: <p>
-	 *          floor((BufferPool.getPageSize()*8 - extra bytes*8) / (entry size * 8 + 1))
+	 *          floor((page size*8 - extra bytes*8) / (entry size * 8 + 1))
 	 * <p> where entry size is the size of entries in this index node
 	 * (key + child pointer), which can be determined via the key field and 
 	 * {@link Catalog#getTupleDesc}.
@@ -49,7 +50,7 @@ public abstract class BTreePage implements Page {
 	 * <p>
 	 * @see Database#getCatalog
 	 * @see Catalog#getTupleDesc
-	 * @see BufferPool#getPageSize()
+	 * @see Catalog#getPageSize
 	 * 
 	 * @param id - the id of this page
 	 * @param key - the field which the index is keyed on
@@ -58,6 +59,7 @@ public abstract class BTreePage implements Page {
 		this.pid = id;
 		this.keyField = key;
 		this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+		this.pageSize = Database.getCatalog().getPageSize(id.getTableId());
 	}
 
 	/**
@@ -81,6 +83,17 @@ public abstract class BTreePage implements Page {
 		return new byte[len]; //all 0
 	}
 
+	/**
+	 * Static method to generate a byte array corresponding to an empty
+	 * BTreePage of an index with its own page size.
+	 *
+	 * @param pageSize - the page size of the index, see {@link BTreeFile#getPageSize()}
+	 * @return The returned ByteArray.
+	 */
+	public static byte[] createEmptyPageData(int pageSize) {
+		return new byte[pageSize]; //all 0
+	}
+
 	/**
 	 * Get the parent id of this page
 	 * @return the parent id
@@ -134,6 +147,15 @@ public abstract class BTreePage implements Page {
 			return null;
 	}
 
+	/**
+	 * Heap bytes held by the before image, to be added to the estimate of
+	 * the decoded contents in {@link #getRetainedSize}.
+	 */
+	protected long getBeforeImageSize() {
+		byte[] old = oldData;
+		return old == null ? 0 : 16 + old.length;
+	}
+
 	/**
 	 * Returns the number of empty slots on this page.
 	 */
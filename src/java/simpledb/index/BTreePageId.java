@@ -92,6 +92,14 @@ public class BTreePageId implements PageId {
 		return tableId == p.tableId && pgNo == p.pgNo && pgcateg == p.pgcateg;
 	}
 
+	/**
+	 * @return the 64-bit buffer pool key of this page, which includes pgcateg
+	 * @see PageId#pageKey()
+	 */
+	public long pageKey() {
+		return PageId.pageKey(tableId, pgNo, pgcateg);
+	}
+
 	public String toString() {
 
         return "(tableId: " + tableId +
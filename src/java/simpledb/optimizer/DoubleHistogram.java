@@ -0,0 +1,85 @@
+package simpledb.optimizer;
+
+import simpledb.execution.Predicate;
+
+/**
+ * A class to represent a fixed-width histogram over a single double-based
+ * field.
+ */
+public class DoubleHistogram {
+    final IntHistogram hist;
+
+    /**
+     * [min, max]映射到[0, SCALE]  远多于桶数  桶的边界基本不受取整影响
+     */
+    static final int SCALE = 1 << 20;
+
+    private final double min;
+    private final double max;
+
+    /**
+     * Create a new DoubleHistogram with a specified number of buckets.
+     * <p>
+     * Our implementation is written in terms of an IntHistogram by scaling
+     * [min, max] onto a fixed integer range.
+     *
+     * @param buckets
+     *            the number of buckets
+     * @param min
+     *            the minimum value that will ever be passed to this class
+     * @param max
+     *            the maximum value that will ever be passed to this class
+     */
+    public DoubleHistogram(int buckets, double min, double max) {
+        this.min = min;
+        this.max = max;
+        hist = new IntHistogram(buckets, 0, SCALE);
+    }
+
+    /**
+     * Convert a double to an integer, with the property that if v1 < v2
+     * then the return value(v1) <= return value(v2). Values outside
+     * [min, max], and NaN, map outside [0, SCALE].
+     */
+    private int doubleToInt(double v) {
+        if (v < min) {
+            return -1;
+        }
+        if (!(v <= max)) {
+            return SCALE + 1;
+        }
+        if (max == min) {
+            return 0;
+        }
+        return (int) ((v - min) / (max - min) * SCALE);
+    }
+
+    /** Add a new value to the histogram */
+    public void addValue(double v) {
+        hist.addValue(doubleToInt(v));
+    }
+
+    /**
+     * Estimate the selectivity (as a double between 0 and 1) of the specified
+     * predicate over the specified value
+     *
+     * @param op
+     *            The operation being applied
+     * @param v
+     *            The value to apply op to
+     */
+    public double estimateSelectivity(Predicate.Op op, double v) {
+        return hist.estimateSelectivity(op, doubleToInt(v));
+    }
+
+    /**
+     * @return the average selectivity of this histogram.
+     */
+    public double avgSelectivity() {
+        return hist.avgSelectivity();
+    }
+
+    public String toString() {
+        return "DoubleHistogram[" + min + ", " + max + "] " + hist;
+    }
+}
@@ -25,6 +25,11 @@ import java.io.File;
  * best implementations for joins.
  */
 public class LogicalPlan {
+    /**
+     * 是否把查询计划整个按批执行(见 {@link Vectorized})  用 -Dsimpledb.vectorized=true 打开
+     */
+    public static final boolean VECTORIZED = Boolean.getBoolean("simpledb.vectorized");
+
     private List<LogicalJoinNode> joins;
     private final List<LogicalScanNode> tables;
     private final List<LogicalFilterNode> filters;
@@ -93,7 +98,8 @@ public class LogicalPlan {
      *   @param p The predicate for the filter
      *   @param constantValue the constant to compare the predicate
      *   against; if field is an integer field, this should be a
-     *   String representing an integer
+     *   String representing an integer; null for IS NULL, IS NOT NULL and
+     *   comparisons with NULL
      *   @throws ParsingException if field is not in one of the tables
      *   added via {@link #addScan} or if field is ambiguous (e.g., two
      *   tables contain a field named field.)
@@ -292,6 +298,8 @@ public class LogicalPlan {
         Map<String,String> equivMap = new HashMap<>();
         Map<String,Double> filterSelectivities = new HashMap<>();
         Map<String,TableStats> statsMap = new HashMap<>();
+        //每个表上的过滤条件  不再在SeqScan上面放Filter  而是下推到SeqScan里  在页上过滤
+        Map<String,List<Predicate>> pushedPredicates = new HashMap<>();
 
         while (tableIt.hasNext()) {
             LogicalScanNode table = tableIt.next();
@@ -324,10 +332,20 @@ public class LogicalPlan {
             } catch (NoSuchElementException e) {
                 throw new ParsingException("Unknown field in filter expression " + lf.fieldQuantifiedName);
             }
-            if (ftyp == Type.INT_TYPE)
+            if (lf.c == null)
+                f = NullField.of(ftyp);
+            else if (ftyp == Type.INT_TYPE)
                 f = new IntField(new Integer(lf.c));
-            else
+            else if (ftyp == Type.STRING_TYPE)
                 f = new StringField(lf.c, Type.STRING_LEN);
+            else {
+                //long double date boolean  常量按列的类型解析  过滤时直接比较基本类型
+                try {
+                    f = ftyp.fromString(lf.c);
+                } catch (IllegalArgumentException e) {
+                    throw new ParsingException("Value " + lf.c + " is not a valid " + ftyp + " in filter expression " + lf.fieldQuantifiedName);
+                }
+            }
 
             Predicate p = null;
             try {
@@ -335,7 +353,8 @@ public class LogicalPlan {
             } catch (NoSuchElementException e) {
                 throw new ParsingException("Unknown field " + lf.fieldQuantifiedName);
             }
-            subplanMap.put(lf.tableAlias, new Filter(p, subplan));
+            //谓词下推到扫描里  见下面重新创建SeqScan
+            pushedPredicates.computeIfAbsent(lf.tableAlias, k -> new ArrayList<>()).add(p);
 
             TableStats s = statsMap.get(Database.getCatalog().getTableName(this.getTableId(lf.tableAlias)));
 
@@ -344,6 +363,18 @@ public class LogicalPlan {
 
             //s.addSelectivityFactor(estimateFilterSelectivity(lf,statsMap));
         }
+
+        //带上谓词和查询用到的字段重新创建每个表的扫描  扫描的TupleDesc只有用到的字段
+        //谓词的字段序号是在整张表里的  上面按整张表算好的序号仍然有效
+        //连接、分组、排序、投影都在下面按字段名重新找序号  找的就是缩小后的TupleDesc里的序号
+        Map<String,Set<String>> usedFields = usedFields();
+        for (LogicalScanNode table : tables) {
+            SeqScan ss = (SeqScan) subplanMap.get(table.alias);
+            List<Predicate> preds = pushedPredicates.get(table.alias);
+            subplanMap.put(table.alias, new SeqScan(t, table.t, table.alias,
+                    usedColumns(ss.getTupleDesc(), table.alias, usedFields),
+                    preds == null ? null : preds.toArray(new Predicate[0])));
+        }
         
         JoinOptimizer jo = new JoinOptimizer(this,joins);
 
@@ -475,7 +506,61 @@ public class LogicalPlan {
             node = new OrderBy(node.getTupleDesc().fieldNameToIndex(oByField), oByAsc, node);
         }
 
-        return new Project(outFields, outTypes, node);
+        Project project = new Project(outFields, outTypes, node);
+        //整个计划按批执行  上层照常逐个元组读
+        return VECTORIZED ? new Vectorized(project) : project;
+    }
+
+    /**
+     * @return 每个表别名在SELECT、连接、聚合、分组、排序中用到的字段名
+     *   只在WHERE里用到的字段在扫描里过滤  不用读出来
+     *   查询用到了 * 时返回null  所有字段都要读
+     */
+    private Map<String,Set<String>> usedFields() {
+        List<String> names = new ArrayList<>();
+        for (LogicalSelectListNode si : selectList) {
+            names.add(si.fname);
+        }
+        if (hasAgg) {
+            names.add(aggField);
+            if (groupByField != null)
+                names.add(groupByField);
+        }
+        if (hasOrderBy) {
+            names.add(oByField);
+        }
+        Map<String,Set<String>> used = new HashMap<>();
+        for (String name : names) {
+            String[] parts = name.split("[.]");
+            if (parts.length != 2 || parts[1].equals("*"))
+                return null;
+            used.computeIfAbsent(parts[0], k -> new HashSet<>()).add(parts[1]);
+        }
+        for (LogicalJoinNode lj : joins) {
+            used.computeIfAbsent(lj.t1Alias, k -> new HashSet<>()).add(lj.f1PureName);
+            if (!(lj instanceof LogicalSubplanJoinNode))
+                used.computeIfAbsent(lj.t2Alias, k -> new HashSet<>()).add(lj.f2PureName);
+        }
+        return used;
+    }
+
+    /**
+     * @return 表alias中用到的字段在td中的序号  全部用到时返回null
+     *   一个字段都没用到时(例如只在WHERE里用到)也读第一个字段  TupleDesc至少要有一个字段
+     */
+    private static int[] usedColumns(TupleDesc td, String alias, Map<String,Set<String>> usedFields) {
+        if (usedFields == null)
+            return null;
+        Set<String> names = usedFields.getOrDefault(alias, Collections.emptySet());
+        int[] columns = new int[names.size()];
+        int n = 0;
+        for (int i = 0; i < td.numFields(); i++) {
+            if (names.contains(td.getFieldName(i).substring(td.getFieldName(i).indexOf('.') + 1)))
+                columns[n++] = i;
+        }
+        if (n == 0)
+            return new int[]{0};
+        return n == td.numFields() ? null : Arrays.copyOf(columns, n);
     }
 
     public static void main(String[] argv) {
@@ -0,0 +1,88 @@
+package simpledb.optimizer;
+
+import simpledb.execution.Predicate;
+
+/**
+ * A class to represent a fixed-width histogram over a single long-based
+ * field. Also used for DATE fields (by epoch day) and BOOLEAN fields (as 0
+ * and 1).
+ */
+public class LongHistogram {
+    final IntHistogram hist;
+
+    private final long min;
+    private final long max;
+    //值减去min之后右移的位数  使整个范围能放进int
+    private final int shift;
+    //max对应的int
+    private final int top;
+
+    /**
+     * Create a new LongHistogram with a specified number of buckets.
+     * <p>
+     * Our implementation is written in terms of an IntHistogram by mapping
+     * each value to an integer. Ranges up to 2^30 are mapped exactly; wider
+     * ones are scaled down by a power of two.
+     *
+     * @param buckets
+     *            the number of buckets
+     * @param min
+     *            the minimum value that will ever be passed to this class
+     * @param max
+     *            the maximum value that will ever be passed to this class
+     */
+    public LongHistogram(int buckets, long min, long max) {
+        this.min = min;
+        this.max = max;
+        //按无符号数算  min到max跨越整个long也不溢出
+        long range = max - min;
+        int bits = 64 - Long.numberOfLeadingZeros(range);
+        this.shift = Math.max(0, bits - 30);
+        this.top = (int) (range >>> shift);
+        hist = new IntHistogram(buckets, 0, top);
+    }
+
+    /**
+     * Convert a value to an integer, with the property that if v1 < v2 then
+     * the return value(v1) <= return value(v2). Values outside [min, max]
+     * map outside [0, top].
+     */
+    private int longToInt(long v) {
+        if (v < min) {
+            return -1;
+        }
+        if (v > max) {
+            return top + 1;
+        }
+        return (int) ((v - min) >>> shift);
+    }
+
+    /** Add a new value to the histogram */
+    public void addValue(long v) {
+        hist.addValue(longToInt(v));
+    }
+
+    /**
+     * Estimate the selectivity (as a double between 0 and 1) of the specified
+     * predicate over the specified value
+     *
+     * @param op
+     *            The operation being applied
+     * @param v
+     *            The value to apply op to
+     */
+    public double estimateSelectivity(Predicate.Op op, long v) {
+        return hist.estimateSelectivity(op, longToInt(v));
+    }
+
+    /**
+     * @return the average selectivity of this histogram.
+     */
+    public double avgSelectivity() {
+        return hist.avgSelectivity();
+    }
+
+    public String toString() {
+        return "LongHistogram[" + min + ", " + max + "] " + hist;
+    }
+}
@@ -44,9 +44,7 @@ public class OperatorCardinality {
                             (Operator) children[0], tableAliasToId, tableStats);
                     childC = ((Operator) children[0]).getEstimatedCardinality();
                 } else if (children[0] instanceof SeqScan) {
-                    childC = tableStats.get(
-                            ((SeqScan) children[0]).getTableName())
-                            .estimateTableCardinality(1.0);
+                    childC = scanCardinality((SeqScan) children[0], tableStats);
                 }
             }
             o.setEstimatedCardinality(childC);
@@ -54,6 +52,21 @@ public class OperatorCardinality {
         }
     }
 
+    /**
+     * 扫描的基数  谓词下推到扫描里时乘上它们的选择性
+     */
+    private static int scanCardinality(SeqScan s, Map<String, TableStats> tableStats) {
+        TableStats stats = tableStats.get(s.getTableName());
+        double selectivity = 1.0;
+        if (s.getPredicates() != null) {
+            for (Predicate p : s.getPredicates()) {
+                selectivity *= stats.estimateSelectivity(p.getField(), p.getOp(), p.getOperand());
+            }
+            return (int) (stats.estimateTableCardinality(1.0) * selectivity) + 1;
+        }
+        return stats.estimateTableCardinality(1.0);
+    }
+
     private static boolean updateFilterCardinality(Filter f,
             Map<String, Integer> tableAliasToId,
             Map<String, TableStats> tableStats) {
@@ -80,9 +93,7 @@ public class OperatorCardinality {
                         .getEstimatedCardinality() * selectivity) + 1);
                 return hasJoinPK;
             } else if (child instanceof SeqScan) {
-                f.setEstimatedCardinality((int) (tableStats.get(
-                        ((SeqScan) child).getTableName())
-                        .estimateTableCardinality(1.0) * selectivity) + 1);
+                f.setEstimatedCardinality((int) (scanCardinality((SeqScan) child, tableStats) * selectivity) + 1);
                 return false;
             }
         }
@@ -123,8 +134,7 @@ public class OperatorCardinality {
             child1Card = child1O.getEstimatedCardinality();
             child1Card = child1Card > 0 ? child1Card : 1;
         } else if (child1 instanceof SeqScan) {
-            child1Card = tableStats.get(((SeqScan) child1)
-                    .getTableName()).estimateTableCardinality(1.0);
+            child1Card = scanCardinality((SeqScan) child1, tableStats);
         }
 
         if (child2 instanceof Operator) {
@@ -135,8 +145,7 @@ public class OperatorCardinality {
             child2Card = child2O.getEstimatedCardinality();
             child2Card = child2Card > 0 ? child2Card : 1;
         } else if (child2 instanceof SeqScan) {
-            child2Card = tableStats.get(((SeqScan) child2)
-                    .getTableName()).estimateTableCardinality(1.0);
+            child2Card = scanCardinality((SeqScan) child2, tableStats);
         }
 
         j.setEstimatedCardinality(JoinOptimizer.estimateTableJoinCardinality(j
@@ -178,8 +187,7 @@ public class OperatorCardinality {
             child1Card = child1O.getEstimatedCardinality();
             child1Card = child1Card > 0 ? child1Card : 1;
         } else if (child1 instanceof SeqScan) {
-            child1Card = tableStats.get(((SeqScan) child1)
-                    .getTableName()).estimateTableCardinality(1.0);
+            child1Card = scanCardinality((SeqScan) child1, tableStats);
         }
 
         if (child2 instanceof Operator) {
@@ -190,8 +198,7 @@ public class OperatorCardinality {
             child2Card = child2O.getEstimatedCardinality();
             child2Card = child2Card > 0 ? child2Card : 1;
         } else if (child2 instanceof SeqScan) {
-            child2Card = tableStats.get(((SeqScan) child2)
-                    .getTableName()).estimateTableCardinality(1.0);
+            child2Card = scanCardinality((SeqScan) child2, tableStats);
         }
 
         j.setEstimatedCardinality(JoinOptimizer.estimateTableJoinCardinality(j
@@ -220,8 +227,7 @@ public class OperatorCardinality {
         }
 
         if (child instanceof SeqScan) {
-            childCard = tableStats.get(((SeqScan) child).getTableName())
-                    .estimateTableCardinality(1.0);
+            childCard = scanCardinality((SeqScan) child, tableStats);
         }
 
         String[] tmp = a.groupFieldName().split("[.]");
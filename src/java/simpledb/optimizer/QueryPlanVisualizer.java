@@ -78,6 +78,16 @@ public class QueryPlanVisualizer {
                 alias = "";
             thisNode.text = String
                     .format("%1$s(%2$s)", SCAN, tableName + alias);
+            //下推到扫描里的谓词  和Filter一样显示
+            if (s.getPredicates() != null) {
+                StringBuilder where = new StringBuilder();
+                for (Predicate p : s.getPredicates()) {
+                    where.append(where.length() == 0 ? "" : " and ")
+                            .append(s.getTableDesc().getFieldName(p.getField()))
+                            .append(p.getOp()).append(p.getOperand());
+                }
+                thisNode.text += String.format(",%1$s(%2$s)", SELECT, where);
+            }
             if (SCAN.length() / 2 < parentUpperBarStartShift) {
                 thisNode.upBarPosition = currentStartPosition
                         + parentUpperBarStartShift;
@@ -362,6 +372,9 @@ public class QueryPlanVisualizer {
     }
 
     public String getQueryPlanTree(OpIterator physicalPlan) {
+        //按批执行只是执行方式  不画出来
+        if (physicalPlan instanceof Vectorized)
+            physicalPlan = ((Vectorized) physicalPlan).getChildren()[0];
         int queryPlanDepth = this.calculateQueryPlanTreeDepth(physicalPlan) - 1;
 
         SubTreeDescriptor root = this.buildTree(queryPlanDepth, 0,
@@ -0,0 +1,95 @@
+package simpledb.storage;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 缓冲池中的一个页框：缓存表中key对应的条目
+ *
+ * 除了页本身  还带着替换策略需要的状态(访问位、链表指针等)
+ * 这样命中时策略直接改页框  不用再按key查一遍策略自己的表
+ *
+ * 链表指针和state只能在所在分片的锁内修改；referenced可以无锁设置
+ *
+ * pins是钉住计数：事务的getPage(或者要求钉住的getPage)钉住  用完的调用方unpinPage  被钉住的页不会被淘汰
+ * 钉住和淘汰之间不加锁：钉住的一方先加计数再看resident  淘汰的一方先清resident再看计数
+ * 两边都是volatile  所以至少有一方能看到对方  不会出现页被钉住的同时被淘汰
+ */
+public final class BufferFrame {
+
+    private static final AtomicIntegerFieldUpdater<BufferFrame> PINS =
+            AtomicIntegerFieldUpdater.newUpdater(BufferFrame.class, "pins");
+
+    final long key;
+    //替换时可能被新版本覆盖(脏页)  命中路径无锁读取
+    volatile Page page;
+    //访问位  CLOCK类策略命中时只置这一位
+    volatile boolean referenced;
+    //是否还在缓存表中  被淘汰或丢弃后置为false
+    volatile boolean resident;
+    //钉住计数
+    private volatile int pins;
+    //放入缓存时页占用的堆内存(Page.getRetainedSize)  在分片锁内修改
+    long bytes;
+    //策略私有的状态位
+    int state;
+    //策略维护的(环形)双链表
+    BufferFrame prev;
+    BufferFrame next;
+
+    BufferFrame(long key, Page page) {
+        this.key = key;
+        this.page = page;
+        this.resident = page != null;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public Page getPage() {
+        return page;
+    }
+
+    /**
+     * @return 当前的钉住计数
+     */
+    public int getPinCount() {
+        return pins;
+    }
+
+    void pin() {
+        PINS.incrementAndGet(this);
+    }
+
+    void unpin() {
+        //多余的unpin不让计数变成负数
+        PINS.getAndUpdate(this, n -> n > 0 ? n - 1 : 0);
+    }
+
+    /**
+     * 插入到node之前  node为null时自成一个环
+     */
+    void linkBefore(BufferFrame node) {
+        if (node == null) {
+            prev = this;
+            next = this;
+            return;
+        }
+        prev = node.prev;
+        next = node;
+        node.prev.next = this;
+        node.prev = this;
+    }
+
+    /**
+     * 从链表中摘下
+     */
+    void unlink() {
+        if (prev != null) {
+            prev.next = next;
+            next.prev = prev;
+        }
+        prev = null;
+        next = null;
+    }
+}
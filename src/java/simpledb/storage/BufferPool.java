@@ -7,10 +7,14 @@ import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -42,6 +46,24 @@ public class BufferPool {
      */
     public static final int DEFAULT_PAGES = 50;
 
+    /**
+     * 默认的页替换策略  可以用 -Dsimpledb.bufferpool.policy=LRU|CLOCK|CLOCK_PRO|TWO_Q 指定
+     * 默认用2Q：全表扫描不会把索引的内部页等热页挤出只有50页的缓冲池
+     */
+    public static final ReplacementPolicy.Kind DEFAULT_POLICY = ReplacementPolicy.Kind.valueOf(
+            System.getProperty("simpledb.bufferpool.policy", ReplacementPolicy.Kind.TWO_Q.name()));
+
+    /**
+     * 默认缓冲池按堆内存限制时的字节数  用 -Dsimpledb.bufferpool.bytes=2g 指定(可以带k/m/g后缀)
+     * 没有指定时为0  默认缓冲池按DEFAULT_PAGES页限制
+     */
+    public static final long DEFAULT_BYTES = parseBytes(System.getProperty("simpledb.bufferpool.bytes"));
+
+    /**
+     * 是否把页的原始数据放在堆外的页框里  用 -Dsimpledb.bufferpool.offheap=true 打开
+     */
+    public static final boolean DEFAULT_OFF_HEAP = Boolean.getBoolean("simpledb.bufferpool.offheap");
+
     /**
      * final在字段上面，代表着这个字段不能被重新赋值，但请注意
      * 如果声明时没有赋值，在构造函数里则可以被首次赋值，其它该方法里绝对不行
@@ -58,16 +80,205 @@ public class BufferPool {
     //pageStore（即方法）都是允许调用的。只是不能再将这个pageStore变量指向其他的实例化对象了，即不能再出现pageStore= new ConcurrentHashMap<PageId,Page>(); 的代码。
     //private final ConcurrentHashMap<Integer, Page> pageStore;
     //重构了
-    private final  LRUCache<Integer,Page> pageStore;
+    //private final  LRUCache<Integer,Page> pageStore;
+    //再次重构：LRUCache整个对象只有一把锁  所有线程的命中都在这把锁上排队
+    //改成按key分片  每个分片独立加锁、独立维护LRU顺序
+    //key从pid.hashCode()改成pid.pageKey()：hashCode是拼字符串再取hash  每次查找都要分配  而且(1,23)和(12,3)会冲突
+    private final ShardedPageCache pageStore;
+
+    /**
+     * 顺序预读  扫描时在后台把后面的页提前读进来
+     */
+    private final ReadAhead readAhead;
+
+    /**
+     * 修改过页、还没有transactionComplete的事务  它们的脏页不交给后台写回
+     */
+    private final Set<TransactionId> activeTransactions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 每个活跃事务可能弄脏的页  以READ_WRITE取过的页和插入、删除返回的页
+     * 事务结束时只检查这些页  不用扫描整个缓冲池
+     */
+    private final ConcurrentHashMap<TransactionId, Set<PageId>> writeSets = new ConcurrentHashMap<>();
+
+    /**
+     * 被淘汰、正在写回磁盘的脏页  键是pageKey
+     * evictPage在缓冲池的锁外写盘  写完之前从磁盘读这一页(readPage)要先等  否则读到的是旧的内容
+     */
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> evicting = new ConcurrentHashMap<>();
+
+    /**
+     * 后台写回已提交事务的脏页
+     */
+    private final PageWriter pageWriter;
+
+    /**
+     * 每个事务钉住的页框  unpinPage时去掉一个  transactionComplete时全部放开
+     * 同一个页框被钉住几次就出现几次
+     */
+    private final ConcurrentHashMap<TransactionId, List<BufferFrame>> pins = new ConcurrentHashMap<>();
+
+    /**
+     * tid为null的调用方显式钉住的页记在它名下  没有事务结束时放开  只能unpinPage(null, pid)
+     */
+    private static final TransactionId NO_TRANSACTION = new TransactionId();
+
+    /**
+     * 命中率、淘汰、读写字节数和读写耗时的统计
+     */
+    private final BufferPoolMetrics metrics = new BufferPoolMetrics();
+
+    /**
+     * 堆外页框  不使用堆外页框时为null
+     */
+    private final PageArena arena;
     /**
      * Creates a BufferPool that caches up to numPages pages.
      *
      * @param numPages maximum number of pages in this buffer pool.
      */
     public BufferPool(int numPages) {
+        this(numPages, DEFAULT_POLICY);
+    }
+
+    /**
+     * Creates a BufferPool that caches up to numPages pages and evicts
+     * them with the given replacement policy.
+     *
+     * @param numPages maximum number of pages in this buffer pool.
+     * @param policy the page replacement policy used by evictPage
+     */
+    public BufferPool(int numPages, ReplacementPolicy.Kind policy) {
+        this(numPages, Long.MAX_VALUE, policy);
+    }
+
+    /**
+     * Creates a BufferPool that caches up to numPages pages, and no more
+     * than maxBytes bytes of heap as estimated by
+     * {@link Page#getRetainedSize}. Since a cached page holds at least its
+     * on-disk bytes, the page limit is also capped at maxBytes / page size.
+     *
+     * 原来只按页数限制  字符串多的表解码之后一页在堆上比磁盘上的4KB大很多  页数不好估
+     * 现在同时按每页实际占用的堆内存(磁盘上的字节 + 解码出来的对象)限制  超出时淘汰
+     *
+     * @param numPages maximum number of pages in this buffer pool.
+     * @param maxBytes maximum heap bytes held by the cached pages;
+     *   Long.MAX_VALUE for no limit
+     * @param policy the page replacement policy used by evictPage
+     */
+    public BufferPool(int numPages, long maxBytes, ReplacementPolicy.Kind policy) {
+        this(numPages, maxBytes, policy, DEFAULT_OFF_HEAP);
+    }
+
+    /**
+     * Creates a BufferPool that optionally keeps page images off the Java
+     * heap. Files that support it ({@link DbFile#readPage(PageId, ByteBuffer)})
+     * read each page straight into a frame of a direct-memory arena, and
+     * the cached page is a view over the frame. A frame is reused as soon
+     * as its page leaves the pool, so off-heap pages are only valid while
+     * pinned, between {@link #getPage} and {@link #unpinPage} or the end of
+     * the transaction. Callers without a transaction pin explicitly
+     * with {@code getPage(null, pid, perm, false, true)} and release the pin
+     * with {@code unpinPage(null, pid)}. Before images are copied to the
+     * heap when the frame is reused.
+     *
+     * @param numPages maximum number of pages in this buffer pool.
+     * @param maxBytes maximum heap bytes held by the cached pages;
+     *   Long.MAX_VALUE for no limit
+     * @param policy the page replacement policy used by evictPage
+     * @param offHeap whether to read pages into off-heap frames
+     */
+    public BufferPool(int numPages, long maxBytes, ReplacementPolicy.Kind policy, boolean offHeap) {
         // some code goes here
+        if(maxBytes<Long.MAX_VALUE){
+            numPages=(int) Math.min(numPages, Math.max(1, maxBytes/getPageSize()));
+        }
         this.pageNums=numPages;
-        this.pageStore=new LRUCache<>(numPages);
+        this.pageStore=new ShardedPageCache(numPages, maxBytes, policy);
+        //页框比页数多一些  留给并发读入同一页的线程和预读
+        this.arena=offHeap ? new PageArena(getPageSize(), numPages+Math.max(16, numPages/8)) : null;
+        this.readAhead=new ReadAhead(this, pageStore, ReadAhead.DEFAULT_WINDOW);
+        this.pageWriter=new PageWriter(this, pageStore, activeTransactions, metrics, PageWriter.DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @return the background writer of this buffer pool, to configure its
+     *   interval and read its counters
+     */
+    public PageWriter getPageWriter() {
+        return pageWriter;
+    }
+
+    /**
+     * Stops the background writer. Called when this buffer pool is
+     * replaced; dirty pages are not flushed.
+     */
+    public void close() {
+        pageWriter.stop();
+    }
+
+    /**
+     * @return the hit, eviction, I/O byte and I/O latency counters of this
+     *   buffer pool
+     */
+    public BufferPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the heap bytes held by the cached pages
+     */
+    public long getRetainedBytes() {
+        return pageStore.getBytes();
+    }
+
+    /**
+     * @return the byte budget of this buffer pool, Long.MAX_VALUE if it is
+     *   limited by page count only
+     */
+    public long getMaxBytes() {
+        return pageStore.getMaxBytes();
+    }
+
+    /**
+     * Parses a byte count with an optional k, m or g suffix (powers of
+     * 1024), as in -Dsimpledb.bufferpool.bytes=2g.
+     *
+     * @return the number of bytes, 0 if s is null or empty
+     */
+    public static long parseBytes(String s) {
+        if(s==null || s.trim().isEmpty()){
+            return 0;
+        }
+        s=s.trim().toLowerCase();
+        int shift=0;
+        switch (s.charAt(s.length()-1)){
+            case 'k': shift=10; break;
+            case 'm': shift=20; break;
+            case 'g': shift=30; break;
+            default: break;
+        }
+        if(shift>0){
+            s=s.substring(0, s.length()-1).trim();
+        }
+        return Long.parseLong(s)<<shift;
+    }
+
+    /**
+     * @return the off-heap frame arena, or null if pages are kept on the
+     *   Java heap
+     */
+    public PageArena getArena() {
+        return arena;
+    }
+
+    /**
+     * @return the read-ahead of this buffer pool, to configure its window
+     *   and read its counters
+     */
+    public ReadAhead getReadAhead() {
+        return readAhead;
     }
     
     public static int getPageSize() {
@@ -94,12 +305,52 @@ public class BufferPool {
      * be added to the buffer pool and returned.  If there is insufficient
      * space in the buffer pool, a page should be evicted and the new page
      * should be added in its place.
+     * <p>
+     * A page fetched by a transaction is pinned: it is not evicted until
+     * {@link #unpinPage} or the end of the transaction. A page fetched
+     * with a null tid is not pinned; callers without a transaction pin
+     * explicitly with {@link #getPage(TransactionId, PageId, Permissions, boolean, boolean)}.
      *
      * @param tid the ID of the transaction requesting the page
      * @param pid the ID of the requested page
      * @param perm the requested permissions on the page
      */
     public  Page getPage(TransactionId tid, PageId pid, Permissions perm)
+        throws TransactionAbortedException, DbException {
+        return getPage(tid, pid, perm, false);
+    }
+
+    /**
+     * Retrieve the specified page with the associated permissions, telling
+     * the replacement policy whether the access is part of a sequential scan.
+     * Pages that a scan reads only once are kept out of the main cache by
+     * scan-resistant policies, so a big scan does not flush hot pages.
+     *
+     * @param tid the ID of the transaction requesting the page
+     * @param pid the ID of the requested page
+     * @param perm the requested permissions on the page
+     * @param scan true if the page is read by a sequential scan
+     * @see ReplacementPolicy.Kind#TWO_Q
+     */
+    public  Page getPage(TransactionId tid, PageId pid, Permissions perm, boolean scan)
+        throws TransactionAbortedException, DbException {
+        return getPage(tid, pid, perm, scan, tid!=null);
+    }
+
+    /**
+     * Retrieve the specified page, choosing whether it stays pinned. A
+     * pinned page is not evicted until {@code unpinPage(tid, pid)}, or the
+     * end of the transaction if tid is not null; a caller without a
+     * transaction that pins must unpin. Pages of an off-heap pool are only
+     * valid while pinned.
+     *
+     * @param tid the ID of the transaction requesting the page, or null
+     * @param pid the ID of the requested page
+     * @param perm the requested permissions on the page
+     * @param scan true if the page is read by a sequential scan
+     * @param pin whether to keep the page pinned
+     */
+    public  Page getPage(TransactionId tid, PageId pid, Permissions perm, boolean scan, boolean pin)
         throws TransactionAbortedException, DbException {
         // some code goes here
 //        //查看缓冲池中是否有
@@ -117,17 +368,251 @@ public class BufferPool {
 //            pageStore.put(pid.hashCode(), page);
 //        }
 //        return page;
-        //1.从LRU缓存中得到
-        Page page = pageStore.get(pid.hashCode());
+        if(perm==Permissions.READ_WRITE && tid!=null){
+            //这个事务可能修改页  它结束之前后台不写它弄脏的页
+            activeTransactions.add(tid);
+            recordWrite(tid, pid);
+        }
+        //1.从缓存中得到  只锁pid所在的分片  查找时先钉住  不要求钉住时返回前放开
+        long key = pid.pageKey();
+        BufferFrame frame = pageStore.pin(key, scan);
+        if(frame==null && scan){
+            //这一页可能正在被预读  等它读完再查一次缓存
+            //预读可能恰好在上面的查找之后放入缓存  所以不管等没等都要再查一次
+            readAhead.awaitInflight(key);
+            frame = pageStore.pin(key, scan);
+        }
+        if(scan){
+            //记录扫描位置  顺序扫描时在后台预读后面的页
+            readAhead.onScanAccess(pid, frame!=null);
+        }
+        if(frame!=null){
+            metrics.recordHit(pid.getTableId());
+        }else{
+            metrics.recordMiss(pid.getTableId());
+            //如果不存在 从磁盘中取  读盘时不持有任何分片的锁
+            Page page = readPage(Database.getCatalog().getDatabaseFile(pid.getTableId()), pid);
+            //取完放到缓存中  满了先淘汰
+            //别的线程可能同时读入了同一页  以先放进去的为准
+            if(!pageStore.contains(key)){
+                //页数满了  或者放进这一页会超出字节上限
+                long bytes = page.getRetainedSize();
+                try {
+                    while(pageStore.isFull(bytes)){
+                        evictPage();
+                    }
+                } catch (DbException e) {
+                    release(page);
+                    throw e;
+                }
+            }
+            frame = pageStore.putIfAbsentAndPin(key, page, scan);
+            if(frame.getPage()!=page){
+                //别的线程先放进去了  读到的这一页没用了
+                release(page);
+            }
+        }
+        Page page = frame.getPage();
+        if(pin){
+            pin(tid, frame);
+        }else{
+            frame.unpin();
+        }
+        return page;
+    }
+
+    /**
+     * 从磁盘读一页  记录耗时  使用堆外页框时读进一个空闲页框
+     * 读到的页没能放进缓存时  调用方要release
+     */
+    Page readPage(DbFile file, PageId pid) {
+        if(!evicting.isEmpty()){
+            CompletableFuture<Void> writing = evicting.get(pid.pageKey());
+            if(writing!=null){
+                writing.join();
+            }
+        }
+        long start = System.nanoTime();
+        Page page = null;
+        ByteBuffer frame = arena==null ? null : arena.allocate(file.getPageSize());
+        if(frame!=null){
+            try {
+                page = file.readPage(pid, frame);
+            } catch (RuntimeException e) {
+                arena.free(frame);
+                throw e;
+            }
+            if(page==null){
+                //这个文件的页不能是页框上的视图
+                arena.free(frame);
+            }else{
+                arena.attach(page, frame);
+            }
+        }
         if(page==null){
-            //如果不存在 从磁盘中取
-            page = Database.getCatalog().getDatabaseFile(pid.getTableId()).readPage(pid);
-            //取完放到LRU缓存中  LRU缓存自动维护大小 淘汰页面等
-            pageStore.put(pid.hashCode(),page);
+            page = file.readPage(pid);
         }
+        metrics.recordRead(pid.getTableId(), file.getPageSize(), System.nanoTime()-start);
         return page;
     }
 
+    /**
+     * 页离开了缓冲池(或者没能放进去)  它的堆外页框可以给别的页用了
+     */
+    private void release(Page page) {
+        if(arena!=null && page!=null){
+            arena.release(page);
+        }
+    }
+
+    /**
+     * 记下tid钉住了frame
+     * tid为null时记在NO_TRANSACTION名下  调用方要自己unpinPage(null, pid)
+     */
+    private BufferFrame pin(TransactionId tid, BufferFrame frame) {
+        if(frame==null){
+            return null;
+        }
+        if(tid==null){
+            tid=NO_TRANSACTION;
+        }
+        List<BufferFrame> held = pins.computeIfAbsent(tid, t -> new ArrayList<>());
+        synchronized (held){
+            held.add(frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Releases one pin that transaction tid holds on page pid, taken by
+     * {@link #getPage}. A page is not evicted while it is pinned. Pins that
+     * are never released are dropped when the transaction completes.
+     *
+     * 放开tid对pid的一次钉住  没有钉住时什么都不做
+     * 不属于事务(tid为null)显式钉住的页没有事务结束时自动放开  必须用这个方法放开
+     *
+     * @param tid the transaction that fetched the page, or null
+     * @param pid the page to unpin
+     */
+    public void unpinPage(TransactionId tid, PageId pid) {
+        if(tid==null){
+            tid=NO_TRANSACTION;
+        }
+        List<BufferFrame> held = pins.get(tid);
+        if(held==null){
+            return;
+        }
+        long key = pid.pageKey();
+        synchronized (held){
+            //一般放开的是最近钉住的页  从后往前找
+            for(int i=held.size()-1;i>=0;i--){
+                BufferFrame frame = held.get(i);
+                if(frame.getKey()==key){
+                    held.remove(i);
+                    frame.unpin();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of pins currently held on page pid, 0 if it is not
+     *   in the pool
+     */
+    public int getPinCount(PageId pid) {
+        BufferFrame frame = pageStore.peekFrame(pid.pageKey());
+        return frame==null ? 0 : frame.getPinCount();
+    }
+
+    /**
+     * 放开tid的所有钉住
+     */
+    private void unpinAll(TransactionId tid) {
+        List<BufferFrame> held = pins.remove(tid);
+        if(held==null){
+            return;
+        }
+        synchronized (held){
+            for(BufferFrame frame:held){
+                frame.unpin();
+            }
+            held.clear();
+        }
+    }
+
+    /**
+     * 记下tid可能弄脏了pid
+     */
+    private void recordWrite(TransactionId tid, PageId pid) {
+        writeSets.computeIfAbsent(tid, t -> ConcurrentHashMap.newKeySet()).add(pid);
+    }
+
+    /**
+     * 把页放入缓存  缓存已满且该页不在缓存中时先淘汰
+     * @param replace 已存在时是否替换(脏页替换旧版本)
+     * @param scan 是否由顺序扫描读入
+     * @return replace为false且页已在缓存中时返回已有的页  否则返回null
+     */
+    private Page cachePage(PageId pid, Page page, boolean replace, boolean scan) throws DbException {
+        long key = pid.pageKey();
+        if(!replace || pageStore.get(key)==null){
+            long bytes = page.getRetainedSize();
+            while(pageStore.isFull(bytes)){
+                evictPage();
+            }
+        }
+        if(replace){
+            Page old = pageStore.put(key,page);
+            if(old!=page){
+                release(old);
+            }
+            return null;
+        }
+        Page existing = pageStore.putIfAbsent(key,page,scan);
+        if(existing!=null){
+            release(page);
+        }
+        return existing;
+    }
+
+    /**
+     * 把预读线程读入的页放入缓存  已经在缓存中时保留原来的页
+     * 预读线程不属于任何事务  不能走evictPage替别的事务把脏页写回磁盘
+     * 缓存满时只淘汰干净、没有被钉住的页  没有这样的页就放弃这一页  扫描线程到时候自己读
+     * @return 是否放入了
+     */
+    boolean cachePrefetched(PageId pid, Page page) {
+        long bytes = page.getRetainedSize();
+        while(pageStore.isFull(bytes)){
+            if(!evictCleanPage()){
+                release(page);
+                return false;
+            }
+        }
+        Page existing = pageStore.putIfAbsent(pid.pageKey(),page,true);
+        if(existing!=null){
+            release(page);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 淘汰一张干净的页  不写磁盘
+     * @return 没有可淘汰的干净页时返回false
+     */
+    private synchronized boolean evictCleanPage() {
+        Page victim = pageStore.evict(page -> page.isDirty()==null);
+        if(victim==null){
+            return false;
+        }
+        readAhead.forget(victim.getId().pageKey());
+        metrics.recordEviction(victim.getId().getTableId());
+        release(victim);
+        return true;
+    }
+
     /**
      * Releases the lock on a page.
      * Calling this is very risky, and may result in wrong behavior. Think hard
@@ -150,6 +635,7 @@ public class BufferPool {
     public void transactionComplete(TransactionId tid) {
         // some code goes here
         // not necessary for lab1|lab2
+        transactionComplete(tid, true);
     }
 
     /** Return true if the specified transaction has a lock on the specified page */
@@ -169,6 +655,29 @@ public class BufferPool {
     public void transactionComplete(TransactionId tid, boolean commit) {
         // some code goes here
         // not necessary for lab1|lab2
+        //锁还没有实现  这里只处理这个事务弄脏的页
+        //提交：记下新的修改前镜像  提交不等写盘  之后由后台写回(开启时)  或者淘汰、flush时写回
+        //回滚：丢掉弄脏的页  下次访问时重新从磁盘读入
+        //  事务追加的新页也一样  文件里只有占住页号的空页  未提交的修改不会写到磁盘(NO STEAL)
+        Set<PageId> written = tid==null ? null : writeSets.remove(tid);
+        if(written!=null){
+            for(PageId pid:written){
+                Page page = pageStore.peek(pid.pageKey());
+                if(page!=null && tid.equals(page.isDirty())){
+                    if(commit){
+                        page.setBeforeImage();
+                        //修改前的镜像也占堆内存
+                        pageStore.remeasure(page.getId().pageKey());
+                    }else{
+                        discardPage(page.getId());
+                    }
+                }
+            }
+        }
+        activeTransactions.remove(tid);
+        if(tid!=null){
+            unpinAll(tid);
+        }
     }
 
     /**
@@ -206,19 +715,42 @@ public class BufferPool {
 //        }
         //1.调用DBFile DBFile如果发现LRU缓存中有   则调用Page 在Page上插入，并返回插入的脏页
         //                   否则其直接写，  那么需要将新页添加到缓存
+        activeTransactions.add(tid);
         DbFile dbFile = Database.getCatalog().getDatabaseFile(tableId);
         List<Page> pages = dbFile.insertTuple(tid, t);
         //2.无论是返回的脏页还是新页  都需put到LRU缓存  LRU缓存会自动提到队列头
         for(Page page:pages){
-            //新页需要加入缓存 那么是否需要标脏呢？
-            //尽管由于我们创建新页时 先插入元组 再写入磁盘 不属于脏页
-            //但新页 也属于时间前后比照下的  脏页
+            //新页在文件里是空页  插入的元组只在缓存里  和修改过的页一样是这个事务的脏页
             page.markDirty(true,tid);  //二次标脏无所谓吧
-            pageStore.put(page.getId().hashCode(),page);//脏页还需要加入缓存码？
+            recordWrite(tid, page.getId());
+            cachePage(page.getId(),page,true,false);//脏页还需要加入缓存码？
         }
 
     }
 
+    /**
+     * Add a batch of tuples to the specified table on behalf of transaction
+     * tid. Same as calling {@link #insertTuple} for each tuple, but the file
+     * fills a page at a time, so every modified page is fetched, locked and
+     * marked dirty once per batch instead of once per tuple.
+     *
+     * 批量插入  每个被修改的页只标脏、放入缓存一次
+     *
+     * @param tid the transaction adding the tuples
+     * @param tableId the table to add the tuples to
+     * @param tuples the tuples to add
+     */
+    public void insertTuples(TransactionId tid, int tableId, Iterator<Tuple> tuples)
+        throws DbException, IOException, TransactionAbortedException {
+        activeTransactions.add(tid);
+        DbFile dbFile = Database.getCatalog().getDatabaseFile(tableId);
+        for(Page page:dbFile.insertTuples(tid, tuples)){
+            page.markDirty(true,tid);
+            recordWrite(tid, page.getId());
+            cachePage(page.getId(),page,true,false);
+        }
+    }
+
     /**
      * Remove the specified tuple from the buffer pool.
      * Will acquire a write lock on the page the tuple is removed from and any
@@ -244,13 +776,15 @@ public class BufferPool {
 //        }
         //1.还是先调用DBFile  DBFile从缓存中拿页Page 如果有则删除元组并返回已经标记了的脏页
         //                                       否则LRU缓存 pageStore会调用DBFile从磁盘读页 然后加入LRU缓存   然后再删除元组并返回脏页
+        activeTransactions.add(tid);
         DbFile dbFile = Database.getCatalog().getDatabaseFile(t.getRecordId().getPageId().getTableId());
         List<Page> pages = dbFile.deleteTuple(tid, t);
         //？？？ 由于对象都是引用  那么pageStore已经全是脏页了  被修改过了
         //那也 二次标脏  二次put？
         for(Page page:pages){
             page.markDirty(true,tid);
-            pageStore.put(page.getId().hashCode(),page);
+            recordWrite(tid, page.getId());
+            cachePage(page.getId(),page,true,false);
         }
 
 
@@ -264,10 +798,8 @@ public class BufferPool {
     public synchronized void flushAllPages() throws IOException {
         // some code goes here
         // not necessary for lab1
-        for(Page page:pageStore.getAllV()){
-            PageId id = page.getId();
-            flushPage(id);//flushPage会自动判断脏页
-        }
+        //按页号排序  连续的脏页合并成一次写
+        pageWriter.write(page -> true, false);
     }
 
     /** Remove the specific page id from the buffer pool.
@@ -281,7 +813,16 @@ public class BufferPool {
     public synchronized void discardPage(PageId pid) {
         // some code goes here
         // not necessary for lab1
-       pageStore.removeK(pid.hashCode());
+       Page page = pageStore.remove(pid.pageKey());
+       release(page);
+       readAhead.forget(pid.pageKey());
+       if(page!=null){
+           DbFile file = Database.getCatalog().getDatabaseFile(pid.getTableId());
+           if(file instanceof HeapFile){
+               //回滚掉的插入不在磁盘上的页里  这一页可能又有空槽了  下次插入时经过缓冲池确认
+               ((HeapFile) file).getFreeSpaceMap().update(pid.getPageNumber(), true);
+           }
+       }
     }
 
     /**
@@ -291,13 +832,16 @@ public class BufferPool {
     private synchronized  void flushPage(PageId pid) throws IOException {
         // some code goes here
         // not necessary for lab1
-        Page page = pageStore.get(pid.hashCode());
+        Page page = pageStore.get(pid.pageKey());
         //磁盘不存在 此页或则 此页不为脏页无需写入
         if(page==null||page.isDirty()==null){
             return;
         }
         //否则写进磁盘文件
-        Database.getCatalog().getDatabaseFile(pid.getTableId()).writePage(page);
+        DbFile file = Database.getCatalog().getDatabaseFile(pid.getTableId());
+        long start = System.nanoTime();
+        file.writePage(page);
+        metrics.recordWrite(pid.getTableId(), 1, file.getPageSize(), System.nanoTime()-start);
         //移除脏页和事务标签
         page.markDirty(false,null);
     }
@@ -307,14 +851,14 @@ public class BufferPool {
     public synchronized  void flushPages(TransactionId tid) throws IOException {
         // some code goes here
         // not necessary for lab1|lab2
-
+        pageWriter.write(page -> tid.equals(page.isDirty()), false);
     }
 
     /**
      * Discards a page from the buffer pool.
      * Flushes the page to disk to ensure dirty pages are updated on disk.
      */
-    private synchronized  void evictPage() throws DbException {
+    private void evictPage() throws DbException {
         // some code goes here
         // not necessary for lab1
 //        // 就简单挑选第一张被修改的脏页删除吧
@@ -335,8 +879,52 @@ public class BufferPool {
 
         //1.简单来讲  我们从LRU缓存中获取 队尾V
         //然后调用discardPage即可
-        Page tailV = pageStore.getTailV();
-        discardPage(tailV.getId());
+//        Page tailV = pageStore.getTailV();
+//        discardPage(tailV.getId());
+        //2.由分片缓存中某个分片的替换策略选出牺牲页  在分片锁内从缓存中移除
+        //  被钉住的页和未提交事务的脏页不淘汰(NO STEAL)
+        //  脏页在丢弃前先写回磁盘  写盘不持有缓冲池的锁  别的线程照常取页、淘汰
+        //  脏页离开缓存之前(还在分片锁内)登记为正在写回  之后来读这一页的线程会等写完
+        Page victim = pageStore.evict(page -> {
+            TransactionId dirtier = page.isDirty();
+            if(dirtier==null){
+                return true;
+            }
+            if(activeTransactions.contains(dirtier)){
+                return false;
+            }
+            evicting.put(page.getId().pageKey(), new CompletableFuture<>());
+            return true;
+        });
+        if(victim==null){
+            throw new DbException("no page to evict: all pages are pinned or dirty");
+        }
+        long key = victim.getId().pageKey();
+        readAhead.forget(key);
+        metrics.recordEviction(victim.getId().getTableId());
+        CompletableFuture<Void> writing = evicting.get(key);
+        try {
+            if(writing!=null){
+                try {
+                    DbFile file = Database.getCatalog().getDatabaseFile(victim.getId().getTableId());
+                    long start = System.nanoTime();
+                    file.writePage(victim);
+                    metrics.recordWrite(victim.getId().getTableId(), 1, file.getPageSize(), System.nanoTime()-start);
+                    victim.markDirty(false,null);
+                } catch (IOException e) {
+                    throw new DbException("could not flush evicted page "+victim.getId());
+                }
+                //淘汰到了脏页  说明后台写回跟不上  马上写一轮
+                pageWriter.wakeUp();
+            }
+        } finally {
+            //先去掉登记再通知  等待的线程醒来时页已经在磁盘上了
+            if(writing!=null){
+                evicting.remove(key);
+                writing.complete(null);
+            }
+            release(victim);
+        }
 
     }
 
@@ -0,0 +1,240 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓冲池的运行统计
+ *
+ * 按表统计：getPage的命中和未命中、淘汰的页数、写回的脏页数、读写的字节数
+ * 全局统计：DbFile.readPage每次读页的耗时、writePage/writePages每次写的耗时(LatencyHistogram)
+ * 预读和后台写回的I/O也计入对应的表和直方图  但预读不算getPage的未命中
+ *
+ * 计数器都是LongAdder  记录时不加锁
+ * 表的统计对象存在写时复制的LongHashMap里：查找不加锁、不装箱  只有第一次遇到一张表时加锁复制一次
+ *
+ * 从Java用 Database.getBufferPool().getMetrics() 读取
+ * 在SimpleDb parser的命令行里输入 metrics; 打印  metrics reset; 清零
+ */
+public class BufferPoolMetrics {
+
+    /**
+     * 一张表的计数器
+     */
+    public static final class TableMetrics {
+        private final int tableId;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder flushedPages = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+
+        TableMetrics(int tableId) {
+            this.tableId = tableId;
+        }
+
+        public int getTableId() {
+            return tableId;
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return 命中次数/访问次数  没有访问时为0
+         */
+        public double getHitRatio() {
+            long h = getHits();
+            long total = h + getMisses();
+            return total == 0 ? 0 : (double) h / total;
+        }
+
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        /**
+         * @return 写回磁盘的脏页数  包括淘汰时同步写的和后台、flush写的
+         */
+        public long getFlushedPages() {
+            return flushedPages.sum();
+        }
+
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.sum();
+        }
+    }
+
+    //写时复制  发布出去的表不再修改  所以可以不加锁读
+    private volatile LongHashMap<TableMetrics> tables = new LongHashMap<>();
+
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    /**
+     * @return 表tableId的计数器  第一次用到时创建
+     */
+    public TableMetrics getTable(int tableId) {
+        TableMetrics m = tables.get(tableId);
+        return m != null ? m : addTable(tableId);
+    }
+
+    private synchronized TableMetrics addTable(int tableId) {
+        TableMetrics m = tables.get(tableId);
+        if (m == null) {
+            LongHashMap<TableMetrics> copy = new LongHashMap<>(tables.size() + 1);
+            tables.forEachValue(t -> copy.put(t.getTableId(), t));
+            m = new TableMetrics(tableId);
+            copy.put(tableId, m);
+            tables = copy;
+        }
+        return m;
+    }
+
+    /**
+     * @return 所有被访问过的表的计数器
+     */
+    public List<TableMetrics> getTables() {
+        List<TableMetrics> all = new ArrayList<>();
+        tables.forEachValue(all::add);
+        return all;
+    }
+
+    /**
+     * @return DbFile.readPage的耗时  每读一页记一次
+     */
+    public LatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    /**
+     * @return DbFile.writePage/writePages的耗时  每次写记一次  合并写的多页算一次
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    public long getHits() {
+        long n = 0;
+        for (TableMetrics m : getTables()) {
+            n += m.getHits();
+        }
+        return n;
+    }
+
+    public long getMisses() {
+        long n = 0;
+        for (TableMetrics m : getTables()) {
+            n += m.getMisses();
+        }
+        return n;
+    }
+
+    /**
+     * @return 所有表合计的命中率  没有访问时为0
+     */
+    public double getHitRatio() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public long getEvictions() {
+        long n = 0;
+        for (TableMetrics m : getTables()) {
+            n += m.getEvictions();
+        }
+        return n;
+    }
+
+    public long getFlushedPages() {
+        long n = 0;
+        for (TableMetrics m : getTables()) {
+            n += m.getFlushedPages();
+        }
+        return n;
+    }
+
+    void recordHit(int tableId) {
+        getTable(tableId).hits.increment();
+    }
+
+    void recordMiss(int tableId) {
+        getTable(tableId).misses.increment();
+    }
+
+    void recordEviction(int tableId) {
+        getTable(tableId).evictions.increment();
+    }
+
+    /**
+     * 从磁盘读入一页  页大小pageSize  耗时nanos
+     */
+    void recordRead(int tableId, int pageSize, long nanos) {
+        getTable(tableId).bytesRead.add(pageSize);
+        readLatency.record(nanos);
+    }
+
+    /**
+     * 一次写回了pages个脏页  页大小pageSize  耗时nanos
+     */
+    void recordWrite(int tableId, int pages, int pageSize, long nanos) {
+        TableMetrics m = getTable(tableId);
+        m.flushedPages.add(pages);
+        m.bytesWritten.add((long) pages * pageSize);
+        writeLatency.record(nanos);
+    }
+
+    /**
+     * 清零所有计数器
+     */
+    public synchronized void reset() {
+        tables = new LongHashMap<>();
+        readLatency.reset();
+        writeLatency.reset();
+    }
+
+    /**
+     * 打印每张表的计数(按访问次数从多到少)和读写耗时
+     */
+    public void dump(PrintStream out) {
+        List<TableMetrics> all = getTables();
+        all.sort(Comparator.comparingLong((TableMetrics m) -> m.getHits() + m.getMisses()).reversed());
+        out.printf("%-20s %10s %10s %7s %10s %10s %12s %12s%n",
+                "table", "hits", "misses", "hit%", "evictions", "flushed", "read KB", "written KB");
+        for (TableMetrics m : all) {
+            out.printf("%-20s %10d %10d %6.1f%% %10d %10d %12d %12d%n",
+                    tableName(m.getTableId()), m.getHits(), m.getMisses(), m.getHitRatio() * 100,
+                    m.getEvictions(), m.getFlushedPages(), m.getBytesRead() / 1024, m.getBytesWritten() / 1024);
+        }
+        out.printf("total: hits=%d misses=%d hit%%=%.1f%% evictions=%d flushed=%d%n",
+                getHits(), getMisses(), getHitRatio() * 100, getEvictions(), getFlushedPages());
+        out.println("read:  " + readLatency);
+        out.println("write: " + writeLatency);
+    }
+
+    //表已经从目录中删掉时用id代替
+    private static String tableName(int tableId) {
+        try {
+            return Database.getCatalog().getTableName(tableId);
+        } catch (NoSuchElementException e) {
+            return String.valueOf(tableId);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package simpledb.storage;
+
+/**
+ * 时钟(二次机会)算法
+ *
+ * 所有页框排成一个环  命中只把访问位置1  不调整顺序
+ * 淘汰时指针顺时针转：访问位为1的清零放过  遇到访问位为0的就淘汰
+ *
+ * 新页不置访问位：只被读过一次的页(例如顺序扫描)比反复命中的热页先被淘汰
+ */
+public class ClockPolicy implements ReplacementPolicy {
+
+    //时钟指针  指向下一个要检查的页框
+    private BufferFrame hand;
+    //环上的页框数
+    private int size;
+
+    @Override
+    public void recordInsert(BufferFrame frame, boolean scan) {
+        frame.referenced = false;
+        //放在指针之前  转满一圈才会检查到它
+        frame.linkBefore(hand);
+        if (hand == null) {
+            hand = frame;
+        }
+        size++;
+    }
+
+    @Override
+    public void recordAccess(BufferFrame frame, boolean scan) {
+        frame.referenced = true;
+    }
+
+    @Override
+    public void recordRemove(BufferFrame frame) {
+        unlink(frame);
+    }
+
+    @Override
+    public BufferFrame victim() {
+        if (hand == null) {
+            return null;
+        }
+        //最多转两圈：第一圈清掉所有访问位  第二圈一般就能找到
+        //访问位不加锁  别的线程可能一边转一边又把它置1  转满两圈还没找到就淘汰指针处的页
+        for (int i = 0; i < 2 * size && hand.referenced; i++) {
+            hand.referenced = false;
+            hand = hand.next;
+        }
+        BufferFrame victim = hand;
+        unlink(victim);
+        return victim;
+    }
+
+    @Override
+    public void requeue(BufferFrame frame) {
+        //不清访问位  放在指针之前
+        frame.linkBefore(hand);
+        if (hand == null) {
+            hand = frame;
+        }
+        size++;
+    }
+
+    private void unlink(BufferFrame frame) {
+        if (frame == hand) {
+            hand = frame.next == frame ? null : frame.next;
+        }
+        frame.unlink();
+        size--;
+    }
+
+    @Override
+    public boolean isAccessLockFree() {
+        return true;
+    }
+}
@@ -0,0 +1,255 @@
+package simpledb.storage;
+
+/**
+ * CLOCK-Pro (Jiang, Chen, Zhang, USENIX ATC 2005)
+ *
+ * 用重用距离区分冷热页：
+ * - 热页：重用距离短  一般不会被淘汰
+ * - 冷页：新进入的页都是冷页  带一个"测试期"；测试期内再次被访问说明重用距离短  升为热页
+ * - 冷页被淘汰时如果还在测试期  保留一个不驻留内存的记录(ghost)；测试期内再次读入直接成为热页
+ *
+ * 所有页框(包括ghost)在一个环上  三个指针顺时针转：
+ * - handCold 找要淘汰的冷页
+ * - handHot  把访问位为0的热页降为冷页  并结束经过的冷页的测试期
+ * - handTest 结束测试期  删除多余的ghost
+ * 冷页的份额coldTarget自适应：ghost被重新读入时增加  测试期白白结束时减少
+ *
+ * 顺序扫描读入的页都是只访问一次的冷页  会在测试期内被淘汰  不会挤掉热页
+ */
+public class ClockProPolicy implements ReplacementPolicy {
+
+    private static final int HOT = 1;
+    private static final int TEST = 2;
+
+    //驻留页的最大数量
+    private final int capacity;
+    //冷页的目标数量  在[1, capacity-1]之间自适应
+    private int coldTarget;
+
+    private int hotCount;
+    private int coldCount;
+    private int ghostCount;
+    //上次放入新页之后  被requeue放回的冷页数
+    private int skipped;
+
+    //不驻留的测试期页框  按key查找
+    private final LongHashMap<BufferFrame> ghosts = new LongHashMap<>();
+
+    private BufferFrame handHot;
+    private BufferFrame handCold;
+    private BufferFrame handTest;
+
+    public ClockProPolicy(int capacity) {
+        this.capacity = Math.max(2, capacity);
+        this.coldTarget = Math.max(1, this.capacity / 4);
+    }
+
+    @Override
+    public void recordInsert(BufferFrame frame, boolean scan) {
+        skipped = 0;
+        frame.referenced = false;
+        BufferFrame ghost = ghosts.remove(frame.key);
+        if (ghost != null) {
+            //测试期内被重新读入：重用距离比冷页的驻留时间短  应该多给冷页一些空间
+            unlink(ghost);
+            ghostCount--;
+            coldTarget = Math.min(coldTarget + 1, capacity - 1);
+            frame.state = HOT;
+            linkAtHead(frame);
+            hotCount++;
+            balanceHot();
+        } else {
+            frame.state = TEST;
+            linkAtHead(frame);
+            coldCount++;
+        }
+    }
+
+    @Override
+    public void recordAccess(BufferFrame frame, boolean scan) {
+        frame.referenced = true;
+    }
+
+    @Override
+    public void recordRemove(BufferFrame frame) {
+        if ((frame.state & HOT) != 0) {
+            hotCount--;
+        } else {
+            coldCount--;
+        }
+        unlink(frame);
+    }
+
+    @Override
+    public BufferFrame victim() {
+        if (hotCount + coldCount == 0) {
+            return null;
+        }
+        while (true) {
+            if (coldCount == 0) {
+                runHandHot();
+                continue;
+            }
+            BufferFrame f = handCold;
+            handCold = f.next;
+            //只处理驻留的冷页
+            if (!f.resident || (f.state & HOT) != 0) {
+                continue;
+            }
+            if (f.referenced) {
+                f.referenced = false;
+                unlink(f);
+                if ((f.state & TEST) != 0) {
+                    //测试期内再次访问  升为热页
+                    f.state = HOT;
+                    coldCount--;
+                    hotCount++;
+                    linkAtHead(f);
+                    balanceHot();
+                } else {
+                    //重新开始测试期
+                    f.state = TEST;
+                    linkAtHead(f);
+                }
+                continue;
+            }
+            //淘汰这个冷页
+            coldCount--;
+            if ((f.state & TEST) != 0) {
+                //测试期没结束  用一个ghost替换它在环上的位置
+                BufferFrame ghost = new BufferFrame(f.key, null);
+                ghost.state = TEST;
+                ghost.linkBefore(f);
+                ghosts.put(f.key, ghost);
+                ghostCount++;
+                unlink(f);
+                while (ghostCount > capacity) {
+                    runHandTest();
+                }
+            } else {
+                unlink(f);
+            }
+            return f;
+        }
+    }
+
+    @Override
+    public void requeue(BufferFrame frame) {
+        //victim()只会选出冷页  放回原来的位置(冷指针刚经过)  测试期不变
+        //测试期内选出时留下的ghost去掉  否则下次放入会被当作重用升为热页
+        BufferFrame ghost = ghosts.remove(frame.key);
+        if (ghost != null) {
+            frame.linkBefore(ghost);
+            unlink(ghost);
+            ghostCount--;
+        } else if (handCold == null) {
+            linkAtHead(frame);
+        } else {
+            frame.linkBefore(handCold);
+        }
+        coldCount++;
+        //冷页都试过一遍还淘汰不了时  转热指针降级一个热页  下一次victim()才有新的冷页可选
+        if (++skipped >= coldCount) {
+            runHandHot();
+        }
+    }
+
+    /**
+     * 热页超过份额时  转热指针降级
+     */
+    private void balanceHot() {
+        while (hotCount > capacity - coldTarget) {
+            runHandHot();
+        }
+    }
+
+    /**
+     * 热指针转到降级一个热页为止  经过的冷页结束测试期
+     */
+    private void runHandHot() {
+        while (hotCount > 0) {
+            BufferFrame f = handHot;
+            handHot = f.next;
+            if ((f.state & HOT) != 0) {
+                if (f.referenced) {
+                    f.referenced = false;
+                } else {
+                    f.state = 0;
+                    hotCount--;
+                    coldCount++;
+                    return;
+                }
+            } else {
+                endTest(f);
+            }
+        }
+    }
+
+    /**
+     * 测试指针转到删除一个ghost为止
+     */
+    private void runHandTest() {
+        while (ghostCount > 0) {
+            BufferFrame f = handTest;
+            handTest = f.next;
+            if (!f.resident) {
+                endTest(f);
+                return;
+            }
+            if ((f.state & HOT) == 0) {
+                endTest(f);
+            }
+        }
+    }
+
+    /**
+     * 结束一个冷页的测试期：没有被重新访问  说明冷页的份额给多了
+     */
+    private void endTest(BufferFrame f) {
+        if ((f.state & TEST) == 0) {
+            return;
+        }
+        coldTarget = Math.max(1, coldTarget - 1);
+        if (f.resident) {
+            f.state &= ~TEST;
+        } else {
+            ghosts.remove(f.key);
+            ghostCount--;
+            unlink(f);
+        }
+    }
+
+    /**
+     * 插入到环的头部  也就是热指针刚刚经过的位置  三个指针都要转一圈才会碰到它
+     */
+    private void linkAtHead(BufferFrame frame) {
+        frame.linkBefore(handHot);
+        if (handHot == null) {
+            handHot = frame;
+            handCold = frame;
+            handTest = frame;
+        }
+    }
+
+    /**
+     * 从环上摘下  指向它的指针前移
+     */
+    private void unlink(BufferFrame frame) {
+        BufferFrame next = frame.next == frame ? null : frame.next;
+        if (handHot == frame) {
+            handHot = next;
+        }
+        if (handCold == frame) {
+            handCold = next;
+        }
+        if (handTest == frame) {
+            handTest = next;
+        }
+        frame.unlink();
+    }
+
+    @Override
+    public boolean isAccessLockFree() {
+        return true;
+    }
+}
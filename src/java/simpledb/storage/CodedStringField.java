@@ -0,0 +1,87 @@
+package simpledb.storage;
+
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+
+/**
+ * A value of a dictionary encoded string column together with its code,
+ * see {@link StringDictionary}. There is one instance per code, so scanning
+ * such a column creates no strings; fields of the same column compare and
+ * hash by their code.
+ * <p>
+ * 和同一列的CodedStringField比较相等只比较编码  和普通StringField比较时退回到比较字符串
+ * 所以它可以出现在任何需要StringField的地方
+ */
+public class CodedStringField extends StringField {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient StringDictionary dictionary;
+    private final int column;
+    private final int code;
+
+    CodedStringField(String value, StringDictionary dictionary, int column, int code) {
+        super(value, Type.STRING_LEN);
+        this.dictionary = dictionary;
+        this.column = column;
+        this.code = code;
+    }
+
+    /**
+     * @return the dictionary this value is from
+     */
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the index of the column in the table
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the code of this value in the dictionary of its column
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return whether o is a value of the same column of the same table, so
+     *     that the two can be compared by code
+     */
+    public boolean sameColumn(CodedStringField o) {
+        return dictionary != null && dictionary == o.dictionary && column == o.column;
+    }
+
+    @Override
+    public boolean equals(Object field) {
+        if (field instanceof CodedStringField && sameColumn((CodedStringField) field)) {
+            return code == ((CodedStringField) field).code;
+        }
+        return super.equals(field);
+    }
+
+    //equals要和普通StringField一致  所以仍然用字符串的hashCode(String自己缓存了)
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public boolean compare(Predicate.Op op, Field val) {
+        if ((op == Predicate.Op.EQUALS || op == Predicate.Op.NOT_EQUALS)
+                && val instanceof CodedStringField && sameColumn((CodedStringField) val)) {
+            return (code == ((CodedStringField) val).code) == (op == Predicate.Op.EQUALS);
+        }
+        return super.compare(op, val);
+    }
+
+    //所有同一个值共享这个对象  不算进元组占用的内存
+    @Override
+    public long getRetainedSize() {
+        return 0;
+    }
+}
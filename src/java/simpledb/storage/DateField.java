@@ -0,0 +1,109 @@
+package simpledb.storage;
+
+import simpledb.execution.Predicate;
+import simpledb.common.Type;
+
+import java.io.*;
+import java.time.LocalDate;
+
+/**
+ * Instance of Field that stores a calendar date, as the number of days
+ * since 1970-01-01. Dates compare as plain ints.
+ *
+ * 文本格式是ISO的yyyy-MM-dd
+ */
+public class DateField implements Field {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int epochDay;
+
+
+    /**
+     * @return 1970-01-01以来的天数
+     */
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public LocalDate getValue() {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param epochDay The value of this field, in days since 1970-01-01.
+     */
+    public DateField(int epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param date The value of this field.
+     * @throws ArithmeticException if the date is out of the range of an int epoch day
+     */
+    public DateField(LocalDate date) {
+        this(Math.toIntExact(date.toEpochDay()));
+    }
+
+    public String toString() {
+        return getValue().toString();
+    }
+
+    public int hashCode() {
+        return epochDay;
+    }
+
+    public boolean equals(Object field) {
+        if (!(field instanceof DateField)) return false;
+        return ((DateField) field).epochDay == epochDay;
+    }
+
+    public void serialize(DataOutputStream dos) throws IOException {
+        dos.writeInt(epochDay);
+    }
+
+    /**
+     * Compare the specified field to the value of this Field.
+     * Return semantics are as specified by Field.compare
+     *
+     * @throws IllegalCastException if val is not a DateField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+
+        DateField dVal = (DateField) val;
+
+        switch (op) {
+            case EQUALS:
+            case LIKE:
+                return epochDay == dVal.epochDay;
+            case NOT_EQUALS:
+                return epochDay != dVal.epochDay;
+            case GREATER_THAN:
+                return epochDay > dVal.epochDay;
+            case GREATER_THAN_OR_EQ:
+                return epochDay >= dVal.epochDay;
+            case LESS_THAN:
+                return epochDay < dVal.epochDay;
+            case LESS_THAN_OR_EQ:
+                return epochDay <= dVal.epochDay;
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the Type of this field.
+     *
+     * @return Type.DATE_TYPE
+     */
+    public Type getType() {
+        return Type.DATE_TYPE;
+    }
+
+
+}
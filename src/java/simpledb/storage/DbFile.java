@@ -3,11 +3,13 @@ package simpledb.storage;
 
 import simpledb.common.DbException;
 import simpledb.common.Catalog;
+import simpledb.execution.Predicate;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * The interface for database files on disk. Each table is represented by a
@@ -24,6 +26,33 @@ public interface DbFile {
      */
     Page readPage(PageId id);
 
+    /**
+     * Returns the size in bytes of the pages of this file. Files that
+     * record their own page size (see {@link PageFileHeader}) override it;
+     * the default is {@link BufferPool#getPageSize()}.
+     *
+     * @see Catalog#getPageSize
+     */
+    default int getPageSize() {
+        return BufferPool.getPageSize();
+    }
+
+    /**
+     * Read the specified page from disk into frame, an off-heap buffer of
+     * {@link #getPageSize()} bytes owned by the buffer pool, and
+     * return a page that reads its data from the frame. The page must not
+     * keep a reference to the frame beyond its own lifetime in the pool.
+     * <p>
+     * Files whose pages cannot be views over a buffer return null, and
+     * the buffer pool falls back to {@link #readPage(PageId)}. That is the
+     * default.
+     *
+     * @throws IllegalArgumentException if the page does not exist in this file.
+     */
+    default Page readPage(PageId id, ByteBuffer frame) {
+        return null;
+    }
+
     /**
      * Push the specified page to disk.
      *
@@ -33,6 +62,19 @@ public interface DbFile {
      */
     void writePage(Page p) throws IOException;
 
+    /**
+     * Push several pages to disk. The pages are sorted by page number;
+     * files that can write adjacent pages with a single call override this.
+     * The default calls {@link #writePage} for each page.
+     *
+     * @param pages The pages to write, all of this file
+     * @throws IOException if a write fails
+     */
+    default void writePages(List<Page> pages) throws IOException {
+        for (Page p : pages)
+            writePage(p);
+    }
+
     /**
      * Inserts the specified tuple to the file on behalf of transaction.
      * This method will acquire a lock on the affected pages of the file, and
@@ -48,6 +90,29 @@ public interface DbFile {
     List<Page> insertTuple(TransactionId tid, Tuple t)
         throws DbException, IOException, TransactionAbortedException;
 
+    /**
+     * Inserts a batch of tuples on behalf of transaction tid. Each tuple is
+     * updated to reflect where it is stored, as with {@link #insertTuple}.
+     * <p>
+     * The default implementation calls {@link #insertTuple} once per tuple.
+     * Files that can do better (e.g. fill a page at a time) override it.
+     *
+     * @param tid The transaction performing the update
+     * @param tuples The tuples to add
+     * @return The pages that were modified, each listed once
+     * @throws DbException if a tuple cannot be added
+     * @throws IOException if the needed file can't be read/written
+     */
+    default List<Page> insertTuples(TransactionId tid, Iterator<Tuple> tuples)
+        throws DbException, IOException, TransactionAbortedException {
+        Map<PageId, Page> pages = new LinkedHashMap<>();
+        while (tuples.hasNext()) {
+            for (Page p : insertTuple(tid, tuples.next()))
+                pages.put(p.getId(), p);
+        }
+        return new ArrayList<>(pages.values());
+    }
+
     /**
      * Removes the specified tuple from the file on behalf of the specified
      * transaction.
@@ -73,6 +138,31 @@ public interface DbFile {
      */
     DbFileIterator iterator(TransactionId tid);
 
+    /**
+     * Returns an iterator over the tuples of this DbFile that satisfy all of
+     * predicates, reading only some of their fields. Files that can test
+     * predicates on the raw data of a page, or skip whole pages, override
+     * this; the default filters the tuples of {@link #iterator(TransactionId)}
+     * and then projects them.
+     *
+     * 谓词和要读的字段下推到文件里  SeqScan上面不用再放Filter
+     *
+     * @param columns indexes of the fields the caller uses; the returned
+     *     tuples have only these fields, in this order, with the TupleDesc
+     *     {@code getTupleDesc().project(columns)}. null for all fields
+     * @param predicates predicates on fields of the tuples, by their index in
+     *     {@link #getTupleDesc()}; they need not be in columns. null for none
+     * @return an iterator over the tuples satisfying all the predicates
+     */
+    default DbFileIterator iterator(TransactionId tid, int[] columns, Predicate[] predicates) {
+        DbFileIterator it = iterator(tid);
+        if (columns == null && (predicates == null || predicates.length == 0)) {
+            return it;
+        }
+        return new FilteredDbFileIterator(it, columns == null ? null : getTupleDesc().project(columns),
+                columns, predicates);
+    }
+
     /**
      * Returns a unique ID used to identify this DbFile in the Catalog. This id
      * can be used to look up the table via {@link Catalog#getDatabaseFile} and
@@ -93,4 +183,14 @@ public interface DbFile {
      * @return TupleDesc of this DbFile.
      */
     TupleDesc getTupleDesc();
+
+    /**
+     * Releases the file handles held by this DbFile. Called by
+     * {@link Catalog#clear}. A closed DbFile reopens its file on the next
+     * page read or write.
+     *
+     * @throws IOException if closing the file fails
+     */
+    default void close() throws IOException {
+    }
 }
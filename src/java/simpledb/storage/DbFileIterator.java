@@ -36,6 +36,26 @@ public interface DbFileIterator{
      */
     void rewind() throws DbException, TransactionAbortedException;
 
+    /**
+     * Returns the next batch of tuples, see
+     * {@link simpledb.execution.OpIterator#nextBatch()}. Files that can
+     * fill a batch straight from their pages override it; this default
+     * collects the tuples from {@link #next()}.
+     *
+     * @param td the schema of the batch, the one of the tuples this iterator
+     *     returns
+     * @return the next batch, with at least one selected row, or null if
+     *     there are no more tuples
+     */
+    default TupleBatch nextBatch(TupleDesc td) throws DbException, TransactionAbortedException {
+        if (!hasNext())
+            return null;
+        TupleBatch batch = new TupleBatch(td);
+        while (!batch.isFull() && hasNext())
+            batch.add(next());
+        return batch;
+    }
+
     /**
      * Closes the iterator.
      */
@@ -0,0 +1,101 @@
+package simpledb.storage;
+
+import simpledb.execution.Predicate;
+import simpledb.common.Type;
+
+import java.io.*;
+
+/**
+ * Instance of Field that stores a single double.
+ */
+public class DoubleField implements Field {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double value;
+
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param d The value of this field.
+     */
+    public DoubleField(double d) {
+        value = d;
+    }
+
+    public String toString() {
+        return Double.toString(value);
+    }
+
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
+
+    /**
+     * 和Double.equals一样按Double.compare比较  NaN等于NaN  0.0不等于-0.0  和hashCode一致
+     */
+    public boolean equals(Object field) {
+        if (!(field instanceof DoubleField)) return false;
+        return Double.compare(((DoubleField) field).value, value) == 0;
+    }
+
+    public void serialize(DataOutputStream dos) throws IOException {
+        dos.writeDouble(value);
+    }
+
+    /**
+     * 对象头 + 8字节的值
+     */
+    @Override
+    public long getRetainedSize() {
+        return 24;
+    }
+
+    /**
+     * Compare the specified field to the value of this Field.
+     * Return semantics are as specified by Field.compare; the order is the
+     * one of Double.compare, so that it agrees with equals.
+     *
+     * @throws IllegalCastException if val is not a DoubleField
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+
+        DoubleField dVal = (DoubleField) val;
+        int cmpVal = Double.compare(value, dVal.value);
+
+        switch (op) {
+            case EQUALS:
+            case LIKE:
+                return cmpVal == 0;
+            case NOT_EQUALS:
+                return cmpVal != 0;
+            case GREATER_THAN:
+                return cmpVal > 0;
+            case GREATER_THAN_OR_EQ:
+                return cmpVal >= 0;
+            case LESS_THAN:
+                return cmpVal < 0;
+            case LESS_THAN_OR_EQ:
+                return cmpVal <= 0;
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the Type of this field.
+     *
+     * @return Type.DOUBLE_TYPE
+     */
+    public Type getType() {
+        return Type.DOUBLE_TYPE;
+    }
+
+
+}
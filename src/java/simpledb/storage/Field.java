@@ -26,7 +26,7 @@ public interface Field extends Serializable{
     boolean compare(Predicate.Op op, Field value);
 
     /**
-     * Returns the type of this field (see {@link Type#INT_TYPE} or {@link Type#STRING_TYPE}
+     * Returns the type of this field (see {@link Type}, e.g. {@link Type#INT_TYPE} or {@link Type#STRING_TYPE})
      * @return type of this field
      */
     Type getType();
@@ -41,4 +41,22 @@ public interface Field extends Serializable{
 
     String toString();
 
+    /**
+     * Approximate number of bytes this object keeps alive on the heap.
+     * Used by the buffer pool to charge decoded pages against its byte
+     * budget.
+     *
+     * 默认按一个对象头加一个基本类型值估算
+     */
+    default long getRetainedSize() {
+        return 16;
+    }
+
+    /**
+     * Returns true if this is the SQL NULL of its type, see {@link NullField}.
+     */
+    default boolean isNull() {
+        return false;
+    }
+
 }
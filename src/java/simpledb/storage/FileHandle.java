@@ -0,0 +1,177 @@
+package simpledb.storage;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * 一个DbFile长期持有的文件句柄
+ *
+ * 原来每读写一页都要new RandomAccessFile再close  打开关闭文件的开销比读一页还大
+ * 现在第一次读写时打开FileChannel  之后一直复用  直到close()
+ * 读写都用带位置的read(ByteBuffer, position)/write(ByteBuffer, position)
+ * 不改变通道的文件指针  多个线程同时读不同的页不需要加锁、也不会互相打乱seek的位置
+ *
+ * close()之后再读写会重新打开  所以Catalog.clear()关掉的文件被测试重新加入目录后还能继续用
+ * FileChannel是可中断的：某个线程在I/O中被中断时通道会被关闭  其他线程读写时遇到关闭的通道也会重新打开后重试
+ */
+public class FileHandle {
+
+    private final File file;
+    //当前打开的通道  没打开或已关闭时为null
+    private volatile FileChannel channel;
+
+    public FileHandle(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 取得打开的通道  必要时打开文件
+     * 文件只读时退回只读模式打开
+     */
+    private FileChannel channel() throws IOException {
+        FileChannel c = channel;
+        if (c != null && c.isOpen()) {
+            return c;
+        }
+        synchronized (this) {
+            c = channel;
+            if (c == null || !c.isOpen()) {
+                RandomAccessFile raf;
+                try {
+                    raf = new RandomAccessFile(file, "rw");
+                } catch (FileNotFoundException e) {
+                    raf = new RandomAccessFile(file, "r");
+                }
+                c = raf.getChannel();
+                channel = c;
+            }
+            return c;
+        }
+    }
+
+    /**
+     * 从position开始读满buf  到文件末尾时停止
+     * @return 读到的字节数  小于buf.length说明读到了文件末尾
+     */
+    public int read(byte[] buf, long position) throws IOException {
+        return read(ByteBuffer.wrap(buf), position);
+    }
+
+    /**
+     * 从position开始读满buf的[0, limit)  到文件末尾时停止  可以直接读进堆外的buffer
+     * 返回时buf的position是读到的字节数
+     * @return 读到的字节数  小于limit说明读到了文件末尾
+     */
+    public int read(ByteBuffer buf, long position) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            buf.position(0);
+            try {
+                FileChannel c = channel();
+                while (buf.hasRemaining()) {
+                    int n = c.read(buf, position + buf.position());
+                    if (n < 0) {
+                        break;
+                    }
+                }
+                return buf.position();
+            } catch (ClosedChannelException e) {
+                //本线程被中断  或者已经重试过  不再重试
+                if (e instanceof ClosedByInterruptException || attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把data整个写到position处  文件不够长时自动延长
+     */
+    public void write(byte[] data, long position) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            ByteBuffer bb = ByteBuffer.wrap(data);
+            try {
+                FileChannel c = channel();
+                while (bb.hasRemaining()) {
+                    c.write(bb, position + bb.position());
+                }
+                return;
+            } catch (ClosedChannelException e) {
+                if (e instanceof ClosedByInterruptException || attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把data写到文件末尾
+     * 调用方需要自己保证没有并发的追加(例如在DbFile上同步)
+     * @return data写入的位置
+     */
+    public long append(byte[] data) throws IOException {
+        long position = channel().size();
+        write(data, position);
+        return position;
+    }
+
+    /**
+     * 把文件截短到size个字节  文件本来就不比size长时不变
+     */
+    public void truncate(long size) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                channel().truncate(size);
+                return;
+            } catch (ClosedChannelException e) {
+                if (e instanceof ClosedByInterruptException || attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把文件的[position, position+size)只读映射到内存
+     * 映射在通道关闭后仍然有效  直到映射的buffer被回收
+     */
+    public MappedByteBuffer map(long position, long size) throws IOException {
+        return channel().map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * @return 文件当前的字节数  通道没有打开时直接查文件  不会为此打开(或创建)文件
+     */
+    public long length() {
+        FileChannel c = channel;
+        if (c != null && c.isOpen()) {
+            try {
+                return c.size();
+            } catch (IOException e) {
+                //通道刚好被关闭  退回查文件
+            }
+        }
+        return file.length();
+    }
+
+    /**
+     * 关闭通道  之后的读写会重新打开
+     */
+    public synchronized void close() throws IOException {
+        FileChannel c = channel;
+        channel = null;
+        if (c != null) {
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package simpledb.storage;
+
+import simpledb.common.DbException;
+import simpledb.execution.Predicate;
+import simpledb.transaction.TransactionAbortedException;
+import simpledb.transaction.TransactionId;
+
+/**
+ * Returns the tuples of another DbFileIterator that satisfy all of some
+ * predicates, with only some of their fields. What
+ * {@link DbFile#iterator(TransactionId, int[], Predicate[])} returns for
+ * files that cannot test predicates on their pages.
+ *
+ * 读整个元组之后再过滤、投影  和在SeqScan上面放Filter、Project一样
+ */
+class FilteredDbFileIterator extends AbstractDbFileIterator {
+
+    private final DbFileIterator child;
+    //投影后的TupleDesc和字段  不投影时为null
+    private final TupleDesc td;
+    private final int[] columns;
+    //null表示没有
+    private final Predicate[] predicates;
+
+    FilteredDbFileIterator(DbFileIterator child, TupleDesc td, int[] columns, Predicate[] predicates) {
+        this.child = child;
+        this.td = td;
+        this.columns = columns;
+        this.predicates = predicates;
+    }
+
+    @Override
+    public void open() throws DbException, TransactionAbortedException {
+        child.open();
+    }
+
+    @Override
+    protected Tuple readNext() throws DbException, TransactionAbortedException {
+        while (child.hasNext()) {
+            Tuple t = child.next();
+            if (matches(t)) {
+                return columns == null ? t : project(t);
+            }
+        }
+        return null;
+    }
+
+    private Tuple project(Tuple t) {
+        Field[] fields = new Field[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            fields[i] = t.getField(columns[i]);
+        }
+        return new Tuple(td, fields, t.getRecordId());
+    }
+
+    private boolean matches(Tuple t) {
+        if (predicates == null) {
+            return true;
+        }
+        for (Predicate p : predicates) {
+            if (!p.filter(t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void rewind() throws DbException, TransactionAbortedException {
+        super.close();
+        child.rewind();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        child.close();
+    }
+}
@@ -0,0 +1,63 @@
+package simpledb.storage;
+
+import java.util.BitSet;
+
+/**
+ * HeapFile的空闲空间表  每页一位  置位表示这一页可能还有空槽
+ *
+ * 原来insertTuple从第0页开始逐页getPage(READ_WRITE)找空槽  表满的时候每插一行都要把整张表过一遍缓冲池
+ * 现在在内存的位图里找第一个置位的页  只取这一页  找空槽不需要额外读页
+ *
+ * 位图只是提示：
+ * 置位的页取出来发现已经满了  就清掉这一位再找下一页  所以多置的位只会多读一页  不会插错
+ * 位只由缓冲池的插入、删除路径设置：插满一页时清位  删除元组时置位  事务回滚时缓冲池丢弃的页置位
+ * 不直接读文件里的页头：那样绕过缓冲池  看不到池里还没写回的脏页
+ * 表打开后第一次用到时  已有的页都当作可能有空槽  第一次插入时经过缓冲池逐页确认  满的页清位之后不再去取
+ *
+ * 位图只在内存里  不写文件  表重新打开时按上面的办法重新得到
+ */
+public class FreeSpaceMap {
+
+    private final HeapFile heapFile;
+
+    private final BitSet free = new BitSet();
+    //位图覆盖的页数  还没有用到过时为-1
+    private int pages = -1;
+
+    public FreeSpaceMap(HeapFile heapFile) {
+        this.heapFile = heapFile;
+    }
+
+    /**
+     * @return 第一个可能有空槽的页号  没有时返回-1
+     */
+    public synchronized int findFree() {
+        init();
+        int pgNo = free.nextSetBit(0);
+        return pgNo < pages ? pgNo : -1;
+    }
+
+    /**
+     * 记录页pgNo是否还有空槽  页号超出位图时中间缺的页当作可能有空槽
+     * 刚追加到文件末尾的页由调用方告知
+     */
+    public synchronized void update(int pgNo, boolean hasFree) {
+        init();
+        if (pgNo >= pages) {
+            free.set(pages, pgNo);
+            pages = pgNo + 1;
+        }
+        free.set(pgNo, hasFree);
+    }
+
+    /**
+     * 第一次用到时覆盖文件里已有的页  都当作可能有空槽
+     * 之后文件末尾的新页都由追加它们的插入路径通过update告知
+     */
+    private void init() {
+        if (pages < 0) {
+            pages = heapFile.numPages();
+            free.set(0, pages);
+        }
+    }
+}
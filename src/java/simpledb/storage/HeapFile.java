@@ -4,10 +4,12 @@ import simpledb.common.Database;
 import simpledb.common.DbException;
 import simpledb.common.Debug;
 import simpledb.common.Permissions;
+import simpledb.execution.Predicate;
 import simpledb.transaction.TransactionAbortedException;
 import simpledb.transaction.TransactionId;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -28,11 +30,58 @@ public class HeapFile implements DbFile {
      */
     private final File file;
 
+    /**
+     * 批量插入时每次追加写入的新页数
+     */
+    private static final int APPEND_BATCH = 64;
+
+    /**
+     * 长期打开的文件句柄  所有页的读写都走这里
+     * 包内可见  MappedHeapFile用它来映射文件
+     */
+    final FileHandle handle;
+
+    /**
+     * 空闲空间表  插入时用它找有空槽的页
+     */
+    private final FreeSpaceMap freeSpace;
+
+    /**
+     * 每页每个定长列的最小值、最大值  带谓词的扫描用它跳过整页
+     */
+    private final ZoneMap zoneMap;
+
     /**
      * 表头
      */
     private final TupleDesc td;
 
+    /**
+     * 这张表的页大小  记在文件头里
+     * 0表示没有文件头的老文件  页大小跟随BufferPool.getPageSize()
+     */
+    private final int pageSize;
+
+    /**
+     * 这张表的页格式  记在文件头里  老文件是FIXED
+     */
+    private final PageLayout layout;
+
+    /**
+     * 这张表的页压缩方式  记在文件头里  老文件是NONE
+     */
+    private final PageCompression compression;
+
+    /**
+     * 压缩文件的区段表  页不在固定的位置  读写都要查它  不压缩时为null
+     */
+    private final PageExtents extents;
+
+    /**
+     * 字典编码的列的字典  保存在 .dict 文件里  没有字典编码的列时为null
+     */
+    private final StringDictionary dictionary;
+
 
     /**
      * 实现一个HeapFileIterator
@@ -44,35 +93,124 @@ public class HeapFile implements DbFile {
         private final HeapFile heapFile;
         //事务id
         private final TransactionId tid;
+        //要解码的字段  null表示全部
+        private final int[] columns;
+        //返回的元组的TupleDesc  只有columns中的字段
+        private final TupleDesc desc;
+        //元组要满足的谓词  null表示没有
+        private final Predicate[] predicates;
         // 元组迭代器
         private Iterator<Tuple> iterator;
         //元组所在页码
         private int whichPage;
 
         public HeapFileIterator(HeapFile heapFile,TransactionId tid){
+            this(heapFile,tid,null,null);
+        }
+
+        public HeapFileIterator(HeapFile heapFile,TransactionId tid,int[] columns,Predicate[] predicates){
             this.heapFile=heapFile;
             this.tid=tid;
+            this.columns=columns;
+            this.desc=columns==null ? heapFile.getTupleDesc() : heapFile.getTupleDesc().project(columns);
+            this.predicates=predicates;
         }
 
+        //当前钉住的页  换页或close时放开
+        private HeapPageId pinned;
+
         // 获取 当前文件当前页码的页  的迭代器
         private Iterator<Tuple> getPageTuple(int pageNumber) throws TransactionAbortedException, DbException {
+            //首先判断页码是否超出文件范围
+            TuplePage page = readPage(pageNumber);
+            if(page==null){
+                return Collections.emptyIterator();
+            }
+            return columns==null && predicates==null ? page.iterator() : select(page);
+        }
+
+        //读第pageNumber页并钉住  区间表说这一页没有满足谓词的元组时不读  返回null
+        private TuplePage readPage(int pageNumber) throws TransactionAbortedException, DbException {
             //首先判断页码是否超出文件范围
             if(pageNumber>=0 && pageNumber<heapFile.numPages()){
                 HeapPageId heapPageId = new HeapPageId(heapFile.getId(), pageNumber);
+                //上一页读完了  放开它
+                unpin();
+                //区间表说这一页没有满足谓词的元组  不用读
+                if(predicates!=null && !heapFile.zoneMap.mayMatch(pageNumber, predicates)){
+                    return null;
+                }
                 // 从缓存池中查询相应的页面 读权限
-                HeapPage page = (HeapPage)Database.getBufferPool().getPage(tid, heapPageId, Permissions.READ_ONLY);
-                return page.iterator();
+                // 带上扫描提示  扫描只读一次的页不会挤掉缓存中的热页
+                TuplePage page = (TuplePage)Database.getBufferPool().getPage(tid, heapPageId, Permissions.READ_ONLY, true);
+                pinned = heapPageId;
+                //还不知道区间的页  读到了就记下来
+                heapFile.zoneMap.observe(page);
+                return page;
             }
 
             throw new DbException(String.format("heapFile %d not contain page %d",  heapFile.getId(),pageNumber));
         }
 
+        //和select一样按谓词过滤  一页满足的元组放进一批  INT字段直接读成int  不创建Field和Tuple
+        private TupleBatch getPageBatch(int pageNumber, TupleDesc td) throws TransactionAbortedException, DbException {
+            TuplePage page = readPage(pageNumber);
+            if(page==null){
+                return null;
+            }
+            int n = page.getNumSlots();
+            //只读部分字段时按表的字段序号读进来  再只留下columns中的字段
+            TupleBatch batch = new TupleBatch(columns==null ? td : heapFile.getTupleDesc(), n);
+            batch.setPage(page.getId());
+            for (int slot=0; slot<n; slot++) {
+                if (!page.isSlotUsed(slot) || !matches(page, slot)) {
+                    continue;
+                }
+                int row = batch.addRow();
+                page.readInto(slot, batch, row, columns);
+                batch.setSlot(row, slot);
+            }
+            return columns==null ? batch : batch.view(td, columns);
+        }
+
+        //先按谓词只解码谓词的字段  满足的元组再只解码columns中的字段  元组只有这些字段
+        //和page.iterator()一样在创建时取快照  之后对页的修改不影响这次迭代
+        private Iterator<Tuple> select(TuplePage page) {
+            List<Tuple> tuples = new ArrayList<>();
+            int n = page.getNumSlots();
+            for (int slot=0; slot<n; slot++) {
+                if (!page.isSlotUsed(slot) || !matches(page, slot)) {
+                    continue;
+                }
+                if (columns == null) {
+                    tuples.add(page.getTuple(slot));
+                    continue;
+                }
+                Field[] fields = new Field[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    fields[i] = page.getField(slot, columns[i]);
+                }
+                tuples.add(new Tuple(desc, fields, new RecordId(page.getId(), slot)));
+            }
+            return tuples.iterator();
+        }
+
+        private boolean matches(TuplePage page, int slot) {
+            if (predicates != null) {
+                for (Predicate p : predicates) {
+                    if (!page.matches(slot, p)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
         @Override
         public void open() throws DbException, TransactionAbortedException {
-            //使页码为0
-            this.whichPage=0;
-            //设置迭代器指向当前文件当前0页码  的页的第一行
-            iterator = getPageTuple(whichPage);
+            //第一次hasNext或nextBatch时才读第0页  只用nextBatch的扫描不用把第0页解码成元组
+            this.whichPage=-1;
+            iterator = Collections.emptyIterator();
         }
 
         @Override
@@ -100,14 +238,33 @@ public class HeapFile implements DbFile {
 
         @Override
         public Tuple next() throws DbException, TransactionAbortedException, NoSuchElementException {
-            //如果迭代器为空或者没有下一个元素了  抛出异常
-            if(iterator == null || !iterator.hasNext()){
+            //如果没有下一个元素了  抛出异常  当前页可能被谓词滤空  先用hasNext翻到有元组的页
+            if(!hasNext()){
                 throw new NoSuchElementException();
             }
             // 返回下一个元组
             return iterator.next();
         }
 
+        @Override
+        public TupleBatch nextBatch(TupleDesc td) throws DbException, TransactionAbortedException {
+            if(iterator==null){
+                return null;
+            }
+            //next()读到一半的页  剩下的元组逐个取
+            if(iterator.hasNext()){
+                return DbFileIterator.super.nextBatch(td);
+            }
+            while(whichPage< (heapFile.numPages()-1)){
+                whichPage++;
+                TupleBatch batch = getPageBatch(whichPage, td);
+                if(batch!=null && batch.size()>0){
+                    return batch;
+                }
+            }
+            return null;
+        }
+
         //从新开始
         @Override
         public void rewind() throws DbException, TransactionAbortedException {
@@ -117,9 +274,17 @@ public class HeapFile implements DbFile {
             open();
         }
 
+        private void unpin() {
+            if(pinned!=null){
+                Database.getBufferPool().unpinPage(tid, pinned);
+                pinned=null;
+            }
+        }
+
         @Override
         public void close() {
             iterator=null;
+            unpin();
         }
     }
 
@@ -132,8 +297,118 @@ public class HeapFile implements DbFile {
      */
     public HeapFile(File f, TupleDesc td) {
         // some code goes here
+        this(f, td, 0);
+    }
+
+    /**
+     * Constructs a heap file with its own page size. An empty file gets a
+     * header recording the page size; an existing file must have been
+     * created with the same page size.
+     *
+     * 页大小记在文件头里  之后只用HeapFile(File, TupleDesc)打开也能认出来
+     *
+     * @param f the file that stores the on-disk backing store for this heap file
+     * @param pageSize the page size of the table, see {@link PageFileHeader#isSupported};
+     *     0 to use the page size in the file header, or
+     *     {@link BufferPool#getPageSize()} for a file without header
+     * @throws IllegalArgumentException if the page size is not supported or
+     *     does not match the page size of the file
+     */
+    public HeapFile(File f, TupleDesc td, int pageSize) {
+        this(f, td, pageSize, null);
+    }
+
+    /**
+     * Constructs a heap file with its own page size and page layout. Both
+     * are recorded in the file header of an empty file; an existing file
+     * must have been created with the same ones.
+     *
+     * @param pageSize the page size of the table, 0 to use the one of the file
+     * @param layout the page layout of the table, null to use the one of the file
+     * @throws IllegalArgumentException if the page size is not supported or
+     *     the page size or layout does not match the file
+     * @see #HeapFile(File, TupleDesc, int)
+     */
+    public HeapFile(File f, TupleDesc td, int pageSize, PageLayout layout) {
+        this(f, td, pageSize, layout, null);
+    }
+
+    /**
+     * Constructs a heap file whose pages may be compressed. The compression
+     * is recorded in the file header of an empty file like the page size
+     * and layout; pages are compressed by {@link #writePage} and
+     * decompressed by {@link #readPage}, so the buffer pool only ever sees
+     * whole pages.
+     *
+     * 压缩的表在磁盘上更小  扫描读的字节更少  代价是每次读写页都要解压、压缩
+     * 适合扫描多、更新少的冷表
+     *
+     * @param compression the page compression of the table, null to use
+     *     the one of the file
+     * @throws IllegalArgumentException if the page size is not supported or
+     *     the page size, layout or compression does not match the file
+     * @see #HeapFile(File, TupleDesc, int, PageLayout)
+     * @see PageExtents
+     */
+    public HeapFile(File f, TupleDesc td, int pageSize, PageLayout layout, PageCompression compression) {
         this.file=f;
         this.td=td;
+        this.handle=new FileHandle(f);
+        PageFileHeader header;
+        try {
+            header=PageFileHeader.open(handle, pageSize, layout, compression);
+            this.pageSize=header.getPageSize();
+            this.extents=header.getCompression()==PageCompression.NONE ? null
+                    : new PageExtents(handle, this.pageSize, pageOffset(0));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read the header of "+f, e);
+        }
+        this.layout=header.getLayout();
+        this.compression=header.getCompression();
+        this.dictionary=openDictionary(f, td, layout);
+        this.freeSpace=new FreeSpaceMap(this);
+        this.zoneMap=new ZoneMap(this);
+    }
+
+    //有字典编码的列时打开字典  变长槽位的页按长度存字符串  不需要也不支持字典
+    private static StringDictionary openDictionary(File f, TupleDesc td, PageLayout layout) {
+        boolean any=false;
+        for(int i=0;i<td.numFields();i++){
+            any|=td.isDictionaryEncoded(i);
+        }
+        if(!any){
+            return null;
+        }
+        if(layout==PageLayout.SLOTTED){
+            throw new IllegalArgumentException("dictionary encoded fields need fixed-size slots, not layout "+layout);
+        }
+        try {
+            return new StringDictionary(f, td);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read the dictionary of "+f, e);
+        }
+    }
+
+    /**
+     * @return the side files kept next to the table file f: its
+     *     {@link ZoneMap} and {@link StringDictionary}
+     */
+    public static List<File> sideFiles(File f) {
+        return Arrays.asList(ZoneMap.sideFile(f), StringDictionary.sideFile(f));
+    }
+
+    /**
+     * Deletes the table file f and its side files when the virtual machine
+     * exits. What temporary tables use instead of {@link File#deleteOnExit()},
+     * which would leave the side files behind.
+     *
+     * 临时表的 .zm .dict 和表文件一起删掉
+     */
+    public static void deleteOnExit(File f) {
+        f.deleteOnExit();
+        for (File side : sideFiles(f)) {
+            side.deleteOnExit();
+        }
     }
 
     /**
@@ -174,6 +449,66 @@ public class HeapFile implements DbFile {
         return td;
     }
 
+    /**
+     * @return 文件头里的页大小  老文件返回BufferPool.getPageSize()
+     */
+    @Override
+    public int getPageSize() {
+        return pageSize>0 ? pageSize : BufferPool.getPageSize();
+    }
+
+    /**
+     * @return 文件头里的页格式  老文件返回FIXED
+     */
+    public PageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return 文件头里的压缩方式  老文件返回NONE
+     */
+    public PageCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return the dictionary of the dictionary encoded fields of this
+     *     table, or null if it has none
+     * @see TupleDesc#isDictionaryEncoded(int)
+     */
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return 表文件的字节数  压缩的表比页数*页大小小
+     */
+    public long getFileBytes() {
+        return handle.length();
+    }
+
+    /**
+     * 按这张表的页格式构造页
+     * @param data 页的数据  至少一页长  页要一直用它  不能再修改
+     */
+    TuplePage newPage(HeapPageId pid, ByteBuffer data) throws IOException {
+        if (layout == PageLayout.SLOTTED) {
+            return new SlottedHeapPage(pid, data);
+        }
+        if (layout == PageLayout.PAX) {
+            return new PaxHeapPage(pid, data);
+        }
+        return new HeapPage(pid, data);
+    }
+
+    /**
+     * @return 第pageNumber页在文件中的偏移  有文件头时文件头占第一页
+     */
+    long pageOffset(int pageNumber) {
+        int size=getPageSize();
+        return ((long) pageNumber + (pageSize>0 ? 1 : 0))*size;
+    }
+
     // see DbFile.java for javadocs
     public Page readPage(PageId pid) {
         // some code goes here
@@ -181,38 +516,95 @@ public class HeapFile implements DbFile {
         int tableId = pid.getTableId();
         //此页位置  页码pid.pno
         int pageNumber = pid.getPageNumber();
-        // 随机访问,指针偏移访问
-        RandomAccessFile p=null;
+        if(extents!=null){
+            return readCompressed(pid, null);
+        }
+        //重构：原来每读一页都new一个RandomAccessFile再关掉  现在用长期打开的FileChannel按位置读
+        //如果当前页码 超出了文件总长度 则抛出异常
+        int size = getPageSize();
+        if(pageNumber<0 || pageOffset(pageNumber)+size>handle.length()){
+            throw new IllegalArgumentException(String.format("表 %d 页%d 不存在",tableId,pageNumber));
+        }
+        //准备一个字节数组用于读取页
+        byte[] bytes = new byte[size];
         try{
-            //读取当前文件
-            //如果当前页码 超出了文件总长度 则抛出异常
-            p= new RandomAccessFile(file, "r");
-            if((pageNumber+1.0)*BufferPool.getPageSize()>file.length()){
-                throw new IllegalArgumentException(String.format("表 %d 页%d 不存在",tableId,pageNumber));
+            //读取  如果读取的数量少了  说明不存在
+            int read = handle.read(bytes, pageOffset(pageNumber));
+            if(read<size){
+                throw new IllegalArgumentException(String.format("表%d 页%d 不存在",tableId,pageNumber));
             }
+            return newPage(new HeapPageId(tableId,pageNumber),ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("表%d 页%d 读取失败",tableId,pageNumber), e);
+        }
+    }
 
-            //准备一个字节数组用于读取页
-            //指针f偏移至页码位置  然后读取
-            byte[] bytes = new byte[BufferPool.getPageSize()];
-            p.seek((long) pageNumber *BufferPool.getPageSize());
-
-            //读取  如果读取的数量少了  说明不存在
-            int read = p.read(bytes, 0, BufferPool.getPageSize());//返回读取的数量
-            if(read<BufferPool.getPageSize()){
+    /**
+     * 直接从文件读进缓冲池的堆外页框  页就是页框上的视图  不再经过byte[]
+     */
+    @Override
+    public Page readPage(PageId pid, ByteBuffer frame) {
+        if(extents!=null){
+            return readCompressed(pid, frame);
+        }
+        int tableId = pid.getTableId();
+        int pageNumber = pid.getPageNumber();
+        int size = getPageSize();
+        if(pageNumber<0 || pageOffset(pageNumber)+size>handle.length()){
+            throw new IllegalArgumentException(String.format("表 %d 页%d 不存在",tableId,pageNumber));
+        }
+        try{
+            int read = handle.read(frame, pageOffset(pageNumber));
+            if(read<size){
                 throw new IllegalArgumentException(String.format("表%d 页%d 不存在",tableId,pageNumber));
             }
-            return new HeapPage(new HeapPageId(tableId,pageNumber),bytes);
+            frame.flip();
+            return newPage(new HeapPageId(tableId,pageNumber),frame);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("表%d 页%d 读取失败",tableId,pageNumber), e);
+        }
+    }
+
+    /**
+     * 从区段读出一页解压  有页框时解压后拷进页框
+     */
+    private TuplePage readCompressed(PageId pid, ByteBuffer frame) {
+        int tableId = pid.getTableId();
+        int pageNumber = pid.getPageNumber();
+        byte[] bytes = new byte[getPageSize()];
+        try{
+            if(!extents.read(pageNumber, bytes)){
+                throw new IllegalArgumentException(String.format("表 %d 页%d 不存在",tableId,pageNumber));
+            }
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            if(frame!=null){
+                frame.clear();
+                frame.put(bytes);
+                frame.flip();
+                data = frame;
+            }
+            return newPage(new HeapPageId(tableId,pageNumber),data);
         } catch (IOException e) {
-            e.printStackTrace();
-        } finally {
-            //关闭流
-            try {
-                p.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            throw new IllegalArgumentException(String.format("表%d 页%d 读取失败",tableId,pageNumber), e);
+        }
+    }
+
+    /**
+     * 把data里从第first页开始的n个页写进文件  压缩的表逐页压缩后写进区段
+     */
+    private void writeRaw(int first, byte[] data, int n) throws IOException {
+        //页上的字典编码先持久化
+        if(dictionary!=null){
+            dictionary.flush();
+        }
+        int pageSize = getPageSize();
+        if(extents!=null){
+            for(int i=0;i<n;i++){
+                extents.write(first+i, data, i*pageSize);
             }
+            return;
         }
-        throw new IllegalArgumentException(String.format("表%d 页%d 不存在",tableId,pageNumber));
+        handle.write(data.length==n*pageSize ? data : Arrays.copyOf(data, n*pageSize), pageOffset(first));
     }
 
     // see DbFile.java for javadocs
@@ -224,12 +616,62 @@ public class HeapFile implements DbFile {
         if(pageNo>numPages()){
             throw new IllegalArgumentException("page is not in the heap file or page id is wrong");
         }
-        //然后写
-        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
-        randomAccessFile.seek(pageNo * BufferPool.getPageSize());
-        byte[] pageData = page.getPageData();
-        randomAccessFile.write(pageData);
-        randomAccessFile.close();
+        //然后写  按位置写  不移动文件指针
+        writeRaw(pageNo, page.getPageData(), 1);
+        zoneMap.add((TuplePage) page);
+    }
+
+    /**
+     * 写多页  页号连续时拼成一次写  否则逐页写
+     */
+    @Override
+    public void writePages(List<Page> pages) throws IOException {
+        int first = pages.get(0).getId().getPageNumber();
+        for (int i = 1; i < pages.size(); i++) {
+            if (pages.get(i).getId().getPageNumber() != first + i) {
+                for (Page page : pages) {
+                    writePage(page);
+                }
+                return;
+            }
+        }
+        if (first + pages.size() - 1 > numPages()) {
+            throw new IllegalArgumentException("page is not in the heap file or page id is wrong");
+        }
+        int pageSize = getPageSize();
+        byte[] data = new byte[pages.size() * pageSize];
+        for (int i = 0; i < pages.size(); i++) {
+            System.arraycopy(pages.get(i).getPageData(), 0, data, i * pageSize, pageSize);
+        }
+        writeRaw(first, data, pages.size());
+        for (Page page : pages) {
+            zoneMap.add((TuplePage) page);
+        }
+    }
+
+    /**
+     * 关闭长期打开的文件句柄  之后再读写时会重新打开
+     */
+    @Override
+    public void close() throws IOException {
+        if(dictionary!=null){
+            dictionary.flush();
+        }
+        handle.close();
+    }
+
+    /**
+     * @return 这张表的空闲空间表
+     */
+    public FreeSpaceMap getFreeSpaceMap() {
+        return freeSpace;
+    }
+
+    /**
+     * @return 这张表的zone map
+     */
+    public ZoneMap getZoneMap() {
+        return zoneMap;
     }
 
     /**
@@ -239,7 +681,11 @@ public class HeapFile implements DbFile {
     public int numPages() {
         // some code goes here
         // 文件长度 / 每页的字节数
-        return (int) Math.floor(file.length()*1.0/BufferPool.getPageSize());
+        //通道打开时直接取通道的大小  文件头不算
+        if(extents!=null){
+            return extents.numPages();
+        }
+        return (int) (Math.max(0, handle.length()-pageOffset(0))/getPageSize());
     }
 
     // see DbFile.java for javadocs
@@ -253,24 +699,118 @@ public class HeapFile implements DbFile {
         //否则缓冲区去进行读取 然后再返回
         BufferPool bufferPool = Database.getBufferPool();
         int tableid=getId();
-        //遍历所有的页 查看是否可写
-        for(int i=0;i<numPages();i++){
-            HeapPage page = (HeapPage)bufferPool.getPage(tid, new HeapPageId(tableid, i), Permissions.READ_WRITE);
-            if(page.getNumEmptySlots() > 0){
-                page.insertTuple(t);
-                page.markDirty(true,tid);
-                list.add(page);
-                return list;
+        //由空闲空间表给出可能有空槽的页  只取这一页
+        //空闲空间表只是提示  取出来发现满了就清掉这一位再找下一页
+        //没有页有空槽时在文件末尾追加一个空页  再和已有的页一样经过缓冲池插入
+        //新页上的元组只在缓冲池的脏页里  回滚时和别的脏页一起丢掉  文件里留下的是空页
+        while(true){
+            int pgNo=freeSpace.findFree();
+            if(pgNo<0){
+                pgNo=appendEmptyPages(1);
+            }
+            TuplePage page = (TuplePage)bufferPool.getPage(tid, new HeapPageId(tableid, pgNo), Permissions.READ_WRITE);
+            try{
+                if(page.getNumEmptySlots() > 0){
+                    page.insertTuple(t);
+                    zoneMap.update(page, t);
+                    page.markDirty(true,tid);
+                    list.add(page);
+                    return list;
+                }
+            }finally{
+                //标脏之后就放开  未提交的脏页本来就不会被淘汰
+                bufferPool.unpinPage(tid, page.getId());
+                //插满了就不再作为插入目标
+                freeSpace.update(pgNo, page.getNumEmptySlots()>0);
             }
         }
+        // not necessary for lab1
+    }
 
-        //如果 没有页有空槽 则创建新页
-        HeapPage page = new HeapPage(new HeapPageId(tableid, numPages()), HeapPage.createEmptyPageData());
-        page.insertTuple(t);
-        writePage(page);
-        list.add(page);
+    /**
+     * 在文件末尾追加n个空页  占住它们的页号
+     * 在文件上同步  两个线程不会同时占用同一个新页号
+     * @return 第一个新页的页号
+     */
+    private synchronized int appendEmptyPages(int n) throws IOException {
+        int first=numPages();
+        writeRaw(first, new byte[n*getPageSize()], n);
+        return first;
+    }
+
+    /**
+     * 批量插入
+     *
+     * insertTuple每插一行都要查一次空闲空间表、取一次页、标一次脏
+     * 这里按顺序把一页填满再换下一页  每页只取一次(一次加锁)、标一次脏
+     * 已有的页都填满之后  新页在内存里填好  每APPEND_BATCH页在文件末尾一次追加同样多的空页占住页号
+     *
+     * 新页和修改过的已有页一样在返回的列表里  由缓冲池作为这个事务的脏页放进缓存
+     * 提交之后才写回  回滚时丢掉  文件里留下的是空页
+     * 和逐行插入一样  一个事务插入的页要放得进缓冲池(NO STEAL)
+     *
+     * @return 修改过的已有页和新页  每页只出现一次
+     */
+    @Override
+    public List<Page> insertTuples(TransactionId tid, Iterator<Tuple> tuples)
+            throws DbException, IOException, TransactionAbortedException {
+        List<Page> list = new ArrayList<>();
+        BufferPool bufferPool = Database.getBufferPool();
+        int tableid=getId();
+        //1.先填已有页的空槽
+        int pgNo;
+        while(tuples.hasNext() && (pgNo=freeSpace.findFree())>=0){
+            TuplePage page = (TuplePage)bufferPool.getPage(tid, new HeapPageId(tableid, pgNo), Permissions.READ_WRITE);
+            boolean modified=false;
+            try{
+                while(page.getNumEmptySlots()>0 && tuples.hasNext()){
+                    Tuple t=tuples.next();
+                    page.insertTuple(t);
+                    zoneMap.update(page, t);
+                    modified=true;
+                }
+            }finally{
+                //中途出错时已经插进去的元组也在页上  照样标脏  回滚时丢掉
+                if(modified){
+                    page.markDirty(true,tid);
+                    list.add(page);
+                }
+                bufferPool.unpinPage(tid, page.getId());
+                freeSpace.update(pgNo, page.getNumEmptySlots()>0);
+            }
+        }
+        if(!tuples.hasNext()){
+            return list;
+        }
+        //2.剩下的元组写进新页  文件里批量追加空页
+        int pageSize=getPageSize();
+        byte[] empty=new byte[APPEND_BATCH*pageSize];
+        synchronized (this) {
+            int first=numPages();
+            int n=0;
+            TuplePage page=null;
+            while(tuples.hasNext()){
+                page = newPage(new HeapPageId(tableid, first+n), ByteBuffer.wrap(HeapPage.createEmptyPageData(pageSize)));
+                while(page.getNumEmptySlots()>0 && tuples.hasNext()){
+                    page.insertTuple(tuples.next());
+                }
+                //新页的区间按整页算一次
+                zoneMap.add(page);
+                list.add(page);
+                n++;
+                if(n==APPEND_BATCH || !tuples.hasNext()){
+                    writeRaw(first, empty, n);
+                    for(int i=0;i<n;i++){
+                        freeSpace.update(first+i, false);
+                    }
+                    first+=n;
+                    n=0;
+                }
+            }
+            //只有最后一页可能没填满
+            freeSpace.update(page.getId().getPageNumber(), page.getNumEmptySlots()>0);
+        }
         return list;
-        // not necessary for lab1
     }
 
     // see DbFile.java for javadocs
@@ -280,10 +820,13 @@ public class HeapFile implements DbFile {
         // some code goes here
         //在缓冲区取得 相应的所在页 然后标记为脏页并删除
         ArrayList<Page> list = new ArrayList<>();
-        HeapPage page = (HeapPage) Database.getBufferPool().getPage(tid, t.getRecordId().getPageId(), Permissions.READ_WRITE);
+        TuplePage page = (TuplePage) Database.getBufferPool().getPage(tid, t.getRecordId().getPageId(), Permissions.READ_WRITE);
         page.deleteTuple(t);
 
         page.markDirty(true,tid);
+        Database.getBufferPool().unpinPage(tid, page.getId());
+        //空出了一个槽  之后的插入可以用这一页
+        freeSpace.update(page.getId().getPageNumber(), true);
 
         list.add(page);
         return list;
@@ -296,5 +839,37 @@ public class HeapFile implements DbFile {
         return new HeapFileIterator(this,tid);
     }
 
+    /**
+     * Returns an iterator over all the tuples of this file that decodes only
+     * some of their fields; the returned tuples have only those fields, with
+     * the TupleDesc {@code getTupleDesc().project(columns)}. A scan that
+     * needs a few columns of a wide table skips decoding (and, with
+     * {@link PageLayout#PAX}, even touching) the others.
+     *
+     * @param columns indexes of the fields to decode, in the order the
+     *     returned tuples have them, or null for all
+     * @see #iterator(TransactionId)
+     */
+    public DbFileIterator iterator(TransactionId tid, int[] columns) {
+        return new HeapFileIterator(this,tid,columns,null);
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file that satisfy all the
+     * given predicates. Pages whose {@link ZoneMap} zones rule out a
+     * predicate are skipped without being read through the buffer pool; on
+     * the other pages, predicates are tested on the raw page
+     * ({@link TuplePage#matches}) and only the tuples that pass them are
+     * built, with the fields in columns.
+     *
+     * @param columns indexes of the fields to decode, or null for all
+     * @param predicates predicates on fields of this file, or null for none
+     * @see #iterator(TransactionId, int[])
+     */
+    @Override
+    public DbFileIterator iterator(TransactionId tid, int[] columns, Predicate[] predicates) {
+        return new HeapFileIterator(this,tid,columns,predicates);
+    }
+
 }
 
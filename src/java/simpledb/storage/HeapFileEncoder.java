@@ -1,9 +1,12 @@
 package simpledb.storage;
 
+import simpledb.common.DbException;
 import simpledb.common.Type;
 import simpledb.common.Utility;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -84,7 +87,10 @@ public class HeapFileEncoder {
     * @see HeapFile
     * @param inFile The input file to read data from
     * @param outFile The output file to write data to
-    * @param npagebytes The number of bytes per page in the output file
+    * @param npagebytes The number of bytes per page in the output file. A
+    *   file whose page size differs from {@link BufferPool#getPageSize()}
+    *   starts with a header recording it, see {@link PageFileHeader}; page
+    *   sizes the header does not support are written without one.
     * @param numFields the number of fields in each input line/output tuple
     * @throws IOException if the input/output file can't be opened or a
     *   malformed input line is encountered
@@ -92,10 +98,70 @@ public class HeapFileEncoder {
   public static void convert(File inFile, File outFile, int npagebytes,
                  int numFields, Type[] typeAr, char fieldSeparator)
       throws IOException {
+      convert(inFile,outFile,npagebytes,numFields,typeAr,null,fieldSeparator);
+  }
+
+   /** Convert the specified input text file into a binary page file for a
+    * table with nullable fields. A field that is nullable in nullableAr is
+    * NULL if its text is \N, or empty for a non-string field; each record
+    * then starts with a null bitmap, see {@link HeapPage}.
+    *
+    * @param nullableAr which fields are nullable, or null if none is; see
+    *   {@link TupleDesc#TupleDesc(Type[], String[], boolean[])}
+    * @see #convert(File, File, int, int, Type[], char)
+    */
+  public static void convert(File inFile, File outFile, int npagebytes,
+                 int numFields, Type[] typeAr, boolean[] nullableAr, char fieldSeparator)
+      throws IOException {
+      convert(inFile,outFile,npagebytes,numFields,typeAr,nullableAr,null,fieldSeparator);
+  }
+
+   /** Convert the specified input text file into a binary page file for a
+    * table with dictionary encoded string fields. Their values are added to
+    * the dictionary side file of outFile, which is created anew, and each
+    * record stores their 2-byte codes; see {@link StringDictionary}.
+    *
+    * @param dictionaryAr which fields are dictionary encoded, or null if
+    *   none is; see {@link TupleDesc#TupleDesc(Type[], String[], boolean[], boolean[])}
+    * @throws IOException also if a field has more distinct values than a
+    *   dictionary can hold
+    * @see #convert(File, File, int, int, Type[], boolean[], char)
+    */
+  public static void convert(File inFile, File outFile, int npagebytes,
+                 int numFields, Type[] typeAr, boolean[] nullableAr, boolean[] dictionaryAr,
+                 char fieldSeparator)
+      throws IOException {
+
+      //字典编码的列只写编码  旧的字典文件和旧的表文件一起作废
+      TupleDesc td = new TupleDesc(typeAr, null, nullableAr, dictionaryAr);
+      StringDictionary dictionary = null;
+      if (dictionaryAr != null) {
+          Files.deleteIfExists(StringDictionary.sideFile(outFile).toPath());
+          dictionary = new StringDictionary(outFile, td);
+      }
+
+      //每页每个定长列的最小值、最大值  最后写成 .zm 文件  见ZoneMap
+      int[] zoned = ZoneMap.zonedColumns(td);
+      int[] zoneOf = new int[numFields];
+      Arrays.fill(zoneOf, -1);
+      for (int k = 0; k < zoned.length; k++) {
+          zoneOf[zoned[k]] = k;
+      }
+      List<Field[]> mins = new ArrayList<>();
+      List<Field[]> maxs = new ArrayList<>();
+      Field[] pageMin = new Field[zoned.length];
+      Field[] pageMax = new Field[zoned.length];
 
-      int nrecbytes = 0;
+      //nullable字段在null bitmap中的位  和HeapPage一致
+      int[] nullBits = new int[numFields];
+      int nnullable = 0;
+      for (int i = 0; i < numFields ; i++) {
+          nullBits[i] = nullableAr != null && nullableAr[i] ? nnullable++ : -1;
+      }
+      int nnullbytes = (nnullable + 7) / 8;
+      int nrecbytes = nnullbytes;
       for (int i = 0; i < numFields ; i++) {
-          nrecbytes += typeAr[i].getLen();
+          nrecbytes += HeapPage.fieldLen(td, i);
       }
       int nrecords = (npagebytes * 8) /  (nrecbytes * 8 + 1);  //floor comes for free
       
@@ -106,8 +172,16 @@ public class HeapFileEncoder {
         nheaderbytes++;  //ceiling
     int nheaderbits = nheaderbytes * 8;
 
+    //页大小和默认的不同时写文件头  HeapFile打开时按文件头里的页大小读
+    //文件头不支持的页大小(不是4KB到64KB之间的2的幂)还和原来一样  不写文件头
+    byte[] fileHeader = npagebytes != BufferPool.getPageSize() && PageFileHeader.isSupported(npagebytes)
+            ? PageFileHeader.create(npagebytes) : null;
+
     BufferedReader br = new BufferedReader(new FileReader(inFile));
     FileOutputStream os = new FileOutputStream(outFile);
+    if (fileHeader != null) {
+        os.write(fileHeader);
+    }
 
     // our numbers probably won't be much larger than 1024 digits
     char[] buf = new char[1024];
@@ -121,6 +195,10 @@ public class HeapFileEncoder {
     DataOutputStream headerStream = new DataOutputStream(headerBAOS);
     ByteArrayOutputStream pageBAOS = new ByteArrayOutputStream(npagebytes);
     DataOutputStream pageStream = new DataOutputStream(pageBAOS);
+    //一条记录的字段  记录结束时跟在null bitmap后面写进页里
+    ByteArrayOutputStream recordBAOS = new ByteArrayOutputStream(nrecbytes);
+    DataOutputStream recordStream = new DataOutputStream(recordBAOS);
+    byte[] nulls = new byte[nnullbytes];
 
     boolean done = false;
     boolean first = true;
@@ -140,9 +218,26 @@ public class HeapFileEncoder {
             first = false;
         if (c == fieldSeparator || c == '\n' || c == '\r') {
             String s = new String(buf, 0, curpos);
-            if (typeAr[fieldNo] == Type.INT_TYPE) {
+            if (nullBits[fieldNo] >= 0 && (s.equals("\\N")
+                    || typeAr[fieldNo] != Type.STRING_TYPE && s.trim().isEmpty())) {
+                nulls[nullBits[fieldNo] / 8] |= 1 << (nullBits[fieldNo] % 8);
+                if (td.isDictionaryEncoded(fieldNo))
+                    recordStream.writeShort(0);
+                else
+                    NullField.of(typeAr[fieldNo]).serialize(recordStream);
+            }
+            else if (td.isDictionaryEncoded(fieldNo)) {
                 try {
-                    pageStream.writeInt(Integer.parseInt(s.trim()));
+                    recordStream.writeShort(dictionary.encode(fieldNo, s.trim()));
+                } catch (DbException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+            else if (typeAr[fieldNo] == Type.INT_TYPE) {
+                try {
+                    int v = Integer.parseInt(s.trim());
+                    recordStream.writeInt(v);
+                    ZoneMap.widen(pageMin, pageMax, zoneOf[fieldNo], new IntField(v));
                 } catch (NumberFormatException e) {
                     System.out.println ("BAD LINE : " + s);
                 }
@@ -153,14 +248,30 @@ public class HeapFileEncoder {
                 if (overflow < 0) {
                     s  = s.substring(0,Type.STRING_LEN);
                 }
-                pageStream.writeInt(s.length());
-                pageStream.writeBytes(s);
+                recordStream.writeInt(s.length());
+                recordStream.writeBytes(s);
                 while (overflow-- > 0)
-                    pageStream.write((byte)0);
+                    recordStream.write((byte)0);
+            }
+            else {
+                //long double date boolean  按类型解析文本再定长写出
+                try {
+                    Field f = typeAr[fieldNo].fromString(s);
+                    f.serialize(recordStream);
+                    ZoneMap.widen(pageMin, pageMax, zoneOf[fieldNo], f);
+                } catch (IllegalArgumentException e) {
+                    System.out.println ("BAD LINE : " + s);
+                }
             }
             curpos = 0;
-            if (c == '\n')
+            if (c == '\n') {
                 fieldNo = 0;
+                pageStream.write(nulls);
+                recordStream.flush();
+                recordBAOS.writeTo(pageStream);
+                recordBAOS.reset();
+                Arrays.fill(nulls, (byte) 0);
+            }
             else
                 fieldNo++;
             
@@ -219,9 +330,18 @@ public class HeapFileEncoder {
             
             recordcount = 0;
             npages++;
+            mins.add(pageMin);
+            maxs.add(pageMax);
+            pageMin = new Field[zoned.length];
+            pageMax = new Field[zoned.length];
         }
     }
     br.close();
     os.close();
+    if (dictionary != null) {
+        dictionary.flush();
+    }
+    //修改时间取写完之后的  HeapFile打开时能认出这个 .zm 文件
+    ZoneMap.write(ZoneMap.sideFile(outFile), outFile.lastModified(), td, zoned, mins, maxs);
   }
 }
@@ -4,20 +4,24 @@ import simpledb.common.Database;
 import simpledb.common.DbException;
 import simpledb.common.Debug;
 import simpledb.common.Catalog;
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
 import simpledb.transaction.TransactionId;
 
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Each instance of HeapPage stores data for one page of HeapFiles and 
- * implements the Page interface that is used by BufferPool.
+ * implements the Page interface that is used by BufferPool. This is the
+ * fixed-size slot layout, {@link PageLayout#FIXED}.
  *
  * @see HeapFile
  * @see BufferPool
  *
  */
-public class HeapPage implements Page {
+public class HeapPage implements TuplePage {
 
 
     final HeapPageId pid;//页id
@@ -26,11 +30,38 @@ public class HeapPage implements Page {
 
     final byte[] header;//头部数据 bitmap
     final int numSlots;//槽数，也就是行的数量
-
-    final Tuple[] tuples;//元组数据
+    //页大小  每张表可以不同  从目录里查
+    private final int pageSize;
+
+    //重构：原来构造时把每个槽位都解码成Tuple  现在只保留原始的页数据  用到哪个字段解码哪个
+    //原始页数据  只读  从不修改  没被改过的槽位直接从这里解码
+    private final ByteBuffer raw;
+    //每个字段在元组内的偏移  在null bitmap之后
+    private final int[] fieldOffsets;
+    //每个槽位的字节数  = null bitmap + 所有字段
+    private final int tupleSize;
+    //nullable字段在null bitmap中的位  其它字段为-1
+    private final int[] nullBits;
+    //字典编码的列  页里存的是编码  没有字典编码的列时为null
+    private final boolean[] encoded;
+    //表的字典  没有字典编码的列时为null
+    private final StringDictionary dictionary;
+
+    //插入到本页的元组；null表示空槽位  或者槽位的数据还在raw里没有物化
+    //重构：第一次插入时才分配  只读的页(尤其是堆外页框上的视图)不再为每个槽位带一个引用
+    Tuple[] tuples;//元组数据
+
+    //空槽数  随markSlotUsed维护  不用每次数一遍bitmap
+    private int numEmpty;
+    //比它小的槽位都已被使用  插入从这里开始找空槽
+    private int freeHint;
+    //插入到本页、还留在tuples里的元组占用的堆内存  随insertTuple/deleteTuple维护
+    private long insertedBytes;
 
     byte[] oldData;
-    private final Byte oldDataLock= (byte) 0;
+    //还没调用过setBeforeImage时  修改前的镜像就是原始页数据  用到时才生成byte[]
+    private ByteBuffer oldDataBuffer;
+    private final Object oldDataLock = new Object();
 
     private TransactionId tid;//事务id       记录最后一次脏页的tid 当冲突时 先将脏页写走 再进行修改
     private boolean dirty;//判断是否为脏页
@@ -40,39 +71,144 @@ public class HeapPage implements Page {
      * The format of a HeapPage is a set of header bytes indicating
      * the slots of the page that are in use, some number of tuple slots.
      *  Specifically, the number of tuples is equal to: <p>
-     *          floor((BufferPool.getPageSize()*8) / (tuple size * 8 + 1))
+     *          floor((page size*8) / (tuple size * 8 + 1))
      * <p> where tuple size is the size of tuples in this
-     * database table, which can be determined via {@link Catalog#getTupleDesc}.
+     * database table, which can be determined via {@link Catalog#getTupleDesc},
+     * and page size is the page size of the table, {@link Catalog#getPageSize}.
+     * If the table has nullable fields, each slot starts with a null bitmap
+     * of {@link TupleDesc#getNullBitmapSize()} bytes, which is counted in the
+     * tuple size here. A dictionary encoded field takes only the 2 bytes of
+     * its code, see {@link StringDictionary}.
      * The number of 8-bit header words is equal to:
      * <p>
      *      ceiling(no. tuple slots / 8)
      * <p>
      * @see Database#getCatalog
      * @see Catalog#getTupleDesc
-     * @see BufferPool#getPageSize()
+     * @see Catalog#getPageSize
      */
     public HeapPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a HeapPage straight from a buffer holding the page, for example
+     * a slice of a memory-mapped file, without copying it into a byte array.
+     * <p>
+     * Only the header is read here. Fields are decoded from the buffer when
+     * they are asked for, and Tuple objects are created only by
+     * {@link #getTuple}, {@link #iterator} and friends. The buffer (or the
+     * array given to {@link #HeapPage(HeapPageId, byte[])}) must therefore
+     * stay unchanged while the page is alive; it also serves as the before
+     * image until {@link #setBeforeImage} is called.
+     *
+     * 只读出头部的bitmap  字段用到时才按TupleDesc算出偏移从buffer中解码
+     * 页没有被修改过时  修改前的镜像就是这段buffer本身  用到时才生成byte[]
+     *
+     * @see MappedHeapFile
+     */
+    public HeapPage(HeapPageId id, ByteBuffer data) throws IOException {
         this.pid = id;
         this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.pageSize = Database.getCatalog().getPageSize(id.getTableId());
+        this.tupleSize = tupleSize(td);
         this.numSlots = getNumTuples();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+        //末尾的填充可以省略  但头部和所有槽位必须完整
+        if (data.remaining() < getHeaderSize() + numSlots * tupleSize) {
+            throw new IOException("page data is shorter than its header and slots");
+        }
+        //slice之后下标从0开始  也不受调用方改position的影响
+        this.raw = data.slice();
 
         // allocate and read the header slots of this page
         header = new byte[getHeaderSize()];
         for (int i=0; i<header.length; i++)
-            header[i] = dis.readByte();
-        
-        tuples = new Tuple[numSlots];
-        try{
-            // allocate and read the actual records of this page
-            for (int i=0; i<tuples.length; i++)
-                tuples[i] = readNextTuple(dis,i);
-        }catch(NoSuchElementException e){
-            e.printStackTrace();
+            header[i] = raw.get(i);
+        //最后一个字节里超出numSlots的位不算
+        int used = 0;
+        for (int i=0; i<header.length; i++) {
+            int bits = header[i] & 0xff;
+            if (i == header.length-1 && numSlots % 8 != 0)
+                bits &= (1 << (numSlots % 8)) - 1;
+            used += Integer.bitCount(bits);
         }
-        dis.close();
+        numEmpty = numSlots - used;
+
+        fieldOffsets = new int[td.numFields()];
+        if (fieldOffsets.length > 0)
+            fieldOffsets[0] = td.getNullBitmapSize();
+        for (int j=1; j<fieldOffsets.length; j++)
+            fieldOffsets[j] = fieldOffsets[j-1] + fieldLen(td, j-1);
+        nullBits = nullBits(td);
+        encoded = encoded(td);
+        dictionary = encoded == null ? null : dictionary(id.getTableId());
+
+        this.oldDataBuffer = raw;
+    }
 
-        setBeforeImage();
+    /**
+     * @return for each field of td, its bit in the null bitmap of a tuple, or
+     *         -1 if the field is not nullable. Bit k is bit k%8 (lowest
+     *         first) of byte k/8.
+     */
+    static int[] nullBits(TupleDesc td) {
+        int[] bits = new int[td.numFields()];
+        int k = 0;
+        for (int j=0; j<bits.length; j++)
+            bits[j] = td.isNullable(j) ? k++ : -1;
+        return bits;
+    }
+
+    /**
+     * @return the number of bytes field i of td takes in a slot: a code for
+     *         a dictionary encoded field, the length of its type otherwise
+     */
+    static int fieldLen(TupleDesc td, int i) {
+        return td.isDictionaryEncoded(i) ? StringDictionary.CODE_LEN : td.getFieldType(i).getLen();
+    }
+
+    /**
+     * @return the number of bytes of a slot: the null bitmap and all fields
+     */
+    static int tupleSize(TupleDesc td) {
+        int size = td.getNullBitmapSize();
+        for (int j=0; j<td.numFields(); j++)
+            size += fieldLen(td, j);
+        return size;
+    }
+
+    //字典编码的列  一个都没有时返回null
+    private static boolean[] encoded(TupleDesc td) {
+        boolean[] encoded = null;
+        for (int j=0; j<td.numFields(); j++) {
+            if (td.isDictionaryEncoded(j)) {
+                if (encoded == null)
+                    encoded = new boolean[td.numFields()];
+                encoded[j] = true;
+            }
+        }
+        return encoded;
+    }
+
+    //字典跟着表文件  从目录里找到表
+    private static StringDictionary dictionary(int tableId) throws IOException {
+        DbFile file = Database.getCatalog().getDatabaseFile(tableId);
+        if (!(file instanceof HeapFile) || ((HeapFile) file).getDictionary() == null) {
+            throw new IOException("table " + tableId + " has dictionary encoded fields but no dictionary");
+        }
+        return ((HeapFile) file).getDictionary();
+    }
+
+    /**
+     * Checks that t has NULL only in fields that td declares nullable.
+     * @throws DbException if it does not
+     */
+    static void checkNulls(TupleDesc td, Tuple t) throws DbException {
+        for (int j=0; j<td.numFields(); j++) {
+            Field f = t.getField(j);
+            if (f != null && f.isNull() && !td.isNullable(j))
+                throw new DbException("field " + j + " is not nullable");
+        }
     }
 
     //返回一个页面有多少个元组
@@ -82,7 +218,7 @@ public class HeapPage implements Page {
     private int getNumTuples() {        
         // some code goes here
         //总字节数*8/(每条元组所占字节数*8+1)
-        return (int) Math.floor( BufferPool.getPageSize()*8* 1.0 / ((td.getSize()*8)+1));
+        return (int) Math.floor( pageSize*8* 1.0 / ((tupleSize*8)+1));
 
     }
 
@@ -103,11 +239,16 @@ public class HeapPage implements Page {
     public HeapPage getBeforeImage(){
         try {
             byte[] oldDataRef = null;
+            ByteBuffer oldDataBufferRef = null;
             synchronized(oldDataLock)
             {
                 oldDataRef = oldData;
+                oldDataBufferRef = oldDataBuffer;
+            }
+            if(oldDataRef == null){
+                return newImage(oldDataBufferRef);
             }
-            return new HeapPage(pid,oldDataRef);
+            return newImage(ByteBuffer.wrap(oldDataRef));
         } catch (IOException e) {
             e.printStackTrace();
             //should never happen -- we parsed it OK before!
@@ -119,7 +260,21 @@ public class HeapPage implements Page {
     public void setBeforeImage() {
         synchronized(oldDataLock)
         {
-        oldData = getPageData().clone();
+        //getPageData每次都返回新数组  不用再clone
+        oldData = getPageData();
+        oldDataBuffer = null;
+        }
+    }
+
+    //页框要给别的页用了  还是原始数据视图的镜像拷到堆上
+    public void keepBeforeImage() {
+        synchronized (oldDataLock) {
+            if (oldData == null && oldDataBuffer != null) {
+                byte[] copy = new byte[oldDataBuffer.remaining()];
+                oldDataBuffer.duplicate().get(copy);
+                oldData = copy;
+                oldDataBuffer = null;
+            }
         }
     }
 
@@ -132,38 +287,148 @@ public class HeapPage implements Page {
         return pid;
     }
 
+    //槽位slot在页中的起始偏移
+    private int slotOffset(int slot) {
+        return header.length + slot * tupleSize;
+    }
+
+    //以下几个方法决定槽位里的字节在页中的位置  PaxHeapPage按列重新排列
+
+    //构造同一格式的页  用于修改前的镜像
+    HeapPage newImage(ByteBuffer data) throws IOException {
+        return new HeapPage(pid, data);
+    }
+
+    //槽位slot的null bitmap在页中的偏移
+    int nullOffset(int slot) {
+        return slotOffset(slot);
+    }
+
+    //槽位slot的第i个字段在页中的偏移
+    int fieldOffset(int slot, int i) {
+        return slotOffset(slot) + fieldOffsets[i];
+    }
+
+    //把原始页数据中槽位slot的字节拷到dst的同一位置
+    void copySlot(int slot, byte[] dst) {
+        int off = slotOffset(slot);
+        copyRaw(off, dst, off, tupleSize);
+    }
+
+    //把序列化好的元组(null bitmap + 各字段)写到dst中槽位slot的位置
+    void writeSlot(int slot, byte[] tuple, byte[] dst) {
+        System.arraycopy(tuple, 0, dst, slotOffset(slot), tupleSize);
+    }
+
     /**
-     * Suck up tuples from the source file.
+     * Returns the value of one field of the tuple in a slot, decoding only
+     * that field. Lets a scan that needs a few columns skip building tuples.
+     *
+     * 只解码一个字段  不创建Tuple
+     *
+     * @param slot the slot of the tuple
+     * @param i index of the field in the TupleDesc
+     * @return the value of the field, or null if the slot is empty
      */
-    private Tuple readNextTuple(DataInputStream dis, int slotId) throws NoSuchElementException {
-        // if associated bit is not set, read forward to the next tuple, and
-        // return null.
-        if (!isSlotUsed(slotId)) {
-            for (int i=0; i<td.getSize(); i++) {
-                try {
-                    dis.readByte();
-                } catch (IOException e) {
-                    throw new NoSuchElementException("error reading empty tuple");
-                }
-            }
+    public Field getField(int slot, int i) {
+        if (!isSlotUsed(slot)) {
             return null;
         }
+        Tuple t = inserted(slot);
+        if (t != null) {
+            return t.getField(i);
+        }
+        return decodeField(slot, i);
+    }
 
-        // read fields in the tuple
-        Tuple t = new Tuple(td);
-        RecordId rid = new RecordId(pid, slotId);
-        t.setRecordId(rid);
-        try {
-            for (int j=0; j<td.numFields(); j++) {
-                Field f = td.getFieldType(j).parse(dis);
-                t.setField(j, f);
+    //插入到槽位slot的元组  没有时返回null
+    private Tuple inserted(int slot) {
+        return tuples == null ? null : tuples[slot];
+    }
+
+    /**
+     * INT字段和INT常量比较时直接读页里的4个字节  不创建IntField
+     * 其他类型、NULL、刚插入还在内存里的元组照常解码字段再比较
+     */
+    @Override
+    public boolean matches(int slot, Predicate p) {
+        int i = p.getField();
+        if (td.getFieldType(i) == Type.INT_TYPE && p.getOperand() instanceof IntField
+                && inserted(slot) == null && !isNull(slot, i)) {
+            return p.filter(raw.getInt(fieldOffset(slot, i)));
+        }
+        return p.filter(getField(slot, i));
+    }
+
+    /**
+     * INT字段直接把页里的4个字节读进批的int数组  不创建IntField
+     * 刚插入还在内存里的元组照常取字段
+     */
+    @Override
+    public void readInto(int slot, TupleBatch batch, int row, int[] columns) {
+        if (inserted(slot) != null) {
+            TuplePage.super.readInto(slot, batch, row, columns);
+            return;
+        }
+        int n = columns == null ? td.numFields() : columns.length;
+        for (int k = 0; k < n; k++) {
+            int i = columns == null ? k : columns[k];
+            if (td.getFieldType(i) != Type.INT_TYPE) {
+                batch.setField(row, i, decodeField(slot, i));
+            } else if (isNull(slot, i)) {
+                batch.setField(row, i, null);
+            } else {
+                batch.setInt(row, i, raw.getInt(fieldOffset(slot, i)));
             }
+        }
+    }
+
+    //原始页数据中槽位slot的第i个字段是否为NULL
+    private boolean isNull(int slot, int i) {
+        int bit = nullBits[i];
+        return bit >= 0 && (raw.get(nullOffset(slot) + bit / 8) & (1 << (bit % 8))) != 0;
+    }
+
+    private Field decodeField(int slot, int i) {
+        if (isNull(slot, i)) {
+            return NullField.of(td.getFieldType(i));
+        }
+        if (encoded != null && encoded[i]) {
+            //只读2字节的编码  返回字典里的共享对象
+            return dictionary.decode(i, raw.getShort(fieldOffset(slot, i)) & 0xffff);
+        }
+        try {
+            return td.getFieldType(i).parse(raw, fieldOffset(slot, i));
         } catch (java.text.ParseException e) {
             e.printStackTrace();
             throw new NoSuchElementException("parsing error!");
         }
+    }
+
+    /**
+     * Returns the tuple in a slot. Tuples that are only in the raw page data
+     * are decoded into a new Tuple on every call.
+     *
+     * 物化一个槽位的元组  原始数据中的元组不缓存在页里  用完就可以被回收
+     *
+     * @param slot the slot of the tuple
+     * @return the tuple, or null if the slot is empty
+     */
+    public Tuple getTuple(int slot) {
+        if (!isSlotUsed(slot)) {
+            return null;
+        }
+        Tuple t = inserted(slot);
+        return t != null ? t : decodeTuple(slot);
+    }
 
-        return t;
+    //从原始页数据解码一个元组
+    private Tuple decodeTuple(int slot) {
+        Field[] fields = new Field[fieldOffsets.length];
+        for (int j=0; j<fields.length; j++) {
+            fields[j] = decodeField(slot, j);
+        }
+        return new Tuple(td, fields, new RecordId(pid, slot));
     }
 
     /**
@@ -178,64 +443,71 @@ public class HeapPage implements Page {
      * @return A byte array correspond to the bytes of this page.
      */
     public byte[] getPageData() {
-        int len = BufferPool.getPageSize();
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
-        DataOutputStream dos = new DataOutputStream(baos);
+        int len = pageSize;
+        //新数组全为0  空槽位和末尾的填充不用再写
+        byte[] data = new byte[len];
 
         // create the header of the page
-        for (byte b : header) {
-            try {
-                dos.writeByte(b);
-            } catch (IOException e) {
-                // this really shouldn't happen
-                e.printStackTrace();
-            }
-        }
+        System.arraycopy(header, 0, data, 0, header.length);
 
         // create the tuples
-        for (int i=0; i<tuples.length; i++) {
+        ByteArrayOutputStream baos = null;
+        for (int i=0; i<numSlots; i++) {
 
             // empty slot
             if (!isSlotUsed(i)) {
-                for (int j=0; j<td.getSize(); j++) {
-                    try {
-                        dos.writeByte(0);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                continue;
+            }
 
-                }
+            // 还在原始数据里的元组直接拷贝字节
+            Tuple t = inserted(i);
+            if (t == null) {
+                copySlot(i, data);
                 continue;
             }
 
-            // non-empty slot
+            // inserted tuple
+            if (baos == null) {
+                baos = new ByteArrayOutputStream(tupleSize);
+            }
+            baos.reset();
+            DataOutputStream dos = new DataOutputStream(baos);
+            // null bitmap  NullField本身写的是0
+            byte[] nulls = new byte[td.getNullBitmapSize()];
+            for (int j=0; j<td.numFields(); j++) {
+                if (nullBits[j] >= 0 && t.getField(j).isNull())
+                    nulls[nullBits[j] / 8] |= 1 << (nullBits[j] % 8);
+            }
+            baos.write(nulls, 0, nulls.length);
             for (int j=0; j<td.numFields(); j++) {
-                Field f = tuples[i].getField(j);
+                Field f = t.getField(j);
                 try {
+                    if (encoded != null && encoded[j]) {
+                        //插入时已经编码过  这里只是查出来
+                        dos.writeShort(f.isNull() ? 0 : dictionary.lookup(j, ((StringField) f).getValue()));
+                        continue;
+                    }
                     f.serialize(dos);
-                
                 } catch (IOException e) {
+                    // this really shouldn't happen
                     e.printStackTrace();
                 }
             }
+            writeSlot(i, baos.toByteArray(), data);
         }
 
-        // padding
-        int zerolen = BufferPool.getPageSize() - (header.length + td.getSize() * tuples.length); //- numSlots * td.getSize();
-        byte[] zeroes = new byte[zerolen];
-        try {
-            dos.write(zeroes, 0, zerolen);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        return data;
+    }
 
-        try {
-            dos.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+    //从原始页数据的from处拷贝len个字节
+    void copyRaw(int from, byte[] dst, int dstOff, int len) {
+        if (raw.hasArray()) {
+            System.arraycopy(raw.array(), raw.arrayOffset() + from, dst, dstOff, len);
+        } else {
+            ByteBuffer b = raw.duplicate();
+            b.position(from);
+            b.get(dst, dstOff, len);
         }
-
-        return baos.toByteArray();
     }
 
     /**
@@ -252,6 +524,16 @@ public class HeapPage implements Page {
         return new byte[len]; //all 0
     }
 
+    /**
+     * Generates the bytes of an empty page of a table with its own page size.
+     *
+     * @param pageSize the page size of the table, see {@link DbFile#getPageSize()}
+     * @return The returned ByteArray.
+     */
+    public static byte[] createEmptyPageData(int pageSize) {
+        return new byte[pageSize]; //all 0
+    }
+
     /**
      * Delete the specified tuple from the page; the corresponding header bit should be updated to reflect
      *   that it is no longer stored on any page.
@@ -266,14 +548,15 @@ public class HeapPage implements Page {
         if(recordId!=null){
             PageId pageId = recordId.getPageId();
             int tupleno = recordId.getTupleNumber();
-            if(pageId.equals(pid)&& tupleno<numSlots && isSlotUsed(tupleno)){
-                //便利所有的bitmap  找到t 然后置为null并更改slot
-                for (int i = 0; i < numSlots; i++) {
-                    if(isSlotUsed(i) && t.equals(tuples[i])){
-                        markSlotUsed(i,false);
-                        tuples[i]=null;
-                        return;
+            if(pageId.equals(pid)&& tupleno>=0 && tupleno<numSlots && isSlotUsed(tupleno)){
+                //重构：元组不一定物化了  按RecordId直接找到槽位  比较内容后置为null并更改slot
+                if(t.equals(getTuple(tupleno))){
+                    markSlotUsed(tupleno,false);
+                    if(inserted(tupleno)!=null){
+                        insertedBytes-=tuples[tupleno].getRetainedSize();
+                        tuples[tupleno]=null;
                     }
+                    return;
                 }
             }
             throw new DbException("can't find tuple in the page");
@@ -285,7 +568,9 @@ public class HeapPage implements Page {
      * Adds the specified tuple to the page;  the tuple should be updated to reflect
      *  that it is now stored on this page.
      * @throws DbException if the page is full (no empty slots) or tupledesc
-     *         is mismatch.
+     *         is mismatch, or the tuple has NULL in a field that is not
+     *         nullable, or a new value does not fit into the dictionary of
+     *         a dictionary encoded field.
      * @param t The tuple to add.
      */
     public void insertTuple(Tuple t) throws DbException {
@@ -295,23 +580,54 @@ public class HeapPage implements Page {
         if(getNumEmptySlots()==0)throw new DbException("no empty slots");
         //2.判断插入的元组TupleDesc是否正确
         if(!t.getTupleDesc().equals(this.td))throw new DbException("no match tupleDesc");
+        checkNulls(td, t);
+        //字典编码的列先取得编码  新值在这里加入字典  字典满了插入失败
+        if (encoded != null) {
+            for (int j=0; j<encoded.length; j++) {
+                Field f = t.getField(j);
+                if (encoded[j] && !f.isNull())
+                    dictionary.encode(j, ((StringField) f).getValue());
+            }
+        }
         //3.搜索第一个未被使用的slot然后插入进去
-        for(int i=0;i<numSlots;i++){
+        //重构：从freeHint开始找  连续插满一页不再是O(槽数^2)
+        if(tuples==null){
+            tuples=new Tuple[numSlots];
+        }
+        for(int i=freeHint;i<numSlots;i++){
             if(!isSlotUsed(i)){
                 markSlotUsed(i,true);
                 tuples[i]=t;
                 //显然当插入元组后  应该设置元组的RecordId即位置 已知
                 tuples[i].setRecordId(new RecordId(pid,i));
+                insertedBytes+=t.getRetainedSize();
+                freeHint=i+1;
                 break;
             }
         }
     }
 
+    /**
+     * 原始页数据(映射文件和堆外页框上的页不在堆上  不算) + 头部、偏移数组、插入过元组时的槽位数组 + 插入的元组 + setBeforeImage生成的镜像
+     * 不遍历槽位  O(1)
+     */
+    @Override
+    public long getRetainedSize() {
+        long bytes = 64 + 48 + (raw.isDirect() ? 0 : raw.capacity())
+                + 16 + header.length + 16 + 4L * fieldOffsets.length
+                + (tuples == null ? 0 : 16 + 4L * numSlots) + insertedBytes;
+        byte[] old = oldData;
+        if (old != null) {
+            bytes += 16 + old.length;
+        }
+        return bytes;
+    }
+
     /**
      * Marks this page as dirty/not dirty and record that transaction
      * that did the dirtying
      */
-    public void markDirty(boolean dirty, TransactionId tid) {
+    public synchronized void markDirty(boolean dirty, TransactionId tid) {
         // some code goes here
 	// not necessary for lab1
         this.dirty=dirty;
@@ -321,7 +637,7 @@ public class HeapPage implements Page {
     /**
      * Returns the tid of the transaction that last dirtied this page, or null if the page is not dirty
      */
-    public TransactionId isDirty() {
+    public synchronized TransactionId isDirty() {
         // some code goes here
 	// Not necessary for lab1
         if(dirty){
@@ -330,18 +646,33 @@ public class HeapPage implements Page {
         return null;
     }
 
+    /**
+     * 后台写回完成后调用  和markDirty在同一把锁内检查  写的过程中被别的事务改过的页不会被标为干净
+     */
+    @Override
+    public synchronized boolean markClean(TransactionId tid) {
+        if (!dirty || tid == null || !tid.equals(this.tid)) {
+            return false;
+        }
+        dirty = false;
+        this.tid = null;
+        return true;
+    }
+
+    /**
+     * Returns the number of slots on this page.
+     */
+    @Override
+    public int getNumSlots() {
+        return numSlots;
+    }
+
     /**
      * Returns the number of empty slots on this page.
      */
     public int getNumEmptySlots() {
         // some code goes here
-        int i=0,sum=0;
-        for(;i<numSlots;i++){
-            int slot=i/8;
-            int move=i%8;
-            sum+=((header[slot]>>move) & 1)==0? 1 : 0;//对于每个slot我们从右到左使用！！！
-        }
-        return sum;
+        return numEmpty;
     }
 
     /**
@@ -371,6 +702,13 @@ public class HeapPage implements Page {
         // 掩码  //对于每个slot我们从右到左使用！！！
        // byte mask = (byte) (1 << (8-move));
         byte mask = (byte) (1 << move);
+        if(isSlotUsed(i)==value){
+            return;
+        }
+        numEmpty += value ? -1 : 1;
+        if(!value && i<freeHint){
+            freeHint=i;
+        }
         // 更新槽位
         if(value){
             // 标记已被使用，更新 0 为 1
@@ -388,15 +726,40 @@ public class HeapPage implements Page {
      */
     public Iterator<Tuple> iterator() {
         // some code goes here
-        // 获取已使用的槽对应的数
-        ArrayList<Tuple> res = new ArrayList<>();
-        for (int i = 0; i < numSlots; i++) {
-            if(isSlotUsed(i)){
-                res.add(tuples[i]);
+        //重构：原来先把所有已使用槽位的元组放进ArrayList  现在next()时才物化
+        //创建迭代器时记下bitmap和已物化的元组  之后页被修改也不影响这次迭代(和原来返回快照的行为一致)
+        final byte[] usedSnapshot = header.clone();
+        final Tuple[] tupleSnapshot = tuples == null ? null : tuples.clone();
+        return new Iterator<Tuple>() {
+            private int slot = advance(0);
+
+            //从i开始找下一个已使用的槽位
+            private int advance(int i) {
+                while (i < numSlots && ((usedSnapshot[i / 8] >> (i % 8)) & 1) == 0) {
+                    i++;
+                }
+                return i;
             }
-        }
-        return res.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return slot < numSlots;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Tuple t = tupleSnapshot == null ? null : tupleSnapshot[slot];
+                if (t == null) {
+                    //快照时已使用但没物化的槽位  数据一定还在原始页数据里
+                    t = decodeTuple(slot);
+                }
+                slot = advance(slot + 1);
+                return t;
+            }
+        };
     }
 
 }
-
@@ -0,0 +1,54 @@
+package simpledb.storage;
+
+/**
+ * 最近最久未使用
+ *
+ * 带哨兵的双链表：哨兵之后是最近使用的页  哨兵之前(队尾)是最近最久未使用的页
+ * 和LRUCache一样命中要把页移到队头  所以命中也必须持有分片锁
+ */
+public class LRUPolicy implements ReplacementPolicy {
+
+    private final BufferFrame head = new BufferFrame(0, null);
+
+    public LRUPolicy() {
+        head.linkBefore(null);
+    }
+
+    @Override
+    public void recordInsert(BufferFrame frame, boolean scan) {
+        frame.linkBefore(head.next);
+    }
+
+    @Override
+    public void recordAccess(BufferFrame frame, boolean scan) {
+        //移动到队头
+        frame.unlink();
+        frame.linkBefore(head.next);
+    }
+
+    @Override
+    public void recordRemove(BufferFrame frame) {
+        frame.unlink();
+    }
+
+    @Override
+    public BufferFrame victim() {
+        BufferFrame tail = head.prev;
+        if (tail == head) {
+            return null;
+        }
+        tail.unlink();
+        return tail;
+    }
+
+    @Override
+    public void requeue(BufferFrame frame) {
+        //正在被使用  相当于最近用过
+        frame.linkBefore(head.next);
+    }
+
+    @Override
+    public boolean isAccessLockFree() {
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+package simpledb.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图(纳秒)  按HdrHistogram的思路分桶
+ *
+ * 每个2的幂区间[2^e, 2^(e+1))再等分成SUB_BUCKETS个桶  桶宽随数值增大  相对误差不超过1/SUB_BUCKETS
+ * 小于SUB_BUCKETS的值一个值一个桶
+ * 记录一次只是对一个桶做一次原子加  不加锁  不分配
+ * 读取(分位数、均值)时不和记录互斥  得到的是近似的快照
+ */
+public class LatencyHistogram {
+
+    //每个2的幂区间分成2^SUB_BITS个桶  相对误差约6%
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    //最大的long落在指数62的区间  桶号(62-SUB_BITS+1)*SUB_BUCKETS+(SUB_BUCKETS-1)
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return 桶里最小的值
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+    }
+
+    /**
+     * @return 桶里最大的值
+     */
+    static long upperBound(int bucket) {
+        return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * 记录一次耗时  负数按0记
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        sum.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return 平均耗时  没有记录时为0
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile 0到100
+     * @return 不小于percentile%记录的值(所在桶的上界  不超过最大值)  没有记录时为0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 清空  和并发的record之间不保证原子
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return 次数、均值、p50/p99/p99.9和最大值  单位微秒
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                getCount(), getMean() / 1e3, getValueAtPercentile(50) / 1e3,
+                getValueAtPercentile(99) / 1e3, getValueAtPercentile(99.9) / 1e3, getMax() / 1e3);
+    }
+}
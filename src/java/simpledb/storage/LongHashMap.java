@@ -0,0 +1,184 @@
+package simpledb.storage;
+
+import java.util.function.Consumer;
+
+/**
+ * key为long的开放寻址哈希表(线性探测)
+ *
+ * 和HashMap&lt;Long,V&gt;相比：查找和插入不需要把key装箱  也不为每个条目分配节点对象
+ * 删除用后移(backward shift)而不是墓碑  表里不会留下垃圾槽位
+ *
+ * 不是线程安全的  由调用方加锁；
+ * get可以在乐观读锁(StampedLock)下调用：读到不一致的数据时只会返回错误结果而不会抛异常  由调用方校验后重试
+ */
+public class LongHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * 键数组和值数组放在一起  扩容时一次替换  并发读取时不会拿到不配套的两个数组
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private Table table;
+    private int size;
+
+    public LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize 预计的条目数  装载因子不超过1/2
+     */
+    public LongHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        table = new Table(capacity);
+    }
+
+    //把64位key打散到低位
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * @return key对应的值  不存在返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Table t = table;
+        int i = slot(key, t.mask);
+        //最多探测整张表  并发修改时也不会死循环
+        for (int n = 0; n <= t.mask; n++) {
+            Object v = t.values[i];
+            if (v == null) {
+                return null;
+            }
+            if (t.keys[i] == key) {
+                return (V) v;
+            }
+            i = (i + 1) & t.mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param value 不能为null  null表示空槽位
+     * @return 原来的值  不存在返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        Table t = table;
+        int i = slot(key, t.mask);
+        while (t.values[i] != null) {
+            if (t.keys[i] == key) {
+                V old = (V) t.values[i];
+                t.values[i] = value;
+                return old;
+            }
+            i = (i + 1) & t.mask;
+        }
+        t.keys[i] = key;
+        t.values[i] = value;
+        size++;
+        if (size * 2 > t.keys.length) {
+            resize(t.keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return 被删除的值  不存在返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        Table t = table;
+        int i = slot(key, t.mask);
+        while (t.values[i] != null) {
+            if (t.keys[i] == key) {
+                V old = (V) t.values[i];
+                shiftBack(t, i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & t.mask;
+        }
+        return null;
+    }
+
+    /**
+     * 删除槽位hole  把后面探测链上的条目往前挪  保证每个条目从它的初始槽位出发仍然能找到
+     */
+    private static void shiftBack(Table t, int hole) {
+        int j = hole;
+        while (true) {
+            j = (j + 1) & t.mask;
+            if (t.values[j] == null) {
+                break;
+            }
+            int home = slot(t.keys[j], t.mask);
+            //home不在(hole, j]这个环形区间内时  条目j可以挪到hole
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                t.keys[hole] = t.keys[j];
+                t.values[hole] = t.values[j];
+                hole = j;
+            }
+        }
+        t.values[hole] = null;
+    }
+
+    private void resize(int capacity) {
+        Table old = table;
+        Table t = new Table(capacity);
+        for (int i = 0; i < old.values.length; i++) {
+            if (old.values[i] != null) {
+                int j = slot(old.keys[i], t.mask);
+                while (t.values[j] != null) {
+                    j = (j + 1) & t.mask;
+                }
+                t.keys[j] = old.keys[i];
+                t.values[j] = old.values[i];
+            }
+        }
+        table = t;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 遍历所有的值
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        Table t = table;
+        for (Object v : t.values) {
+            if (v != null) {
+                action.accept((V) v);
+            }
+        }
+    }
+
+    public void clear() {
+        table = new Table(MIN_CAPACITY);
+        size = 0;
+    }
+}
@@ -0,0 +1,190 @@
+package simpledb.storage;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure-Java codec for the LZ4 block format, used to compress the pages of
+ * tables with {@link PageCompression#LZ4}.
+ * <p>
+ * 只实现块格式(没有帧头、校验和)  压缩用单个哈希表的贪心匹配  和LZ4的快速模式是同一个思路
+ * 每个序列：1字节token(高4位字面量长度  低4位匹配长度-4)  长度为15时后面跟若干个255累加
+ * 然后是字面量  2字节小端的回溯偏移  最后一个序列只有字面量
+ * 按LZ4的约定  最后5个字节总是字面量  最后一个匹配在块尾12字节之前开始  所以输出能被其他LZ4实现解压
+ * <p>
+ * 页里大量的0(定长字符串的填充、空槽位)会变成很少几个长匹配
+ */
+public final class Lz4 {
+
+    //最短匹配
+    private static final int MIN_MATCH = 4;
+    //块尾总是字面量的字节数
+    private static final int LAST_LITERALS = 5;
+    //最后一个匹配至少在块尾这么多字节之前开始
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xffff;
+    private static final int HASH_LOG = 12;
+
+    private Lz4() {
+    }
+
+    /**
+     * @return 长度为n的数据压缩后最多占的字节数  不可压缩的数据会略微变长
+     */
+    public static int maxCompressedLength(int n) {
+        return n + n / 255 + 16;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | (b[i + 3] & 0xff) << 24;
+    }
+
+    private static int hash(int v) {
+        return (v * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    //长度超过15的部分  写成若干个255和一个余数
+    private static int writeLength(byte[] dst, int op, int len) {
+        while (len >= 255) {
+            dst[op++] = (byte) 255;
+            len -= 255;
+        }
+        dst[op++] = (byte) len;
+        return op;
+    }
+
+    /**
+     * Compresses src[0, n) into dst.
+     *
+     * @param dst at least {@link #maxCompressedLength}(n) bytes
+     * @return the number of bytes written to dst
+     */
+    public static int compress(byte[] src, int n, byte[] dst) {
+        int[] table = new int[1 << HASH_LOG];
+        Arrays.fill(table, -1);
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+        int limit = n - MF_LIMIT;
+        int matchLimit = n - LAST_LITERALS;
+        while (ip < limit) {
+            int seq = readInt(src, ip);
+            int h = hash(seq);
+            int ref = table[h];
+            table[h] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                ip++;
+                continue;
+            }
+            //向后延长匹配  再向前吞掉相同的字面量
+            int end = ip + MIN_MATCH;
+            int refEnd = ref + MIN_MATCH;
+            while (end < matchLimit && src[end] == src[refEnd]) {
+                end++;
+                refEnd++;
+            }
+            while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                ip--;
+                ref--;
+            }
+            int literals = ip - anchor;
+            int match = end - ip - MIN_MATCH;
+            int token = op++;
+            dst[token] = (byte) (Math.min(literals, 15) << 4 | Math.min(match, 15));
+            if (literals >= 15) {
+                op = writeLength(dst, op, literals - 15);
+            }
+            System.arraycopy(src, anchor, dst, op, literals);
+            op += literals;
+            int offset = ip - ref;
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            if (match >= 15) {
+                op = writeLength(dst, op, match - 15);
+            }
+            ip = end;
+            anchor = ip;
+        }
+        //最后一个序列只有字面量
+        int literals = n - anchor;
+        dst[op++] = (byte) (Math.min(literals, 15) << 4);
+        if (literals >= 15) {
+            op = writeLength(dst, op, literals - 15);
+        }
+        System.arraycopy(src, anchor, dst, op, literals);
+        return op + literals;
+    }
+
+    /**
+     * Decompresses src[0, srcLen) into exactly dst[0, dstLen).
+     *
+     * @throws IOException if src is not a valid block, or does not
+     *   decompress to dstLen bytes
+     */
+    public static void decompress(byte[] src, int srcLen, byte[] dst, int dstLen) throws IOException {
+        int ip = 0;
+        int op = 0;
+        while (true) {
+            if (ip >= srcLen) {
+                throw new IOException("truncated LZ4 block");
+            }
+            int token = src[ip++] & 0xff;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    if (ip >= srcLen) {
+                        throw new IOException("truncated LZ4 block");
+                    }
+                    b = src[ip++] & 0xff;
+                    literals += b;
+                } while (b == 255);
+            }
+            if (literals > srcLen - ip || literals > dstLen - op) {
+                throw new IOException("corrupt LZ4 block: literals out of bounds");
+            }
+            System.arraycopy(src, ip, dst, op, literals);
+            ip += literals;
+            op += literals;
+            if (ip == srcLen) {
+                break;
+            }
+            if (ip + 2 > srcLen) {
+                throw new IOException("truncated LZ4 block");
+            }
+            int offset = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+            ip += 2;
+            if (offset == 0 || offset > op) {
+                throw new IOException("corrupt LZ4 block: offset " + offset + " at " + op);
+            }
+            int match = token & 15;
+            if (match == 15) {
+                int b;
+                do {
+                    if (ip >= srcLen) {
+                        throw new IOException("truncated LZ4 block");
+                    }
+                    b = src[ip++] & 0xff;
+                    match += b;
+                } while (b == 255);
+            }
+            match += MIN_MATCH;
+            if (match > dstLen - op) {
+                throw new IOException("corrupt LZ4 block: match out of bounds");
+            }
+            int from = op - offset;
+            if (offset >= match) {
+                System.arraycopy(dst, from, dst, op, match);
+                op += match;
+            } else {
+                //和自己重叠的匹配(例如一串0)  只能逐字节复制
+                for (int i = 0; i < match; i++) {
+                    dst[op++] = dst[from++];
+                }
+            }
+        }
+        if (op != dstLen) {
+            throw new IOException("LZ4 block decompressed to " + op + " bytes, expected " + dstLen);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package simpledb.storage;
+
+import simpledb.common.DbException;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A read-only HeapFile whose pages are read from a memory-mapped view of the
+ * file instead of with a read call per page.
+ * <p>
+ * 用FileChannel.map把整个.dat文件映射到内存  readPage直接在映射区域上切出一页交给HeapPage解析
+ * 既没有每页一次的系统调用  也没有拷贝到byte[]  缺页由操作系统的页缓存负责
+ * 适合只读(或极少写)的分析表：缓冲池很小时  扫描大表基本都落在操作系统页缓存上
+ * <p>
+ * 文件按MAP_CHUNK分段映射(一次映射不能超过2GB)  每段是页大小的整数倍  所以一页不会跨段
+ * 有文件头(见PageFileHeader)时只映射文件头之后的部分
+ * 文件变长时(例如外部重新生成了表文件)  读到映射范围之外的页会重新映射
+ * <p>
+ * 只读：insertTuple、deleteTuple和writePage都会失败  压缩的表文件不能映射
+ * Java 8没有公开的unmap  close()只关闭通道  映射区域在buffer被回收时才释放
+ *
+ * @see HeapPage#HeapPage(HeapPageId, ByteBuffer)
+ */
+public class MappedHeapFile extends HeapFile {
+
+    /**
+     * 每段映射的最大字节数  会向下取整到页大小的整数倍
+     */
+    static final long MAP_CHUNK = 1L << 30;
+
+    /**
+     * 一次映射的结果  各段和总长度放在一起  重新映射时一次替换
+     */
+    private static final class Mapping {
+        final MappedByteBuffer[] segments;
+        final long chunk;
+        final long length;
+
+        Mapping(MappedByteBuffer[] segments, long chunk, long length) {
+            this.segments = segments;
+            this.chunk = chunk;
+            this.length = length;
+        }
+    }
+
+    private static final Mapping EMPTY = new Mapping(new MappedByteBuffer[0], 1, 0);
+
+    private volatile Mapping mapping = EMPTY;
+
+    public MappedHeapFile(File f, TupleDesc td) {
+        this(f, td, 0);
+    }
+
+    /**
+     * @param pageSize 表的页大小  见HeapFile#HeapFile(File, TupleDesc, int)
+     */
+    public MappedHeapFile(File f, TupleDesc td, int pageSize) {
+        this(f, td, pageSize, null);
+    }
+
+    /**
+     * @param layout 表的页格式  见HeapFile#HeapFile(File, TupleDesc, int, PageLayout)
+     */
+    public MappedHeapFile(File f, TupleDesc td, int pageSize, PageLayout layout) {
+        super(f, td, pageSize, layout);
+        //压缩的页不在固定的位置  也没法在映射区域上直接解析
+        if (getCompression() != PageCompression.NONE) {
+            throw new IllegalArgumentException("cannot map " + f + ": its pages are compressed");
+        }
+    }
+
+    /**
+     * 按文件当前长度重新映射  只在读到映射范围之外时调用
+     */
+    private synchronized Mapping remap(long needed) throws IOException {
+        Mapping m = mapping;
+        if (m.length >= needed) {
+            //其他线程已经重新映射过了
+            return m;
+        }
+        int pageSize = getPageSize();
+        //映射从第0页开始  长度不含文件头
+        long base = pageOffset(0);
+        long length = Math.max(0, handle.length() - base) / pageSize * pageSize;
+        long chunk = Math.max(pageSize, MAP_CHUNK / pageSize * pageSize);
+        int n = (int) ((length + chunk - 1) / chunk);
+        MappedByteBuffer[] segments = new MappedByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            long start = i * chunk;
+            segments[i] = handle.map(base + start, Math.min(chunk, length - start));
+        }
+        m = new Mapping(segments, chunk, length);
+        mapping = m;
+        return m;
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public Page readPage(PageId pid) {
+        int tableId = pid.getTableId();
+        int pageNumber = pid.getPageNumber();
+        int pageSize = getPageSize();
+        //相对于映射起点(第0页)的偏移
+        long offset = (long) pageNumber * pageSize;
+        try {
+            Mapping m = mapping;
+            if (pageNumber < 0 || offset + pageSize > m.length) {
+                m = remap(offset + pageSize);
+                if (pageNumber < 0 || offset + pageSize > m.length) {
+                    throw new IllegalArgumentException(String.format("表 %d 页%d 不存在", tableId, pageNumber));
+                }
+            }
+            //切出这一页  duplicate之后再改position/limit  不影响其他线程共用的段
+            ByteBuffer page = m.segments[(int) (offset / m.chunk)].duplicate();
+            int start = (int) (offset % m.chunk);
+            page.position(start);
+            page.limit(start + pageSize);
+            return newPage(new HeapPageId(tableId, pageNumber), page.slice());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("表%d 页%d 读取失败", tableId, pageNumber), e);
+        }
+    }
+
+    /**
+     * 映射区域本来就在堆外  直接切出一页  不用再拷进缓冲池的页框
+     */
+    @Override
+    public Page readPage(PageId pid, ByteBuffer frame) {
+        return null;
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public void writePage(Page page) throws IOException {
+        throw new IOException("MappedHeapFile is read-only");
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public void writePages(List<Page> pages) throws IOException {
+        throw new IOException("MappedHeapFile is read-only");
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public List<Page> insertTuple(TransactionId tid, Tuple t) throws DbException {
+        throw new DbException("MappedHeapFile is read-only");
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public List<Page> insertTuples(TransactionId tid, Iterator<Tuple> tuples) throws DbException {
+        throw new DbException("MappedHeapFile is read-only");
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public ArrayList<Page> deleteTuple(TransactionId tid, Tuple t) throws DbException {
+        throw new DbException("MappedHeapFile is read-only");
+    }
+
+    /**
+     * 丢掉映射并关闭通道  之后再读时重新映射
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            mapping = EMPTY;
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,98 @@
+package simpledb.storage;
+
+import simpledb.execution.Predicate;
+import simpledb.common.Type;
+
+import java.io.*;
+
+/**
+ * The SQL NULL of a type. There is one instance per type, see {@link #of}.
+ * <p>
+ * 原来没有办法表示缺失的值  装数据时只能放哨兵值  直方图和聚合都会被它带偏
+ * 和SQL一样：NULL和任何值(包括NULL)比较的结果都是unknown  所以compare总是返回false
+ * 过滤用Predicate.Op.IS_NULL / IS_NOT_NULL  聚合跳过NULL
+ * equals和hashCode只用于分组：同一类型的NULL是同一组
+ * <p>
+ * 只有TupleDesc里声明为nullable的列才能存NULL  见TupleDesc#isNullable
+ * 页里用每个元组的null bitmap记录  没有nullable列的表存储格式不变
+ */
+public final class NullField implements Field {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final NullField[] INSTANCES = new NullField[Type.values().length];
+
+    static {
+        for (Type type : Type.values()) {
+            INSTANCES[type.ordinal()] = new NullField(type);
+        }
+    }
+
+    private final Type type;
+
+    private NullField(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the NULL of type
+     */
+    public static NullField of(Type type) {
+        return INSTANCES[type.ordinal()];
+    }
+
+    //反序列化后仍然是同一个实例
+    private Object readResolve() {
+        return of(type);
+    }
+
+    @Override
+    public boolean isNull() {
+        return true;
+    }
+
+    public String toString() {
+        return "null";
+    }
+
+    public int hashCode() {
+        return type.ordinal() * 31 + 17;
+    }
+
+    public boolean equals(Object field) {
+        return field instanceof NullField && ((NullField) field).type == type;
+    }
+
+    /**
+     * Writes getLen() zero bytes, so that fixed-width slots keep their
+     * size; the null bitmap of the tuple tells that the value is missing.
+     */
+    public void serialize(DataOutputStream dos) throws IOException {
+        for (int i = 0; i < type.getLen(); i++)
+            dos.write(0);
+    }
+
+    /**
+     * 共享的实例  不算元组的内存
+     */
+    @Override
+    public long getRetainedSize() {
+        return 0;
+    }
+
+    /**
+     * Comparing NULL to anything is unknown, which filters treat as false.
+     *
+     * @see Field#compare
+     */
+    public boolean compare(Predicate.Op op, Field val) {
+        return false;
+    }
+
+    /**
+     * @return the type of the column this NULL is in
+     */
+    public Type getType() {
+        return type;
+    }
+}
@@ -35,6 +35,20 @@ public interface Page {
    */
   void markDirty(boolean dirty, TransactionId tid);
 
+  /**
+   * Mark this page clean after it was written out, but only if it is still
+   * dirtied by tid. If another transaction dirtied it again while it was
+   * being written, it stays dirty.
+   *
+   * @return true if the page was marked clean
+   */
+  default boolean markClean(TransactionId tid) {
+      if (tid == null || !tid.equals(isDirty()))
+          return false;
+      markDirty(false, null);
+      return true;
+  }
+
   /**
    * Generates a byte array representing the contents of this page.
    * Used to serialize this page to disk.
@@ -48,6 +62,19 @@ public interface Page {
 
   byte[] getPageData();
 
+  /**
+   * Approximate number of bytes this page keeps alive on the heap: its
+   * on-disk bytes plus any objects decoded from them. The buffer pool
+   * charges this against its byte budget when the page is cached, so a
+   * page should report its size after a modification by the time it is
+   * put back into the pool.
+   * <p>
+   * The default is the on-disk page size.
+   */
+  default long getRetainedSize() {
+      return BufferPool.getPageSize();
+  }
+
     /** Provide a representation of this page before any modifications were made
         to it.  Used by recovery.
     */
@@ -0,0 +1,145 @@
+package simpledb.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+
+/**
+ * 缓冲池的堆外页框
+ *
+ * 原来每读一页都new一个byte[]  缓存的页都是堆上的对象  缓冲池越大GC要扫描、搬动的就越多
+ * 现在页的原始数据放在堆外：按SLAB_BYTES一块向操作系统申请直接内存(ByteBuffer.allocateDirect)
+ * 每块切成若干个页框  每个页框BufferPool.getPageSize()字节
+ * 读页时直接从文件读进一个空闲页框(一次拷贝)  HeapPage只是这个页框上的视图  字段用到时才解码
+ *
+ * 页框的归属按页对象(identity)记录：
+ * 页放进缓存之前attach  页离开缓存(淘汰、丢弃、被另一个对象替换)或者没能放进缓存时release
+ * 页框回到空闲表后马上会被别的页复用  所以离开缓冲池的页不能再读
+ * 这一点靠钉住保证：页在getPage和unpinPage(或者事务结束)之间不会被淘汰
+ * 不属于任何事务的调用方读堆外的页时要用getPage(..., pin)显式钉住
+ * 修改前的镜像在页框放回之前拷到堆上(TuplePage#keepBeforeImage)  离开缓冲池之后也能读
+ *
+ * 页框总数有上限(缓冲池页数再多一点  留给并发读入和预读)  用完时allocate返回null  调用方退回堆上的byte[]
+ * 页框只有一种大小(默认页大小)  页大小不同的表(见PageFileHeader)的页也退回堆上
+ * 块只会增加不会归还  随缓冲池一起被回收
+ */
+public class PageArena {
+
+    /**
+     * 一次申请的直接内存大小
+     */
+    static final int SLAB_BYTES = 64 << 20;
+
+    private final int frameSize;
+    private final int maxFrames;
+    private final int framesPerSlab;
+
+    //当前正在切分的块和下一个页框的下标
+    private ByteBuffer slab;
+    private int slabNext;
+    //已经切出来的页框数
+    private int frames;
+
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    //页对象 -> 它所在的页框
+    private final IdentityHashMap<Page, ByteBuffer> attached = new IdentityHashMap<>();
+
+    /**
+     * @param frameSize 每个页框的字节数  即BufferPool.getPageSize()
+     * @param maxFrames 最多切出的页框数
+     */
+    public PageArena(int frameSize, int maxFrames) {
+        this.frameSize = frameSize;
+        this.maxFrames = maxFrames;
+        this.framesPerSlab = Math.max(1, SLAB_BYTES / frameSize);
+    }
+
+    /**
+     * @param pageSize 要读入的页的大小
+     * @return 一个空闲页框  position为0、limit为页大小
+     *   页框用完了、或者pageSize不是页框的大小(表有自己的页大小、或者测试改了默认页大小)时返回null
+     */
+    public synchronized ByteBuffer allocate(int pageSize) {
+        if (frameSize != pageSize) {
+            return null;
+        }
+        ByteBuffer frame = free.poll();
+        if (frame != null) {
+            frame.clear();
+            return frame;
+        }
+        if (frames >= maxFrames) {
+            return null;
+        }
+        if (slab == null || (slabNext + 1) * frameSize > slab.capacity()) {
+            int n = Math.min(framesPerSlab, maxFrames - frames);
+            slab = ByteBuffer.allocateDirect(n * frameSize);
+            slabNext = 0;
+        }
+        ByteBuffer dup = slab.duplicate();
+        dup.position(slabNext * frameSize);
+        dup.limit((slabNext + 1) * frameSize);
+        slabNext++;
+        frames++;
+        return dup.slice();
+    }
+
+    /**
+     * 记下page是frame上的视图
+     */
+    public synchronized void attach(Page page, ByteBuffer frame) {
+        ByteBuffer old = attached.put(page, frame);
+        if (old != null && old != frame) {
+            free.push(old);
+        }
+    }
+
+    /**
+     * 还没有attach的页框直接放回空闲表  例如读页失败
+     */
+    public synchronized void free(ByteBuffer frame) {
+        free.push(frame);
+    }
+
+    /**
+     * page离开了缓冲池  把它的页框放回空闲表  page不是堆外的页时什么都不做
+     * @return page是否在页框上
+     */
+    public synchronized boolean release(Page page) {
+        ByteBuffer frame = attached.remove(page);
+        if (frame == null) {
+            return false;
+        }
+        //页对象可能还被别人拿着  修改前的镜像不能跟着页框被覆盖
+        if (page instanceof TuplePage) {
+            ((TuplePage) page).keepBeforeImage();
+        }
+        free.push(frame);
+        return true;
+    }
+
+    /**
+     * @return 已经切出来的页框数
+     */
+    public synchronized int getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return 正在被页使用的页框数
+     */
+    public synchronized int getAttachedFrames() {
+        return attached.size();
+    }
+
+    /**
+     * @return 已经切出来的页框占用的直接内存字节数
+     */
+    public synchronized long getOffHeapBytes() {
+        return (long) frames * frameSize;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+}
@@ -0,0 +1,38 @@
+package simpledb.storage;
+
+/**
+ * 堆文件里页的压缩方式  记在文件头里(见PageFileHeader)  没有文件头的老文件都是NONE
+ */
+public enum PageCompression {
+
+    /**
+     * 页按页大小原样存放  第n页在文件头之后的n*页大小处
+     */
+    NONE,
+
+    /**
+     * 每页单独用LZ4压缩  页在文件里的位置由区段表记录
+     * @see Lz4
+     * @see PageExtents
+     */
+    LZ4;
+
+    /**
+     * @return 文件头里的编码为code的压缩方式
+     * @throws IllegalArgumentException 不认识的编码
+     */
+    static PageCompression fromCode(int code) {
+        PageCompression[] all = values();
+        if (code < 0 || code >= all.length) {
+            throw new IllegalArgumentException("unknown page compression " + code);
+        }
+        return all[code];
+    }
+
+    /**
+     * @return 写进文件头的编码
+     */
+    int code() {
+        return ordinal();
+    }
+}
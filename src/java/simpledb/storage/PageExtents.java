@@ -0,0 +1,181 @@
+package simpledb.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The extent map of a compressed heap file: where each logical page is in
+ * the file, and how many bytes it takes there.
+ * <p>
+ * 压缩后每页长短不一  第n页不再位于n*页大小处  所以文件头之后是一串区段  每个区段：
+ * <pre>
+ *   4字节页号 + 4字节容量 + 4字节长度 + 容量个字节(前"长度"个字节是压缩后的页)
+ * </pre>
+ * 长度等于页大小表示这一页压缩不了  原样存放
+ * <p>
+ * 写一页时压缩后放得进原来的区段就原地覆盖  否则在文件末尾追加新区段  旧的区段作废
+ * 区段的容量向上取整到ALIGN  页稍微变长时仍然可以原地写
+ * 区段表只在内存里  打开文件时从头扫一遍所有区段重建  同一页有多个区段时后面的(新追加的)为准
+ * 末尾不完整的区段(追加到一半时崩溃)在打开时被截掉  否则之后较短的追加会留下它的残余字节  下次打开时被当成区段
+ * <p>
+ * 作废的区段不回收  页反复变长的表会慢慢变大
+ */
+class PageExtents {
+
+    /**
+     * 区段头：页号、容量、长度
+     */
+    static final int EXTENT_HEADER = 12;
+
+    /**
+     * 区段容量的对齐
+     */
+    static final int ALIGN = 64;
+
+    private final FileHandle handle;
+    private final int pageSize;
+    //第一个区段的位置  文件头之后
+    private final long base;
+
+    //每页的区段位置和容量  下标是页号
+    private long[] offsets = new long[16];
+    private int[] capacities = new int[16];
+    private int numPages;
+    //下一个区段追加的位置
+    private long end;
+
+    /**
+     * 扫描文件重建区段表
+     *
+     * @param base 第一个区段的位置
+     * @throws IOException 读文件失败
+     */
+    PageExtents(FileHandle handle, int pageSize, long base) throws IOException {
+        this.handle = handle;
+        this.pageSize = pageSize;
+        this.base = base;
+        load();
+    }
+
+    private void load() throws IOException {
+        long length = handle.length();
+        long pos = base;
+        ByteBuffer header = ByteBuffer.allocate(EXTENT_HEADER);
+        while (pos + EXTENT_HEADER <= length) {
+            header.clear();
+            if (handle.read(header, pos) < EXTENT_HEADER) {
+                break;
+            }
+            header.flip();
+            int pageNo = header.getInt();
+            int capacity = header.getInt();
+            int len = header.getInt();
+            if (pageNo < 0 || len <= 0 || len > capacity || capacity > pageSize + ALIGN
+                    || pos + EXTENT_HEADER + capacity > length) {
+                break;
+            }
+            put(pageNo, pos, capacity);
+            pos += EXTENT_HEADER + capacity;
+        }
+        end = pos;
+        if (end < length) {
+            handle.truncate(end);
+        }
+    }
+
+    private void put(int pageNo, long offset, int capacity) {
+        if (pageNo >= offsets.length) {
+            int n = Math.max(pageNo + 1, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, n);
+            capacities = Arrays.copyOf(capacities, n);
+        }
+        offsets[pageNo] = offset;
+        capacities[pageNo] = capacity;
+        numPages = Math.max(numPages, pageNo + 1);
+    }
+
+    /**
+     * @return 页数  即最大的页号+1
+     */
+    synchronized int numPages() {
+        return numPages;
+    }
+
+    /**
+     * @return 区段占用的字节数  包括作废的区段
+     */
+    synchronized long extentBytes() {
+        return end - base;
+    }
+
+    /**
+     * 读出第pageNo页并解压到dst[0, 页大小)
+     *
+     * @return 是否有这一页
+     * @throws IOException 读失败  或者区段损坏
+     */
+    boolean read(int pageNo, byte[] dst) throws IOException {
+        byte[] extent;
+        long offset;
+        synchronized (this) {
+            if (pageNo < 0 || pageNo >= numPages) {
+                return false;
+            }
+            offset = offsets[pageNo];
+            //在锁里读  不会读到正在原地覆盖的区段
+            extent = new byte[EXTENT_HEADER + capacities[pageNo]];
+            if (handle.read(extent, offset) < extent.length) {
+                throw new IOException("extent of page " + pageNo + " at " + offset + " is truncated");
+            }
+        }
+        ByteBuffer header = ByteBuffer.wrap(extent);
+        int recorded = header.getInt();
+        header.getInt();
+        int len = header.getInt();
+        if (recorded != pageNo || len <= 0 || len > extent.length - EXTENT_HEADER) {
+            throw new IOException("bad extent of page " + pageNo + " at " + offset);
+        }
+        byte[] data = Arrays.copyOfRange(extent, EXTENT_HEADER, EXTENT_HEADER + len);
+        if (len == pageSize) {
+            System.arraycopy(data, 0, dst, 0, pageSize);
+        } else {
+            Lz4.decompress(data, len, dst, pageSize);
+        }
+        return true;
+    }
+
+    /**
+     * 压缩并写入一页  页号必须是已有的页或者下一个新页(numPages())
+     *
+     * @param page 页的数据  从off开始的页大小个字节
+     * @throws IllegalArgumentException 页号跳过了还不存在的页
+     */
+    void write(int pageNo, byte[] page, int off) throws IOException {
+        byte[] src = off == 0 && page.length == pageSize ? page : Arrays.copyOfRange(page, off, off + pageSize);
+        byte[] compressed = new byte[Lz4.maxCompressedLength(pageSize)];
+        int len = Lz4.compress(src, pageSize, compressed);
+        if (len >= pageSize) {
+            //压缩不了  原样存
+            compressed = src;
+            len = pageSize;
+        }
+        synchronized (this) {
+            if (pageNo < 0 || pageNo > numPages) {
+                throw new IllegalArgumentException("page " + pageNo + " is not in the heap file");
+            }
+            boolean inPlace = pageNo < numPages && len <= capacities[pageNo];
+            int capacity = inPlace ? capacities[pageNo] : (len + ALIGN - 1) / ALIGN * ALIGN;
+            //原地写只写有效部分  追加时写满容量  下次扫描能按容量跳到下一个区段
+            byte[] extent = new byte[EXTENT_HEADER + (inPlace ? len : capacity)];
+            ByteBuffer.wrap(extent).putInt(pageNo).putInt(capacity).putInt(len);
+            System.arraycopy(compressed, 0, extent, EXTENT_HEADER, len);
+            long offset = inPlace ? offsets[pageNo] : end;
+            handle.write(extent, offset);
+            if (!inPlace) {
+                end += extent.length;
+                put(pageNo, offset, capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package simpledb.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 表文件的文件头  记录这张表的页大小、页格式和压缩方式
+ *
+ * 原来所有表共用一个BufferPool.getPageSize()  文件里只有页
+ * 现在建表时可以给每张表单独指定页大小(MIN_PAGE_SIZE到MAX_PAGE_SIZE之间的2的幂)：
+ * 宽行的分析表和B+树索引用大页  一次I/O读到更多的行、内部节点的扇出更大  OLTP的表仍然用4KB
+ * 堆文件还可以选择页格式(PageLayout)  例如字符串变长存储的槽位目录页
+ * 以及页的压缩方式(PageCompression)  压缩的文件里文件头之后是区段(见PageExtents)  不再是定长的页
+ *
+ * 指定了页大小、页格式或压缩方式的文件在开头多一个文件头  占一整页  所以后面的页仍然按页大小对齐：
+ *   8字节魔数SDBPAGES + 4字节页大小 + 4字节页格式 + 4字节压缩方式  其余补0
+ * 压缩方式是后加的  之前写的文件头这里是0  即NONE
+ * 没有文件头的老文件不变  页大小跟随BufferPool.getPageSize()  页格式是FIXED  不压缩
+ */
+public final class PageFileHeader {
+
+    public static final int MIN_PAGE_SIZE = 4 << 10;
+    public static final int MAX_PAGE_SIZE = 64 << 10;
+
+    /**
+     * 没有文件头的老文件
+     */
+    public static final PageFileHeader NONE = new PageFileHeader(0, PageLayout.FIXED, PageCompression.NONE);
+
+    //"SDBPAGES"
+    static final long MAGIC = 0x5344425041474553L;
+    //魔数、页大小、页格式和压缩方式
+    private static final int HEADER_BYTES = 20;
+
+    private final int pageSize;
+    private final PageLayout layout;
+    private final PageCompression compression;
+
+    private PageFileHeader(int pageSize, PageLayout layout, PageCompression compression) {
+        this.pageSize = pageSize;
+        this.layout = layout;
+        this.compression = compression;
+    }
+
+    /**
+     * @return 文件头里的页大小  没有文件头时为0
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return 文件头里的页格式  没有文件头时为FIXED
+     */
+    public PageLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return 文件头里的压缩方式  没有文件头时为NONE
+     */
+    public PageCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return pageSize是不是可以记在文件头里的页大小：4KB到64KB之间的2的幂
+     */
+    public static boolean isSupported(int pageSize) {
+        return pageSize >= MIN_PAGE_SIZE && pageSize <= MAX_PAGE_SIZE && Integer.bitCount(pageSize) == 1;
+    }
+
+    private static void check(int pageSize) {
+        if (!isSupported(pageSize)) {
+            throw new IllegalArgumentException("unsupported page size " + pageSize
+                    + ", expected a power of two between " + MIN_PAGE_SIZE + " and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * 读文件头  文件太短或者开头不是魔数时当作没有文件头  不会为此创建文件
+     * @return 文件头  没有文件头时为NONE
+     * @throws IOException 读失败  或者文件头里的页大小、页格式不合法
+     */
+    public static PageFileHeader read(FileHandle handle) throws IOException {
+        if (handle.length() < HEADER_BYTES) {
+            return NONE;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES);
+        if (handle.read(buf, 0) < HEADER_BYTES) {
+            return NONE;
+        }
+        buf.flip();
+        if (buf.getLong() != MAGIC) {
+            return NONE;
+        }
+        int pageSize = buf.getInt();
+        if (!isSupported(pageSize)) {
+            throw new IOException("bad page size " + pageSize + " in the header of " + handle.getFile());
+        }
+        try {
+            return new PageFileHeader(pageSize, PageLayout.fromCode(buf.getInt()),
+                    PageCompression.fromCode(buf.getInt()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("bad header of " + handle.getFile(), e);
+        }
+    }
+
+    /**
+     * @return 页大小为pageSize、格式为FIXED的文件头  一整页
+     */
+    public static byte[] create(int pageSize) {
+        return create(pageSize, PageLayout.FIXED);
+    }
+
+    /**
+     * @return 页大小为pageSize、格式为layout的文件头  一整页
+     */
+    public static byte[] create(int pageSize, PageLayout layout) {
+        return create(pageSize, layout, PageCompression.NONE);
+    }
+
+    /**
+     * @return 页大小为pageSize、格式为layout、压缩方式为compression的文件头  一整页
+     */
+    public static byte[] create(int pageSize, PageLayout layout, PageCompression compression) {
+        check(pageSize);
+        ByteBuffer buf = ByteBuffer.allocate(pageSize);
+        buf.putLong(MAGIC).putInt(pageSize).putInt(layout.code()).putInt(compression.code());
+        return buf.array();
+    }
+
+    /**
+     * 打开表文件时确定它的页大小  空文件且指定了页大小时写入文件头
+     *
+     * @param pageSize 要求的页大小  0表示以文件为准
+     * @return 文件的页大小  0表示没有文件头的老文件(页大小跟随BufferPool.getPageSize())
+     * @throws IllegalArgumentException 页大小不支持  或者和文件里已有的页大小不一致
+     * @throws IOException 读写文件头失败
+     */
+    public static int open(FileHandle handle, int pageSize) throws IOException {
+        return open(handle, pageSize, null).getPageSize();
+    }
+
+    /**
+     * 打开堆文件时确定它的页大小和页格式
+     * 空文件且指定了页大小、或者指定了FIXED以外的格式时写入文件头  没指定页大小时用BufferPool.getPageSize()
+     *
+     * @param pageSize 要求的页大小  0表示以文件为准
+     * @param layout 要求的页格式  null表示以文件为准
+     * @return 文件的文件头  没有文件头的老文件为NONE
+     * @throws IllegalArgumentException 页大小不支持  或者和文件里已有的页大小、页格式不一致
+     * @throws IOException 读写文件头失败
+     */
+    public static PageFileHeader open(FileHandle handle, int pageSize, PageLayout layout) throws IOException {
+        return open(handle, pageSize, layout, null);
+    }
+
+    /**
+     * 打开堆文件时确定它的页大小、页格式和压缩方式
+     * 空文件且指定了页大小、FIXED以外的格式或者要压缩时写入文件头
+     *
+     * @param compression 要求的压缩方式  null表示以文件为准
+     * @see #open(FileHandle, int, PageLayout)
+     */
+    public static PageFileHeader open(FileHandle handle, int pageSize, PageLayout layout,
+                                      PageCompression compression) throws IOException {
+        PageFileHeader recorded = read(handle);
+        boolean sizeMatches = pageSize == 0 || pageSize == recorded.pageSize;
+        boolean layoutMatches = layout == null || layout == recorded.layout;
+        boolean compressionMatches = compression == null || compression == recorded.compression;
+        if (sizeMatches && layoutMatches && compressionMatches) {
+            return recorded;
+        }
+        if (pageSize != 0) {
+            check(pageSize);
+        }
+        if (handle.length() == 0) {
+            PageFileHeader header = new PageFileHeader(pageSize != 0 ? pageSize : BufferPool.getPageSize(),
+                    layout != null ? layout : PageLayout.FIXED,
+                    compression != null ? compression : PageCompression.NONE);
+            handle.write(create(header.pageSize, header.layout, header.compression), 0);
+            return header;
+        }
+        //老文件的页大小本来就和要求的一样  格式也是FIXED  不压缩
+        if (recorded == NONE && (pageSize == 0 || pageSize == BufferPool.getPageSize())
+                && layoutMatches && compressionMatches) {
+            return NONE;
+        }
+        int size = recorded == NONE ? BufferPool.getPageSize() : recorded.pageSize;
+        throw new IllegalArgumentException(String.format("%s has %d byte %s pages compressed with %s, not %d byte %s pages compressed with %s",
+                handle.getFile(), size, recorded.layout, recorded.compression,
+                pageSize != 0 ? pageSize : size, layout != null ? layout : recorded.layout,
+                compression != null ? compression : recorded.compression));
+    }
+}
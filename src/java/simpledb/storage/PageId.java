@@ -32,5 +32,32 @@ public interface PageId {
     boolean equals(Object o);
 
     int getPageNumber();
+
+    /** Page category used by pageKey() for pages without a category of their own */
+    int NO_CATEGORY = 7;
+
+    /**
+     * @return a compact 64-bit key for this page that is unique among all
+     *   pages of all tables: the table id in the high 32 bits, then 3 bits of
+     *   page category and 29 bits of page number. Unlike hashCode() it never
+     *   collides, and it can be used as a primitive key without boxing.
+     * @see BufferPool
+     */
+    default long pageKey() {
+        return pageKey(getTableId(), getPageNumber(), NO_CATEGORY);
+    }
+
+    /**
+     * @param tableId the table id
+     * @param pgNo the page number, 0 &lt;= pgNo &lt; 2^29
+     * @param categ the page category, 0 &lt;= categ &lt; 8
+     * @return the 64-bit key for that page
+     */
+    static long pageKey(int tableId, int pgNo, int categ) {
+        if (pgNo < 0 || pgNo >= (1 << 29)) {
+            throw new IllegalArgumentException("page number out of range: " + pgNo);
+        }
+        return ((long) tableId << 32) | ((long) (categ & 7) << 29) | pgNo;
+    }
 }
 
@@ -0,0 +1,44 @@
+package simpledb.storage;
+
+/**
+ * 堆文件里页的格式  记在文件头里(见PageFileHeader)  没有文件头的老文件都是FIXED
+ */
+public enum PageLayout {
+
+    /**
+     * 定长槽位：bitmap + 每个槽位td.getSize()字节  字符串总是占STRING_LEN+4字节
+     * @see HeapPage
+     */
+    FIXED,
+
+    /**
+     * 槽位目录 + 变长元组  字符串只占实际长度
+     * @see SlottedHeapPage
+     */
+    SLOTTED,
+
+    /**
+     * 和FIXED一样的定长槽位  但每列的值在页里连续存放(minipage)  只读几列的扫描更快
+     * @see PaxHeapPage
+     */
+    PAX;
+
+    /**
+     * @return 文件头里的编码为code的格式
+     * @throws IllegalArgumentException 不认识的编码
+     */
+    static PageLayout fromCode(int code) {
+        PageLayout[] all = values();
+        if (code < 0 || code >= all.length) {
+            throw new IllegalArgumentException("unknown page layout " + code);
+        }
+        return all[code];
+    }
+
+    /**
+     * @return 写进文件头的编码
+     */
+    int code() {
+        return ordinal();
+    }
+}
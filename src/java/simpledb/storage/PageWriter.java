@@ -0,0 +1,258 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+import simpledb.transaction.TransactionId;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 缓冲池的后台写脏页线程
+ *
+ * 原来脏页只在淘汰时、或者flushAllPages/flushPage时一页一页同步写回  淘汰到脏页的线程要等这次写盘
+ * 现在后台线程每隔一段时间把已经不属于活跃事务的脏页写回磁盘(写完标为干净)
+ * 之后淘汰和提交遇到的基本都是干净页  不用再同步写
+ *
+ * 一轮写回：取出所有可写的脏页  按(表, 页号)排序  页号连续的最多MAX_RUN页拼成一次写(DbFile.writePages)
+ * 每一段都在缓冲池的锁内重新确认页还在缓存中、还是脏的  再写并标为干净
+ * 写的过程中页又被别的事务改了(isDirty变成了别的事务)就不标干净
+ *
+ * 活跃事务是修改过页、还没有transactionComplete的事务  它们的脏页不能提前写(NO STEAL)
+ *
+ * 所有缓冲池共用一个后台守护线程  每个缓冲池按自己的间隔登记一个定时任务
+ * 定时任务只弱引用PageWriter  被替换掉的缓冲池可以被回收  回收后任务自己取消
+ * 后台写回默认关闭  缓冲池和原来一样只在淘汰、flush时同步写  测试的行为是确定的
+ * 间隔用 -Dsimpledb.bufferpool.writer.interval=毫秒 指定  0表示不在后台写
+ * 命令行(Parser)没有指定间隔时按BACKGROUND_INTERVAL_MILLIS启动后台写回
+ */
+public class PageWriter {
+
+    /**
+     * 指定后台写回间隔的系统属性
+     */
+    public static final String INTERVAL_PROPERTY = "simpledb.bufferpool.writer.interval";
+
+    /**
+     * 新建缓冲池的后台写回间隔(毫秒)  没有指定时为0  不在后台写
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = Long.getLong(INTERVAL_PROPERTY, 0);
+
+    /**
+     * 需要后台写回、又没有指定间隔时用的间隔(毫秒)
+     */
+    public static final long BACKGROUND_INTERVAL_MILLIS = 100;
+
+    /**
+     * 一次写入最多合并的连续页数
+     */
+    static final int MAX_RUN = 32;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "simpledb-pagewriter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //按表、页号排序  连续的页才能合并
+    private static final Comparator<Page> PAGE_ORDER = Comparator
+            .comparingInt((Page p) -> p.getId().getTableId())
+            .thenComparingInt(p -> p.getId().getPageNumber());
+
+    /**
+     * 定时任务  PageWriter被回收后取消自己
+     */
+    private static final class Tick implements Runnable {
+        private final WeakReference<PageWriter> writer;
+        volatile ScheduledFuture<?> future;
+
+        Tick(PageWriter writer) {
+            this.writer = new WeakReference<>(writer);
+        }
+
+        @Override
+        public void run() {
+            PageWriter w = writer.get();
+            if (w == null) {
+                ScheduledFuture<?> f = future;
+                if (f != null) {
+                    f.cancel(false);
+                }
+                return;
+            }
+            w.writeBack();
+        }
+    }
+
+    private final BufferPool pool;
+    private final ShardedPageCache pageStore;
+    private final Set<TransactionId> activeTransactions;
+    private final BufferPoolMetrics metrics;
+    private long interval;
+    private Tick tick;
+
+    private final AtomicLong pagesWritten = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    PageWriter(BufferPool pool, ShardedPageCache pageStore, Set<TransactionId> activeTransactions,
+               BufferPoolMetrics metrics, long intervalMillis) {
+        this.pool = pool;
+        this.pageStore = pageStore;
+        this.activeTransactions = activeTransactions;
+        this.metrics = metrics;
+        setInterval(intervalMillis);
+    }
+
+    /**
+     * @param millis 后台写回的间隔  0停止后台写回
+     */
+    public synchronized void setInterval(long millis) {
+        if (tick != null) {
+            tick.future.cancel(false);
+            tick = null;
+        }
+        interval = Math.max(0, millis);
+        if (interval > 0) {
+            tick = new Tick(this);
+            tick.future = TIMER.scheduleWithFixedDelay(tick, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized long getInterval() {
+        return interval;
+    }
+
+    /**
+     * 停止后台写回  缓冲池不再使用时调用
+     */
+    public void stop() {
+        setInterval(0);
+    }
+
+    /**
+     * 不等下一个间隔  马上在后台写一轮  后台写回停止时什么都不做
+     */
+    public synchronized void wakeUp() {
+        if (tick != null) {
+            TIMER.execute(tick);
+        }
+    }
+
+    /**
+     * @return 写回的页数
+     */
+    public long getPagesWritten() {
+        return pagesWritten.get();
+    }
+
+    /**
+     * @return 写回的段数  连续的页合并成一段  由一次DbFile.writePages写出
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * 页是脏的  而且弄脏它的事务已经结束
+     */
+    private boolean isWritable(Page page) {
+        TransactionId tid = page.isDirty();
+        return tid != null && !activeTransactions.contains(tid);
+    }
+
+    /**
+     * 写回一轮：所有不属于活跃事务的脏页
+     * 后台线程定时调用  也可以直接调用
+     * @return 这一轮写回的页数
+     */
+    public int writeBack() {
+        try {
+            return write(this::isWritable, true);
+        } catch (IOException e) {
+            //不会发生  后台写回时忽略写失败
+            return 0;
+        }
+    }
+
+    /**
+     * 写回满足条件的脏页  不管弄脏它的事务是否还活跃  flushAllPages、flushPages用
+     * 调用方可以持有缓冲池的锁
+     * @param background 后台写回时写失败的段保持为脏、继续写下一段  否则抛出异常
+     * @return 写回的页数
+     */
+    int write(Predicate<Page> which, boolean background) throws IOException {
+        List<Page> dirty = new ArrayList<>();
+        for (Page page : pageStore.getAllPages()) {
+            if (page.isDirty() != null && which.test(page)) {
+                dirty.add(page);
+            }
+        }
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        dirty.sort(PAGE_ORDER);
+        int written = 0;
+        int i = 0;
+        while (i < dirty.size()) {
+            PageId first = dirty.get(i).getId();
+            int j = i + 1;
+            while (j < dirty.size() && j - i < MAX_RUN
+                    && dirty.get(j).getId().getTableId() == first.getTableId()
+                    && dirty.get(j).getId().getPageNumber() == first.getPageNumber() + (j - i)) {
+                j++;
+            }
+            written += writeRun(dirty.subList(i, j), which, background);
+            i = j;
+        }
+        return written;
+    }
+
+    /**
+     * 在缓冲池的锁内写一段连续的页  和discardPage互斥
+     * evictPage在锁外写盘  但它的页在分片锁内已经离开了缓存  这里重新确认时会跳过
+     */
+    private int writeRun(List<Page> run, Predicate<Page> which, boolean background) throws IOException {
+        synchronized (pool) {
+            List<Page> pages = new ArrayList<>(run.size());
+            List<TransactionId> dirtiers = new ArrayList<>(run.size());
+            for (Page page : run) {
+                //排队期间页可能被淘汰、丢弃或者已经写过了
+                if (pageStore.peek(page.getId().pageKey()) == page && page.isDirty() != null && which.test(page)) {
+                    pages.add(page);
+                    dirtiers.add(page.isDirty());
+                }
+            }
+            if (pages.isEmpty()) {
+                return 0;
+            }
+            int tableId = pages.get(0).getId().getTableId();
+            try {
+                DbFile file = Database.getCatalog().getDatabaseFile(tableId);
+                long start = System.nanoTime();
+                file.writePages(pages);
+                metrics.recordWrite(tableId, pages.size(), file.getPageSize(), System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                //写失败的页保持为脏  淘汰时会再同步写
+                if (background) {
+                    return 0;
+                }
+                throw e;
+            }
+            for (int k = 0; k < pages.size(); k++) {
+                pages.get(k).markClean(dirtiers.get(k));
+            }
+            pagesWritten.addAndGet(pages.size());
+            writes.incrementAndGet();
+            return pages.size();
+        }
+    }
+}
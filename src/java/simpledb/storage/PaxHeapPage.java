@@ -0,0 +1,104 @@
+package simpledb.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Each instance of PaxHeapPage stores data for one page of a HeapFile with
+ * the PAX layout, {@link PageLayout#PAX}: the same slots as a
+ * {@link HeapPage}, but the values of each field are stored together in a
+ * minipage instead of tuple by tuple.
+ * <p>
+ * 行格式的页里一个元组的字段挨在一起  只聚合一列时也要跨过每个元组的其他字段  每个槽位都落在不同的缓存行上
+ * PAX把页按列切成minipage  同一列的值连续存放  只读几列时只碰这几列的minipage
+ * 页的大小、槽位数、bitmap和HeapPage完全相同  只是槽位里的字节换了位置：
+ * <pre>
+ *   [bitmap][null bitmap minipage: 槽位数 * null bitmap字节][第0列minipage: 槽位数 * 第0列长度][第1列minipage]...[填充]
+ * </pre>
+ * 第slot个元组的第i个字段在 第i列minipage的起点 + slot * 第i列长度
+ * <p>
+ * 插入、删除、延迟解码、修改前的镜像都沿用HeapPage  这里只改字节的位置
+ * 只解码部分字段的扫描见HeapFile#iterator(TransactionId, int[])
+ *
+ * @see HeapPage
+ * @see PageLayout#PAX
+ */
+public class PaxHeapPage extends HeapPage {
+
+    //null bitmap minipage的起点  每个元组占nullBytes字节
+    private final int nullStart;
+    private final int nullBytes;
+    //每列minipage的起点和每个值的长度
+    private final int[] columnStarts;
+    private final int[] columnLens;
+
+    /**
+     * Create a PaxHeapPage from the bytes of a page read from disk.
+     *
+     * @see HeapPage#HeapPage(HeapPageId, byte[])
+     */
+    public PaxHeapPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a PaxHeapPage straight from a buffer holding the page.
+     *
+     * @see HeapPage#HeapPage(HeapPageId, ByteBuffer)
+     */
+    public PaxHeapPage(HeapPageId id, ByteBuffer data) throws IOException {
+        super(id, data);
+        nullBytes = td.getNullBitmapSize();
+        nullStart = header.length;
+        columnStarts = new int[td.numFields()];
+        columnLens = new int[td.numFields()];
+        int off = nullStart + numSlots * nullBytes;
+        for (int j = 0; j < columnStarts.length; j++) {
+            columnStarts[j] = off;
+            columnLens[j] = fieldLen(td, j);
+            off += numSlots * columnLens[j];
+        }
+    }
+
+    @Override
+    HeapPage newImage(ByteBuffer data) throws IOException {
+        return new PaxHeapPage(pid, data);
+    }
+
+    @Override
+    int nullOffset(int slot) {
+        return nullStart + slot * nullBytes;
+    }
+
+    @Override
+    int fieldOffset(int slot, int i) {
+        return columnStarts[i] + slot * columnLens[i];
+    }
+
+    @Override
+    void copySlot(int slot, byte[] dst) {
+        if (nullBytes > 0) {
+            copyRaw(nullOffset(slot), dst, nullOffset(slot), nullBytes);
+        }
+        for (int j = 0; j < columnStarts.length; j++) {
+            int off = fieldOffset(slot, j);
+            copyRaw(off, dst, off, columnLens[j]);
+        }
+    }
+
+    //元组的字节是行格式的  按列分散到各个minipage
+    @Override
+    void writeSlot(int slot, byte[] tuple, byte[] dst) {
+        System.arraycopy(tuple, 0, dst, nullOffset(slot), nullBytes);
+        int pos = nullBytes;
+        for (int j = 0; j < columnStarts.length; j++) {
+            System.arraycopy(tuple, pos, dst, fieldOffset(slot, j), columnLens[j]);
+            pos += columnLens[j];
+        }
+    }
+
+    @Override
+    public PaxHeapPage getBeforeImage() {
+        return (PaxHeapPage) super.getBeforeImage();
+    }
+}
@@ -0,0 +1,233 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 缓冲池的顺序预读
+ *
+ * 原来HeapFileIterator读完一页才同步读下一页  扫描就是一次接一次阻塞的4KB读
+ * 现在缓冲池按表记录带扫描提示的访问：连续访问到页号p-1、p时认为是顺序扫描
+ * 在后台I/O线程上把后面window页读进缓冲池  扫描线程走到那里时页已经在缓存中了
+ * 扫描线程要的页正在被预读时  等预读读完  不会再读一遍
+ *
+ * 预读每次补一批(至少半个窗口)  让已请求的页始终领先扫描位置半个到一个窗口
+ * 只对HeapFile预读  不会读到文件末尾之后
+ * 窗口不超过缓冲池容量的1/4  否则预读的页会挤掉扫描还没用到的页
+ * 预读只用空闲的或者干净页腾出的位置  不淘汰脏页  也不写磁盘
+ *
+ * 窗口大小可以用 -Dsimpledb.bufferpool.readahead=K 指定  0表示关闭预读
+ */
+public class ReadAhead {
+
+    /**
+     * 默认的预读窗口(页数)
+     */
+    public static final int DEFAULT_WINDOW = Integer.getInteger("simpledb.bufferpool.readahead", 8);
+
+    //按表记录扫描位置的槽数  不同的表哈希到同一槽时后来的覆盖前面的
+    private static final int STREAMS = 64;
+
+    //所有缓冲池共用一个后台I/O线程  守护线程  不会阻止JVM退出
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "simpledb-readahead");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 一张表上的扫描位置  在自己的锁内修改
+     */
+    private static final class Stream {
+        final int tableId;
+        //上一次访问的页号
+        int last = -2;
+        //连续访问的页数
+        int run;
+        //下一个还没有请求预读的页号
+        int next;
+
+        Stream(int tableId) {
+            this.tableId = tableId;
+        }
+    }
+
+    private final BufferPool pool;
+    private final ShardedPageCache pageStore;
+    private volatile int window;
+    private final AtomicReferenceArray<Stream> streams = new AtomicReferenceArray<>(STREAMS);
+    //正在预读的页  扫描线程要这些页时等待预读完成
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> inflight = new ConcurrentHashMap<>();
+    //预读进来还没被扫描用到的页
+    private final Set<Long> unused = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong prefetched = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ReadAhead(BufferPool pool, ShardedPageCache pageStore, int window) {
+        this.pool = pool;
+        this.pageStore = pageStore;
+        setWindow(window);
+    }
+
+    /**
+     * @param window 预读窗口(页数)  会被限制在缓冲池容量的1/4以内  0关闭预读
+     */
+    public void setWindow(int window) {
+        this.window = Math.max(0, Math.min(window, pageStore.getCapacity() / 4));
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return 后台预读读入的页数
+     */
+    public long getPrefetchedPages() {
+        return prefetched.get();
+    }
+
+    /**
+     * @return 扫描访问的页由预读提供的次数(包括等待正在进行的预读)
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return 扫描访问的页不在缓存中、只能同步读盘的次数
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 页正在被预读时等它读完  之后调用方应该再查一次缓存
+     * 预读线程先放入缓存再移除登记  所以这里没等到时  页要么已经在缓存中  要么没有被预读
+     */
+    void awaitInflight(long key) {
+        if (inflight.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> f = inflight.get(key);
+        if (f != null) {
+            f.join();
+        }
+    }
+
+    /**
+     * 记录一次带扫描提示的访问  必要时发起预读
+     * @param cached 访问的页是否已经在缓存中
+     */
+    void onScanAccess(PageId pid, boolean cached) {
+        long key = pid.pageKey();
+        if (cached) {
+            if (!unused.isEmpty() && unused.remove(key)) {
+                hits.incrementAndGet();
+            }
+        } else {
+            misses.incrementAndGet();
+        }
+        int w = window;
+        if (w == 0) {
+            return;
+        }
+        int tableId = pid.getTableId();
+        int pgNo = pid.getPageNumber();
+        int slot = (tableId * 0x9E3779B9) >>> 26;
+        Stream s = streams.get(slot);
+        if (s == null || s.tableId != tableId) {
+            s = new Stream(tableId);
+            streams.set(slot, s);
+        }
+        int from;
+        int to;
+        synchronized (s) {
+            if (pgNo == s.last + 1) {
+                s.run++;
+            } else {
+                //不连续  重新开始计
+                s.run = 1;
+                s.next = pgNo + 1;
+            }
+            s.last = pgNo;
+            //领先不到半个窗口时再补一批
+            if (s.run < 2 || s.next > pgNo + w / 2) {
+                return;
+            }
+            from = Math.max(s.next, pgNo + 1);
+            to = pgNo + w;
+            s.next = to + 1;
+        }
+        prefetch(tableId, from, to);
+    }
+
+    /**
+     * 在后台读入[from, to]中不在缓存里的页
+     */
+    private void prefetch(int tableId, int from, int to) {
+        DbFile file;
+        try {
+            file = Database.getCatalog().getDatabaseFile(tableId);
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (!(file instanceof HeapFile)) {
+            return;
+        }
+        to = Math.min(to, ((HeapFile) file).numPages() - 1);
+        List<HeapPageId> pids = new ArrayList<>();
+        for (int pgNo = from; pgNo <= to; pgNo++) {
+            HeapPageId pid = new HeapPageId(tableId, pgNo);
+            long key = pid.pageKey();
+            //先登记为正在预读  扫描线程随后要这一页时会等待而不是自己再读一遍
+            if (!pageStore.contains(key) && inflight.putIfAbsent(key, new CompletableFuture<>()) == null) {
+                pids.add(pid);
+            }
+        }
+        if (pids.isEmpty()) {
+            return;
+        }
+        IO.execute(() -> {
+            for (HeapPageId pid : pids) {
+                long key = pid.pageKey();
+                try {
+                    if (!pageStore.contains(key)) {
+                        //和getPage一样读进堆外页框(如果有)  同时记录耗时
+                        Page page = pool.readPage(file, pid);
+                        prefetched.incrementAndGet();
+                        //先登记再放入缓存  扫描线程一看到这一页就能算作命中
+                        unused.add(key);
+                        if (!pool.cachePrefetched(pid, page)) {
+                            unused.remove(key);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    //预读失败不要紧  扫描线程会自己同步读
+                } finally {
+                    inflight.remove(key).complete(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * 页被淘汰或丢弃了  不再算作预读进来的页
+     */
+    void forget(long key) {
+        if (!unused.isEmpty()) {
+            unused.remove(key);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package simpledb.storage;
+
+/**
+ * 缓冲池的页替换策略
+ *
+ * 每个缓存分片持有一个策略实例  除recordAccess外的方法都在分片锁内调用
+ * 策略只维护页框的先后/冷热状态  缓存表的增删由分片负责
+ *
+ * @see ShardedPageCache
+ */
+public interface ReplacementPolicy {
+
+    /**
+     * 可选的策略  在BufferPool构造时(或Database.resetBufferPool时)指定
+     */
+    enum Kind {
+        /** 最近最久未使用  命中时需要调整链表 */
+        LRU,
+        /** 时钟算法  命中时只置访问位 */
+        CLOCK,
+        /** CLOCK-Pro  按重用距离区分冷热页  抗顺序扫描 */
+        CLOCK_PRO,
+        /** 2Q  只访问过一次的页不进主队列  带扫描提示的页只在一个小的试用环里循环 */
+        TWO_Q
+    }
+
+    /**
+     * 新页进入缓存
+     * @param scan 是否由顺序扫描读入(扫描提示)  不关心的策略可以忽略
+     */
+    void recordInsert(BufferFrame frame, boolean scan);
+
+    /**
+     * 页命中  isAccessLockFree()为true时调用方不持有分片锁
+     * @param scan 是否是顺序扫描的访问
+     */
+    void recordAccess(BufferFrame frame, boolean scan);
+
+    /**
+     * 页被主动丢弃(discardPage)  不是由victim()选出的
+     */
+    void recordRemove(BufferFrame frame);
+
+    /**
+     * 选出一个要淘汰的页框并把它从策略的数据结构中移除
+     * @return 被选中的页框  没有页时返回null
+     */
+    BufferFrame victim();
+
+    /**
+     * victim()选出的页框不能淘汰(被钉住或者是未提交事务的脏页)  放回策略
+     * 保留它原来的冷热状态  不能像新页一样重新进入  也不能当作一次访问
+     * 放回的位置要让接下来的victim()先看别的页框
+     */
+    void requeue(BufferFrame frame);
+
+    /**
+     * @return recordAccess是否只修改页框的访问位  可以不加锁调用
+     */
+    boolean isAccessLockFree();
+
+    /**
+     * @param kind 策略类型
+     * @param capacity 该策略实例管理的最大页数(一个分片的份额)
+     */
+    static ReplacementPolicy create(Kind kind, int capacity) {
+        switch (kind) {
+            case LRU:
+                return new LRUPolicy();
+            case CLOCK:
+                return new ClockPolicy();
+            case CLOCK_PRO:
+                return new ClockProPolicy(capacity);
+            case TWO_Q:
+                return new TwoQueuePolicy(capacity);
+            default:
+                throw new IllegalArgumentException("unknown replacement policy " + kind);
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package simpledb.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * 分片(锁分段)的页缓存
+ *
+ * key是PageId.pageKey()得到的64位整数  不会像HeapPageId.hashCode那样冲突  查找时也不用装箱
+ * 按key的hash把页分到N个分片中，每个分片有自己的锁、页框表(LongHashMap)和替换策略实例
+ * 命中时只锁住key所在的分片，多个线程访问不同分片时互不阻塞
+ * 如果策略的命中只需要置访问位(CLOCK类)，命中只做一次乐观读  不写分片锁的状态
+ *
+ * 容量是全局的：缓存本身不做淘汰，由BufferPool在页数达到上限时调用evict()
+ * 除了页数  还可以限制所有页占用的堆内存(字节数)  每页按放入时的Page.getRetainedSize()计
+ * 已经在缓存中的页被替换成新版本时重新计算  所以字节数可能暂时超出上限  下一次放入新页时淘汰回上限以内
+ * 淘汰从一个轮转的分片指针开始，由该分片的替换策略选出牺牲页
+ * 被钉住的页和调用方不允许淘汰的页(未提交的脏页)不会被淘汰  策略选中它们时放回去换下一个
+ *
+ * @see ReplacementPolicy
+ * @see PageId#pageKey()
+ */
+public class ShardedPageCache {
+
+    /**
+     * 每个分片至少负责的页数  页数太少时分片过多会让淘汰退化成近似随机
+     */
+    private static final int MIN_PAGES_PER_SHARD = 32;
+
+    /**
+     * 分片数上限
+     */
+    public static final int MAX_SHARDS = 16;
+
+    /**
+     * 一个分片：一把锁 + 页框表 + 替换策略
+     * 页框表的增删和策略状态的修改都在写锁内  查找可以用乐观读
+     */
+    private static class Shard {
+        private final StampedLock lock = new StampedLock();
+        private final LongHashMap<BufferFrame> frames;
+        private final ReplacementPolicy policy;
+
+        Shard(ReplacementPolicy policy, int expectedSize) {
+            this.policy = policy;
+            this.frames = new LongHashMap<>(expectedSize);
+        }
+
+        /**
+         * 先乐观读  期间有写入则退回读锁重查
+         */
+        BufferFrame find(long key) {
+            long stamp = lock.tryOptimisticRead();
+            BufferFrame frame = frames.get(key);
+            if (lock.validate(stamp)) {
+                return frame;
+            }
+            stamp = lock.readLock();
+            try {
+                return frames.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private final Shard[] shards;
+    //缓存的最大页数
+    private final int capacity;
+    //所有页占用的堆内存上限  Long.MAX_VALUE表示只按页数限制
+    private final long maxBytes;
+    //分片数为2的幂  用掩码代替取模
+    private final int mask;
+    //所有分片的页数之和
+    private final AtomicInteger size = new AtomicInteger();
+    //所有页占用的堆内存之和
+    private final AtomicLong bytes = new AtomicLong();
+    //淘汰时的分片指针  轮流从各个分片淘汰
+    private final AtomicInteger evictHand = new AtomicInteger();
+
+    /**
+     * 根据容量自动选择分片数  使用LRU替换
+     * @param capacity 缓存的最大页数
+     */
+    public ShardedPageCache(int capacity) {
+        this(capacity, shardsFor(capacity), ReplacementPolicy.Kind.LRU);
+    }
+
+    /**
+     * 根据容量自动选择分片数
+     * @param capacity 缓存的最大页数
+     * @param kind 替换策略
+     */
+    public ShardedPageCache(int capacity, ReplacementPolicy.Kind kind) {
+        this(capacity, shardsFor(capacity), Long.MAX_VALUE, kind);
+    }
+
+    /**
+     * 根据页数上限自动选择分片数
+     * @param capacity 缓存的最大页数
+     * @param maxBytes 所有页占用的堆内存上限
+     * @param kind 替换策略
+     */
+    public ShardedPageCache(int capacity, long maxBytes, ReplacementPolicy.Kind kind) {
+        this(capacity, shardsFor(capacity), maxBytes, kind);
+    }
+
+    /**
+     * @param capacity 缓存的最大页数
+     * @param numShards 分片数  会向下取整到2的幂
+     * @param kind 替换策略  每个分片一个实例
+     */
+    public ShardedPageCache(int capacity, int numShards, ReplacementPolicy.Kind kind) {
+        this(capacity, numShards, Long.MAX_VALUE, kind);
+    }
+
+    /**
+     * @param capacity 缓存的最大页数
+     * @param numShards 分片数  会向下取整到2的幂
+     * @param maxBytes 所有页占用的堆内存上限
+     * @param kind 替换策略  每个分片一个实例
+     */
+    public ShardedPageCache(int capacity, int numShards, long maxBytes, ReplacementPolicy.Kind kind) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        if (numShards < 1) {
+            throw new IllegalArgumentException("numShards must be positive");
+        }
+        int n = Integer.highestOneBit(numShards);
+        //每个分片的策略按平均份额管理
+        int perShard = (capacity + n - 1) / n;
+        this.shards = new Shard[n];
+        for (int i = 0; i < n; i++) {
+            shards[i] = new Shard(ReplacementPolicy.create(kind, perShard), perShard);
+        }
+        this.mask = n - 1;
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 容量对应的默认分片数：每个分片不少于MIN_PAGES_PER_SHARD页  且不超过MAX_SHARDS
+     */
+    static int shardsFor(int capacity) {
+        int n = Math.max(1, capacity / MIN_PAGES_PER_SHARD);
+        return Integer.highestOneBit(Math.min(n, MAX_SHARDS));
+    }
+
+    private Shard shardFor(long key) {
+        //页码在低位、表id在高位  乘法把各位混合后取高位
+        long h = key * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h >>> 40) & mask];
+    }
+
+    /**
+     * 查找页  命中时通知替换策略
+     * @return 缓存中的页  不存在返回null
+     */
+    public Page get(long key) {
+        return get(key, false);
+    }
+
+    /**
+     * 查找页  命中时通知替换策略
+     * @param scan 是否是顺序扫描的访问
+     * @return 缓存中的页  不存在返回null
+     */
+    public Page get(long key, boolean scan) {
+        Shard shard = shardFor(key);
+        if (shard.policy.isAccessLockFree()) {
+            //只置访问位  不需要写锁
+            BufferFrame frame = shard.find(key);
+            if (frame == null) {
+                return null;
+            }
+            shard.policy.recordAccess(frame, scan);
+            return frame.page;
+        }
+        long stamp = shard.lock.writeLock();
+        try {
+            BufferFrame frame = shard.frames.get(key);
+            if (frame == null) {
+                return null;
+            }
+            shard.policy.recordAccess(frame, scan);
+            return frame.page;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 查找页并钉住  命中时通知替换策略
+     * @param scan 是否是顺序扫描的访问
+     * @return 钉住的页框  不存在返回null
+     */
+    public BufferFrame pin(long key, boolean scan) {
+        Shard shard = shardFor(key);
+        if (shard.policy.isAccessLockFree()) {
+            BufferFrame frame = shard.find(key);
+            if (frame == null) {
+                return null;
+            }
+            frame.pin();
+            //查到之后、钉住之前被淘汰了  当作没命中
+            if (!frame.resident) {
+                frame.unpin();
+                return null;
+            }
+            shard.policy.recordAccess(frame, scan);
+            return frame;
+        }
+        long stamp = shard.lock.writeLock();
+        try {
+            BufferFrame frame = shard.frames.get(key);
+            if (frame == null) {
+                return null;
+            }
+            frame.pin();
+            shard.policy.recordAccess(frame, scan);
+            return frame;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 只有key不存在时才放入  放入的或已经存在的页框都被钉住
+     * @param scan 是否由顺序扫描读入
+     * @return 钉住的页框
+     */
+    public BufferFrame putIfAbsentAndPin(long key, Page page, boolean scan) {
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            BufferFrame frame = shard.frames.get(key);
+            if (frame == null) {
+                frame = insert(shard, key, page, scan);
+            }
+            frame.pin();
+            return frame;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 放入页  已存在则替换
+     * @return 原来的页  不存在返回null
+     */
+    public Page put(long key, Page page) {
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            BufferFrame frame = shard.frames.get(key);
+            if (frame != null) {
+                Page old = frame.page;
+                frame.page = page;
+                measure(frame);
+                shard.policy.recordAccess(frame, false);
+                return old;
+            }
+            insert(shard, key, page, false);
+            return null;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 只有key不存在时才放入  用于多个线程同时读入同一页的情况
+     * @return 已经存在的页  放入成功返回null
+     */
+    public Page putIfAbsent(long key, Page page) {
+        return putIfAbsent(key, page, false);
+    }
+
+    /**
+     * 只有key不存在时才放入  用于多个线程同时读入同一页的情况
+     * @param scan 是否由顺序扫描读入
+     * @return 已经存在的页  放入成功返回null
+     */
+    public Page putIfAbsent(long key, Page page, boolean scan) {
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            BufferFrame frame = shard.frames.get(key);
+            if (frame != null) {
+                return frame.page;
+            }
+            insert(shard, key, page, scan);
+            return null;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return 缓存中的页  不存在返回null  不算作访问
+     */
+    public Page peek(long key) {
+        BufferFrame frame = shardFor(key).find(key);
+        return frame == null ? null : frame.page;
+    }
+
+    /**
+     * @return 缓存中的页框  不存在返回null  不算作访问
+     */
+    public BufferFrame peekFrame(long key) {
+        return shardFor(key).find(key);
+    }
+
+    /**
+     * @return key是否在缓存中  不算作访问
+     */
+    public boolean contains(long key) {
+        return shardFor(key).find(key) != null;
+    }
+
+    /**
+     * 移除页
+     * @return 被移除的页  不存在返回null
+     */
+    public Page remove(long key) {
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            BufferFrame frame = shard.frames.remove(key);
+            if (frame == null) {
+                return null;
+            }
+            frame.resident = false;
+            shard.policy.recordRemove(frame);
+            size.decrementAndGet();
+            bytes.addAndGet(-frame.bytes);
+            return frame.page;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    //在分片写锁内调用
+    private BufferFrame insert(Shard shard, long key, Page page, boolean scan) {
+        BufferFrame frame = new BufferFrame(key, page);
+        shard.frames.put(key, frame);
+        shard.policy.recordInsert(frame, scan);
+        size.incrementAndGet();
+        measure(frame);
+        return frame;
+    }
+
+    //重新计算页框占用的堆内存  在分片写锁内调用
+    private void measure(BufferFrame frame) {
+        long now = frame.page.getRetainedSize();
+        bytes.addAndGet(now - frame.bytes);
+        frame.bytes = now;
+    }
+
+    /**
+     * 页在缓存中被原地修改(例如生成了修改前的镜像)后  重新计算它占用的堆内存
+     */
+    public void remeasure(long key) {
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            BufferFrame frame = shard.frames.get(key);
+            if (frame != null) {
+                measure(frame);
+            }
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 淘汰一页：从分片指针所指的分片开始  由第一个非空分片的替换策略选出牺牲页
+     * 只持有一个分片的锁  不会和其他分片上的命中互相等待
+     * @return 被淘汰的页  缓存为空时返回null
+     */
+    public Page evict() {
+        return evict(page -> true);
+    }
+
+    /**
+     * 淘汰一页  跳过被钉住的页和evictable不接受的页
+     * 策略选中的页不能淘汰时用requeue放回策略(保留它的冷热状态)  再选下一个  每个分片最多试一遍它的所有页
+     * @param evictable 页能否被淘汰  在分片锁内调用
+     * @return 被淘汰的页  没有能淘汰的页时返回null
+     */
+    public Page evict(Predicate<Page> evictable) {
+        int start = evictHand.getAndIncrement();
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[(start + i) & mask];
+            long stamp = shard.lock.writeLock();
+            try {
+                for (int tries = shard.frames.size(); tries > 0; tries--) {
+                    BufferFrame victim = shard.policy.victim();
+                    if (victim == null) {
+                        break;
+                    }
+                    victim.resident = false;
+                    if (victim.getPinCount() > 0 || !evictable.test(victim.page)) {
+                        //还在用  放回去
+                        victim.resident = true;
+                        shard.policy.requeue(victim);
+                        continue;
+                    }
+                    shard.frames.remove(victim.key);
+                    size.decrementAndGet();
+                    bytes.addAndGet(-victim.bytes);
+                    return victim.page;
+                }
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 所有分片中的页数之和
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return 页数是否已经达到容量  达到时放入新页前需要先evict()
+     */
+    public boolean isFull() {
+        return isFull(0);
+    }
+
+    /**
+     * @param incoming 要放入的新页占用的堆内存
+     * @return 放入新页前是否需要先evict()：页数已经达到容量  或者放入后超出字节上限
+     *   缓存为空时一页总能放入  哪怕它自己就超出了字节上限
+     */
+    public boolean isFull(long incoming) {
+        int n = size.get();
+        return n >= capacity || (n > 0 && bytes.get() + incoming > maxBytes);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 所有页占用的堆内存之和
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return 堆内存上限  Long.MAX_VALUE表示只按页数限制
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int numShards() {
+        return shards.length;
+    }
+
+    /**
+     * @return 所有页的快照  不算作访问
+     */
+    public List<Page> getAllPages() {
+        List<Page> all = new ArrayList<>(size());
+        for (Shard shard : shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                shard.frames.forEachValue(frame -> all.add(frame.page));
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        return all;
+    }
+}
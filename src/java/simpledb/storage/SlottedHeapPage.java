@@ -0,0 +1,552 @@
+package simpledb.storage;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.transaction.TransactionId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Each instance of SlottedHeapPage stores data for one page of a HeapFile
+ * with the slotted layout, {@link PageLayout#SLOTTED}: a slot directory at
+ * the start of the page and variable-length tuples packed at its end.
+ * <p>
+ * 原来HeapPage的槽位是定长的td.getSize()字节  字符串不管多长都占STRING_LEN+4=132字节
+ * 大多是短字符串的表  页里九成是填充  扫描也要多读好几倍的页
+ * 槽位目录页里字符串只存实际长度  同样大小的页能放下多得多的元组
+ * <p>
+ * 页的格式(整数都是大端  和DataOutputStream一致)：
+ * <pre>
+ *   [0, 2)       槽位数n(无符号short)
+ *   [2, 4)       元组数据的起点  0表示没有数据
+ *   [4, 4+4n)    槽位目录  每项是元组的偏移和长度(各一个无符号short)  长度为0表示空槽位
+ *   ...          空闲空间
+ *   [起点, 页尾)  元组数据  从页尾往前放
+ * </pre>
+ * 全0的页就是空页  所以新页仍然用HeapPage.createEmptyPageData
+ * <p>
+ * 元组的编码：字段依次排列  字符串是2字节长度 + 内容(每个字符一个字节  和StringField.serialize一样)
+ * 其他类型和定长格式相同
+ * 表有nullable列时元组以null bitmap开头(位的分配和HeapPage一样)  为NULL的字段不占空间
+ * <p>
+ * 和HeapPage一样只保留原始页数据  字段用到时才解码
+ * 删除只是把槽位的长度清0  插入先复用空槽位  页里的空洞在getPageData写回时整理掉
+ * 槽位号不变  所以RecordId一直有效
+ * <p>
+ * getNumEmptySlots按最长的元组估计还能插入几个  大于0时insertTuple一定成功
+ * 所以页"满"时最多还剩不到一个最长元组的空间没用上
+ *
+ * @see HeapFile
+ * @see PageFileHeader
+ */
+public class SlottedHeapPage implements TuplePage {
+
+    /**
+     * 页头：槽位数和元组数据的起点
+     */
+    static final int PAGE_HEADER = 4;
+
+    /**
+     * 每个槽位目录项：偏移和长度
+     */
+    static final int SLOT_BYTES = 4;
+
+    /**
+     * 槽位数存成无符号short
+     */
+    static final int MAX_SLOTS = 0xffff;
+
+    final HeapPageId pid;
+    final TupleDesc td;
+    private final int pageSize;
+    //最长的元组编码后的字节数
+    private final int maxTupleBytes;
+    //每个元组开头的null bitmap的字节数
+    private final int nullBytes;
+    //nullable字段在null bitmap中的位  其它字段为-1
+    private final int[] nullBits;
+
+    //原始页数据  只读  从不修改
+    private final ByteBuffer raw;
+
+    //槽位目录  offsets只对还在raw里的元组有意义  数组可能比numSlots长
+    private int numSlots;
+    private int[] offsets;
+    private int[] lengths;
+    //插入到本页的元组  null表示空槽位或者数据还在raw里  第一次插入时才分配  和offsets一样长
+    private Tuple[] tuples;
+
+    //页头 + 槽位目录 + 元组数据占用的字节
+    private int usedBytes;
+    //长度为0的槽位目录项
+    private int emptyEntries;
+    //比它小的槽位都已被使用  插入从这里开始找空槽位
+    private int freeHint;
+    //插入到本页、还留在tuples里的元组占用的堆内存
+    private long insertedBytes;
+
+    byte[] oldData;
+    //还没调用过setBeforeImage时  修改前的镜像就是原始页数据
+    private ByteBuffer oldDataBuffer;
+    private final Object oldDataLock = new Object();
+
+    private TransactionId tid;
+    private boolean dirty;
+
+    /**
+     * Create a SlottedHeapPage from the bytes of a page read from disk.
+     *
+     * @see #SlottedHeapPage(HeapPageId, ByteBuffer)
+     */
+    public SlottedHeapPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a SlottedHeapPage straight from a buffer holding the page. Only
+     * the slot directory is read here; fields are decoded from the buffer
+     * when they are asked for, so the buffer must stay unchanged while the
+     * page is alive.
+     *
+     * @throws IOException if the buffer is shorter than a page or the slot
+     *   directory points outside the page
+     */
+    public SlottedHeapPage(HeapPageId id, ByteBuffer data) throws IOException {
+        this.pid = id;
+        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.pageSize = Database.getCatalog().getPageSize(id.getTableId());
+        this.maxTupleBytes = maxTupleBytes(td);
+        this.nullBytes = td.getNullBitmapSize();
+        this.nullBits = HeapPage.nullBits(td);
+        //元组数据在页尾  页必须完整
+        if (data.remaining() < pageSize) {
+            throw new IOException("page data is shorter than the page");
+        }
+        this.raw = data.slice();
+
+        numSlots = raw.getShort(0) & 0xffff;
+        int directoryEnd = PAGE_HEADER + numSlots * SLOT_BYTES;
+        if (directoryEnd > pageSize) {
+            throw new IOException("corrupt slotted page: " + numSlots + " slots");
+        }
+        offsets = new int[numSlots];
+        lengths = new int[numSlots];
+        usedBytes = directoryEnd;
+        for (int i = 0; i < numSlots; i++) {
+            int off = raw.getShort(PAGE_HEADER + i * SLOT_BYTES) & 0xffff;
+            int len = raw.getShort(PAGE_HEADER + i * SLOT_BYTES + 2) & 0xffff;
+            if (len == 0) {
+                emptyEntries++;
+            } else if (off < directoryEnd || off + len > pageSize) {
+                throw new IOException("corrupt slotted page: slot " + i + " at " + off + " length " + len);
+            }
+            offsets[i] = off;
+            lengths[i] = len;
+            usedBytes += len;
+        }
+        this.oldDataBuffer = raw;
+    }
+
+    /**
+     * @return td的元组编码后最多占多少字节  字符串按STRING_LEN算
+     */
+    static int maxTupleBytes(TupleDesc td) {
+        int n = td.getNullBitmapSize();
+        for (int i = 0; i < td.numFields(); i++) {
+            Type type = td.getFieldType(i);
+            n += type == Type.STRING_TYPE ? 2 + Type.STRING_LEN : type.getLen();
+        }
+        return n;
+    }
+
+    //字符串最多存STRING_LEN个字符  和Type.STRING_TYPE.parse能读出的一致
+    private static String truncate(String s) {
+        return s.length() > Type.STRING_LEN ? s.substring(0, Type.STRING_LEN) : s;
+    }
+
+    /**
+     * @return 元组t编码后的字节数
+     */
+    private int encodedLength(Tuple t) {
+        int n = nullBytes;
+        for (int i = 0; i < td.numFields(); i++) {
+            Type type = td.getFieldType(i);
+            if (t.getField(i).isNull()) {
+                continue;
+            }
+            n += type == Type.STRING_TYPE ? 2 + truncate(((StringField) t.getField(i)).getValue()).length() : type.getLen();
+        }
+        return n;
+    }
+
+    private void encode(Tuple t, DataOutputStream dos) throws IOException {
+        byte[] nulls = new byte[nullBytes];
+        for (int i = 0; i < td.numFields(); i++) {
+            if (nullBits[i] >= 0 && t.getField(i).isNull()) {
+                nulls[nullBits[i] / 8] |= 1 << (nullBits[i] % 8);
+            }
+        }
+        dos.write(nulls);
+        for (int i = 0; i < td.numFields(); i++) {
+            Field f = t.getField(i);
+            if (f.isNull()) {
+                continue;
+            }
+            if (td.getFieldType(i) == Type.STRING_TYPE) {
+                String s = truncate(((StringField) f).getValue());
+                dos.writeShort(s.length());
+                dos.writeBytes(s);
+            } else {
+                f.serialize(dos);
+            }
+        }
+    }
+
+    /** Return a view of this page before it was modified
+        -- used by recovery */
+    public SlottedHeapPage getBeforeImage() {
+        try {
+            byte[] oldDataRef;
+            ByteBuffer oldDataBufferRef;
+            synchronized (oldDataLock) {
+                oldDataRef = oldData;
+                oldDataBufferRef = oldDataBuffer;
+            }
+            if (oldDataRef == null) {
+                return new SlottedHeapPage(pid, oldDataBufferRef);
+            }
+            return new SlottedHeapPage(pid, oldDataRef);
+        } catch (IOException e) {
+            e.printStackTrace();
+            //should never happen -- we parsed it OK before!
+            System.exit(1);
+        }
+        return null;
+    }
+
+    public void setBeforeImage() {
+        synchronized (oldDataLock) {
+            oldData = getPageData();
+            oldDataBuffer = null;
+        }
+    }
+
+    //页框要给别的页用了  还是原始数据视图的镜像拷到堆上
+    public void keepBeforeImage() {
+        synchronized (oldDataLock) {
+            if (oldData == null && oldDataBuffer != null) {
+                byte[] copy = new byte[oldDataBuffer.remaining()];
+                oldDataBuffer.duplicate().get(copy);
+                oldData = copy;
+                oldDataBuffer = null;
+            }
+        }
+    }
+
+    public HeapPageId getId() {
+        return pid;
+    }
+
+    //插入到槽位slot的元组  没有时返回null
+    private Tuple inserted(int slot) {
+        return tuples == null ? null : tuples[slot];
+    }
+
+    //原始数据里偏移为tupleOff的元组的第j个字段是不是NULL
+    private boolean isNull(int j, int tupleOff) {
+        int bit = nullBits[j];
+        return bit >= 0 && (raw.get(tupleOff + bit / 8) & (1 << (bit % 8))) != 0;
+    }
+
+    //原始数据里从off开始的第j个字段占的字节  NULL字段不占空间  由调用方判断
+    private int fieldLength(int j, int off) {
+        Type type = td.getFieldType(j);
+        return type == Type.STRING_TYPE ? 2 + (raw.getShort(off) & 0xffff) : type.getLen();
+    }
+
+    private Field decodeField(int j, int off) {
+        Type type = td.getFieldType(j);
+        if (type == Type.STRING_TYPE) {
+            int len = raw.getShort(off) & 0xffff;
+            byte[] bs = new byte[len];
+            copyRaw(off + 2, bs, 0, len);
+            return new StringField(new String(bs), Type.STRING_LEN);
+        }
+        try {
+            return type.parse(raw, off);
+        } catch (java.text.ParseException e) {
+            e.printStackTrace();
+            throw new NoSuchElementException("parsing error!");
+        }
+    }
+
+    //从原始页数据解码偏移为off的元组
+    private Tuple decodeTuple(int slot, int tupleOff) {
+        Field[] fields = new Field[td.numFields()];
+        int off = tupleOff + nullBytes;
+        for (int j = 0; j < fields.length; j++) {
+            if (isNull(j, tupleOff)) {
+                fields[j] = NullField.of(td.getFieldType(j));
+                continue;
+            }
+            fields[j] = decodeField(j, off);
+            off += fieldLength(j, off);
+        }
+        return new Tuple(td, fields, new RecordId(pid, slot));
+    }
+
+    /**
+     * Returns the value of one field of the tuple in a slot. The fields
+     * before it are skipped by their lengths, not decoded.
+     */
+    public Field getField(int slot, int i) {
+        if (!isSlotUsed(slot)) {
+            return null;
+        }
+        Tuple t = inserted(slot);
+        if (t != null) {
+            return t.getField(i);
+        }
+        int tupleOff = offsets[slot];
+        if (isNull(i, tupleOff)) {
+            return NullField.of(td.getFieldType(i));
+        }
+        int off = tupleOff + nullBytes;
+        for (int j = 0; j < i; j++) {
+            if (!isNull(j, tupleOff)) {
+                off += fieldLength(j, off);
+            }
+        }
+        return decodeField(i, off);
+    }
+
+    public Tuple getTuple(int slot) {
+        if (!isSlotUsed(slot)) {
+            return null;
+        }
+        Tuple t = inserted(slot);
+        return t != null ? t : decodeTuple(slot, offsets[slot]);
+    }
+
+    /**
+     * Generates a byte array representing the contents of this page. Live
+     * tuples are packed at the end of the page in slot order; slot numbers
+     * are kept.
+     */
+    public byte[] getPageData() {
+        byte[] data = new byte[pageSize];
+        ByteBuffer out = ByteBuffer.wrap(data);
+        out.putShort(0, (short) numSlots);
+        int pos = pageSize;
+        ByteArrayOutputStream baos = null;
+        for (int i = 0; i < numSlots; i++) {
+            int len = lengths[i];
+            if (len == 0) {
+                continue;
+            }
+            pos -= len;
+            Tuple t = inserted(i);
+            if (t == null) {
+                copyRaw(offsets[i], data, pos, len);
+            } else {
+                if (baos == null) {
+                    baos = new ByteArrayOutputStream(maxTupleBytes);
+                }
+                baos.reset();
+                try {
+                    encode(t, new DataOutputStream(baos));
+                } catch (IOException e) {
+                    // this really shouldn't happen
+                    e.printStackTrace();
+                }
+                System.arraycopy(baos.toByteArray(), 0, data, pos, len);
+            }
+            out.putShort(PAGE_HEADER + i * SLOT_BYTES, (short) pos);
+            out.putShort(PAGE_HEADER + i * SLOT_BYTES + 2, (short) len);
+        }
+        out.putShort(2, (short) (pos == pageSize ? 0 : pos));
+        return data;
+    }
+
+    //从原始页数据的from处拷贝len个字节
+    private void copyRaw(int from, byte[] dst, int dstOff, int len) {
+        if (raw.hasArray()) {
+            System.arraycopy(raw.array(), raw.arrayOffset() + from, dst, dstOff, len);
+        } else {
+            ByteBuffer b = raw.duplicate();
+            b.position(from);
+            b.get(dst, dstOff, len);
+        }
+    }
+
+    public void deleteTuple(Tuple t) throws DbException {
+        RecordId recordId = t.getRecordId();
+        if (recordId != null && pid.equals(recordId.getPageId())) {
+            int slot = recordId.getTupleNumber();
+            if (isSlotUsed(slot) && t.equals(getTuple(slot))) {
+                usedBytes -= lengths[slot];
+                lengths[slot] = 0;
+                emptyEntries++;
+                if (inserted(slot) != null) {
+                    insertedBytes -= tuples[slot].getRetainedSize();
+                    tuples[slot] = null;
+                }
+                if (slot < freeHint) {
+                    freeHint = slot;
+                }
+                return;
+            }
+        }
+        throw new DbException("can't find tuple in the page");
+    }
+
+    public void insertTuple(Tuple t) throws DbException {
+        if (!t.getTupleDesc().equals(td)) throw new DbException("no match tupleDesc");
+        HeapPage.checkNulls(td, t);
+        int len = encodedLength(t);
+        //先找空的目录项  没有再在目录末尾加一项
+        int slot = -1;
+        if (emptyEntries > 0) {
+            for (int i = freeHint; i < numSlots; i++) {
+                if (lengths[i] == 0) {
+                    slot = i;
+                    break;
+                }
+            }
+        }
+        int need = len + (slot < 0 ? SLOT_BYTES : 0);
+        if (need > pageSize - usedBytes || (slot < 0 && numSlots == MAX_SLOTS)) {
+            throw new DbException("no room for the tuple");
+        }
+        if (slot < 0) {
+            slot = numSlots++;
+            if (slot == offsets.length) {
+                int capacity = Math.max(8, offsets.length * 2);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                if (tuples != null) {
+                    tuples = Arrays.copyOf(tuples, capacity);
+                }
+            }
+        } else {
+            emptyEntries--;
+        }
+        if (tuples == null) {
+            tuples = new Tuple[offsets.length];
+        }
+        tuples[slot] = t;
+        offsets[slot] = 0;
+        lengths[slot] = len;
+        usedBytes += need;
+        t.setRecordId(new RecordId(pid, slot));
+        insertedBytes += t.getRetainedSize();
+        freeHint = slot + 1;
+    }
+
+    /**
+     * 原始页数据(堆外的不算) + 槽位目录 + 插入的元组 + setBeforeImage生成的镜像  O(1)
+     */
+    @Override
+    public long getRetainedSize() {
+        long bytes = 64 + 48 + (raw.isDirect() ? 0 : raw.capacity())
+                + 2 * (16 + 4L * offsets.length)
+                + (tuples == null ? 0 : 16 + 4L * tuples.length) + insertedBytes;
+        byte[] old = oldData;
+        if (old != null) {
+            bytes += 16 + old.length;
+        }
+        return bytes;
+    }
+
+    public synchronized void markDirty(boolean dirty, TransactionId tid) {
+        this.dirty = dirty;
+        this.tid = tid;
+    }
+
+    public synchronized TransactionId isDirty() {
+        return dirty ? tid : null;
+    }
+
+    @Override
+    public synchronized boolean markClean(TransactionId tid) {
+        if (!dirty || tid == null || !tid.equals(this.tid)) {
+            return false;
+        }
+        dirty = false;
+        this.tid = null;
+        return true;
+    }
+
+    @Override
+    public int getNumSlots() {
+        return numSlots;
+    }
+
+    /**
+     * Returns the number of tuples of the longest possible encoding that
+     * still fit, first into empty slots and then into new slot entries.
+     */
+    public int getNumEmptySlots() {
+        int free = pageSize - usedBytes;
+        int reused = Math.min(emptyEntries, free / maxTupleBytes);
+        if (reused < emptyEntries) {
+            return reused;
+        }
+        free -= reused * maxTupleBytes;
+        return reused + Math.min(free / (maxTupleBytes + SLOT_BYTES), MAX_SLOTS - numSlots);
+    }
+
+    /**
+     * @return 页里还没有用到的字节数  写回时整理掉的空洞已经算在里面
+     */
+    public int getFreeBytes() {
+        return pageSize - usedBytes;
+    }
+
+    public boolean isSlotUsed(int i) {
+        return i >= 0 && i < numSlots && lengths[i] > 0;
+    }
+
+    public Iterator<Tuple> iterator() {
+        //和HeapPage一样迭代创建时的快照  之后的修改不影响这次迭代
+        final int n = numSlots;
+        final int[] offsetSnapshot = Arrays.copyOf(offsets, n);
+        final int[] lengthSnapshot = Arrays.copyOf(lengths, n);
+        final Tuple[] tupleSnapshot = tuples == null ? null : Arrays.copyOf(tuples, n);
+        return new Iterator<Tuple>() {
+            private int slot = advance(0);
+
+            private int advance(int i) {
+                while (i < n && lengthSnapshot[i] == 0) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < n;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Tuple t = tupleSnapshot == null ? null : tupleSnapshot[slot];
+                if (t == null) {
+                    t = decodeTuple(slot, offsetSnapshot[slot]);
+                }
+                slot = advance(slot + 1);
+                return t;
+            }
+        };
+    }
+}
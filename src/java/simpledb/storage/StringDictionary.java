@@ -0,0 +1,218 @@
+package simpledb.storage;
+
+import simpledb.common.DbException;
+import simpledb.common.Type;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The dictionaries of the dictionary encoded string columns of one heap
+ * file, see {@link TupleDesc#isDictionaryEncoded(int)}.
+ * <p>
+ * 取值很少的字符串列每行都占132字节  编码后页里只存2字节的编码  页能放下的元组多得多
+ * 编码是整张表共用的(不是每页一个字典)  所以不同页上相同的值编码相同  比较、分组可以直接比编码
+ * 每列最多MAX_CODES个不同的值  编码按值第一次出现的顺序分配  分配之后不再改变  也不回收
+ * <p>
+ * 字典保存在表文件旁边的 .dict 文件里  每个值一条记录：2字节列号 + writeUTF的值
+ * 新值先记在内存里  {@link #flush()}时一起追加到文件末尾再fsync一次  不是每个新值fsync一次
+ * HeapFile写页之前先flush  引用这个编码的页写到磁盘之前  编码一定已经持久化了
+ * 打开表时整个文件读进内存  末尾不完整的记录(追加到一半时崩溃)被截掉
+ * <p>
+ * 解码返回每个编码唯一的{@link CodedStringField}  扫描不为每一行创建字符串
+ *
+ * @see CodedStringField
+ * @see HeapPage
+ */
+public class StringDictionary {
+
+    /**
+     * 每列最多的不同值个数  编码是2字节无符号数
+     */
+    public static final int MAX_CODES = 1 << 16;
+
+    /**
+     * 编码在页里占的字节数
+     */
+    static final int CODE_LEN = 2;
+
+    private final File sideFile;
+
+    //每列的字典  不编码的列为null
+    private final Column[] columns;
+
+    //还没追加到文件的新值的记录
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+
+    private static class Column {
+        final Map<String, Integer> codes = new HashMap<>();
+        //下标是编码  只在锁里追加  数组引用volatile发布  解码不加锁
+        volatile CodedStringField[] values = new CodedStringField[16];
+        int size;
+    }
+
+    /**
+     * Opens the dictionary of the heap file tableFile, loading the side
+     * file if there is one.
+     *
+     * @param td the schema of the table; only its dictionary encoded
+     *     columns have a dictionary
+     * @throws IOException if the side file cannot be read or does not match td
+     */
+    public StringDictionary(File tableFile, TupleDesc td) throws IOException {
+        this.sideFile = sideFile(tableFile);
+        this.columns = new Column[td.numFields()];
+        for (int i = 0; i < columns.length; i++) {
+            if (td.isDictionaryEncoded(i)) {
+                columns[i] = new Column();
+            }
+        }
+        load();
+    }
+
+    /**
+     * @return the side file holding the dictionary of tableFile
+     */
+    public static File sideFile(File tableFile) {
+        return new File(tableFile.getPath() + ".dict");
+    }
+
+    public File getFile() {
+        return sideFile;
+    }
+
+    private void load() throws IOException {
+        if (!sideFile.exists()) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(sideFile.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int good = 0;
+        try {
+            while (in.available() > 0) {
+                int column = in.readUnsignedShort();
+                String value = in.readUTF();
+                if (column >= columns.length || columns[column] == null) {
+                    throw new IOException(sideFile + " has a value for column " + column
+                            + ", which is not dictionary encoded");
+                }
+                add(column, value);
+                good = bytes.length - in.available();
+            }
+        } catch (EOFException e) {
+            //追加到一半的记录  截掉  下次追加从这里开始
+            try (RandomAccessFile raf = new RandomAccessFile(sideFile, "rw")) {
+                raf.setLength(good);
+            }
+        }
+    }
+
+    private int add(int i, String value) {
+        Column c = columns[i];
+        int code = c.size;
+        CodedStringField[] values = c.values;
+        if (code == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[code] = new CodedStringField(value, this, i, code);
+        c.codes.put(value, code);
+        c.size++;
+        c.values = values;
+        return code;
+    }
+
+    private Column column(int i) {
+        if (i < 0 || i >= columns.length || columns[i] == null) {
+            throw new IllegalArgumentException("column " + i + " is not dictionary encoded");
+        }
+        return columns[i];
+    }
+
+    /**
+     * @return the code of value in column i, adding it to the dictionary
+     *     if it is new; new values reach the side file on {@link #flush()}
+     * @throws DbException if column i already has {@link #MAX_CODES} values
+     */
+    public synchronized int encode(int i, String value) throws DbException {
+        Column c = column(i);
+        value = truncate(value);
+        Integer code = c.codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (c.size == MAX_CODES) {
+            throw new DbException("column " + i + " has more than " + MAX_CODES + " distinct values");
+        }
+        try {
+            pendingOut.writeShort(i);
+            pendingOut.writeUTF(value);
+        } catch (IOException e) {
+            //写的是内存  只有值太长时writeUTF才会失败
+            throw new DbException("cannot encode " + value + ": " + e.getMessage());
+        }
+        return add(i, value);
+    }
+
+    /**
+     * Appends the values added since the last flush to the side file and
+     * syncs it, once for all of them. Heap files call this before writing
+     * a page, so the codes on a page on disk are always in the side file.
+     *
+     * @throws IOException if the side file cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(sideFile, true)) {
+            pending.writeTo(out);
+            out.getFD().sync();
+        }
+        pending.reset();
+    }
+
+    /**
+     * @return the code of value in column i, or -1 if it is not in the dictionary
+     */
+    public synchronized int lookup(int i, String value) {
+        Integer code = column(i).codes.get(truncate(value));
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @return the field for code in column i; the same instance on every call
+     * @throws IllegalArgumentException if the code is not in the dictionary
+     */
+    public CodedStringField decode(int i, int code) {
+        CodedStringField[] values = column(i).values;
+        CodedStringField f = code < values.length ? values[code] : null;
+        if (f == null) {
+            throw new IllegalArgumentException("code " + code + " is not in the dictionary of column " + i);
+        }
+        return f;
+    }
+
+    /**
+     * @return the number of distinct values of column i
+     */
+    public synchronized int size(int i) {
+        return column(i).size;
+    }
+
+    //和StringField一样只保留前STRING_LEN个字符  截断后相同的值编码相同
+    private static String truncate(String value) {
+        return value.length() > Type.STRING_LEN ? value.substring(0, Type.STRING_LEN) : value;
+    }
+}
@@ -41,6 +41,14 @@ public class StringField implements Field {
 		return value;
 	}
 
+	/**
+	 * 本对象 + String对象 + 字符数组  字符按UTF-16算  宁多勿少
+	 */
+	@Override
+	public long getRetainedSize() {
+		return 24 + 24 + 16 + 2L * value.length();
+	}
+
 	public int hashCode() {
 		return value.hashCode();
 	}
@@ -44,6 +44,34 @@ public class Tuple implements Serializable {
         this.fields=new CopyOnWriteArrayList<>();
     }
 
+    /**
+     * 用已经解码好的全部字段创建元组  只拷贝一次数组
+     * 逐个setField时CopyOnWriteArrayList每次都要复制整个数组
+     *
+     * @param td the schema of this tuple
+     * @param fields the values of all fields, in order
+     * @param rid the location of this tuple on disk, may be null
+     */
+    Tuple(TupleDesc td, Field[] fields, RecordId rid) {
+        this.tupleSchema = td;
+        this.fields = new CopyOnWriteArrayList<>(fields);
+        this.recordId = rid;
+    }
+
+    /**
+     * Approximate number of bytes this tuple and its fields keep alive on
+     * the heap.
+     *
+     * 本对象 + CopyOnWriteArrayList(含锁对象和数组) + RecordId + 各个字段
+     */
+    public long getRetainedSize() {
+        long bytes = 24 + 40 + 16 + 4L * fields.size() + 24;
+        for (Field f : fields) {
+            bytes += f.getRetainedSize();
+        }
+        return bytes;
+    }
+
     /**
      * @return The TupleDesc representing the schema of this tuple.
      */
@@ -0,0 +1,388 @@
+package simpledb.storage;
+
+import simpledb.common.Type;
+
+import java.util.Arrays;
+
+/**
+ * A batch of rows stored column by column, what operators pass to each
+ * other in the vectorized execution mode (see
+ * {@link simpledb.execution.OpIterator#nextBatch()}).
+ * <p>
+ * An INT column is an int[] of values plus a boolean[] telling which rows
+ * are NULL, so operators working on INT fields compare and add primitive
+ * ints instead of creating an IntField per row; other columns hold Fields.
+ * The selection vector lists the rows of the batch that are part of the
+ * result, in increasing order: a filter only shrinks the selection and
+ * never moves the rows.
+ *
+ * 一批行  按列存放  向量化执行时算子之间一次传一批
+ * 行号row是在列数组里的下标  0到getNumRows()-1
+ * 选择向量getSelection()的前size()个是这一批真正输出的行  过滤只改选择向量  不搬动列数组
+ */
+public class TupleBatch {
+
+    /**
+     * The number of rows of a batch unless its producer chooses otherwise.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    //一列  INT列用ints和nulls  其他类型的列(和放进来不是IntField的INT列)用fields
+    private static final class Column {
+        int[] ints;
+        boolean[] nulls;
+        Field[] fields;
+
+        Column(Type type, int capacity) {
+            if (type == Type.INT_TYPE) {
+                ints = new int[capacity];
+                nulls = new boolean[capacity];
+            } else {
+                fields = new Field[capacity];
+            }
+        }
+
+        //改成存Field  已经放进来的行转成IntField
+        void toFields(int rows) {
+            fields = new Field[ints.length];
+            for (int r = 0; r < rows; r++) {
+                fields[r] = nulls[r] ? NullField.of(Type.INT_TYPE) : new IntField(ints[r]);
+            }
+            ints = null;
+            nulls = null;
+        }
+    }
+
+    private final TupleDesc td;
+    private final int capacity;
+    private final Column[] columns;
+    //用add(Tuple)放进来的元组  getTuple直接返回它们  其他方式放进来的行为null
+    private Tuple[] tuples;
+    //行的RecordId  一页读出来的一批只记页号和槽位  用到时再创建RecordId
+    private RecordId[] recordIds;
+    private PageId page;
+    private int[] slots;
+    private final int[] selection;
+    private int numRows;
+    private int size;
+
+    /**
+     * Creates an empty batch of {@link #DEFAULT_CAPACITY} rows.
+     */
+    public TupleBatch(TupleDesc td) {
+        this(td, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param td the schema of the rows
+     * @param capacity the largest number of rows the batch holds
+     */
+    public TupleBatch(TupleDesc td, int capacity) {
+        this.td = td;
+        this.capacity = capacity;
+        this.columns = new Column[td.numFields()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(td.getFieldType(i), capacity);
+        }
+        this.selection = new int[capacity];
+    }
+
+    //视图  共用另一批的列、选择向量
+    private TupleBatch(TupleDesc td, TupleBatch base, Column[] columns) {
+        this.td = td;
+        this.capacity = base.capacity;
+        this.columns = columns;
+        this.recordIds = base.recordIds;
+        this.page = base.page;
+        this.slots = base.slots;
+        this.selection = base.selection;
+        this.numRows = base.numRows;
+        this.size = base.size;
+    }
+
+    /**
+     * Returns a batch with the same rows and selection as this one, and
+     * the fields at the given indexes as its columns, sharing the arrays
+     * of this batch instead of copying them. What renaming or projecting
+     * operators return.
+     *
+     * @param td the schema of the view
+     * @param fields the index in this batch of each field of the view, or
+     *     null for the same fields in the same order
+     */
+    public TupleBatch view(TupleDesc td, int[] fields) {
+        if (fields == null) {
+            TupleBatch view = new TupleBatch(td, this, columns);
+            view.tuples = tuples;
+            return view;
+        }
+        Column[] cols = new Column[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            cols[i] = columns[fields[i]];
+        }
+        return new TupleBatch(td, this, cols);
+    }
+
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of rows added to this batch, selected or not
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return whether no more rows can be added
+     */
+    public boolean isFull() {
+        return numRows == capacity;
+    }
+
+    /**
+     * @return the number of selected rows, the first entries of
+     *     {@link #getSelection()}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the selection vector, the rows of this batch in the result.
+     * Callers narrowing the selection overwrite its first entries and then
+     * call {@link #setSize}.
+     */
+    public int[] getSelection() {
+        return selection;
+    }
+
+    /**
+     * Keeps only the first n entries of the selection vector.
+     */
+    public void setSize(int n) {
+        if (n < 0 || n > size) {
+            throw new IllegalArgumentException("selection can only shrink");
+        }
+        this.size = n;
+    }
+
+    /**
+     * Adds an empty row, selected, and returns its row number. Its fields
+     * are set with {@link #setInt}, {@link #setField} and {@link #copy}.
+     */
+    public int addRow() {
+        if (isFull()) {
+            throw new IllegalStateException("batch is full");
+        }
+        int row = numRows++;
+        for (Column c : columns) {
+            if (c.fields != null) {
+                c.fields[row] = null;
+            } else {
+                c.nulls[row] = false;
+            }
+        }
+        if (tuples != null) {
+            tuples[row] = null;
+        }
+        if (recordIds != null) {
+            recordIds[row] = null;
+        }
+        selection[size++] = row;
+        return row;
+    }
+
+    /**
+     * Adds a tuple as a row, selected. {@link #getTuple} returns the same
+     * tuple for it.
+     */
+    public void add(Tuple t) {
+        int row = addRow();
+        for (int i = 0; i < columns.length; i++) {
+            setField(row, i, t.getField(i));
+        }
+        if (tuples == null) {
+            tuples = new Tuple[capacity];
+        }
+        tuples[row] = t;
+        if (t.getRecordId() != null) {
+            setRecordId(row, t.getRecordId());
+        }
+    }
+
+    /**
+     * @return whether column i holds primitive ints, see {@link #getInts}
+     */
+    public boolean isInt(int i) {
+        return columns[i].fields == null;
+    }
+
+    /**
+     * @return the values of INT column i, by row; undefined for NULL rows
+     * @see #isInt
+     */
+    public int[] getInts(int i) {
+        return columns[i].ints;
+    }
+
+    /**
+     * @return which rows of INT column i are NULL
+     * @see #isInt
+     */
+    public boolean[] getNulls(int i) {
+        return columns[i].nulls;
+    }
+
+    /**
+     * @return whether field i of a row is NULL
+     */
+    public boolean isNull(int row, int i) {
+        Column c = columns[i];
+        if (c.fields != null) {
+            return c.fields[row] != null && c.fields[row].isNull();
+        }
+        return c.nulls[row];
+    }
+
+    /**
+     * @return field i of a row; null if it was not set (a field a scan did
+     *     not read) unless the column is an INT column, where such a field
+     *     reads as NULL
+     */
+    public Field getField(int row, int i) {
+        Column c = columns[i];
+        if (c.fields != null) {
+            return c.fields[row];
+        }
+        return c.nulls[row] ? NullField.of(Type.INT_TYPE) : new IntField(c.ints[row]);
+    }
+
+    public void setInt(int row, int i, int v) {
+        Column c = columns[i];
+        if (c.fields != null) {
+            c.fields[row] = new IntField(v);
+        } else {
+            c.ints[row] = v;
+            c.nulls[row] = false;
+        }
+    }
+
+    public void setField(int row, int i, Field f) {
+        Column c = columns[i];
+        if (c.fields == null) {
+            if (f == null || f.isNull()) {
+                c.nulls[row] = true;
+                return;
+            }
+            if (f instanceof IntField) {
+                c.ints[row] = ((IntField) f).getValue();
+                c.nulls[row] = false;
+                return;
+            }
+            //类型和td不符(例如聚合结果)  这一列改存Field
+            c.toFields(numRows);
+        }
+        c.fields[row] = f;
+    }
+
+    /**
+     * Copies all fields of a row of another batch into consecutive fields
+     * of a row of this one, starting with field offset. What joins use to
+     * build their output rows.
+     */
+    public void copy(int row, int offset, TupleBatch src, int srcRow) {
+        for (int i = 0; i < src.columns.length; i++) {
+            Column s = src.columns[i];
+            Column d = columns[offset + i];
+            if (s.fields == null && d.fields == null) {
+                d.ints[row] = s.ints[srcRow];
+                d.nulls[row] = s.nulls[srcRow];
+            } else {
+                setField(row, offset + i, src.getField(srcRow, i));
+            }
+        }
+    }
+
+    public void setRecordId(int row, RecordId rid) {
+        if (recordIds == null) {
+            recordIds = new RecordId[capacity];
+        }
+        recordIds[row] = rid;
+    }
+
+    /**
+     * Sets the RecordId of a row read from slot of the page of this batch,
+     * see {@link #setPage}, without creating the RecordId yet.
+     */
+    public void setSlot(int row, int slot) {
+        slots[row] = slot;
+    }
+
+    /**
+     * Makes this a batch of rows read from one page, whose RecordIds are
+     * set with {@link #setSlot}.
+     */
+    public void setPage(PageId pid) {
+        this.page = pid;
+        if (slots == null) {
+            slots = new int[capacity];
+        }
+    }
+
+    /**
+     * @return the RecordId of a row, or null if it has none
+     */
+    public RecordId getRecordId(int row) {
+        if (recordIds != null && recordIds[row] != null) {
+            return recordIds[row];
+        }
+        return page == null ? null : new RecordId(page, slots[row]);
+    }
+
+    /**
+     * Returns a row as a tuple: the tuple added with {@link #add} if there
+     * is one, otherwise a new tuple with the schema of this batch.
+     */
+    public Tuple getTuple(int row) {
+        if (tuples != null && tuples[row] != null) {
+            return tuples[row];
+        }
+        Field[] fields = new Field[columns.length];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = getField(row, i);
+        }
+        return new Tuple(td, fields, getRecordId(row));
+    }
+
+    /**
+     * Removes all rows, so the batch can be filled again.
+     */
+    public void clear() {
+        numRows = 0;
+        size = 0;
+        page = null;
+        if (tuples != null) {
+            Arrays.fill(tuples, null);
+        }
+        if (recordIds != null) {
+            Arrays.fill(recordIds, null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < size; k++) {
+            sb.append(getTuple(selection[k]));
+        }
+        return sb.toString();
+    }
+}
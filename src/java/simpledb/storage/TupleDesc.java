@@ -33,9 +33,33 @@ public class TupleDesc implements Serializable {
          * */
         public final String fieldName;
 
+        /**
+         * Whether the field may hold NULL
+         * */
+        public final boolean nullable;
+
+        /**
+         * Whether heap files store the field as a code into a
+         * {@link StringDictionary}
+         * */
+        public final boolean dictionary;
+
         public TDItem(Type t, String n) {
+            this(t, n, false);
+        }
+
+        public TDItem(Type t, String n, boolean nullable) {
+            this(t, n, nullable, false);
+        }
+
+        public TDItem(Type t, String n, boolean nullable, boolean dictionary) {
+            if (dictionary && t != Type.STRING_TYPE) {
+                throw new IllegalArgumentException("only string fields can be dictionary encoded");
+            }
             this.fieldName = n;
             this.fieldType = t;
+            this.nullable = nullable;
+            this.dictionary = dictionary;
         }
 
         public String toString() {
@@ -67,6 +91,43 @@ public class TupleDesc implements Serializable {
      *            be null.
      */
     public TupleDesc(Type[] typeAr, String[] fieldAr) {
+        this(typeAr, fieldAr, null);
+    }
+
+    /**
+     * Create a new TupleDesc whose fields may be declared nullable. Tuples
+     * of a table store a null bitmap only if some of its fields are
+     * nullable, see {@link #getNullBitmapSize()}.
+     *
+     * @param typeAr
+     *            array specifying the number of and types of fields in this
+     *            TupleDesc. It must contain at least one entry.
+     * @param fieldAr
+     *            array specifying the names of the fields. Note that names may
+     *            be null.
+     * @param nullableAr
+     *            array specifying which fields may hold NULL, or null if none
+     *            may
+     */
+    public TupleDesc(Type[] typeAr, String[] fieldAr, boolean[] nullableAr) {
+        this(typeAr, fieldAr, nullableAr, null);
+    }
+
+    /**
+     * Create a new TupleDesc whose string fields may be dictionary encoded:
+     * heap files then store a 2-byte code instead of the string, see
+     * {@link StringDictionary}. This only changes how tables store the
+     * field; TupleDescs built by operators (e.g. by {@link #merge}) never
+     * have dictionary encoded fields.
+     *
+     * @param dictionaryAr
+     *            array specifying which fields are dictionary encoded, or
+     *            null if none is; they must be of {@link Type#STRING_TYPE}
+     * @throws IllegalArgumentException
+     *            if a field that is not a string is dictionary encoded
+     * @see #TupleDesc(Type[], String[], boolean[])
+     */
+    public TupleDesc(Type[] typeAr, String[] fieldAr, boolean[] nullableAr, boolean[] dictionaryAr) {
         // some code goes here
         if(typeAr==null){
             throw new NullPointerException("typeAr is null");
@@ -85,10 +146,12 @@ public class TupleDesc implements Serializable {
         tupleSchema=new CopyOnWriteArrayList<>();
         int i=0;
         for(;i<typeLen&&i<fieldLen;i++){
-            tupleSchema.add(new TDItem(typeAr[i],fieldAr[i]));
+            tupleSchema.add(new TDItem(typeAr[i],fieldAr[i],nullableAr!=null&&nullableAr[i],
+                    dictionaryAr!=null&&dictionaryAr[i]));
         }
         for(;i<typeLen;i++){
-            tupleSchema.add(new TDItem(typeAr[i],null));
+            tupleSchema.add(new TDItem(typeAr[i],null,nullableAr!=null&&nullableAr[i],
+                    dictionaryAr!=null&&dictionaryAr[i]));
         }
     }
 
@@ -147,6 +210,45 @@ public class TupleDesc implements Serializable {
         return tupleSchema.get(i).fieldType;
     }
 
+    /**
+     * @return whether the ith field may hold NULL
+     * @throws NoSuchElementException
+     *             if i is not a valid field reference.
+     */
+    public boolean isNullable(int i) throws NoSuchElementException {
+        if(i<0||i>=this.numFields()){
+            throw new NoSuchElementException();
+        }
+        return tupleSchema.get(i).nullable;
+    }
+
+    /**
+     * @return whether heap files store the ith field as a dictionary code
+     * @throws NoSuchElementException
+     *             if i is not a valid field reference.
+     */
+    public boolean isDictionaryEncoded(int i) throws NoSuchElementException {
+        if(i<0||i>=this.numFields()){
+            throw new NoSuchElementException();
+        }
+        return tupleSchema.get(i).dictionary;
+    }
+
+    /**
+     * @return the size (in bytes) of the null bitmap stored in front of each
+     *         tuple: one bit per nullable field, 0 if no field is nullable.
+     *         Not included in {@link #getSize()}.
+     */
+    public int getNullBitmapSize() {
+        int nullable=0;
+        for(TDItem tdItem:tupleSchema){
+            if(tdItem.nullable){
+                nullable++;
+            }
+        }
+        return (nullable+7)/8;
+    }
+
     /**
      * Find the index of the field with a given name.
      * 
@@ -206,19 +308,46 @@ public class TupleDesc implements Serializable {
         int numFields2= td2.numFields();
         Type[] fieldType = new Type[numFields1 + numFields2];
         String[] fieldName = new String[numFields1 + numFields2];
+        boolean[] nullable = new boolean[numFields1 + numFields2];
         int i=0,j=0;
         while(i<numFields1) {
             fieldType[i]=td1.tupleSchema.get(i).fieldType;
             fieldName[i]=td1.tupleSchema.get(i).fieldName;
+            nullable[i]=td1.tupleSchema.get(i).nullable;
             i++;
         }
         while(j<numFields2){
             fieldType[i]=td2.tupleSchema.get(j).fieldType;
             fieldName[i]=td2.tupleSchema.get(j).fieldName;
+            nullable[i]=td2.tupleSchema.get(j).nullable;
             i++;
             j++;
         }
-        return  new TupleDesc(fieldType,fieldName);
+        return  new TupleDesc(fieldType,fieldName,nullable);
+    }
+
+    /**
+     * Returns a TupleDesc with only some of the fields of this one, what a
+     * scan reading only those fields returns. The fields keep their types,
+     * names and whether they are nullable or dictionary encoded.
+     *
+     * @param fields indexes of the fields of the new TupleDesc, in order;
+     *     at least one
+     * @return the new TupleDesc
+     */
+    public TupleDesc project(int[] fields) {
+        Type[] fieldType = new Type[fields.length];
+        String[] fieldName = new String[fields.length];
+        boolean[] nullable = new boolean[fields.length];
+        boolean[] dictionary = new boolean[fields.length];
+        for(int i=0;i<fields.length;i++){
+            TDItem item=tupleSchema.get(fields[i]);
+            fieldType[i]=item.fieldType;
+            fieldName[i]=item.fieldName;
+            nullable[i]=item.nullable;
+            dictionary[i]=item.dictionary;
+        }
+        return new TupleDesc(fieldType,fieldName,nullable,dictionary);
     }
 
     /**
@@ -226,6 +355,9 @@ public class TupleDesc implements Serializable {
      * TupleDescs are considered equal if they have the same number of items
      * and if the i-th type in this TupleDesc is equal to the i-th type in o
      * for every i.
+     *
+     * 不比较列能不能为NULL  算子输出的元组可以插入声明了nullable列的表  NULL是否合法由页在插入时检查
+     * 也不比较列是否字典编码  那只是表存储这一列的方式
      * 
      * @param o
      *            the Object to be compared for equality with this TupleDesc.
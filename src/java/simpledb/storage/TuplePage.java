@@ -0,0 +1,108 @@
+package simpledb.storage;
+
+import simpledb.common.DbException;
+import simpledb.execution.Predicate;
+
+import java.util.Iterator;
+
+/**
+ * A page of a HeapFile, whatever its layout. HeapFile and the code that
+ * scans heap files only use these methods, so tables with different page
+ * layouts share the same insert, delete and scan paths.
+ *
+ * 堆文件的页  不同的页格式(PageLayout)各有一个实现  HeapFile只通过这个接口访问页
+ *
+ * @see HeapPage
+ * @see SlottedHeapPage
+ */
+public interface TuplePage extends Page {
+
+    @Override
+    HeapPageId getId();
+
+    /**
+     * Copies the before image to the heap if it is still a view over the
+     * data the page was read from. The buffer pool calls it before the
+     * off-heap frame under the page is reused, so {@link #getBeforeImage}
+     * keeps returning this page's bytes after it leaves the pool.
+     */
+    void keepBeforeImage();
+
+    /**
+     * Returns the number of slots on this page, used or not. Slot numbers
+     * of the tuples on the page are below it.
+     */
+    int getNumSlots();
+
+    /**
+     * Returns the number of tuples that can still be inserted into this
+     * page. {@link #insertTuple} succeeds while it is positive.
+     */
+    int getNumEmptySlots();
+
+    /**
+     * Returns true if associated slot on this page is filled.
+     */
+    boolean isSlotUsed(int slot);
+
+    /**
+     * Returns the tuple in a slot, or null if the slot is empty.
+     */
+    Tuple getTuple(int slot);
+
+    /**
+     * Returns the value of field i of the tuple in a slot, decoding only
+     * that field, or null if the slot is empty.
+     */
+    Field getField(int slot, int i);
+
+    /**
+     * Returns whether the tuple in a used slot satisfies a predicate.
+     * Pages that can compare the raw bytes of a field to the operand
+     * override it; the default decodes the field with {@link #getField}.
+     *
+     * 扫描用它在物化元组之前过滤
+     */
+    default boolean matches(int slot, Predicate p) {
+        return p.filter(getField(slot, p.getField()));
+    }
+
+    /**
+     * Copies fields of the tuple in a used slot into a row of a batch.
+     * Pages that can read INT fields without creating Fields override it;
+     * the default decodes each field with {@link #getField}.
+     *
+     * @param columns the fields to copy, or null for all of them
+     */
+    default void readInto(int slot, TupleBatch batch, int row, int[] columns) {
+        if (columns == null) {
+            int n = batch.getTupleDesc().numFields();
+            for (int i = 0; i < n; i++) {
+                batch.setField(row, i, getField(slot, i));
+            }
+            return;
+        }
+        for (int i : columns) {
+            batch.setField(row, i, getField(slot, i));
+        }
+    }
+
+    /**
+     * Adds the specified tuple to the page and sets its RecordId.
+     * @throws DbException if the page is full or tupledesc is mismatch.
+     */
+    void insertTuple(Tuple t) throws DbException;
+
+    /**
+     * Delete the specified tuple from the page.
+     * @throws DbException if this tuple is not on this page, or tuple slot is
+     *         already empty.
+     */
+    void deleteTuple(Tuple t) throws DbException;
+
+    /**
+     * @return an iterator over all tuples on this page, not affected by
+     *   later modifications of the page
+     */
+    Iterator<Tuple> iterator();
+}
@@ -0,0 +1,179 @@
+package simpledb.storage;
+
+/**
+ * 2Q (Johnson &amp; Shasha, VLDB 1994)  另加一个给顺序扫描用的试用环
+ *
+ * - A1in：第一次进入缓存的页  FIFO  短时间内的重复访问不算重用
+ * - A1out：从A1in淘汰的页只留下key(ghost)  在这里被再次读入说明真的被重用  直接进Am
+ * - Am：被重用过的页  LRU
+ * - 试用环：带扫描提示读入的页  FIFO  达到ringSize后扫描只在环内循环淘汰自己的页
+ *   试用环里的页被非扫描访问(例如索引查找)命中时才升入Am
+ *
+ * 缓冲池没满时不会淘汰  所以小表的扫描照样整表留在缓存中
+ */
+public class TwoQueuePolicy implements ReplacementPolicy {
+
+    private static final int A1IN = 1;
+    private static final int AM = 2;
+    private static final int PROBATION = 3;
+    private static final int A1OUT = 4;
+
+    //A1in的目标大小
+    private final int kin;
+    //A1out最多记住的key数
+    private final int kout;
+    //试用环的大小
+    private final int ringSize;
+
+    //各个队列的哨兵  哨兵之后是最新的  哨兵之前是最老的
+    private final BufferFrame a1in = sentinel();
+    private final BufferFrame am = sentinel();
+    private final BufferFrame probation = sentinel();
+    private final BufferFrame a1out = sentinel();
+    private int a1inCount;
+    private int probationCount;
+    private final LongHashMap<BufferFrame> ghosts = new LongHashMap<>();
+
+    public TwoQueuePolicy(int capacity) {
+        this.kin = Math.max(1, capacity / 4);
+        this.kout = Math.max(1, capacity / 2);
+        this.ringSize = Math.max(2, capacity / 8);
+    }
+
+    private static BufferFrame sentinel() {
+        BufferFrame s = new BufferFrame(0, null);
+        s.linkBefore(null);
+        return s;
+    }
+
+    private static void pushFront(BufferFrame list, BufferFrame frame) {
+        frame.linkBefore(list.next);
+    }
+
+    //取出最老的  队列为空返回null
+    private static BufferFrame popBack(BufferFrame list) {
+        BufferFrame tail = list.prev;
+        if (tail == list) {
+            return null;
+        }
+        tail.unlink();
+        return tail;
+    }
+
+    @Override
+    public void recordInsert(BufferFrame frame, boolean scan) {
+        BufferFrame ghost = ghosts.remove(frame.key);
+        if (ghost != null) {
+            //在A1out中  是真正的重用
+            ghost.unlink();
+            frame.state = AM;
+            pushFront(am, frame);
+        } else if (scan) {
+            frame.state = PROBATION;
+            pushFront(probation, frame);
+            probationCount++;
+        } else {
+            frame.state = A1IN;
+            pushFront(a1in, frame);
+            a1inCount++;
+        }
+    }
+
+    @Override
+    public void recordAccess(BufferFrame frame, boolean scan) {
+        switch (frame.state) {
+            case AM:
+                //LRU：移动到队头
+                frame.unlink();
+                pushFront(am, frame);
+                break;
+            case PROBATION:
+                //扫描再次经过不算重用  其他访问才升入Am
+                if (!scan) {
+                    frame.unlink();
+                    probationCount--;
+                    frame.state = AM;
+                    pushFront(am, frame);
+                }
+                break;
+            default:
+                //A1in中的重复访问是相关访问  不调整
+                break;
+        }
+    }
+
+    @Override
+    public void recordRemove(BufferFrame frame) {
+        if (frame.state == A1IN) {
+            a1inCount--;
+        } else if (frame.state == PROBATION) {
+            probationCount--;
+        }
+        frame.unlink();
+    }
+
+    @Override
+    public BufferFrame victim() {
+        BufferFrame victim;
+        //扫描页先在自己的环里淘汰
+        if (probationCount >= ringSize) {
+            victim = popBack(probation);
+            probationCount--;
+            return victim;
+        }
+        if (a1inCount > kin || (a1inCount > 0 && am.next == am)) {
+            victim = popBack(a1in);
+            a1inCount--;
+            rememberGhost(victim.key);
+            return victim;
+        }
+        victim = popBack(am);
+        if (victim != null) {
+            return victim;
+        }
+        //只剩下不足一环的扫描页
+        victim = popBack(probation);
+        if (victim != null) {
+            probationCount--;
+        }
+        return victim;
+    }
+
+    @Override
+    public void requeue(BufferFrame frame) {
+        //放回原来的队列的最新一端  从A1in选出时留下的ghost去掉  否则下次放入会被当作重用
+        switch (frame.state) {
+            case AM:
+                pushFront(am, frame);
+                break;
+            case PROBATION:
+                pushFront(probation, frame);
+                probationCount++;
+                break;
+            default:
+                BufferFrame ghost = ghosts.remove(frame.key);
+                if (ghost != null) {
+                    ghost.unlink();
+                }
+                pushFront(a1in, frame);
+                a1inCount++;
+                break;
+        }
+    }
+
+    private void rememberGhost(long key) {
+        BufferFrame ghost = new BufferFrame(key, null);
+        ghost.state = A1OUT;
+        pushFront(a1out, ghost);
+        ghosts.put(key, ghost);
+        if (ghosts.size() > kout) {
+            BufferFrame oldest = popBack(a1out);
+            ghosts.remove(oldest.key);
+        }
+    }
+
+    @Override
+    public boolean isAccessLockFree() {
+        return false;
+    }
+}
@@ -0,0 +1,279 @@
+package simpledb.storage;
+
+import simpledb.common.Type;
+import simpledb.execution.Predicate;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * HeapFile的zone map  每页每个定长列(字符串以外的列)的最小值和最大值
+ *
+ * 带谓词的扫描(例如 x > 1000000)先查这一页的区间  区间里不可能有满足谓词的值时整页跳过  不经过缓冲池读页
+ * 见Predicate#mayMatch  NULL不算进区间  只有NULL的列区间为空
+ *
+ * 每页的区间要么已知  要么未知  未知的页不跳过
+ * 区间来自 .zm 文件、经过缓冲池读到的页(observe)和写进文件的页、新页(add)  都是页当前的内容  包括还没写回的修改
+ * 区间只会变宽不会变窄：
+ * HeapFile插入元组之后把值并进这一页的区间(update)  页不会回头查目录
+ * 删除元组、事务回滚都不收窄区间  区间比实际的值宽只会少跳过几页  不会跳错
+ *
+ * 导入数据时HeapFileEncoder把区间表写在表文件旁边的 .zm 文件里  格式是 表文件的修改时间(long) + 页数(int) + 列数(int)
+ * + 每页 1字节(区间是否已知) + 每列 1字节(有没有区间) + 最小值 + 最大值(定长的字段)
+ * 第一次用到时读进内存  之后只在内存里维护  不写回 .zm 文件  关闭表(Catalog.clear)不会在表文件旁边留下文件
+ * 没有 .zm 文件、或者表文件在导入之后又被改过(修改时间对不上)时  所有页的区间都未知
+ * 不直接读文件重建：那样绕过缓冲池  看不到池里的脏页  而且第一次带谓词的扫描要同步读完整张表
+ * 之后随扫描经过缓冲池的页逐渐补上
+ *
+ * @see HeapFileEncoder 导入数据时直接写出 .zm 文件
+ */
+public class ZoneMap {
+
+    private final HeapFile heapFile;
+    private final File sideFile;
+    private final TupleDesc td;
+    //有区间的列在td中的序号
+    private final int[] columns;
+
+    //每页每列的最小值、最大值  下标是页号、columns中的序号  值为null表示这一列没有非NULL的值
+    //某一页的数组为null表示还不知道这一页的区间
+    private Field[][] min = new Field[16][];
+    private Field[][] max = new Field[16][];
+    //是否已经读过 .zm 文件
+    private boolean loaded;
+
+    public ZoneMap(HeapFile heapFile) {
+        this.heapFile = heapFile;
+        this.sideFile = sideFile(heapFile.getFile());
+        this.td = heapFile.getTupleDesc();
+        this.columns = zonedColumns(td);
+    }
+
+    /**
+     * @return the side file holding the zone map of tableFile
+     */
+    public static File sideFile(File tableFile) {
+        return new File(tableFile.getPath() + ".zm");
+    }
+
+    public File getFile() {
+        return sideFile;
+    }
+
+    /**
+     * @return td中有区间的列：定长  不是字符串
+     */
+    static int[] zonedColumns(TupleDesc td) {
+        int n = 0;
+        int[] columns = new int[td.numFields()];
+        for (int i = 0; i < td.numFields(); i++) {
+            if (td.getFieldType(i) != Type.STRING_TYPE) {
+                columns[n++] = i;
+            }
+        }
+        return Arrays.copyOf(columns, n);
+    }
+
+    /**
+     * 元组t刚插入到page之后调用  把它的值并进这一页的区间
+     * 这一页的区间还未知时按整页的内容算出来  页上已经有t了
+     */
+    public synchronized void update(TuplePage page, Tuple t) {
+        if (columns.length == 0) {
+            return;
+        }
+        load();
+        int pgNo = page.getId().getPageNumber();
+        if (!known(pgNo)) {
+            merge(page);
+            return;
+        }
+        for (int k = 0; k < columns.length; k++) {
+            widen(pgNo, k, t.getField(columns[k]));
+        }
+    }
+
+    /**
+     * 经过缓冲池读到的页  区间还未知时按页的内容算出来
+     * 缓冲池里的页是最新的  包括还没写回的修改
+     */
+    public synchronized void observe(TuplePage page) {
+        if (columns.length == 0) {
+            return;
+        }
+        load();
+        if (!known(page.getId().getPageNumber())) {
+            merge(page);
+        }
+    }
+
+    /**
+     * 把页上所有元组的值并进这一页的区间  页写进文件、新页填好时调用
+     * 同一个页号以前可能是另一页(例如回滚掉的新页)  所以已知的区间也要合并  不能跳过
+     */
+    public synchronized void add(TuplePage page) {
+        if (columns.length == 0) {
+            return;
+        }
+        load();
+        merge(page);
+    }
+
+    private boolean known(int pgNo) {
+        return pgNo < min.length && min[pgNo] != null;
+    }
+
+    /**
+     * @return whether page pgNo may have a tuple satisfying all the
+     *     predicates; false only if the zone of one of their fields rules it out
+     */
+    public synchronized boolean mayMatch(int pgNo, Predicate[] predicates) {
+        load();
+        if (!known(pgNo)) {
+            //不知道这一页的区间  不能跳过
+            return true;
+        }
+        for (Predicate p : predicates) {
+            int k = Arrays.binarySearch(columns, p.getField());
+            if (k >= 0 && !p.mayMatch(min[pgNo][k], max[pgNo][k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reset() {
+        min = new Field[16][];
+        max = new Field[16][];
+        loaded = false;
+    }
+
+    /**
+     * 写出区间表文件  先写临时文件再改名  写到一半不会留下坏的 .zm
+     *
+     * @param mins 每页每列的最小值  某一页为null表示不知道这一页的区间
+     */
+    static void write(File sideFile, long modified, TupleDesc td, int[] columns,
+                      List<Field[]> mins, List<Field[]> maxs) throws IOException {
+        File tmp = new File(sideFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp.toPath()))) {
+            out.writeLong(modified);
+            out.writeInt(mins.size());
+            out.writeInt(columns.length);
+            for (int pg = 0; pg < mins.size(); pg++) {
+                if (mins.get(pg) == null) {
+                    out.writeByte(0);
+                    continue;
+                }
+                out.writeByte(1);
+                for (int k = 0; k < columns.length; k++) {
+                    Field lo = mins.get(pg)[k];
+                    Field hi = maxs.get(pg)[k];
+                    if (lo == null) {
+                        out.writeByte(0);
+                        continue;
+                    }
+                    out.writeByte(1);
+                    lo.serialize(out);
+                    hi.serialize(out);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), sideFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 读 .zm 文件  文件不存在、读不了或者过期时所有页的区间都未知
+     * 文件留在原处  表文件改过之后修改时间对不上  下次打开时自然作废
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        int numPages = heapFile.numPages();
+        if (columns.length == 0) {
+            return;
+        }
+        if (sideFile.exists()) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(sideFile.toPath()))) {
+                long modified = in.readLong();
+                int n = in.readInt();
+                int ncols = in.readInt();
+                if (modified == heapFile.getFile().lastModified() && n == numPages && ncols == columns.length) {
+                    for (int pg = 0; pg < n; pg++) {
+                        if (in.readByte() == 0) {
+                            continue;
+                        }
+                        ensure(pg);
+                        for (int k = 0; k < ncols; k++) {
+                            if (in.readByte() == 0) {
+                                continue;
+                            }
+                            Type type = td.getFieldType(columns[k]);
+                            widen(pg, k, type.parse(in));
+                            widen(pg, k, type.parse(in));
+                        }
+                    }
+                }
+            } catch (IOException | ParseException e) {
+                //文件坏了  全部当作未知
+                reset();
+                loaded = true;
+            }
+        }
+    }
+
+    //把页上所有元组的值并进这一页的区间
+    private void merge(TuplePage page) {
+        int pgNo = page.getId().getPageNumber();
+        ensure(pgNo);
+        int n = page.getNumSlots();
+        for (int slot = 0; slot < n; slot++) {
+            if (!page.isSlotUsed(slot)) {
+                continue;
+            }
+            for (int k = 0; k < columns.length; k++) {
+                widen(pgNo, k, page.getField(slot, columns[k]));
+            }
+        }
+    }
+
+    private void ensure(int pgNo) {
+        if (pgNo >= min.length) {
+            int n = Math.max(pgNo + 1, min.length * 2);
+            min = Arrays.copyOf(min, n);
+            max = Arrays.copyOf(max, n);
+        }
+        if (min[pgNo] == null) {
+            min[pgNo] = new Field[columns.length];
+            max[pgNo] = new Field[columns.length];
+        }
+    }
+
+    private void widen(int pgNo, int k, Field f) {
+        widen(min[pgNo], max[pgNo], k, f);
+    }
+
+    /**
+     * 把值f并进区间[lo[k], hi[k]]  NULL不算
+     */
+    static void widen(Field[] lo, Field[] hi, int k, Field f) {
+        if (f == null || f.isNull()) {
+            return;
+        }
+        if (lo[k] == null || f.compare(Predicate.Op.LESS_THAN, lo[k])) {
+            lo[k] = f;
+        }
+        if (hi[k] == null || f.compare(Predicate.Op.GREATER_THAN, hi[k])) {
+            hi[k] = f;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.common.Type;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolBytesTest extends SimpleDbTestBase {
+
+    private static final int PAGES = 10;
+
+    private HeapFile table;
+    // heap bytes of one int page as read from disk
+    private long pageBytes;
+
+    @Before public void setUp() throws Exception {
+        // 2 int columns: 504 tuples per page
+        table = SystemTestUtil.createRandomHeapFile(2, 504 * PAGES, null, null);
+        pageBytes = table.readPage(new HeapPageId(table.getId(), 0)).getRetainedSize();
+    }
+
+    /**
+     * A clean page read from disk is charged its on-disk bytes plus a small
+     * fixed overhead.
+     */
+    @Test public void cleanPageSize() {
+        assertTrue(pageBytes >= BufferPool.getPageSize());
+        assertTrue(pageBytes < 2 * BufferPool.getPageSize());
+    }
+
+    /**
+     * The pool holds as many pages as fit in its byte budget.
+     */
+    @Test public void evictsAgainstBudget() throws Exception {
+        BufferPool bp = Database.resetBufferPoolBytes(pageBytes * 3 + pageBytes / 2);
+        bp.getReadAhead().setWindow(0);
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 0; pgNo < PAGES; pgNo++) {
+            HeapPageId pid = new HeapPageId(table.getId(), pgNo);
+            bp.getPage(tid, pid, Permissions.READ_ONLY);
+            bp.unpinPage(tid, pid);
+            assertTrue(bp.getRetainedBytes() <= bp.getMaxBytes());
+        }
+        assertEquals(3 * pageBytes, bp.getRetainedBytes());
+        assertEquals(PAGES - 3, bp.getMetrics().getEvictions());
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * Tuples inserted into a page are charged to it, so string-heavy pages
+     * take more of the budget than their on-disk size.
+     */
+    @Test public void insertedTuplesAreCharged() throws Exception {
+        TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+        File f = File.createTempFile("strings", ".dat");
+        HeapFile.deleteOnExit(f);
+        HeapFile strings = new HeapFile(f, td);
+        Database.getCatalog().addTable(strings, SystemTestUtil.getUUID());
+
+        BufferPool bp = Database.resetBufferPoolBytes(1 << 20);
+        TransactionId tid = new TransactionId();
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(1));
+        t.setField(1, new StringField("0123456789", Type.STRING_LEN));
+        bp.insertTuple(tid, strings.getId(), t);
+        HeapPage page = (HeapPage) bp.getPage(tid, new HeapPageId(strings.getId(), 0), Permissions.READ_ONLY);
+        long before = bp.getRetainedBytes();
+        assertEquals(page.getRetainedSize(), before);
+
+        for (int i = 0; i < 20; i++) {
+            t = new Tuple(td);
+            t.setField(0, new IntField(i));
+            t.setField(1, new StringField("0123456789", Type.STRING_LEN));
+            bp.insertTuple(tid, strings.getId(), t);
+        }
+        assertEquals(before + 20 * t.getRetainedSize(), bp.getRetainedBytes());
+        assertEquals(page.getRetainedSize(), bp.getRetainedBytes());
+        bp.transactionComplete(tid);
+    }
+
+    @Test public void parseBytes() {
+        assertEquals(0, BufferPool.parseBytes(null));
+        assertEquals(4096, BufferPool.parseBytes("4096"));
+        assertEquals(512L << 10, BufferPool.parseBytes("512k"));
+        assertEquals(64L << 20, BufferPool.parseBytes("64M"));
+        assertEquals(2L << 30, BufferPool.parseBytes("2g"));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(BufferPoolBytesTest.class);
+    }
+}
@@ -0,0 +1,133 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.storage.BufferPool;
+import simpledb.storage.BufferPoolMetrics;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.LatencyHistogram;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolMetricsTest extends SimpleDbTestBase {
+
+    private static final int POOL_PAGES = 4;
+    private static final int PAGES = 6;
+
+    private HeapFile t1;
+    private HeapFile t2;
+    private BufferPool bp;
+    private BufferPoolMetrics metrics;
+
+    @Before public void setUp() throws Exception {
+        // 2 int columns: 504 tuples per page
+        t1 = SystemTestUtil.createRandomHeapFile(2, 504 * PAGES, null, null);
+        t2 = SystemTestUtil.createRandomHeapFile(2, 504 * PAGES, null, null);
+        bp = Database.resetBufferPool(POOL_PAGES);
+        bp.getReadAhead().setWindow(0);
+        metrics = bp.getMetrics();
+    }
+
+    private void get(TransactionId tid, HeapFile f, int pgNo) throws Exception {
+        HeapPageId pid = new HeapPageId(f.getId(), pgNo);
+        bp.getPage(tid, pid, Permissions.READ_ONLY);
+        bp.unpinPage(tid, pid);
+    }
+
+    /**
+     * Hits and misses are counted per table; each miss is one page read.
+     */
+    @Test public void hitsAndMisses() throws Exception {
+        TransactionId tid = new TransactionId();
+        get(tid, t1, 0);
+        get(tid, t1, 0);
+        get(tid, t1, 1);
+        get(tid, t2, 0);
+        get(tid, t1, 1);
+        get(tid, t1, 0);
+
+        BufferPoolMetrics.TableMetrics m1 = metrics.getTable(t1.getId());
+        assertEquals(3, m1.getHits());
+        assertEquals(2, m1.getMisses());
+        assertEquals(0.6, m1.getHitRatio(), 1e-9);
+        assertEquals(2L * BufferPool.getPageSize(), m1.getBytesRead());
+        BufferPoolMetrics.TableMetrics m2 = metrics.getTable(t2.getId());
+        assertEquals(0, m2.getHits());
+        assertEquals(1, m2.getMisses());
+
+        assertEquals(2, metrics.getTables().size());
+        assertEquals(3, metrics.getHits());
+        assertEquals(3, metrics.getMisses());
+        assertEquals(3, metrics.getReadLatency().getCount());
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * Evictions are charged to the table of the victim, and written dirty
+     * pages to the table they belong to.
+     */
+    @Test public void evictionsAndWrites() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 0; pgNo < PAGES; pgNo++)
+            get(tid, t1, pgNo);
+        assertEquals(PAGES - POOL_PAGES, metrics.getTable(t1.getId()).getEvictions());
+        assertEquals(0, metrics.getFlushedPages());
+
+        HeapPage page = (HeapPage) bp.getPage(tid, new HeapPageId(t2.getId(), 0), Permissions.READ_WRITE);
+        page.markDirty(true, tid);
+        bp.flushAllPages();
+        BufferPoolMetrics.TableMetrics m2 = metrics.getTable(t2.getId());
+        assertEquals(1, m2.getFlushedPages());
+        assertEquals(BufferPool.getPageSize(), m2.getBytesWritten());
+        assertEquals(1, metrics.getWriteLatency().getCount());
+        bp.transactionComplete(tid);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metrics.dump(new PrintStream(out, true));
+        assertTrue(out.toString().contains(Database.getCatalog().getTableName(t1.getId())));
+
+        metrics.reset();
+        assertEquals(0, metrics.getEvictions());
+        assertEquals(0, metrics.getReadLatency().getCount());
+    }
+
+    /**
+     * Percentiles are within the bucket precision of the exact values.
+     */
+    @Test public void histogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(50));
+        for (long v = 1; v <= 10000; v++)
+            h.record(v * 1000);
+        assertEquals(10000, h.getCount());
+        assertEquals(10_000_000, h.getMax());
+        assertEquals(5_000_500, h.getMean(), 1e-6);
+        assertEquals(5_000_000, h.getValueAtPercentile(50), 5_000_000 / 16);
+        assertEquals(9_900_000, h.getValueAtPercentile(99), 9_900_000 / 16);
+        assertEquals(10_000_000, h.getValueAtPercentile(100));
+        assertTrue(h.getValueAtPercentile(99) >= 9_900_000);
+
+        h.record(3);
+        assertEquals(3, h.getValueAtPercentile(0));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(BufferPoolMetricsTest.class);
+    }
+}
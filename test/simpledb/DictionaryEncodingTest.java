@@ -0,0 +1,275 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.Aggregate;
+import simpledb.execution.Aggregator;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.CodedStringField;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapFileEncoder;
+import simpledb.storage.PageCompression;
+import simpledb.storage.PageLayout;
+import simpledb.storage.StringDictionary;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class DictionaryEncodingTest extends SimpleDbTestBase {
+
+    private static final Type[] TYPES = {Type.INT_TYPE, Type.STRING_TYPE, Type.STRING_TYPE};
+    private static final String[] NAMES = {"id", "city", "note"};
+    private static final boolean[] NULLABLE = {false, false, true};
+
+    private final TupleDesc td = new TupleDesc(TYPES, NAMES, NULLABLE, new boolean[]{false, true, true});
+    private final TupleDesc plainTd = new TupleDesc(TYPES, NAMES, NULLABLE);
+
+    private HeapFile fill(HeapFile hf, int rows) throws Exception {
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < rows; i++)
+            tuples.add(SystemTestUtil.createTuple(hf.getTupleDesc(), i, "city" + (i % 20), i % 7 == 0 ? null : "note" + (i % 3)));
+        SystemTestUtil.insertTuples(hf, tuples.iterator());
+        return hf;
+    }
+
+    private static List<String> rows(OpIterator it) throws Exception {
+        List<String> rows = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            rows.add(it.next().toString());
+        it.close();
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static List<String> query(HeapFile hf, Predicate.Op op, String city) throws Exception {
+        TransactionId tid = new TransactionId();
+        List<String> rows = rows(new Filter(new Predicate(1, op, new StringField(city, Type.STRING_LEN)),
+                new SeqScan(tid, hf.getId(), "t")));
+        Database.getBufferPool().transactionComplete(tid);
+        return rows;
+    }
+
+    private static List<String> countNotesByCity(HeapFile hf) throws Exception {
+        TransactionId tid = new TransactionId();
+        List<String> rows = rows(new Aggregate(new SeqScan(tid, hf.getId(), "t"), 2, 1, Aggregator.Op.COUNT));
+        Database.getBufferPool().transactionComplete(tid);
+        return rows;
+    }
+
+    /**
+     * Encoded columns take a fraction of the space, read back as shared
+     * coded fields, and give the same filter and group-by results as plain
+     * strings, also after reopening the table.
+     */
+    @Test public void heapFile() throws Exception {
+        HeapFile dict = fill(new HeapFile(SystemTestUtil.createTempTableFile(), td), 2000);
+        HeapFile plain = fill(new HeapFile(SystemTestUtil.createTempTableFile(), plainTd), 2000);
+        assertNotNull(dict.getDictionary());
+        assertNull(plain.getDictionary());
+        assertEquals(20, dict.getDictionary().size(1));
+        assertEquals(3, dict.getDictionary().size(2));
+        assertTrue(dict.numPages() + " pages", dict.numPages() * 10 < plain.numPages());
+
+        // read the pages back from the file
+        Database.getBufferPool().flushAllPages();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        TransactionId tid = new TransactionId();
+        List<String> all = new ArrayList<>();
+        SharedFields seen = new SharedFields();
+        DbFileIterator it = dict.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            all.add(t.toString());
+            seen.check(t);
+        }
+        it.close();
+        Database.getBufferPool().transactionComplete(tid);
+        Collections.sort(all);
+        assertEquals(rows(new SeqScan(new TransactionId(), plain.getId(), "t")), all);
+
+        assertEquals(100, query(dict, Predicate.Op.EQUALS, "city3").size());
+        assertEquals(query(plain, Predicate.Op.EQUALS, "city3"), query(dict, Predicate.Op.EQUALS, "city3"));
+        assertEquals(query(plain, Predicate.Op.NOT_EQUALS, "city3"), query(dict, Predicate.Op.NOT_EQUALS, "city3"));
+        assertEquals(0, query(dict, Predicate.Op.EQUALS, "nowhere").size());
+        assertEquals(query(plain, Predicate.Op.LIKE, "ty1"), query(dict, Predicate.Op.LIKE, "ty1"));
+        List<String> groups = countNotesByCity(dict);
+        assertEquals(20, groups.size());
+        assertEquals(countNotesByCity(plain), groups);
+
+        Database.getBufferPool().flushAllPages();
+        Database.getCatalog().clear();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile reopened = new HeapFile(dict.getFile(), td);
+        Database.getCatalog().addTable(reopened, UUID.randomUUID().toString());
+        assertEquals(20, reopened.getDictionary().size(1));
+        assertEquals(all, rows(new SeqScan(new TransactionId(), reopened.getId(), "t")));
+        try {
+            new HeapFile(SystemTestUtil.createTempTableFile(), td, 0, PageLayout.SLOTTED);
+            fail("dictionary encoded a slotted table");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    //解码出来的值是字典里的共享对象  NULL之外都是CodedStringField
+    private static class SharedFields {
+        private CodedStringField city0;
+
+        void check(Tuple t) {
+            assertTrue(t.getField(1) instanceof CodedStringField);
+            CodedStringField city = (CodedStringField) t.getField(1);
+            if (city.getValue().equals("city0")) {
+                if (city0 != null)
+                    assertSame(city0, city);
+                city0 = city;
+            }
+            assertTrue(t.getField(2).isNull() || t.getField(2) instanceof CodedStringField);
+        }
+    }
+
+    /**
+     * Coded fields equal plain strings with the same value, and an equality
+     * predicate notices values added to the dictionary after it first
+     * looked its operand up.
+     */
+    @Test public void codes() throws Exception {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        StringDictionary d = hf.getDictionary();
+        assertEquals(0, d.encode(1, "a"));
+        assertEquals(0, d.encode(1, "a"));
+        assertEquals(-1, d.lookup(1, "b"));
+        CodedStringField a = d.decode(1, 0);
+        StringField plainA = new StringField("a", Type.STRING_LEN);
+        assertEquals(plainA, a);
+        assertEquals(a, plainA);
+        assertEquals(plainA.hashCode(), a.hashCode());
+
+        Predicate isB = new Predicate(1, Predicate.Op.EQUALS, new StringField("b", Type.STRING_LEN));
+        Predicate notB = new Predicate(1, Predicate.Op.NOT_EQUALS, new StringField("b", Type.STRING_LEN));
+        Tuple t = SystemTestUtil.createTuple(td, 1, "a", null);
+        t.setField(1, a);
+        assertFalse(isB.filter(t));
+        assertTrue(notB.filter(t));
+        assertEquals(1, d.encode(1, "b"));
+        t.setField(1, d.decode(1, 1));
+        assertTrue(isB.filter(t));
+        assertFalse(notB.filter(t));
+
+        // codes are per column
+        assertEquals(0, d.encode(2, "b"));
+        assertNotEquals(d.decode(1, 0), d.decode(2, 0));
+        assertEquals(d.decode(1, 1), d.decode(2, 0));
+        try {
+            d.encode(0, "x");
+            fail("encoded an int column");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * New values reach the side file together on flush, at the latest
+     * when a page that may hold their codes is written.
+     */
+    @Test public void appendsOnFlush() throws Exception {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        StringDictionary d = hf.getDictionary();
+        File side = StringDictionary.sideFile(hf.getFile());
+        for (int i = 0; i < 100; i++)
+            d.encode(1, "city" + i);
+        assertFalse(side.exists());
+        d.flush();
+        assertEquals(100, new StringDictionary(hf.getFile(), td).size(1));
+        long length = side.length();
+        d.flush();
+        assertEquals(length, side.length());
+
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), SystemTestUtil.createTuple(td, 1, "new city", "note"));
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+        StringDictionary reread = new StringDictionary(hf.getFile(), td);
+        assertEquals(101, reread.size(1));
+        assertEquals(1, reread.size(2));
+    }
+
+    /**
+     * HeapFileEncoder writes the codes and the dictionary; sorted runs of
+     * one code shrink to almost nothing with PAX pages and LZ4.
+     */
+    @Test public void encoderAndRuns() throws Exception {
+        File text = File.createTempFile("dict", ".txt");
+        text.deleteOnExit();
+        List<String> expected = new ArrayList<>();
+        try (Writer w = new FileWriter(text)) {
+            for (int i = 0; i < 3000; i++) {
+                String note = i % 5 == 0 ? "\\N" : "n" + (i % 2);
+                w.write(i + ",city" + (i / 300) + "," + note + "\n");
+                expected.add(SystemTestUtil.createTuple(plainTd, i, "city" + (i / 300), i % 5 == 0 ? null : "n" + (i % 2)).toString());
+            }
+        }
+        Collections.sort(expected);
+        File out = SystemTestUtil.createTempTableFile();
+        HeapFileEncoder.convert(text, out, BufferPool.getPageSize(), 3, TYPES, NULLABLE,
+                new boolean[]{false, true, true}, ',');
+        assertTrue(StringDictionary.sideFile(out).exists());
+        HeapFile hf = new HeapFile(out, td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        assertEquals(10, hf.getDictionary().size(1));
+        assertEquals(expected, rows(new SeqScan(new TransactionId(), hf.getId(), "t")));
+
+        // the same sorted rows in PAX pages with LZ4
+        TupleDesc cityTd = new TupleDesc(new Type[]{Type.STRING_TYPE}, new String[]{"city"},
+                null, new boolean[]{true});
+        HeapFile runs = new HeapFile(SystemTestUtil.createTempTableFile(), cityTd, 0, PageLayout.PAX, PageCompression.LZ4);
+        HeapFile flat = new HeapFile(SystemTestUtil.createTempTableFile(), cityTd, 0, PageLayout.FIXED, PageCompression.NONE);
+        for (HeapFile f : new HeapFile[]{runs, flat}) {
+            Database.getCatalog().addTable(f, UUID.randomUUID().toString());
+            List<Tuple> tuples = new ArrayList<>();
+            for (int i = 0; i < 20000; i++) {
+                Tuple t = new Tuple(cityTd);
+                t.setField(0, new StringField("city" + (i / 2000), Type.STRING_LEN));
+                tuples.add(t);
+            }
+            SystemTestUtil.insertTuples(f, tuples.iterator());
+        }
+        Database.getBufferPool().flushAllPages();
+        assertTrue(runs.getFileBytes() + " bytes", runs.getFileBytes() * 5 < flat.getFileBytes());
+        assertEquals(rows(new SeqScan(new TransactionId(), flat.getId(), "t")),
+                rows(new SeqScan(new TransactionId(), runs.getId(), "t")));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(DictionaryEncodingTest.class);
+    }
+}
@@ -0,0 +1,135 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.storage.FileHandle;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class FileHandleTest extends SimpleDbTestBase {
+
+    private static final int BLOCK = 512;
+    private static final int BLOCKS = 64;
+
+    private File file;
+    private FileHandle handle;
+
+    @Before public void createFile() throws Exception {
+        file = File.createTempFile("handle", ".dat");
+        file.deleteOnExit();
+        handle = new FileHandle(file);
+    }
+
+    @After public void closeFile() throws Exception {
+        handle.close();
+    }
+
+    private static byte[] block(int i) {
+        byte[] b = new byte[BLOCK];
+        Arrays.fill(b, (byte) i);
+        return b;
+    }
+
+    /**
+     * Unit test for FileHandle.write(), read() and length()
+     */
+    @Test public void readWrite() throws Exception {
+        assertEquals(0, handle.length());
+        // writing past the end grows the file
+        handle.write(block(2), 2 * BLOCK);
+        assertEquals(3 * BLOCK, handle.length());
+        assertEquals(BLOCK, handle.append(block(9)) - 2 * BLOCK);
+
+        byte[] buf = new byte[BLOCK];
+        assertEquals(BLOCK, handle.read(buf, 2 * BLOCK));
+        assertArrayEquals(block(2), buf);
+        assertEquals(BLOCK, handle.read(buf, 3 * BLOCK));
+        assertArrayEquals(block(9), buf);
+        // short read at the end of the file
+        assertEquals(BLOCK / 2, handle.read(buf, 3 * BLOCK + BLOCK / 2));
+        assertEquals(0, handle.read(buf, 4 * BLOCK));
+    }
+
+    /**
+     * A closed handle reopens its file on the next read or write.
+     */
+    @Test public void reopenAfterClose() throws Exception {
+        handle.write(block(1), 0);
+        handle.close();
+        assertEquals(BLOCK, handle.length());
+        byte[] buf = new byte[BLOCK];
+        assertEquals(BLOCK, handle.read(buf, 0));
+        assertArrayEquals(block(1), buf);
+    }
+
+    /**
+     * Positional reads from several threads at once never see another
+     * thread's block.
+     */
+    @Test public void concurrentReads() throws Exception {
+        for (int i = 0; i < BLOCKS; i++)
+            handle.write(block(i), (long) i * BLOCK);
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final long seed = t;
+            threads.add(new Thread(() -> {
+                Random r = new Random(seed);
+                byte[] buf = new byte[BLOCK];
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        int b = r.nextInt(BLOCKS);
+                        assertEquals(BLOCK, handle.read(buf, (long) b * BLOCK));
+                        assertArrayEquals(block(b), buf);
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+        if (error.get() != null)
+            throw new AssertionError(error.get());
+    }
+
+    /**
+     * Catalog.clear() closes the table files, and a HeapFile added back to
+     * the catalog still works afterwards.
+     */
+    @Test public void catalogClear() throws Exception {
+        HeapFile hf = SystemTestUtil.createRandomHeapFile(2, 1000, null, null);
+        HeapPage before = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 1));
+        Database.getCatalog().clear();
+        Database.getCatalog().addTable(hf);
+        HeapPage after = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 1));
+        assertArrayEquals(before.getPageData(), after.getPageData());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(FileHandleTest.class);
+    }
+}
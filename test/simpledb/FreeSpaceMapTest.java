@@ -0,0 +1,151 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.Page;
+import simpledb.storage.PageId;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FreeSpaceMapTest extends SimpleDbTestBase {
+
+    private static final int PAGES = 20;
+    // 2 int columns: 504 tuples per page
+    private static final int TUPLES_PER_PAGE = 504;
+
+    /** Counts readPage calls. */
+    private static class CountingHeapFile extends HeapFile {
+        final AtomicInteger reads = new AtomicInteger();
+
+        CountingHeapFile(File f, TupleDesc td) {
+            super(f, td);
+        }
+
+        @Override
+        public Page readPage(PageId pid) {
+            reads.incrementAndGet();
+            return super.readPage(pid);
+        }
+    }
+
+    private File file;
+    private CountingHeapFile table;
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        // every page is full
+        file = SystemTestUtil.createRandomHeapFileUnopened(2, TUPLES_PER_PAGE * PAGES, 1000, null, null);
+        table = open();
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    private CountingHeapFile open() {
+        CountingHeapFile f = new CountingHeapFile(file, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(f, SystemTestUtil.getUUID());
+        return f;
+    }
+
+    /**
+     * Once the map is built, inserting into a full table reads no existing
+     * pages.
+     */
+    @Test public void insertIntoFullTable() throws Exception {
+        Database.getBufferPool().insertTuple(tid, table.getId(), Utility.getHeapTuple(new int[]{1, 2}));
+        assertEquals(PAGES + 1, table.numPages());
+
+        Database.resetBufferPool(PAGES * 2);
+        table.reads.set(0);
+        for (int i = 0; i < 10; i++)
+            Database.getBufferPool().insertTuple(tid, table.getId(), Utility.getHeapTuple(new int[]{i, i}));
+        // only the new last page is read, once
+        assertEquals(1, table.reads.get());
+        assertEquals(PAGES + 1, table.numPages());
+    }
+
+    //第7页上的一个元组
+    private Tuple tupleOnPage7() throws Exception {
+        Tuple victim = null;
+        DbFileIterator it = table.iterator(tid);
+        it.open();
+        for (int i = 0; i < TUPLES_PER_PAGE * 7 + 3 && it.hasNext(); i++)
+            victim = it.next();
+        it.close();
+        assertEquals(7, victim.getRecordId().getPageId().getPageNumber());
+        return victim;
+    }
+
+    /**
+     * A slot freed by a delete is reused by the next insert.
+     */
+    @Test public void deleteFreesPage() throws Exception {
+        Tuple victim = tupleOnPage7();
+        Database.getBufferPool().deleteTuple(tid, victim);
+        Tuple t = Utility.getHeapTuple(new int[]{1, 2});
+        Database.getBufferPool().insertTuple(tid, table.getId(), t);
+        assertEquals(victim.getRecordId(), t.getRecordId());
+        assertEquals(PAGES, table.numPages());
+    }
+
+    /**
+     * The map is not saved with the table: a reopened table checks its pages
+     * through the buffer pool, so it sees a slot freed on a page the pool has
+     * not written back yet.
+     */
+    @Test public void rebuiltThroughBufferPool() throws Exception {
+        Tuple victim = tupleOnPage7();
+        Database.getBufferPool().deleteTuple(tid, victim);
+        Database.getCatalog().clear();
+
+        table = open();
+        Tuple t = Utility.getHeapTuple(new int[]{1, 2});
+        Database.getBufferPool().insertTuple(tid, table.getId(), t);
+        assertEquals(victim.getRecordId(), t.getRecordId());
+        assertEquals(PAGES, table.numPages());
+    }
+
+    /**
+     * A page filled by a transaction that aborts has space again.
+     */
+    @Test public void abortFreesPage() throws Exception {
+        Tuple victim = tupleOnPage7();
+        Database.getBufferPool().deleteTuple(tid, victim);
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+
+        TransactionId aborted = new TransactionId();
+        Database.getBufferPool().insertTuple(aborted, table.getId(), Utility.getHeapTuple(new int[]{1, 2}));
+        Database.getBufferPool().transactionComplete(aborted, false);
+
+        Tuple t = Utility.getHeapTuple(new int[]{3, 4});
+        Database.getBufferPool().insertTuple(tid, table.getId(), t);
+        assertEquals(victim.getRecordId(), t.getRecordId());
+        assertEquals(PAGES, table.numPages());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(FreeSpaceMapTest.class);
+    }
+}
@@ -12,7 +12,9 @@ import simpledb.storage.*;
 import simpledb.systemtest.SystemTestUtil;
 import simpledb.transaction.TransactionId;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 
 
@@ -52,6 +54,32 @@ public class HeapFileWriteTest extends TestUtil.CreateHeapFile {
         assertEquals(3, empty.numPages());
     }
 
+    /**
+     * Unit test for HeapFile.insertTuples(): the partly filled page is
+     * filled first, then new pages are appended. The new pages are returned
+     * with the modified one; the file only has empty pages in their place.
+     */
+    @Test public void insertTuples() throws Exception {
+        empty.insertTuple(tid, Utility.getHeapTuple(0, 2));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 504 * 2 + 10; ++i)
+            tuples.add(Utility.getHeapTuple(i, 2));
+
+        List<Page> modified = empty.insertTuples(tid, tuples.iterator());
+        assertEquals(3, modified.size());
+        for (int i = 0; i < 3; i++)
+            assertEquals(i, modified.get(i).getId().getPageNumber());
+        assertEquals(3, empty.numPages());
+        assertEquals(new RecordId(new HeapPageId(empty.getId(), 0), 503), tuples.get(502).getRecordId());
+        assertEquals(new RecordId(new HeapPageId(empty.getId(), 1), 0), tuples.get(503).getRecordId());
+        assertEquals(new RecordId(new HeapPageId(empty.getId(), 2), 10), tuples.get(tuples.size() - 1).getRecordId());
+
+        HeapPage last = (HeapPage) modified.get(2);
+        assertEquals(504 - 11, last.getNumEmptySlots());
+        assertEquals(tuples.get(tuples.size() - 1), last.getTuple(10));
+        assertEquals(504, ((HeapPage) empty.readPage(new HeapPageId(empty.getId(), 2))).getNumEmptySlots());
+    }
+
     @Test
     public void testAlternateEmptyAndFullPagesThenIterate() throws Exception {
         // Create HeapFile/Table
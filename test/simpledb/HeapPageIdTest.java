@@ -5,6 +5,7 @@ import junit.framework.JUnit4TestAdapter;
 import org.junit.Before;
 import org.junit.Test;
 
+import simpledb.index.BTreePageId;
 import simpledb.storage.HeapPageId;
 import simpledb.systemtest.SimpleDbTestBase;
 
@@ -53,6 +54,20 @@ public class HeapPageIdTest extends SimpleDbTestBase {
         assertEquals(code2, pid.hashCode());
     }
 
+    /**
+     * Unit test for HeapPageId.pageKey()
+     */
+    @Test public void pageKey() {
+        // equal ids share a key
+        assertEquals(new HeapPageId(1, 1).pageKey(), new HeapPageId(1, 1).pageKey());
+        // these two collide under hashCode(), which hashes the string tableId + pgNo
+        assertNotEquals(new HeapPageId(1, 23).pageKey(), new HeapPageId(12, 3).pageKey());
+        assertNotEquals(new HeapPageId(-1, 0).pageKey(), new HeapPageId(0, 0).pageKey());
+        // a heap page and a btree page with the same table and number are different pages
+        assertNotEquals(new HeapPageId(1, 1).pageKey(),
+                new BTreePageId(1, 1, BTreePageId.LEAF).pageKey());
+    }
+
     /**
      * Unit test for HeapPageId.equals()
      */
@@ -15,6 +15,7 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import junit.framework.JUnit4TestAdapter;
 
@@ -123,6 +124,23 @@ public class HeapPageReadTest extends SimpleDbTestBase {
             assertFalse(page.isSlotUsed(i));
     }
 
+    /**
+     * Unit test for HeapPage.getField() and HeapPage.getTuple(), which decode
+     * single fields and tuples on demand
+     */
+    @Test public void getFieldAndTuple() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        for (int i = 0; i < EXAMPLE_VALUES.length; ++i) {
+            for (int j = 0; j < 2; ++j)
+                assertEquals(new IntField(EXAMPLE_VALUES[i][j]), page.getField(i, j));
+            Tuple t = page.getTuple(i);
+            assertEquals(new RecordId(pid, i), t.getRecordId());
+            assertEquals(new IntField(EXAMPLE_VALUES[i][1]), t.getField(1));
+        }
+        assertNull(page.getField(20, 0));
+        assertNull(page.getTuple(20));
+    }
+
     /**
      * JUnit suite target
      */
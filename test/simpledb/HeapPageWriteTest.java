@@ -14,6 +14,7 @@ import simpledb.common.DbException;
 import simpledb.common.Utility;
 import simpledb.storage.HeapPage;
 import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
 import simpledb.storage.Tuple;
 import simpledb.systemtest.SimpleDbTestBase;
 import simpledb.systemtest.SystemTestUtil;
@@ -133,6 +134,49 @@ public class HeapPageWriteTest extends SimpleDbTestBase {
         }
     }
 
+    /**
+     * Tuples left in the raw page data and tuples inserted later serialize
+     * together, and the before image still shows the page as it was read.
+     */
+    @Test public void pageDataRoundTrip() throws Exception {
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+        page.deleteTuple(page.getTuple(3));
+        Tuple added = Utility.getHeapTuple(new int[]{7, 8});
+        page.insertTuple(added);
+        // the freed slot is reused
+        assertEquals(3, added.getRecordId().getTupleNumber());
+        Tuple added2 = Utility.getHeapTuple(new int[]{9, 10});
+        page.insertTuple(added2);
+
+        HeapPage copy = new HeapPage(pid, page.getPageData());
+        assertArrayEquals(page.getPageData(), copy.getPageData());
+        assertEquals(page.getNumEmptySlots(), copy.getNumEmptySlots());
+        assertEquals(new IntField(8), copy.getField(3, 1));
+        assertEquals(new IntField(10), copy.getField(20, 1));
+        assertEquals(new IntField(HeapPageReadTest.EXAMPLE_VALUES[4][0]), copy.getField(4, 0));
+
+        assertArrayEquals(HeapPageReadTest.EXAMPLE_DATA, page.getBeforeImage().getPageData());
+    }
+
+    /**
+     * An iterator keeps returning the tuples that were on the page when it
+     * was created.
+     */
+    @Test public void iteratorIsSnapshot() throws Exception {
+        HeapPage page = new HeapPage(pid, HeapPageReadTest.EXAMPLE_DATA);
+        Iterator<Tuple> it = page.iterator();
+        page.deleteTuple(page.getTuple(0));
+        page.insertTuple(Utility.getHeapTuple(new int[]{1, 2}));
+        page.insertTuple(Utility.getHeapTuple(new int[]{3, 4}));
+        int count = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertEquals(HeapPageReadTest.EXAMPLE_VALUES[count][0], ((IntField) t.getField(0)).getValue().intValue());
+            count++;
+        }
+        assertEquals(HeapPageReadTest.EXAMPLE_VALUES.length, count);
+    }
+
     /**
      * JUnit suite target
      */
@@ -0,0 +1,66 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.storage.LongHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongHashMapTest {
+
+    /**
+     * Unit test for LongHashMap.put(), get() and remove()
+     */
+    @Test public void putGetRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertNull(map.put(1L, "a"));
+        assertNull(map.put(1L << 32, "b"));
+        assertEquals("a", map.put(1L, "c"));
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(1L));
+        assertEquals("b", map.get(1L << 32));
+        assertNull(map.get(2L));
+        assertEquals("c", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertNull(map.get(1L));
+        assertEquals(1, map.size());
+    }
+
+    /**
+     * Random puts and removes checked against a HashMap. Removing from the
+     * middle of probe chains must keep every remaining key reachable.
+     */
+    @Test public void matchesHashMap() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random r = new Random(0);
+        for (int i = 0; i < 200000; i++) {
+            // few distinct keys so that removes hit often
+            long key = ((long) r.nextInt(64) << 32) | r.nextInt(64);
+            if (r.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> e : expected.entrySet())
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        long[] count = new long[1];
+        map.forEachValue(v -> count[0]++);
+        assertEquals(expected.size(), count[0]);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LongHashMapTest.class);
+    }
+}
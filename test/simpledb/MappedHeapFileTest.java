@@ -0,0 +1,117 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapFileEncoder;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.MappedHeapFile;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedHeapFileTest extends SimpleDbTestBase {
+
+    private File file;
+    private HeapFile hf;
+    private MappedHeapFile mapped;
+    private final List<List<Integer>> tuples = new ArrayList<>();
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        file = SystemTestUtil.createRandomHeapFileUnopened(2, 2000, 1 << 16, null, tuples);
+        hf = new HeapFile(file, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(hf);
+        // same file, same table id
+        mapped = new MappedHeapFile(file, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(mapped);
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * Pages read through the mapping are identical to pages read with HeapFile.
+     */
+    @Test public void readPage() throws Exception {
+        assertEquals(hf.numPages(), mapped.numPages());
+        for (int i = 0; i < mapped.numPages(); i++) {
+            HeapPageId pid = new HeapPageId(mapped.getId(), i);
+            HeapPage expected = (HeapPage) hf.readPage(pid);
+            HeapPage page = (HeapPage) mapped.readPage(pid);
+            assertEquals(pid, page.getId());
+            assertArrayEquals(expected.getPageData(), page.getPageData());
+            assertArrayEquals(expected.getPageData(), page.getBeforeImage().getPageData());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readPastEnd() {
+        mapped.readPage(new HeapPageId(mapped.getId(), mapped.numPages()));
+    }
+
+    /**
+     * A scan through the buffer pool sees every tuple.
+     */
+    @Test public void iterator() throws Exception {
+        SystemTestUtil.matchTuples(mapped, tid, tuples);
+    }
+
+    /**
+     * Pages appended to the file after it was mapped are still readable.
+     */
+    @Test public void remapWhenFileGrows() throws Exception {
+        int pages = mapped.numPages();
+        mapped.readPage(new HeapPageId(mapped.getId(), 0));
+
+        List<List<Integer>> more = new ArrayList<>(tuples);
+        more.addAll(tuples);
+        HeapFileEncoder.convert(more, file, BufferPool.getPageSize(), 2);
+        assertTrue(mapped.numPages() > pages);
+        HeapPageId last = new HeapPageId(mapped.getId(), mapped.numPages() - 1);
+        assertArrayEquals(hf.readPage(last).getPageData(), mapped.readPage(last).getPageData());
+    }
+
+    /**
+     * Writes are rejected.
+     */
+    @Test public void readOnly() throws Exception {
+        try {
+            mapped.insertTuple(tid, Utility.getHeapTuple(new int[]{1, 2}));
+            fail("expected DbException");
+        } catch (DbException e) {
+            // expected
+        }
+        try {
+            mapped.writePage(mapped.readPage(new HeapPageId(mapped.getId(), 0)));
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(MappedHeapFileTest.class);
+    }
+}
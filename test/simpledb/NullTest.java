@@ -0,0 +1,282 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.execution.Aggregate;
+import simpledb.execution.Aggregator;
+import simpledb.execution.Filter;
+import simpledb.execution.JoinPredicate;
+import simpledb.execution.OpIterator;
+import simpledb.execution.OrderBy;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DoubleField;
+import simpledb.storage.Field;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.NullField;
+import simpledb.storage.PageLayout;
+import simpledb.storage.SlottedHeapPage;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.storage.TuplePage;
+import simpledb.storage.TupleIterator;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class NullTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = new TupleDesc(
+            new Type[]{Type.INT_TYPE, Type.INT_TYPE, Type.STRING_TYPE, Type.DOUBLE_TYPE},
+            new String[]{"id", "score", "name", "price"},
+            new boolean[]{false, true, true, true});
+
+    //第i行：score每3行一个NULL  name每4行一个NULL  price每5行一个NULL
+    private Tuple row(int i) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(i));
+        t.setField(1, i % 3 == 0 ? NullField.of(Type.INT_TYPE) : new IntField(i * 10));
+        t.setField(2, i % 4 == 0 ? NullField.of(Type.STRING_TYPE) : new StringField("n" + i, Type.STRING_LEN));
+        t.setField(3, i % 5 == 0 ? NullField.of(Type.DOUBLE_TYPE) : new DoubleField(i * 0.5));
+        return t;
+    }
+
+    private int addTable(TupleDesc desc, PageLayout layout) throws IOException {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), desc, BufferPool.getPageSize(), layout);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        return hf.getId();
+    }
+
+    private static List<Tuple> collect(OpIterator it) throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            tuples.add(it.next());
+        it.close();
+        return tuples;
+    }
+
+    private void roundTrip(TuplePage page, TuplePage reread) {
+        for (int i = 0; i < 20; i++) {
+            Tuple expected = row(i);
+            for (int j = 0; j < td.numFields(); j++) {
+                assertEquals(expected.getField(j), reread.getField(i, j));
+                assertEquals(expected.getField(j).isNull(), reread.getField(i, j).isNull());
+            }
+            assertEquals(expected.toString(), reread.getTuple(i).toString());
+        }
+    }
+
+    /**
+     * NULLs survive writing a fixed-width page to bytes and reading it back.
+     */
+    @Test public void heapPage() throws Exception {
+        int tableId = addTable(td, PageLayout.FIXED);
+        HeapPage page = new HeapPage(new HeapPageId(tableId, 0), HeapPage.createEmptyPageData());
+        for (int i = 0; i < 20; i++)
+            page.insertTuple(row(i));
+        roundTrip(page, new HeapPage(page.getId(), page.getPageData()));
+
+        // one bitmap byte per tuple for the three nullable fields
+        int slotBytes = td.getSize() + 1;
+        assertEquals(1, td.getNullBitmapSize());
+        assertEquals(BufferPool.getPageSize() * 8 / (slotBytes * 8 + 1), page.getNumSlots());
+    }
+
+    /**
+     * Slotted pages store NULL fields in the bitmap only.
+     */
+    @Test public void slottedPage() throws Exception {
+        int tableId = addTable(td, PageLayout.SLOTTED);
+        SlottedHeapPage page = new SlottedHeapPage(new HeapPageId(tableId, 0), HeapPage.createEmptyPageData());
+        int free = page.getFreeBytes();
+        Tuple allNull = new Tuple(td);
+        allNull.setField(0, new IntField(1));
+        for (int j = 1; j < td.numFields(); j++)
+            allNull.setField(j, NullField.of(td.getFieldType(j)));
+        page.insertTuple(allNull);
+        // slot entry + bitmap + id
+        assertEquals(4 + 1 + 4, free - page.getFreeBytes());
+        page.deleteTuple(allNull);
+        for (int i = 0; i < 20; i++)
+            page.insertTuple(row(i));
+        roundTrip(page, new SlottedHeapPage(page.getId(), page.getPageData()));
+    }
+
+    /**
+     * A table without nullable fields keeps the old format, and rejects NULL.
+     */
+    @Test public void notNullable() throws Exception {
+        TupleDesc plain = new TupleDesc(new Type[]{Type.INT_TYPE, Type.INT_TYPE});
+        assertEquals(0, plain.getNullBitmapSize());
+        int tableId = addTable(plain, PageLayout.FIXED);
+        HeapPage page = new HeapPage(new HeapPageId(tableId, 0), HeapPage.createEmptyPageData());
+        assertEquals(BufferPool.getPageSize() * 8 / (8 * 8 + 1), page.getNumSlots());
+
+        Tuple t = new Tuple(plain);
+        t.setField(0, new IntField(1));
+        t.setField(1, NullField.of(Type.INT_TYPE));
+        try {
+            page.insertTuple(t);
+            fail("inserted NULL into a field that is not nullable");
+        } catch (DbException e) {
+            // expected
+        }
+        int slottedId = addTable(plain, PageLayout.SLOTTED);
+        SlottedHeapPage slotted = new SlottedHeapPage(new HeapPageId(slottedId, 0), HeapPage.createEmptyPageData());
+        try {
+            slotted.insertTuple(t);
+            fail("inserted NULL into a field that is not nullable");
+        } catch (DbException e) {
+            // expected
+        }
+        // nullability is not part of the schema equality
+        assertEquals(plain, new TupleDesc(new Type[]{Type.INT_TYPE, Type.INT_TYPE}, null, new boolean[]{true, true}));
+    }
+
+    /**
+     * Comparisons with NULL are never true; IS [NOT] NULL tests for it.
+     */
+    @Test public void predicates() throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            tuples.add(row(i));
+        assertEquals(10, collect(new Filter(new Predicate(1, Predicate.Op.IS_NULL, null),
+                new TupleIterator(td, tuples))).size());
+        assertEquals(20, collect(new Filter(new Predicate(1, Predicate.Op.IS_NOT_NULL, null),
+                new TupleIterator(td, tuples))).size());
+        // 0 and the other multiples of 3 are NULL
+        assertEquals(20, collect(new Filter(new Predicate(1, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(0)),
+                new TupleIterator(td, tuples))).size());
+        assertEquals(20, collect(new Filter(new Predicate(1, Predicate.Op.NOT_EQUALS, new IntField(-1)),
+                new TupleIterator(td, tuples))).size());
+        assertEquals(0, collect(new Filter(new Predicate(1, Predicate.Op.EQUALS, NullField.of(Type.INT_TYPE)),
+                new TupleIterator(td, tuples))).size());
+        assertEquals("IS NULL", Predicate.Op.IS_NULL.toString());
+
+        JoinPredicate jp = new JoinPredicate(1, Predicate.Op.EQUALS, 1);
+        assertFalse(jp.filter(row(0), row(3)));
+        assertTrue(jp.filter(row(1), row(1)));
+
+        // NULLs sort last
+        List<Tuple> sorted = collect(new OrderBy(1, true, new TupleIterator(td, tuples)));
+        for (int i = 0; i < 20; i++)
+            assertFalse(sorted.get(i).getField(1).isNull());
+        for (int i = 20; i < 30; i++)
+            assertTrue(sorted.get(i).getField(1).isNull());
+    }
+
+    /**
+     * Aggregates skip NULLs; a group with nothing else gets NULL, or 0 for
+     * COUNT.
+     */
+    @Test public void aggregates() throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 1; i <= 6; i++)
+            tuples.add(row(i));
+        // score: 10 20 NULL 40 50 NULL
+        assertEquals(new IntField(120), collect(new Aggregate(new TupleIterator(td, tuples), 1,
+                Aggregator.NO_GROUPING, Aggregator.Op.SUM)).get(0).getField(0));
+        assertEquals(new IntField(30), collect(new Aggregate(new TupleIterator(td, tuples), 1,
+                Aggregator.NO_GROUPING, Aggregator.Op.AVG)).get(0).getField(0));
+        assertEquals(new IntField(4), collect(new Aggregate(new TupleIterator(td, tuples), 1,
+                Aggregator.NO_GROUPING, Aggregator.Op.COUNT)).get(0).getField(0));
+        // name: n1 n2 n3 NULL n5 n6
+        assertEquals(new IntField(5), collect(new Aggregate(new TupleIterator(td, tuples), 2,
+                Aggregator.NO_GROUPING, Aggregator.Op.COUNT)).get(0).getField(0));
+        // price: 0.5 1.0 1.5 2.0 NULL 3.0
+        assertEquals(new DoubleField(8.0), collect(new Aggregate(new TupleIterator(td, tuples), 3,
+                Aggregator.NO_GROUPING, Aggregator.Op.SUM)).get(0).getField(0));
+
+        // no input at all
+        List<Tuple> none = new ArrayList<>();
+        assertTrue(collect(new Aggregate(new TupleIterator(td, none), 1,
+                Aggregator.NO_GROUPING, Aggregator.Op.MAX)).get(0).getField(0).isNull());
+        assertEquals(new IntField(0), collect(new Aggregate(new TupleIterator(td, none), 3,
+                Aggregator.NO_GROUPING, Aggregator.Op.COUNT)).get(0).getField(0));
+
+        // grouped by name, the NULL name is a group of its own
+        Map<Field, Field> max = new HashMap<>();
+        for (Tuple t : collect(new Aggregate(new TupleIterator(td, tuples), 1, 2, Aggregator.Op.MAX)))
+            max.put(t.getField(0), t.getField(1));
+        assertEquals(6, max.size());
+        assertEquals(new IntField(40), max.get(NullField.of(Type.STRING_TYPE)));
+        assertTrue(max.get(new StringField("n3", Type.STRING_LEN)).isNull());
+        Map<Field, Field> count = new HashMap<>();
+        for (Tuple t : collect(new Aggregate(new TupleIterator(td, tuples), 3, 1, Aggregator.Op.COUNT)))
+            count.put(t.getField(0), t.getField(1));
+        assertEquals(new IntField(2), count.get(NullField.of(Type.INT_TYPE)));
+        assertEquals(new IntField(1), count.get(new IntField(10)));
+        assertEquals(new IntField(0), count.get(new IntField(50)));
+    }
+
+    /**
+     * The schema marks nullable fields, convert declares them the same way,
+     * and the encoder reads \N and empty numbers as NULL.
+     */
+    @Test public void schemaAndEncoder() throws Exception {
+        File dir = File.createTempFile("null", ".dir").getParentFile();
+        String name = "nulls" + UUID.randomUUID().toString().replace("-", "");
+        File schema = new File(dir, name + ".schema");
+        schema.deleteOnExit();
+        File txt = new File(dir, name + ".txt");
+        txt.deleteOnExit();
+        File dat = new File(dir, name + ".dat");
+        HeapFile.deleteOnExit(dat);
+        try (FileWriter w = new FileWriter(schema)) {
+            w.write(name + " (id int pk, score int null, name string null, price double null)\n");
+        }
+        try (FileWriter w = new FileWriter(txt)) {
+            for (int i = 0; i < 1000; i++) {
+                Tuple t = row(i);
+                w.write(i + "," + (t.getField(1).isNull() ? "" : t.getField(1).toString()) + ","
+                        + (t.getField(2).isNull() ? "\\N" : ((StringField) t.getField(2)).getValue()) + ","
+                        + (t.getField(3).isNull() ? "\\N" : t.getField(3).toString()) + "\n");
+            }
+        }
+        SimpleDb.main(new String[]{"convert", txt.getPath(), "4", "int,int null,string null,double null"});
+        Database.getCatalog().loadSchema(schema.getAbsolutePath());
+        int tableId = Database.getCatalog().getTableId(name);
+        TupleDesc loaded = Database.getCatalog().getTupleDesc(tableId);
+        assertFalse(loaded.isNullable(0));
+        assertTrue(loaded.isNullable(1) && loaded.isNullable(2) && loaded.isNullable(3));
+        assertEquals("id", Database.getCatalog().getPrimaryKey(tableId));
+
+        TransactionId tid = new TransactionId();
+        List<Tuple> all = collect(new SeqScan(tid, tableId));
+        assertEquals(1000, all.size());
+        for (Tuple t : all) {
+            int i = ((IntField) t.getField(0)).getValue();
+            assertEquals(row(i).toString(), t.toString());
+        }
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(NullTest.class);
+    }
+}
@@ -0,0 +1,152 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.PageArena;
+import simpledb.storage.ReplacementPolicy;
+import simpledb.storage.Tuple;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OffHeapBufferPoolTest extends SimpleDbTestBase {
+
+    private static final int POOL_PAGES = 4;
+    private static final int PAGES = 10;
+
+    private HeapFile table;
+    private final List<List<Integer>> tuples = new ArrayList<>();
+    private BufferPool bp;
+    private PageArena arena;
+
+    @Before public void setUp() throws Exception {
+        // 2 int columns: 504 tuples per page
+        table = SystemTestUtil.createRandomHeapFile(2, 504 * PAGES, null, tuples);
+        bp = Database.resetBufferPool(new BufferPool(POOL_PAGES, Long.MAX_VALUE, ReplacementPolicy.Kind.LRU, true));
+        arena = bp.getArena();
+    }
+
+    private HeapPageId pid(int pgNo) {
+        return new HeapPageId(table.getId(), pgNo);
+    }
+
+    /**
+     * Pages are read into off-heap frames and hold almost nothing on the
+     * heap; a scan through a table larger than the pool recycles frames.
+     */
+    @Test public void scanRecyclesFrames() throws Exception {
+        TransactionId tid = new TransactionId();
+        SystemTestUtil.matchTuples(table, tid, tuples);
+        assertEquals(POOL_PAGES, arena.getAttachedFrames());
+        assertTrue("frames: " + arena.getFrames(), arena.getFrames() <= POOL_PAGES + 2);
+
+        HeapPage page = (HeapPage) bp.getPage(tid, pid(PAGES - 1), Permissions.READ_ONLY);
+        // the header and slot arrays only
+        assertTrue(page.getRetainedSize() < BufferPool.getPageSize());
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * Changes to an off-heap page are written back, and the page is read
+     * back with them once its frame has been reused.
+     */
+    @Test public void modifiedPageRoundTrip() throws Exception {
+        TransactionId tid = new TransactionId();
+        HeapPage page = (HeapPage) bp.getPage(tid, pid(0), Permissions.READ_WRITE);
+        Tuple victim = page.getTuple(3);
+        bp.unpinPage(tid, pid(0));
+        bp.deleteTuple(tid, victim);
+        bp.transactionComplete(tid, true);
+        bp.flushAllPages();
+
+        // push page 0 out and reuse its frame
+        TransactionId reader = new TransactionId();
+        for (int pgNo = 1; pgNo < PAGES; pgNo++) {
+            bp.getPage(reader, pid(pgNo), Permissions.READ_ONLY);
+            bp.unpinPage(reader, pid(pgNo));
+        }
+        page = (HeapPage) bp.getPage(reader, pid(0), Permissions.READ_ONLY);
+        assertEquals(1, page.getNumEmptySlots());
+        assertNull(page.getTuple(3));
+        assertEquals(tuples.get(4), SystemTestUtil.tupleToList(page.getTuple(4)));
+        bp.transactionComplete(reader);
+    }
+
+    /**
+     * Pages dropped by an abort give their frames back.
+     */
+    @Test public void abortReleasesFrames() throws Exception {
+        TransactionId tid = new TransactionId();
+        HeapPage page = (HeapPage) bp.getPage(tid, pid(0), Permissions.READ_WRITE);
+        bp.deleteTuple(tid, page.getTuple(0));
+        assertEquals(1, arena.getAttachedFrames());
+        bp.transactionComplete(tid, false);
+        assertEquals(0, arena.getAttachedFrames());
+
+        TransactionId reader = new TransactionId();
+        page = (HeapPage) bp.getPage(reader, pid(0), Permissions.READ_ONLY);
+        assertEquals(0, page.getNumEmptySlots());
+        assertEquals(1, arena.getFrames());
+        bp.transactionComplete(reader);
+    }
+
+    /**
+     * The before image of a page that was never modified is its data as
+     * read; it is still that page's data after the page is evicted and its
+     * frame reused.
+     */
+    @Test public void beforeImageAfterEviction() throws Exception {
+        TransactionId tid = new TransactionId();
+        HeapPage page = (HeapPage) bp.getPage(tid, pid(0), Permissions.READ_ONLY);
+        bp.unpinPage(tid, pid(0));
+        for (int pgNo = 1; pgNo < PAGES; pgNo++) {
+            bp.getPage(tid, pid(pgNo), Permissions.READ_ONLY);
+            bp.unpinPage(tid, pid(pgNo));
+        }
+        assertEquals(0, bp.getPinCount(pid(0)));
+        HeapPage before = page.getBeforeImage();
+        for (int slot = 0; slot < 504; slot++)
+            assertEquals(tuples.get(slot), SystemTestUtil.tupleToList(before.getTuple(slot)));
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * A caller without a transaction can pin explicitly; the page stays
+     * pinned until it is unpinned, so its frame is not reused under the
+     * caller.
+     */
+    @Test public void noTransactionPins() throws Exception {
+        HeapPage page = (HeapPage) bp.getPage(null, pid(0), Permissions.READ_ONLY, false, true);
+        assertEquals(1, bp.getPinCount(pid(0)));
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 1; pgNo < PAGES; pgNo++) {
+            bp.getPage(tid, pid(pgNo), Permissions.READ_ONLY);
+            bp.unpinPage(tid, pid(pgNo));
+        }
+        bp.transactionComplete(tid);
+        assertEquals(tuples.get(0), SystemTestUtil.tupleToList(page.getTuple(0)));
+        bp.unpinPage(null, pid(0));
+        assertEquals(0, bp.getPinCount(pid(0)));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(OffHeapBufferPoolTest.class);
+    }
+}
@@ -0,0 +1,240 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.Lz4;
+import simpledb.storage.MappedHeapFile;
+import simpledb.storage.PageCompression;
+import simpledb.storage.PageLayout;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PageCompressionTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE},
+            new String[]{"id", "name"});
+
+    private static List<String> scan(HeapFile file) throws Exception {
+        List<String> rows = new ArrayList<>();
+        TransactionId tid = new TransactionId();
+        DbFileIterator it = file.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            rows.add(t.getField(0) + " " + ((StringField) t.getField(1)).getValue());
+        }
+        it.close();
+        Database.getBufferPool().transactionComplete(tid);
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static byte[] roundTrip(byte[] data) throws IOException {
+        byte[] compressed = new byte[Lz4.maxCompressedLength(data.length)];
+        int len = Lz4.compress(data, data.length, compressed);
+        byte[] back = new byte[data.length];
+        Lz4.decompress(compressed, len, back, data.length);
+        assertArrayEquals(data, back);
+        return Arrays.copyOf(compressed, len);
+    }
+
+    /**
+     * The codec round trips empty, short, repetitive and random data, and
+     * rejects damaged blocks.
+     */
+    @Test public void codec() throws Exception {
+        Random random = new Random(20);
+        for (int n = 0; n < 40; n++) {
+            byte[] data = new byte[n];
+            random.nextBytes(data);
+            roundTrip(data);
+        }
+        byte[] zeros = new byte[4096];
+        assertTrue(roundTrip(zeros).length < 32);
+
+        byte[] text = new byte[4096];
+        for (int i = 0; i < text.length; i++)
+            text[i] = (byte) ("name" + (i / 7)).charAt(i % 4);
+        assertTrue(roundTrip(text).length < 1024);
+
+        byte[] noise = new byte[4096];
+        random.nextBytes(noise);
+        assertTrue(roundTrip(noise).length <= Lz4.maxCompressedLength(noise.length));
+
+        byte[] block = roundTrip(text);
+        try {
+            Lz4.decompress(block, block.length - 3, new byte[text.length], text.length);
+            fail("decompressed a truncated block");
+        } catch (IOException expected) {
+            // expected
+        }
+        try {
+            Lz4.decompress(block, block.length, new byte[text.length + 1], text.length + 1);
+            fail("decompressed to the wrong length");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * A compressed table holds the same rows in a fraction of the bytes, and
+     * is recognized from its header when opened again.
+     */
+    @Test public void heapFile() throws Exception {
+        HeapFile compressed = new HeapFile(SystemTestUtil.createTempTableFile(), td, 0, PageLayout.FIXED, PageCompression.LZ4);
+        HeapFile plain = new HeapFile(SystemTestUtil.createTempTableFile(), td);
+        Database.getCatalog().addTable(compressed, UUID.randomUUID().toString());
+        Database.getCatalog().addTable(plain, UUID.randomUUID().toString());
+        assertEquals(PageCompression.LZ4, compressed.getCompression());
+        assertEquals(PageCompression.NONE, plain.getCompression());
+
+        int rows = 3000;
+        List<String> expected = new ArrayList<>();
+        for (HeapFile file : new HeapFile[]{compressed, plain}) {
+            List<Tuple> tuples = new ArrayList<>();
+            expected.clear();
+            for (int i = 0; i < rows; i++) {
+                tuples.add(SystemTestUtil.createTuple(td, i, "name" + i));
+                expected.add(i + " name" + i);
+            }
+            SystemTestUtil.insertTuples(file, tuples.iterator());
+            TransactionId tid = new TransactionId();
+            Database.getBufferPool().deleteTuple(tid, tuples.get(7));
+            Database.getBufferPool().insertTuple(tid, file.getId(), SystemTestUtil.createTuple(td, rows, "last"));
+            Database.getBufferPool().transactionComplete(tid);
+        }
+        expected.remove(7);
+        expected.add(rows + " last");
+        Collections.sort(expected);
+        assertEquals(expected, scan(plain));
+        assertEquals(expected, scan(compressed));
+        assertEquals(plain.numPages(), compressed.numPages());
+        Database.getBufferPool().flushAllPages();
+        // padded strings are mostly zeros
+        assertTrue(compressed.getFileBytes() + " compressed bytes",
+                compressed.getFileBytes() * 4 < plain.getFileBytes());
+
+        Database.getCatalog().clear();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile reopened = new HeapFile(compressed.getFile(), td);
+        Database.getCatalog().addTable(reopened, UUID.randomUUID().toString());
+        assertEquals(PageCompression.LZ4, reopened.getCompression());
+        assertEquals(plain.numPages(), reopened.numPages());
+        assertEquals(expected, scan(reopened));
+        try {
+            new HeapFile(compressed.getFile(), td, 0, null, PageCompression.NONE);
+            fail("opened a compressed table as uncompressed");
+        } catch (IllegalArgumentException expectedException) {
+            // expected
+        }
+        try {
+            new MappedHeapFile(compressed.getFile(), td);
+            fail("mapped a compressed table");
+        } catch (IllegalArgumentException expectedException) {
+            // expected
+        }
+    }
+
+    /**
+     * A page that no longer fits its extent moves to the end of the file;
+     * the extent map finds the newest copy after reopening.
+     */
+    @Test public void pageGrows() throws Exception {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td, 0, PageLayout.FIXED, PageCompression.LZ4);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        List<String> expected = new ArrayList<>();
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), SystemTestUtil.createTuple(td, 0, "a"));
+        Database.getBufferPool().transactionComplete(tid);
+        expected.add("0 a");
+        Database.getBufferPool().flushAllPages();
+        long small = hf.getFileBytes();
+
+        // random names do not compress
+        Random random = new Random(7);
+        tid = new TransactionId();
+        for (int i = 1; i < 20; i++) {
+            char[] name = new char[100];
+            for (int j = 0; j < name.length; j++)
+                name[j] = (char) ('a' + random.nextInt(26));
+            Database.getBufferPool().insertTuple(tid, hf.getId(), SystemTestUtil.createTuple(td, i, new String(name)));
+            expected.add(i + " " + new String(name));
+        }
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+        Collections.sort(expected);
+        assertEquals(1, hf.numPages());
+        assertTrue(hf.getFileBytes() > small + 1000);
+        assertEquals(expected, scan(hf));
+
+        Database.getCatalog().clear();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile reopened = new HeapFile(hf.getFile(), td);
+        Database.getCatalog().addTable(reopened, UUID.randomUUID().toString());
+        assertEquals(1, reopened.numPages());
+        assertEquals(expected, scan(reopened));
+    }
+
+    /**
+     * A torn extent at the end of the file (a crash in the middle of an
+     * append) is cut off when the file is opened, so that no stale bytes
+     * are left behind a later, shorter append.
+     */
+    @Test public void tornExtent() throws Exception {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td, 0, PageLayout.FIXED, PageCompression.LZ4);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), SystemTestUtil.createTuple(td, 0, "a"));
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+        Database.getCatalog().clear();
+        File f = hf.getFile();
+        long length = f.length();
+
+        // the header of a second copy of page 0 and half of its bytes
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(length);
+            raf.writeInt(0);
+            raf.writeInt(2 * 64);
+            raf.writeInt(100);
+            raf.write(new byte[64]);
+        }
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile reopened = new HeapFile(f, td);
+        Database.getCatalog().addTable(reopened, UUID.randomUUID().toString());
+        assertEquals(length, f.length());
+        assertEquals(1, reopened.numPages());
+        assertEquals(Collections.singletonList("0 a"), scan(reopened));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PageCompressionTest.class);
+    }
+}
@@ -0,0 +1,235 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.common.Utility;
+import simpledb.index.BTreeFile;
+import simpledb.index.BTreeLeafPage;
+import simpledb.index.BTreePageId;
+import simpledb.storage.BufferPool;
+import simpledb.storage.BufferPoolMetrics;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapFileEncoder;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.PageFileHeader;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PageSizeTest extends SimpleDbTestBase {
+
+    private static final int BIG = 16 << 10;
+    // 2 int columns: floor(16384*8 / (8*8+1))
+    private static final int BIG_SLOTS = 2016;
+
+    private final TupleDesc td = Utility.getTupleDesc(2);
+
+    /**
+     * Inserts rows tuples (i, -i) into a file through the buffer pool and
+     * writes them to the file.
+     */
+    private static List<List<Integer>> fill(HeapFile hf, int rows) throws Exception {
+        List<List<Integer>> expected = new ArrayList<>();
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            tuples.add(Utility.getHeapTuple(new int[]{i, -i}));
+            List<Integer> row = new ArrayList<>();
+            row.add(i);
+            row.add(-i);
+            expected.add(row);
+        }
+        TransactionId tid = new TransactionId();
+        Iterator<Tuple> it = tuples.iterator();
+        Database.getBufferPool().insertTuples(tid, hf.getId(), it);
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+        return expected;
+    }
+
+    /**
+     * A table with its own page size keeps it in the file header, lays out
+     * its pages with that size, and is recognized when opened again.
+     */
+    @Test public void largePages() throws Exception {
+        File f = SystemTestUtil.createTempTableFile();
+        HeapFile hf = new HeapFile(f, td, BIG);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        assertEquals(BIG, hf.getPageSize());
+        assertEquals(BIG, Database.getCatalog().getPageSize(hf.getId()));
+        assertEquals(0, hf.numPages());
+        // the header takes a page
+        assertEquals(BIG, f.length());
+
+        List<List<Integer>> expected = fill(hf, BIG_SLOTS * 3 + 5);
+        assertEquals(4, hf.numPages());
+        assertEquals(BIG * 5L, f.length());
+        HeapPage page = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 0));
+        assertEquals(0, page.getNumEmptySlots());
+        assertEquals(BIG, page.getPageData().length);
+        SystemTestUtil.matchTuples(hf, expected);
+
+        // opened without a page size: taken from the header
+        Database.getCatalog().clear();
+        HeapFile reopened = new HeapFile(f, td);
+        Database.getCatalog().addTable(reopened, UUID.randomUUID().toString());
+        assertEquals(BIG, reopened.getPageSize());
+        assertEquals(4, reopened.numPages());
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(reopened, expected);
+
+        // a matching page size is fine, a different one is not
+        assertEquals(BIG, new HeapFile(f, td, BIG).getPageSize());
+        try {
+            new HeapFile(f, td, 8 << 10);
+            fail("opened a 16KB table with 8KB pages");
+        } catch (IllegalArgumentException expectedException) {
+            // expected
+        }
+    }
+
+    /**
+     * Tables with different page sizes share the buffer pool; each is read
+     * with its own page size.
+     */
+    @Test public void mixedPageSizes() throws Exception {
+        List<List<Integer>> smallRows = new ArrayList<>();
+        HeapFile small = SystemTestUtil.createRandomHeapFile(2, 504 * 2, null, smallRows);
+        assertEquals(BufferPool.getPageSize(), small.getPageSize());
+
+        File f = SystemTestUtil.createTempTableFile();
+        HeapFile big = new HeapFile(f, td, BIG);
+        Database.getCatalog().addTable(big, UUID.randomUUID().toString());
+        List<List<Integer>> bigRows = fill(big, BIG_SLOTS * 2);
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+
+        SystemTestUtil.matchTuples(small, smallRows);
+        SystemTestUtil.matchTuples(big, bigRows);
+        BufferPoolMetrics metrics = Database.getBufferPool().getMetrics();
+        assertEquals(2L * BufferPool.getPageSize(), metrics.getTable(small.getId()).getBytesRead());
+        assertEquals(2L * BIG, metrics.getTable(big.getId()).getBytesRead());
+    }
+
+    /**
+     * Sizes outside 4KB-64KB or not a power of two are rejected; a file
+     * without header can be opened with the default page size.
+     */
+    @Test public void supportedSizes() throws Exception {
+        for (int size : new int[]{4 << 10, 8 << 10, 16 << 10, 32 << 10, 64 << 10})
+            assertTrue(PageFileHeader.isSupported(size));
+        for (int size : new int[]{0, 1024, 5000, 128 << 10})
+            assertFalse(PageFileHeader.isSupported(size));
+        try {
+            new HeapFile(SystemTestUtil.createTempTableFile(), td, 5000);
+            fail("accepted a 5000 byte page");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+
+        HeapFile legacy = SystemTestUtil.createRandomHeapFile(2, 504, null, null);
+        HeapFile same = new HeapFile(legacy.getFile(), td, BufferPool.getPageSize());
+        assertEquals(BufferPool.getPageSize(), same.getPageSize());
+        assertEquals(1, same.numPages());
+    }
+
+    /**
+     * HeapFileEncoder writes a header for a page size other than the
+     * default, and the catalog schema can give a table its page size.
+     */
+    @Test public void encoderAndSchema() throws Exception {
+        List<List<Integer>> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            List<Integer> row = new ArrayList<>();
+            row.add(i);
+            row.add(i * 2);
+            rows.add(row);
+        }
+        File f = SystemTestUtil.createTempTableFile();
+        HeapFileEncoder.convert(rows, f, 32 << 10, 2);
+        HeapFile hf = Utility.openHeapFile(2, f);
+        assertEquals(32 << 10, hf.getPageSize());
+        // 4032 tuples per page
+        assertEquals(2, hf.numPages());
+        SystemTestUtil.matchTuples(hf, rows);
+
+        File dir = f.getParentFile();
+        String name = "pagesize" + UUID.randomUUID().toString().replace("-", "");
+        File schema = new File(dir, name + ".schema");
+        schema.deleteOnExit();
+        HeapFile.deleteOnExit(new File(dir, name + ".dat"));
+        try (FileWriter w = new FileWriter(schema)) {
+            w.write(name + " (a int, b int) pagesize=8k\n");
+        }
+        Database.getCatalog().loadSchema(schema.getAbsolutePath());
+        int tableId = Database.getCatalog().getTableId(name);
+        assertEquals(8 << 10, Database.getCatalog().getPageSize(tableId));
+        assertEquals(8 << 10, new File(dir, name + ".dat").length());
+    }
+
+    /**
+     * A page size the header does not support is still written as before,
+     * as bare pages without a header.
+     */
+    @Test public void encoderUnsupportedSize() throws Exception {
+        List<List<Integer>> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            List<Integer> row = new ArrayList<>();
+            row.add(i);
+            row.add(i * 2);
+            rows.add(row);
+        }
+        File f = SystemTestUtil.createTempTableFile();
+        HeapFileEncoder.convert(rows, f, 1000, 2);
+        // floor(1000*8 / (8*8+1)) = 123 tuples per page, so 5 pages
+        assertEquals(5 * 1000, f.length());
+    }
+
+    /**
+     * A B+ tree index with large pages has leaves with more slots.
+     */
+    @Test public void btreeLargePages() throws Exception {
+        File f = SystemTestUtil.createTempTableFile();
+        BTreeFile bf = new BTreeFile(f, 0, td, BIG);
+        Database.getCatalog().addTable(bf, UUID.randomUUID().toString());
+        assertEquals(BIG, bf.getPageSize());
+
+        TransactionId tid = new TransactionId();
+        // creates the root pointer and the root leaf (page 1), then page 2
+        assertEquals(2, bf.getEmptyPageNo(tid, new HashMap<>()));
+        assertEquals(2, bf.numPages());
+        BTreeLeafPage leaf = (BTreeLeafPage) Database.getBufferPool().getPage(tid,
+                new BTreePageId(bf.getId(), 1, BTreePageId.LEAF), Permissions.READ_ONLY);
+        // floor((16384*8 - 3*4*8) / (8*8+1))
+        assertEquals(2015, leaf.getNumEmptySlots());
+        assertEquals(BIG, leaf.getPageData().length);
+        Database.getBufferPool().transactionComplete(tid);
+
+        Database.getCatalog().clear();
+        BTreeFile reopened = new BTreeFile(f, 0, td);
+        assertEquals(BIG, reopened.getPageSize());
+        assertEquals(2, reopened.numPages());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PageSizeTest.class);
+    }
+}
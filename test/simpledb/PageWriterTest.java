@@ -0,0 +1,261 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.Page;
+import simpledb.storage.PageWriter;
+import simpledb.storage.ReplacementPolicy;
+import simpledb.storage.Tuple;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PageWriterTest extends SimpleDbTestBase {
+
+    private static final int PAGES = 10;
+
+    private HeapFile table;
+    private BufferPool bp;
+    private PageWriter writer;
+
+    @Before public void setUp() throws Exception {
+        // 2 int columns: 504 tuples per page
+        table = SystemTestUtil.createRandomHeapFile(2, 504 * PAGES, null, null);
+        bp = Database.resetBufferPool(2 * PAGES);
+        writer = bp.getPageWriter();
+    }
+
+    @After public void tearDown() {
+        writer.setInterval(0);
+    }
+
+    /** Deletes the first tuple of page pgNo on behalf of tid. */
+    private Tuple deleteFirst(TransactionId tid, int pgNo) throws Exception {
+        HeapPage page = (HeapPage) bp.getPage(tid, new HeapPageId(table.getId(), pgNo), Permissions.READ_WRITE);
+        Tuple t = page.getTuple(0);
+        bp.deleteTuple(tid, t);
+        return t;
+    }
+
+    private HeapPage onDisk(int pgNo) {
+        return (HeapPage) table.readPage(new HeapPageId(table.getId(), pgNo));
+    }
+
+    /**
+     * Pages of a committed transaction are written in page order, adjacent
+     * pages in one write; pages of a running transaction are left alone.
+     */
+    @Test public void writesCommittedPages() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int pgNo : new int[]{7, 2, 4, 3})
+            deleteFirst(tid, pgNo);
+
+        assertEquals(0, writer.writeBack());
+        assertEquals(0, onDisk(3).getNumEmptySlots());
+
+        bp.transactionComplete(tid, true);
+        assertEquals(4, writer.writeBack());
+        // pages 2-4 and page 7
+        assertEquals(2, writer.getWrites());
+        for (int pgNo : new int[]{2, 3, 4, 7}) {
+            assertNull(bp.getPage(tid, new HeapPageId(table.getId(), pgNo), Permissions.READ_ONLY).isDirty());
+            assertEquals(1, onDisk(pgNo).getNumEmptySlots());
+        }
+        assertEquals(0, writer.writeBack());
+    }
+
+    /**
+     * Pages of an aborted transaction are dropped from the pool, not written.
+     */
+    @Test public void abortDiscardsPages() throws Exception {
+        TransactionId tid = new TransactionId();
+        Tuple t = deleteFirst(tid, 5);
+        bp.transactionComplete(tid, false);
+        assertEquals(0, writer.writeBack());
+
+        TransactionId tid2 = new TransactionId();
+        HeapPage page = (HeapPage) bp.getPage(tid2, new HeapPageId(table.getId(), 5), Permissions.READ_ONLY);
+        assertEquals(0, page.getNumEmptySlots());
+        assertEquals(t, page.getTuple(0));
+        bp.transactionComplete(tid2);
+    }
+
+    /**
+     * Tuples on pages appended by an aborted transaction, one at a time or
+     * in bulk, never reach the file: the file only has empty pages there.
+     */
+    @Test public void abortDiscardsNewPages() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 504 + 10; i++)
+            bp.insertTuple(tid, table.getId(), Utility.getHeapTuple(i, 2));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 504 * 2; i++)
+            tuples.add(Utility.getHeapTuple(i, 2));
+        bp.insertTuples(tid, table.getId(), tuples.iterator());
+        assertEquals(PAGES + 4, table.numPages());
+        assertEquals(0, writer.writeBack());
+        bp.transactionComplete(tid, false);
+        assertEquals(0, writer.writeBack());
+
+        for (int pgNo = PAGES; pgNo < PAGES + 4; pgNo++)
+            assertEquals(504, onDisk(pgNo).getNumEmptySlots());
+        TransactionId tid2 = new TransactionId();
+        DbFileIterator it = table.iterator(tid2);
+        int n = 0;
+        it.open();
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        it.close();
+        bp.transactionComplete(tid2);
+        assertEquals(504 * PAGES, n);
+    }
+
+    /**
+     * A page dirtied again by a running transaction is not written.
+     */
+    @Test public void redirtiedPageIsSkipped() throws Exception {
+        TransactionId t1 = new TransactionId();
+        deleteFirst(t1, 1);
+        bp.transactionComplete(t1, true);
+
+        TransactionId t2 = new TransactionId();
+        HeapPage page = (HeapPage) bp.getPage(t2, new HeapPageId(table.getId(), 1), Permissions.READ_WRITE);
+        page.markDirty(true, t2);
+        assertFalse(page.markClean(t1));
+        assertEquals(0, writer.writeBack());
+        assertEquals(t2, page.isDirty());
+        bp.transactionComplete(t2, true);
+    }
+
+    /**
+     * The background thread writes committed pages on its own.
+     */
+    @Test public void background() throws Exception {
+        TransactionId tid = new TransactionId();
+        deleteFirst(tid, 0);
+        bp.transactionComplete(tid);
+        writer.setInterval(10);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getPagesWritten() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(1, writer.getPagesWritten());
+        assertEquals(1, onDisk(0).getNumEmptySlots());
+    }
+
+    /**
+     * flushAllPages writes the pages of running transactions too, and
+     * coalesces adjacent pages.
+     */
+    @Test public void flushAllPages() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 0; pgNo < PAGES; pgNo++)
+            deleteFirst(tid, pgNo);
+        bp.flushAllPages();
+        assertEquals(PAGES, writer.getPagesWritten());
+        assertEquals(1, writer.getWrites());
+        for (int pgNo = 0; pgNo < PAGES; pgNo++)
+            assertEquals(1, onDisk(pgNo).getNumEmptySlots());
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * A dirty page evicted for a new one is written without holding the
+     * pool's lock, and a thread reading it meanwhile waits for the write
+     * instead of reading the old version from disk.
+     */
+    @Test public void evictionWritesOutsidePoolLock() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        HeapFile slow = new HeapFile(SystemTestUtil.createRandomHeapFileUnopened(2, 504 * 3, 1000, null, null),
+                Utility.getTupleDesc(2)) {
+            @Override
+            public void writePage(Page page) throws IOException {
+                writing.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.writePage(page);
+            }
+        };
+        Database.getCatalog().addTable(slow, SystemTestUtil.getUUID());
+        bp = Database.resetBufferPool(2, ReplacementPolicy.Kind.LRU);
+        HeapPageId dirty = new HeapPageId(slow.getId(), 0);
+
+        // page 0 dirty and committed, page 1 clean: page 0 is the LRU victim
+        TransactionId tid = new TransactionId();
+        bp.deleteTuple(tid, ((HeapPage) bp.getPage(tid, dirty, Permissions.READ_WRITE)).getTuple(0));
+        bp.transactionComplete(tid);
+        TransactionId reader = new TransactionId();
+        bp.getPage(reader, new HeapPageId(slow.getId(), 1), Permissions.READ_ONLY);
+        bp.transactionComplete(reader);
+
+        TransactionId evictor = new TransactionId();
+        Thread evict = new Thread(() -> {
+            try {
+                bp.getPage(evictor, new HeapPageId(slow.getId(), 2), Permissions.READ_ONLY);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        evict.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        Thread lock = new Thread(() -> {
+            synchronized (bp) {
+                bp.getMetrics();
+            }
+        });
+        lock.start();
+        lock.join(10000);
+        assertFalse("the pool's lock is held while writing", lock.isAlive());
+
+        List<HeapPage> reread = new ArrayList<>();
+        Thread read = new Thread(() -> {
+            try {
+                reread.add((HeapPage) bp.getPage(reader, dirty, Permissions.READ_ONLY));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        read.start();
+        Thread.sleep(100);
+        proceed.countDown();
+        evict.join(10000);
+        read.join(10000);
+        assertEquals(1, reread.size());
+        assertEquals(1, reread.get(0).getNumEmptySlots());
+        bp.transactionComplete(evictor);
+        bp.transactionComplete(reader);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PageWriterTest.class);
+    }
+}
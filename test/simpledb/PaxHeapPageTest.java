@@ -0,0 +1,163 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.PageCompression;
+import simpledb.storage.PageLayout;
+import simpledb.storage.PaxHeapPage;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PaxHeapPageTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE, Type.INT_TYPE},
+            new String[]{"id", "name", "score"}, new boolean[]{false, false, true});
+
+    private Tuple tuple(int id) {
+        return SystemTestUtil.createTuple(td, id, "name" + id, id % 3 == 0 ? null : id * 10);
+    }
+
+    private static String row(Tuple t) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < t.getTupleDesc().numFields(); i++)
+            sb.append(i == 0 ? "" : " ").append(t.getField(i));
+        return sb.toString();
+    }
+
+    private HeapFile paxFile() throws IOException {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td, 0, PageLayout.PAX, PageCompression.NONE);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        return hf;
+    }
+
+    /**
+     * A PAX page holds as many tuples as a row page, and reads back the
+     * same tuples (including nulls) from its own bytes.
+     */
+    @Test public void pageRoundTrip() throws Exception {
+        HeapFile hf = paxFile();
+        HeapPageId pid = new HeapPageId(hf.getId(), 0);
+        PaxHeapPage page = new PaxHeapPage(pid, HeapPage.createEmptyPageData());
+        assertEquals(new HeapPage(pid, HeapPage.createEmptyPageData()).getNumSlots(), page.getNumSlots());
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < page.getNumSlots(); i++) {
+            page.insertTuple(tuple(i));
+            expected.add(row(tuple(i)));
+        }
+        assertEquals(0, page.getNumEmptySlots());
+        page.deleteTuple(page.getTuple(4));
+        expected.remove(4);
+
+        PaxHeapPage copy = new PaxHeapPage(pid, page.getPageData());
+        List<String> actual = new ArrayList<>();
+        Iterator<Tuple> it = copy.iterator();
+        while (it.hasNext())
+            actual.add(row(it.next()));
+        assertEquals(expected, actual);
+        assertEquals(new IntField(70), copy.getField(7, 2));
+        assertTrue(copy.getField(9, 2).isNull());
+        assertEquals(new IntField(9), copy.getField(9, 0));
+
+        // the values of one column are next to each other
+        byte[] data = copy.getPageData();
+        int ids = -1;
+        for (int i = 0; i + 8 <= data.length && ids < 0; i++) {
+            if (data[i + 3] == 1 && data[i + 7] == 2 && data[i] == 0 && data[i + 4] == 0)
+                ids = i;
+        }
+        assertTrue("no run of ids in the page", ids >= 0);
+
+        page.markDirty(true, new TransactionId());
+        page.setBeforeImage();
+        assertTrue(page.getBeforeImage() instanceof PaxHeapPage);
+        assertEquals(page.getNumSlots() - 1, page.getBeforeImage().getNumSlots() - page.getBeforeImage().getNumEmptySlots());
+    }
+
+    private static List<String> scan(DbFileIterator it) throws Exception {
+        List<String> rows = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            rows.add(row(it.next()));
+        it.close();
+        Collections.sort(rows);
+        return rows;
+    }
+
+    /**
+     * A PAX table can be filled, scanned whole or by columns, and reopened.
+     */
+    @Test public void heapFile() throws Exception {
+        HeapFile hf = paxFile();
+        assertEquals(PageLayout.PAX, hf.getLayout());
+        List<Tuple> tuples = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        List<String> projected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tuples.add(tuple(i));
+            expected.add(row(tuple(i)));
+            projected.add(i + " " + tuple(i).getField(2));
+        }
+        Collections.sort(expected);
+        Collections.sort(projected);
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuples(tid, hf.getId(), tuples.iterator());
+        Database.getBufferPool().transactionComplete(tid);
+        assertTrue(hf.numPages() > 1);
+
+        tid = new TransactionId();
+        assertEquals(expected, scan(hf.iterator(tid)));
+        assertEquals(projected, scan(hf.iterator(tid, new int[]{0, 2})));
+        SeqScan ss = new SeqScan(tid, hf.getId(), "t", new int[]{0, 2});
+        List<String> viaScan = new ArrayList<>();
+        ss.open();
+        assertEquals(2, ss.getTupleDesc().numFields());
+        assertEquals("t.score", ss.getTupleDesc().getFieldName(1));
+        while (ss.hasNext())
+            viaScan.add(row(ss.next()));
+        ss.close();
+        Collections.sort(viaScan);
+        assertEquals(projected, viaScan);
+        Database.getBufferPool().transactionComplete(tid);
+
+        Database.getBufferPool().flushAllPages();
+        Database.getCatalog().clear();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile reopened = new HeapFile(hf.getFile(), td);
+        Database.getCatalog().addTable(reopened, UUID.randomUUID().toString());
+        assertEquals(PageLayout.PAX, reopened.getLayout());
+        tid = new TransactionId();
+        assertEquals(expected, scan(reopened.iterator(tid)));
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PaxHeapPageTest.class);
+    }
+}
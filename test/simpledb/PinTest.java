@@ -0,0 +1,196 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Permissions;
+import simpledb.index.BTreeChecker;
+import simpledb.index.BTreeFile;
+import simpledb.index.BTreeUtility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.PageId;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class PinTest extends SimpleDbTestBase {
+
+    private static final int POOL_PAGES = 4;
+    private static final int PAGES = 10;
+
+    private HeapFile table;
+    private BufferPool bp;
+
+    @Before public void setUp() throws Exception {
+        // 2 int columns: 504 tuples per page
+        table = SystemTestUtil.createRandomHeapFile(2, 504 * PAGES, null, null);
+        bp = Database.resetBufferPool(POOL_PAGES);
+    }
+
+    private PageId pid(int pgNo) {
+        return new HeapPageId(table.getId(), pgNo);
+    }
+
+    /**
+     * Pinned pages stay in the pool; when every page is pinned there is
+     * nothing to evict.
+     */
+    @Test public void pinnedPagesAreNotEvicted() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 0; pgNo < POOL_PAGES; pgNo++) {
+            bp.getPage(tid, pid(pgNo), Permissions.READ_ONLY);
+            assertEquals(1, bp.getPinCount(pid(pgNo)));
+        }
+        try {
+            bp.getPage(tid, pid(POOL_PAGES), Permissions.READ_ONLY);
+            fail("expected DbException");
+        } catch (DbException e) {
+            // all pages are pinned
+        }
+
+        // releasing one pin makes room for exactly that page to go
+        bp.unpinPage(tid, pid(2));
+        assertEquals(0, bp.getPinCount(pid(2)));
+        bp.getPage(tid, pid(POOL_PAGES), Permissions.READ_ONLY);
+        assertEquals(0, bp.getPinCount(pid(2)));
+        for (int pgNo : new int[]{0, 1, 3, POOL_PAGES})
+            assertEquals(1, bp.getPinCount(pid(pgNo)));
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * Every getPage takes a pin; each unpinPage releases one.
+     */
+    @Test public void pinsAreCounted() throws Exception {
+        TransactionId t1 = new TransactionId();
+        TransactionId t2 = new TransactionId();
+        bp.getPage(t1, pid(0), Permissions.READ_ONLY);
+        bp.getPage(t1, pid(0), Permissions.READ_ONLY);
+        bp.getPage(t2, pid(0), Permissions.READ_ONLY);
+        assertEquals(3, bp.getPinCount(pid(0)));
+
+        bp.unpinPage(t1, pid(0));
+        assertEquals(2, bp.getPinCount(pid(0)));
+        // t2 holds one pin only
+        bp.unpinPage(t2, pid(0));
+        bp.unpinPage(t2, pid(0));
+        assertEquals(1, bp.getPinCount(pid(0)));
+        bp.transactionComplete(t1);
+        bp.transactionComplete(t2);
+    }
+
+    /**
+     * A page fetched without a transaction is not pinned unless asked for,
+     * so a caller that never unpins does not keep it in the pool.
+     */
+    @Test public void noTransactionDoesNotPin() throws Exception {
+        bp.getPage(null, pid(0), Permissions.READ_ONLY);
+        assertEquals(0, bp.getPinCount(pid(0)));
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 1; pgNo <= POOL_PAGES; pgNo++)
+            bp.getPage(tid, pid(pgNo), Permissions.READ_ONLY);
+        // page 0 was the only page that could be evicted
+        assertEquals(1, bp.getMetrics().getEvictions());
+        bp.transactionComplete(tid);
+
+        bp.getPage(null, pid(0), Permissions.READ_ONLY, false, true);
+        assertEquals(1, bp.getPinCount(pid(0)));
+        bp.unpinPage(null, pid(0));
+        assertEquals(0, bp.getPinCount(pid(0)));
+    }
+
+    /**
+     * Pins a transaction never released are dropped when it completes.
+     */
+    @Test public void transactionCompleteReleasesPins() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 0; pgNo < POOL_PAGES; pgNo++)
+            bp.getPage(tid, pid(pgNo), Permissions.READ_ONLY);
+        bp.transactionComplete(tid);
+        for (int pgNo = 0; pgNo < POOL_PAGES; pgNo++)
+            assertEquals(0, bp.getPinCount(pid(pgNo)));
+
+        TransactionId tid2 = new TransactionId();
+        bp.getPage(tid2, pid(POOL_PAGES), Permissions.READ_ONLY);
+        bp.transactionComplete(tid2);
+    }
+
+    /**
+     * A scan holds at most one pin at a time, and none once it is closed,
+     * so it can read a table much larger than the pool.
+     */
+    @Test public void scanReleasesPins() throws Exception {
+        TransactionId tid = new TransactionId();
+        DbFileIterator it = table.iterator(tid);
+        it.open();
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+            int pinned = 0;
+            for (int pgNo = 0; pgNo < PAGES; pgNo++)
+                pinned += bp.getPinCount(pid(pgNo));
+            assertTrue(pinned <= 1);
+        }
+        it.close();
+        assertEquals(504 * PAGES, count);
+        for (int pgNo = 0; pgNo < PAGES; pgNo++)
+            assertEquals(0, bp.getPinCount(pid(pgNo)));
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * A page dirtied by a running transaction is not evicted even when it
+     * is unpinned (NO STEAL); once the transaction commits it can be.
+     */
+    @Test public void dirtyPagesOfRunningTransactionsStay() throws Exception {
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 0; pgNo < POOL_PAGES; pgNo++) {
+            HeapPage page = (HeapPage) bp.getPage(tid, pid(pgNo), Permissions.READ_WRITE);
+            page.markDirty(true, tid);
+            bp.unpinPage(tid, pid(pgNo));
+        }
+        TransactionId reader = new TransactionId();
+        try {
+            bp.getPage(reader, pid(POOL_PAGES), Permissions.READ_ONLY);
+            fail("expected DbException");
+        } catch (DbException e) {
+            // all pages are dirty
+        }
+
+        bp.transactionComplete(tid, true);
+        bp.getPage(reader, pid(POOL_PAGES), Permissions.READ_ONLY);
+        bp.transactionComplete(reader);
+    }
+
+    /**
+     * B+ tree pages fetched by BTreeFile are not left pinned, so one
+     * transaction can walk a tree with more pages than the pool holds.
+     */
+    @Test public void bTreePagesAreNotLeftPinned() throws Exception {
+        BTreeFile tree = BTreeUtility.createRandomBTreeFile(2, 504 * PAGES, null, null, 0);
+        bp = Database.resetBufferPool(POOL_PAGES);
+        TransactionId tid = new TransactionId();
+        BTreeChecker.checkRep(tree, tid, new HashMap<>(), false);
+        bp.transactionComplete(tid);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PinTest.class);
+    }
+}
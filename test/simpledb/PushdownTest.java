@@ -0,0 +1,278 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Operator;
+import simpledb.execution.Predicate;
+import simpledb.execution.Project;
+import simpledb.execution.SeqScan;
+import simpledb.optimizer.LogicalPlan;
+import simpledb.optimizer.OperatorCardinality;
+import simpledb.optimizer.QueryPlanVisualizer;
+import simpledb.optimizer.TableStats;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFile;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.NullField;
+import simpledb.storage.Page;
+import simpledb.storage.PageId;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionAbortedException;
+import simpledb.transaction.TransactionId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PushdownTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = SystemTestUtil.NULLABLE_VALUE_DESCRIPTOR;
+
+    private static List<String> rows(OpIterator it) throws Exception {
+        List<String> rows = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            rows.add(it.next().toString());
+        it.close();
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static List<String> filtered(int tableId, Predicate p) throws Exception {
+        TransactionId tid = new TransactionId();
+        List<String> rows = rows(new Filter(p, new SeqScan(tid, tableId, "t")));
+        Database.getBufferPool().transactionComplete(tid);
+        return rows;
+    }
+
+    private static List<String> pushed(int tableId, Predicate p) throws Exception {
+        TransactionId tid = new TransactionId();
+        List<String> rows = rows(new SeqScan(tid, tableId, "t", null, new Predicate[]{p}));
+        Database.getBufferPool().transactionComplete(tid);
+        return rows;
+    }
+
+    /**
+     * Predicates tested on the raw bytes of a page agree with the same
+     * predicates on decoded tuples, for every operator, NULLs, and tuples
+     * only in memory as well as read back from the file.
+     */
+    @Test public void rawPage() throws Exception {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            tuples.add(SystemTestUtil.createNullableValueTuple(i, i % 7 == 0 ? null : i % 50));
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuples(tid, hf.getId(), tuples.iterator());
+        Database.getBufferPool().transactionComplete(tid);
+
+        List<Predicate> predicates = new ArrayList<>();
+        for (Predicate.Op op : Predicate.Op.values()) {
+            if (op == Predicate.Op.IS_NULL || op == Predicate.Op.IS_NOT_NULL) {
+                predicates.add(new Predicate(1, op, null));
+                continue;
+            }
+            predicates.add(new Predicate(1, op, new IntField(25)));
+            predicates.add(new Predicate(1, op, NullField.of(Type.INT_TYPE)));
+            predicates.add(new Predicate(0, op, new IntField(500)));
+        }
+        predicates.add(new Predicate(2, Predicate.Op.EQUALS, new StringField("name3", Type.STRING_LEN)));
+        for (int round = 0; round < 2; round++) {
+            for (Predicate p : predicates)
+                assertEquals(p.toString(), filtered(hf.getId(), p), pushed(hf.getId(), p));
+            // now from the file
+            Database.getBufferPool().flushAllPages();
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        }
+
+        HeapPage page = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 0));
+        for (int slot = 0; slot < page.getNumSlots(); slot++) {
+            if (!page.isSlotUsed(slot))
+                continue;
+            for (Predicate p : predicates)
+                assertEquals(p.filter(page.getTuple(slot)), page.matches(slot, p));
+        }
+    }
+
+    //只实现DbFile必须实现的方法  iterator(tid, columns, predicates)用默认的
+    private static class PlainFile implements DbFile {
+        private final HeapFile file;
+
+        PlainFile(HeapFile file) {
+            this.file = file;
+        }
+
+        public Page readPage(PageId id) {
+            return file.readPage(id);
+        }
+
+        public void writePage(Page p) throws IOException {
+            file.writePage(p);
+        }
+
+        public List<Page> insertTuple(TransactionId tid, Tuple t)
+                throws DbException, IOException, TransactionAbortedException {
+            return file.insertTuple(tid, t);
+        }
+
+        public List<Page> deleteTuple(TransactionId tid, Tuple t)
+                throws DbException, TransactionAbortedException {
+            return file.deleteTuple(tid, t);
+        }
+
+        public DbFileIterator iterator(TransactionId tid) {
+            return file.iterator(tid);
+        }
+
+        public int getId() {
+            return file.getId();
+        }
+
+        public TupleDesc getTupleDesc() {
+            return file.getTupleDesc();
+        }
+    }
+
+    /**
+     * Files without their own implementation filter the tuples they read.
+     */
+    @Test public void defaultIterator() throws Exception {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            tuples.add(SystemTestUtil.createNullableValueTuple(i, i % 7 == 0 ? null : i % 50));
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuples(tid, hf.getId(), tuples.iterator());
+        Database.getBufferPool().transactionComplete(tid);
+        // same id, replaces the heap file in the catalog
+        PlainFile plain = new PlainFile(hf);
+        Database.getCatalog().addTable(plain, UUID.randomUUID().toString());
+
+        Predicate p = new Predicate(1, Predicate.Op.LESS_THAN, new IntField(10));
+        List<String> expected = filtered(plain.getId(), p);
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, pushed(plain.getId(), p));
+
+        // reading one field returns tuples of that field only
+        tid = new TransactionId();
+        expected = rows(new Project(Collections.singletonList(1), new Type[]{Type.INT_TYPE},
+                new Filter(p, new SeqScan(tid, plain.getId(), "t"))));
+        SeqScan scan = new SeqScan(tid, plain.getId(), "t", new int[]{1}, new Predicate[]{p});
+        assertEquals(1, scan.getTupleDesc().numFields());
+        assertEquals(expected, rows(scan));
+        // rewinding starts over
+        scan.open();
+        scan.next();
+        scan.rewind();
+        int n = 0;
+        while (scan.hasNext()) {
+            scan.next();
+            n++;
+        }
+        scan.close();
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(expected.size(), n);
+    }
+
+    /**
+     * The planner puts the WHERE clause into the scans instead of Filters
+     * above them, and has them read only the fields the query uses; the
+     * query returns the same rows.
+     */
+    @Test public void logicalPlan() throws Exception {
+        List<List<Integer>> tuples1 = new ArrayList<>();
+        HeapFile f1 = SystemTestUtil.createRandomHeapFile(4, 1000, 1000, null, tuples1, "c");
+        Database.getCatalog().addTable(f1, "PA");
+        List<List<Integer>> tuples2 = new ArrayList<>();
+        HeapFile f2 = SystemTestUtil.createRandomHeapFile(4, 1000, 1000, null, tuples2, "c");
+        Database.getCatalog().addTable(f2, "PB");
+        TableStats.setTableStats("PA", new TableStats(f1.getId(), 19));
+        TableStats.setTableStats("PB", new TableStats(f2.getId(), 19));
+
+        List<List<Integer>> expected = new ArrayList<>();
+        for (List<Integer> a : tuples1) {
+            if (a.get(2) >= 300)
+                continue;
+            for (List<Integer> b : tuples2) {
+                if (a.get(1).equals(b.get(0)) && b.get(3) > 500)
+                    expected.add(Arrays.asList(a.get(0), b.get(1)));
+            }
+        }
+        assertTrue(expected.size() > 0);
+
+        TransactionId tid = new TransactionId();
+        LogicalPlan lp = new Parser().generateLogicalPlan(tid,
+                "SELECT a.c0, b.c1 FROM PA a, PB b WHERE a.c1 = b.c0 AND a.c2 < 300 AND b.c3 > 500;");
+        OpIterator plan = lp.physicalPlan(tid, TableStats.getStatsMap(), false);
+        List<SeqScan> scans = new ArrayList<>();
+        collect(plan, scans);
+        assertEquals(2, scans.size());
+        for (SeqScan s : scans) {
+            assertEquals(1, s.getPredicates().length);
+            // the join field and the selected field; the filtered field is not read
+            assertEquals(2, s.getColumns().length);
+            assertEquals(2, s.getTupleDesc().numFields());
+        }
+        SystemTestUtil.matchTuples(plan, expected);
+        Database.getBufferPool().transactionComplete(tid);
+        OperatorCardinality.updateOperatorCardinality((Operator) plan, lp.getTableAliasToIdMapping(),
+                TableStats.getStatsMap());
+        String tree = new QueryPlanVisualizer().getQueryPlanTree(plan);
+        assertTrue(tree, tree.contains("σ(a.c2<300)") && tree.contains("σ(b.c3>500)"));
+
+        // SELECT * reads every field
+        tid = new TransactionId();
+        lp = new Parser().generateLogicalPlan(tid, "SELECT * FROM PA a WHERE a.c2 < 300;");
+        plan = lp.physicalPlan(tid, TableStats.getStatsMap(), false);
+        scans.clear();
+        collect(plan, scans);
+        assertNull(scans.get(0).getColumns());
+        expected.clear();
+        for (List<Integer> a : tuples1) {
+            if (a.get(2) < 300)
+                expected.add(a);
+        }
+        SystemTestUtil.matchTuples(plan, expected);
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    //计划树中的SeqScan  并检查没有Filter
+    private static void collect(OpIterator it, List<SeqScan> scans) {
+        assertFalse(it instanceof Filter);
+        if (it instanceof SeqScan) {
+            scans.add((SeqScan) it);
+        } else if (it instanceof Operator) {
+            for (OpIterator child : ((Operator) it).getChildren())
+                collect(child, scans);
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PushdownTest.class);
+    }
+}
@@ -0,0 +1,171 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.Page;
+import simpledb.storage.PageId;
+import simpledb.storage.ReadAhead;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ReadAheadTest extends SimpleDbTestBase {
+
+    private static final int PAGES = 100;
+
+    /**
+     * Counts readPage calls, so that pages read twice show up, and the
+     * pages written by the read-ahead thread.
+     */
+    private static class CountingHeapFile extends HeapFile {
+        final AtomicInteger reads = new AtomicInteger();
+        final AtomicInteger readAheadWrites = new AtomicInteger();
+
+        CountingHeapFile(File f, TupleDesc td) {
+            super(f, td);
+        }
+
+        @Override
+        public Page readPage(PageId pid) {
+            reads.incrementAndGet();
+            return super.readPage(pid);
+        }
+
+        @Override
+        public void writePage(Page page) throws IOException {
+            if (Thread.currentThread().getName().equals("simpledb-readahead"))
+                readAheadWrites.incrementAndGet();
+            super.writePage(page);
+        }
+    }
+
+    private CountingHeapFile table;
+    private final List<List<Integer>> tuples = new ArrayList<>();
+    private TransactionId tid;
+
+    @Before public void setUp() throws Exception {
+        File f = SystemTestUtil.createRandomHeapFileUnopened(1, 992 * PAGES, 1000, null, tuples);
+        table = new CountingHeapFile(f, Utility.getTupleDesc(1));
+        Database.getCatalog().addTable(table, SystemTestUtil.getUUID());
+        tid = new TransactionId();
+    }
+
+    @After public void tearDown() {
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * A sequential scan is served by read-ahead, and every page is read
+     * from the file exactly once.
+     */
+    @Test public void sequentialScan() throws Exception {
+        BufferPool bp = Database.resetBufferPool(2 * PAGES);
+        ReadAhead ra = bp.getReadAhead();
+        ra.setWindow(8);
+
+        SystemTestUtil.matchTuples(table, tid, tuples);
+        assertEquals(PAGES, table.reads.get());
+        assertEquals(PAGES, ra.getPrefetchedPages() + ra.getMisses());
+        // only the pages before the scan was recognized as sequential are read synchronously
+        assertTrue("misses: " + ra.getMisses(), ra.getMisses() <= 2);
+        assertEquals(ra.getPrefetchedPages(), ra.getHits());
+    }
+
+    /**
+     * Read-ahead never reads past the end of the file.
+     */
+    @Test public void stopsAtEndOfFile() throws Exception {
+        BufferPool bp = Database.resetBufferPool(2 * PAGES);
+        bp.getReadAhead().setWindow(16);
+        for (int i = PAGES - 4; i < PAGES; i++)
+            bp.getPage(tid, new HeapPageId(table.getId(), i), Permissions.READ_ONLY, true);
+        assertEquals(4, table.reads.get());
+    }
+
+    /**
+     * Accesses without the scan hint, or out of order, do not trigger read-ahead.
+     */
+    @Test public void randomAccess() throws Exception {
+        BufferPool bp = Database.resetBufferPool(2 * PAGES);
+        ReadAhead ra = bp.getReadAhead();
+        ra.setWindow(8);
+        for (int i = 0; i < 10; i++)
+            bp.getPage(tid, new HeapPageId(table.getId(), i), Permissions.READ_ONLY);
+        for (int i = 90; i > 20; i -= 10)
+            bp.getPage(tid, new HeapPageId(table.getId(), i), Permissions.READ_ONLY, true);
+        assertEquals(0, ra.getPrefetchedPages());
+        assertEquals(17, table.reads.get());
+    }
+
+    /**
+     * A window of 0 turns read-ahead off, and the window never exceeds a
+     * quarter of the buffer pool.
+     */
+    @Test public void window() throws Exception {
+        BufferPool bp = Database.resetBufferPool(2 * PAGES);
+        ReadAhead ra = bp.getReadAhead();
+        ra.setWindow(1000);
+        assertEquals(PAGES / 2, ra.getWindow());
+        ra.setWindow(0);
+        SystemTestUtil.matchTuples(table, tid, tuples);
+        assertEquals(0, ra.getPrefetchedPages());
+        assertEquals(PAGES, ra.getMisses());
+    }
+
+    /**
+     * When every page in the pool is dirty or pinned, read-ahead drops the
+     * pages it read instead of evicting a dirty page and writing it on behalf
+     * of a transaction it does not belong to.
+     */
+    @Test public void neverWritesDirtyPages() throws Exception {
+        BufferPool bp = Database.resetBufferPool(8);
+        ReadAhead ra = bp.getReadAhead();
+        ra.setWindow(1);
+        TransactionId committed = new TransactionId();
+        // fill the pool with dirty pages before the scan starts, including the
+        // two pages the scan reads before it is recognized as sequential, so
+        // that no free slot is left for the prefetched pages
+        for (int i : new int[] {10, 11, 12, 13, 14, 15, 0, 1}) {
+            HeapPageId pid = new HeapPageId(table.getId(), i);
+            bp.getPage(tid, pid, Permissions.READ_ONLY).markDirty(true, committed);
+            bp.unpinPage(tid, pid);
+        }
+        // page 2 is prefetched while the pool is full of dirty pages; the scan
+        // waits for it before reading it itself. The scan stops there: once it
+        // evicts a page to read page 2, a later prefetch may take the free slot
+        for (int i = 0; i < 3; i++) {
+            HeapPageId pid = new HeapPageId(table.getId(), i);
+            bp.getPage(tid, pid, Permissions.READ_ONLY, true).markDirty(true, committed);
+            bp.unpinPage(tid, pid);
+        }
+        assertEquals(1, ra.getPrefetchedPages());
+        assertEquals(0, ra.getHits());
+        assertEquals(0, table.readAheadWrites.get());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ReadAheadTest.class);
+    }
+}
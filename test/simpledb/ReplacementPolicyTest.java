@@ -0,0 +1,180 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.Page;
+import simpledb.storage.ReplacementPolicy;
+import simpledb.storage.ShardedPageCache;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReplacementPolicyTest extends TestUtil.CreateHeapFile {
+
+    private static final int NUM_PAGES = 1100;
+    private Page[] pages;
+
+    @Before public void setUp() throws Exception {
+        super.setUp();
+        pages = new Page[NUM_PAGES];
+        byte[] data = HeapPage.createEmptyPageData();
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = new HeapPage(new HeapPageId(empty.getId(), i), data);
+    }
+
+    private static ShardedPageCache newCache(int capacity, ReplacementPolicy.Kind kind) {
+        return new ShardedPageCache(capacity, 1, kind);
+    }
+
+    /** Look a page up and load it on a miss, the way BufferPool.getPage does. */
+    private boolean access(ShardedPageCache cache, int key) {
+        if (cache.get(key) != null)
+            return true;
+        while (cache.isFull())
+            cache.evict();
+        cache.put(key, pages[key]);
+        return false;
+    }
+
+    /**
+     * Every policy must hand back each cached page exactly once, also after
+     * some pages have been discarded from the middle of its structures.
+     */
+    @Test public void evictEveryPageOnce() {
+        for (ReplacementPolicy.Kind kind : ReplacementPolicy.Kind.values()) {
+            ShardedPageCache cache = newCache(20, kind);
+            for (int i = 0; i < 20; i++)
+                access(cache, i);
+            for (int i = 0; i < 20; i += 3)
+                access(cache, i);
+            for (int i = 0; i < 20; i += 5)
+                assertSame(pages[i], cache.remove(i));
+
+            Set<Page> evicted = new HashSet<>();
+            Page p;
+            while ((p = cache.evict()) != null)
+                assertTrue(kind + " evicted a page twice", evicted.add(p));
+            assertEquals(kind.toString(), 16, evicted.size());
+            assertEquals(0, cache.size());
+        }
+    }
+
+    /**
+     * A victim that cannot be evicted goes back to the policy as it was:
+     * every page still comes out exactly once, and under 2Q a page skipped
+     * while in A1in is not mistaken for a reused one and stays in A1in.
+     */
+    @Test public void skippedVictimsKeepTheirState() {
+        for (ReplacementPolicy.Kind kind : ReplacementPolicy.Kind.values()) {
+            ShardedPageCache cache = newCache(20, kind);
+            for (int i = 0; i < 20; i++)
+                access(cache, i);
+            for (int i = 0; i < 20; i += 3)
+                access(cache, i);
+            Set<Page> evicted = new HashSet<>();
+            Page p;
+            // odd pages cannot be evicted yet
+            while ((p = cache.evict(page -> page.getId().getPageNumber() % 2 == 0)) != null)
+                assertTrue(kind + " evicted a page twice", evicted.add(p));
+            assertEquals(kind.toString(), 10, evicted.size());
+            while ((p = cache.evict()) != null)
+                assertTrue(kind + " evicted a page twice", evicted.add(p));
+            assertEquals(kind.toString(), 20, evicted.size());
+        }
+
+        ShardedPageCache cache = newCache(8, ReplacementPolicy.Kind.TWO_Q);
+        for (int i = 0; i < 8; i++)
+            access(cache, i);
+        assertSame(pages[1], cache.evict(page -> page != pages[0]));
+        // 0 is the newest page of A1in now, not a page of Am
+        for (int i = 2; i < 8; i++)
+            assertSame(pages[i], cache.evict());
+        assertSame(pages[0], cache.evict());
+    }
+
+    /**
+     * CLOCK gives referenced pages a second chance instead of reordering them on a hit.
+     */
+    @Test public void clockSecondChance() {
+        ShardedPageCache cache = newCache(4, ReplacementPolicy.Kind.CLOCK);
+        for (int i = 0; i < 4; i++)
+            access(cache, i);
+        access(cache, 0);
+        access(cache, 2);
+        assertSame(pages[1], cache.evict());
+        assertSame(pages[3], cache.evict());
+        // the reference bits of 0 and 2 were cleared by the first sweep
+        assertSame(pages[0], cache.evict());
+        assertSame(pages[2], cache.evict());
+    }
+
+    /**
+     * A small hot set that is re-read every 11 distinct pages is lost under LRU
+     * when the cache holds 10 pages, but CLOCK-Pro keeps it while the one-off
+     * scan pages flow through the cold part of the clock.
+     */
+    @Test public void clockProResistsScans() {
+        int lruHits = runHotSetWithScan(ReplacementPolicy.Kind.LRU);
+        int clockProHits = runHotSetWithScan(ReplacementPolicy.Kind.CLOCK_PRO);
+        assertEquals(0, lruHits);
+        assertTrue("CLOCK-Pro kept only " + clockProHits + " of 400 hot accesses", clockProHits >= 380);
+    }
+
+    private int runHotSetWithScan(ReplacementPolicy.Kind kind) {
+        ShardedPageCache cache = newCache(10, kind);
+        int scan = 100;
+        int hits = 0;
+        for (int round = 0; round < 120; round++) {
+            for (int hot = 0; hot < 4; hot++) {
+                // skip the warm-up rounds
+                if (access(cache, hot) && round >= 20)
+                    hits++;
+                for (int j = 0; j < 2; j++)
+                    access(cache, scan++);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Under 2Q, pages loaded with the scan hint recycle a small probationary
+     * ring instead of pushing the rest of the cache out.
+     */
+    @Test public void twoQueueScanHint() {
+        assertEquals(0, survivorsOfScan(ReplacementPolicy.Kind.LRU));
+        int survivors = survivorsOfScan(ReplacementPolicy.Kind.TWO_Q);
+        assertTrue("only " + survivors + " of 16 pages survived the scan", survivors >= 12);
+    }
+
+    private int survivorsOfScan(ReplacementPolicy.Kind kind) {
+        ShardedPageCache cache = newCache(16, kind);
+        for (int i = 0; i < 16; i++)
+            access(cache, i);
+        for (int i = 100; i < 600; i++) {
+            if (cache.get(i, true) == null) {
+                while (cache.isFull())
+                    cache.evict();
+                cache.putIfAbsent(i, pages[i], true);
+            }
+        }
+        int survivors = 0;
+        for (int i = 0; i < 16; i++)
+            if (cache.get(i) != null)
+                survivors++;
+        return survivors;
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ReplacementPolicyTest.class);
+    }
+}
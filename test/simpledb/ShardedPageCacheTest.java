@@ -0,0 +1,90 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.Page;
+import simpledb.storage.ReplacementPolicy;
+import simpledb.storage.ShardedPageCache;
+
+import static org.junit.Assert.*;
+
+public class ShardedPageCacheTest extends TestUtil.CreateHeapFile {
+
+    private Page[] pages;
+
+    @Before public void setUp() throws Exception {
+        super.setUp();
+        pages = new Page[8];
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = new HeapPage(new HeapPageId(empty.getId(), i), HeapPage.createEmptyPageData());
+    }
+
+    /**
+     * Unit test for ShardedPageCache.put(), get() and remove()
+     */
+    @Test public void putGetRemove() {
+        ShardedPageCache cache = new ShardedPageCache(8, 4, ReplacementPolicy.Kind.LRU);
+        for (int i = 0; i < pages.length; i++)
+            assertNull(cache.put(i, pages[i]));
+        assertEquals(8, cache.size());
+        assertTrue(cache.isFull());
+        for (int i = 0; i < pages.length; i++)
+            assertSame(pages[i], cache.get(i));
+
+        assertSame(pages[3], cache.remove(3));
+        assertNull(cache.get(3));
+        assertNull(cache.remove(3));
+        assertEquals(7, cache.size());
+        assertFalse(cache.isFull());
+    }
+
+    /**
+     * Unit test for ShardedPageCache.putIfAbsent()
+     */
+    @Test public void putIfAbsent() {
+        ShardedPageCache cache = new ShardedPageCache(8, 2, ReplacementPolicy.Kind.LRU);
+        assertNull(cache.putIfAbsent(1, pages[1]));
+        assertSame(pages[1], cache.putIfAbsent(1, pages[2]));
+        assertSame(pages[1], cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * With a single shard, evict() must return pages in least recently used order
+     */
+    @Test public void evictLeastRecentlyUsed() {
+        ShardedPageCache cache = new ShardedPageCache(4, 1, ReplacementPolicy.Kind.LRU);
+        for (int i = 0; i < 4; i++)
+            cache.put(i, pages[i]);
+        // touch 0 so that 1 becomes the least recently used page
+        cache.get(0);
+        assertSame(pages[1], cache.evict());
+        assertSame(pages[2], cache.evict());
+        assertSame(pages[3], cache.evict());
+        assertSame(pages[0], cache.evict());
+        assertNull(cache.evict());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * evict() must find a victim in another shard when the first one it looks at is empty
+     */
+    @Test public void evictAcrossShards() {
+        ShardedPageCache cache = new ShardedPageCache(8, 8, ReplacementPolicy.Kind.LRU);
+        cache.put(5, pages[5]);
+        assertSame(pages[5], cache.evict());
+        assertNull(cache.evict());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ShardedPageCacheTest.class);
+    }
+}
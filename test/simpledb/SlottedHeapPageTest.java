@@ -0,0 +1,223 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.DbException;
+import simpledb.common.Type;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.PageLayout;
+import simpledb.storage.SlottedHeapPage;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SlottedHeapPageTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE},
+            new String[]{"id", "name"});
+
+    private HeapFile hf;
+    private HeapPageId pid;
+
+    @Before public void createTable() throws Exception {
+        hf = new HeapFile(SystemTestUtil.createTempTableFile(), td, 0, PageLayout.SLOTTED);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        pid = new HeapPageId(hf.getId(), 0);
+    }
+
+    private static String name(int i) {
+        return "name" + i;
+    }
+
+    private SlottedHeapPage emptyPage() throws IOException {
+        return new SlottedHeapPage(pid, HeapPage.createEmptyPageData(hf.getPageSize()));
+    }
+
+    /**
+     * Tuples of different lengths survive getPageData, and single fields
+     * are read without decoding the whole tuple.
+     */
+    @Test public void roundTrip() throws Exception {
+        SlottedHeapPage page = emptyPage();
+        assertEquals(0, page.getNumSlots());
+        assertFalse(page.iterator().hasNext());
+
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < Type.STRING_LEN + 10; i++)
+            longName.append((char) ('a' + i % 26));
+        String[] names = {"", "x", "hello world", longName.toString()};
+        for (int i = 0; i < names.length; i++)
+            page.insertTuple(SystemTestUtil.createTuple(td, i, names[i]));
+
+        SlottedHeapPage reread = new SlottedHeapPage(pid, page.getPageData());
+        assertEquals(names.length, reread.getNumSlots());
+        for (int i = 0; i < names.length; i++) {
+            assertTrue(reread.isSlotUsed(i));
+            String expected = names[i].length() > Type.STRING_LEN ? names[i].substring(0, Type.STRING_LEN) : names[i];
+            assertEquals(new IntField(i), reread.getField(i, 0));
+            assertEquals(expected, ((StringField) reread.getField(i, 1)).getValue());
+            assertEquals(page.getTuple(i).toString(), reread.getTuple(i).toString());
+        }
+        assertFalse(reread.isSlotUsed(names.length));
+        assertNull(reread.getTuple(names.length));
+        assertArrayEquals(page.getPageData(), reread.getPageData());
+    }
+
+    /**
+     * Short strings take their own length, not STRING_LEN: a page holds
+     * many times more tuples than a fixed-slot page.
+     */
+    @Test public void morePerPage() throws Exception {
+        SlottedHeapPage page = emptyPage();
+        int n = 0;
+        while (page.getNumEmptySlots() > 0)
+            page.insertTuple(SystemTestUtil.createTuple(td, n, name(n++)));
+        // a fixed-slot page holds floor(4096*8 / (136*8+1)) = 30 of them
+        assertTrue("only " + n + " tuples", n > 30 * 5);
+        // the estimate is for the longest tuple, so less than one of it is left
+        assertTrue(page.getFreeBytes() < 4 + Type.INT_TYPE.getLen() + 2 + Type.STRING_LEN + 4);
+
+        SlottedHeapPage reread = new SlottedHeapPage(pid, page.getPageData());
+        int i = 0;
+        for (Iterator<Tuple> it = reread.iterator(); it.hasNext(); i++)
+            assertEquals(name(i), ((StringField) it.next().getField(1)).getValue());
+        assertEquals(n, i);
+    }
+
+    /**
+     * Deleted slots are reused and slot numbers are kept across
+     * getPageData, so record ids stay valid.
+     */
+    @Test public void deleteAndReuse() throws Exception {
+        SlottedHeapPage page = emptyPage();
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Tuple t = SystemTestUtil.createTuple(td, i, name(i));
+            page.insertTuple(t);
+            assertEquals(i, t.getRecordId().getTupleNumber());
+            tuples.add(t);
+        }
+        int free = page.getFreeBytes();
+        page.deleteTuple(tuples.get(1));
+        assertFalse(page.isSlotUsed(1));
+        assertEquals(free + 4 + 2 + name(1).length(), page.getFreeBytes());
+        try {
+            page.deleteTuple(tuples.get(1));
+            fail("deleted a tuple twice");
+        } catch (DbException expected) {
+            // expected
+        }
+
+        SlottedHeapPage reread = new SlottedHeapPage(pid, page.getPageData());
+        assertEquals(4, reread.getNumSlots());
+        assertFalse(reread.isSlotUsed(1));
+        assertEquals(name(3), ((StringField) reread.getField(3, 1)).getValue());
+
+        // the read tuple can be deleted, and its slot is taken by the next insert
+        reread.deleteTuple(reread.getTuple(2));
+        Tuple t = SystemTestUtil.createTuple(td, 9, "a much longer name than before");
+        reread.insertTuple(t);
+        assertEquals(1, t.getRecordId().getTupleNumber());
+        reread.insertTuple(SystemTestUtil.createTuple(td, 10, name(10)));
+        assertEquals(4, reread.getNumSlots());
+
+        SlottedHeapPage again = new SlottedHeapPage(pid, reread.getPageData());
+        assertEquals(t.getField(1), again.getField(1, 1));
+        assertEquals(new IntField(10), again.getField(2, 0));
+        assertEquals(name(0), ((StringField) again.getField(0, 1)).getValue());
+    }
+
+    /** Reads all rows of a file as "id name", sorted. */
+    private static List<String> scan(HeapFile file) throws Exception {
+        List<String> rows = new ArrayList<>();
+        TransactionId tid = new TransactionId();
+        DbFileIterator it = file.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            rows.add(t.getField(0) + " " + ((StringField) t.getField(1)).getValue());
+        }
+        it.close();
+        Database.getBufferPool().transactionComplete(tid);
+        Collections.sort(rows);
+        return rows;
+    }
+
+    /**
+     * A slotted table goes through the buffer pool like any heap file,
+     * keeps its layout in the file header and needs far fewer pages than a
+     * fixed-slot table with the same rows.
+     */
+    @Test public void heapFile() throws Exception {
+        HeapFile fixed = new HeapFile(SystemTestUtil.createTempTableFile(), td);
+        Database.getCatalog().addTable(fixed, UUID.randomUUID().toString());
+        assertEquals(PageLayout.FIXED, fixed.getLayout());
+        assertEquals(PageLayout.SLOTTED, hf.getLayout());
+
+        int rows = 2000;
+        List<String> expected = new ArrayList<>();
+        for (HeapFile file : new HeapFile[]{hf, fixed}) {
+            List<Tuple> tuples = new ArrayList<>();
+            expected.clear();
+            for (int i = 0; i < rows; i++) {
+                tuples.add(SystemTestUtil.createTuple(td, i, name(i)));
+                expected.add(i + " " + name(i));
+            }
+            SystemTestUtil.insertTuples(file, tuples.iterator());
+            TransactionId tid = new TransactionId();
+            Database.getBufferPool().deleteTuple(tid, tuples.get(7));
+            Database.getBufferPool().insertTuple(tid, file.getId(), SystemTestUtil.createTuple(td, rows, "last"));
+            Database.getBufferPool().transactionComplete(tid);
+        }
+        expected.remove(7);
+        expected.add(rows + " last");
+        Collections.sort(expected);
+        assertEquals(expected, scan(fixed));
+        assertEquals(expected, scan(hf));
+        // 67 fixed-slot pages
+        assertTrue(hf.numPages() + " slotted pages", hf.numPages() * 5 < fixed.numPages());
+
+        // opened again without a layout: taken from the header
+        Database.getBufferPool().flushAllPages();
+        Database.getCatalog().clear();
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile reopened = new HeapFile(hf.getFile(), td);
+        Database.getCatalog().addTable(reopened, UUID.randomUUID().toString());
+        assertEquals(PageLayout.SLOTTED, reopened.getLayout());
+        assertEquals(expected, scan(reopened));
+        try {
+            new HeapFile(hf.getFile(), td, 0, PageLayout.FIXED);
+            fail("opened a slotted table as fixed");
+        } catch (IllegalArgumentException expectedException) {
+            // expected
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SlottedHeapPageTest.class);
+    }
+}
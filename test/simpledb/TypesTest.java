@@ -0,0 +1,307 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import Zql.ZInsert;
+import Zql.ZqlParser;
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.Aggregate;
+import simpledb.execution.Aggregator;
+import simpledb.execution.Filter;
+import simpledb.execution.NumericAggregator;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BooleanField;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DateField;
+import simpledb.storage.DoubleField;
+import simpledb.storage.Field;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapFileEncoder;
+import simpledb.storage.HeapPage;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.LongField;
+import simpledb.storage.PageLayout;
+import simpledb.storage.SlottedHeapPage;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.storage.TupleIterator;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class TypesTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = new TupleDesc(
+            new Type[]{Type.INT_TYPE, Type.LONG_TYPE, Type.DOUBLE_TYPE, Type.DATE_TYPE, Type.BOOLEAN_TYPE, Type.STRING_TYPE},
+            new String[]{"id", "ts", "price", "day", "paid", "name"});
+
+    private static Field[] samples() {
+        return new Field[]{
+                new LongField(Long.MIN_VALUE), new LongField(1625097600000L),
+                new DoubleField(-0.5), new DoubleField(1e300),
+                new DateField(LocalDate.of(2021, 6, 1)), new DateField(-1),
+                new BooleanField(true), new BooleanField(false)};
+    }
+
+    /**
+     * Each new type serializes to getLen() bytes, reads back through both
+     * parse methods, and round trips through its text form.
+     */
+    @Test public void serializeAndParse() throws Exception {
+        for (Field f : samples()) {
+            Type type = f.getType();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            f.serialize(new DataOutputStream(baos));
+            byte[] bytes = baos.toByteArray();
+            assertEquals(type.getLen(), bytes.length);
+
+            assertEquals(f, type.parse(new DataInputStream(new ByteArrayInputStream(bytes))));
+            ByteBuffer buf = ByteBuffer.allocate(bytes.length + 3);
+            buf.position(3);
+            buf.put(bytes);
+            assertEquals(f, type.parse(buf, 3));
+            assertEquals(f, type.fromString(" " + f + " "));
+        }
+        assertEquals(new DateField(18779), Type.DATE_TYPE.fromString("2021-06-01"));
+        assertEquals("2021-06-01", new DateField(18779).toString());
+        assertEquals(new BooleanField(true), Type.BOOLEAN_TYPE.fromString("T"));
+        assertEquals(new BooleanField(false), Type.BOOLEAN_TYPE.fromString("0"));
+        for (String bad : new String[]{"2021-13-01", "yes"}) {
+            try {
+                (bad.startsWith("2") ? Type.DATE_TYPE : Type.BOOLEAN_TYPE).fromString(bad);
+                fail("parsed " + bad);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+
+        assertEquals(Type.LONG_TYPE, Type.forName("LONG"));
+        assertEquals(Type.BOOLEAN_TYPE, Type.forName("bool"));
+        assertEquals(Type.DATE_TYPE, Type.forName(" date"));
+        assertNull(Type.forName("timestamp"));
+    }
+
+    /**
+     * Comparisons follow the natural order of the primitive values.
+     */
+    @Test public void compare() {
+        assertTrue(new LongField(-3).compare(Predicate.Op.LESS_THAN, new LongField(5)));
+        assertTrue(new LongField(1L << 40).compare(Predicate.Op.GREATER_THAN, new LongField(1L << 39)));
+        assertTrue(new DoubleField(2.5).compare(Predicate.Op.GREATER_THAN_OR_EQ, new DoubleField(2.5)));
+        assertTrue(new DoubleField(-1.0).compare(Predicate.Op.NOT_EQUALS, new DoubleField(1.0)));
+        assertTrue(new DateField(LocalDate.of(2020, 12, 31)).compare(Predicate.Op.LESS_THAN,
+                new DateField(LocalDate.of(2021, 1, 1))));
+        assertTrue(new BooleanField(false).compare(Predicate.Op.LESS_THAN, new BooleanField(true)));
+        assertTrue(new BooleanField(true).compare(Predicate.Op.EQUALS, new BooleanField(true)));
+        assertEquals(new DoubleField(0.1 + 0.2).hashCode(), new DoubleField(0.1 + 0.2).hashCode());
+        assertNotEquals(new LongField(7), new IntField(7));
+    }
+
+    private static String row(int i) {
+        return i + "," + (1600000000000L + i * 1000L) + "," + (i * 0.25) + ","
+                + LocalDate.of(2021, 1, 1).plusDays(i % 10) + "," + (i % 2 == 0) + ",n" + i;
+    }
+
+    private HeapFile encode(int rows) throws IOException {
+        File txt = File.createTempFile("types", ".txt");
+        txt.deleteOnExit();
+        try (FileWriter w = new FileWriter(txt)) {
+            for (int i = 0; i < rows; i++)
+                w.write(row(i) + "\n");
+        }
+        File dat = SystemTestUtil.createTempTableFile();
+        HeapFileEncoder.convert(txt, dat, BufferPool.getPageSize(), td.numFields(),
+                new Type[]{Type.INT_TYPE, Type.LONG_TYPE, Type.DOUBLE_TYPE, Type.DATE_TYPE, Type.BOOLEAN_TYPE, Type.STRING_TYPE}, ',');
+        HeapFile hf = new HeapFile(dat, td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        return hf;
+    }
+
+    private static List<Tuple> collect(OpIterator it) throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            tuples.add(it.next());
+        it.close();
+        return tuples;
+    }
+
+    /**
+     * HeapFileEncoder writes the new types from text, and filters on them
+     * compare the stored values.
+     */
+    @Test public void encodeAndFilter() throws Exception {
+        HeapFile hf = encode(1000);
+        TransactionId tid = new TransactionId();
+        List<Tuple> all = collect(new SeqScan(tid, hf.getId()));
+        assertEquals(1000, all.size());
+        for (Tuple t : all) {
+            int i = ((IntField) t.getField(0)).getValue();
+            String s = t.getField(0) + "," + t.getField(1) + "," + t.getField(2) + "," + t.getField(3) + ","
+                    + t.getField(4) + "," + ((StringField) t.getField(5)).getValue();
+            assertEquals(row(i), s);
+        }
+
+        List<Tuple> day = collect(new Filter(new Predicate(3, Predicate.Op.EQUALS,
+                Type.DATE_TYPE.fromString("2021-01-04")), new SeqScan(tid, hf.getId())));
+        assertEquals(100, day.size());
+        List<Tuple> cheap = collect(new Filter(new Predicate(2, Predicate.Op.LESS_THAN,
+                new DoubleField(10.0)), new SeqScan(tid, hf.getId())));
+        assertEquals(40, cheap.size());
+        List<Tuple> paid = collect(new Filter(new Predicate(4, Predicate.Op.EQUALS,
+                new BooleanField(true)), new SeqScan(tid, hf.getId())));
+        assertEquals(500, paid.size());
+        List<Tuple> late = collect(new Filter(new Predicate(1, Predicate.Op.GREATER_THAN_OR_EQ,
+                new LongField(1600000000000L + 990 * 1000L)), new SeqScan(tid, hf.getId())));
+        assertEquals(10, late.size());
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * Sums and averages stay long or double, minimum and maximum keep the
+     * column type, and grouping works on any type.
+     */
+    @Test public void aggregate() throws Exception {
+        HeapFile hf = encode(1000);
+        TransactionId tid = new TransactionId();
+
+        Aggregate sum = new Aggregate(new SeqScan(tid, hf.getId()), 1, Aggregator.NO_GROUPING, Aggregator.Op.SUM);
+        assertEquals(Type.LONG_TYPE, sum.getTupleDesc().getFieldType(0));
+        long expected = 1000 * 1600000000000L + 1000L * (999 * 1000 / 2);
+        assertEquals(new LongField(expected), collect(sum).get(0).getField(0));
+
+        Aggregate avg = new Aggregate(new SeqScan(tid, hf.getId()), 2, Aggregator.NO_GROUPING, Aggregator.Op.AVG);
+        assertEquals(Type.DOUBLE_TYPE, avg.getTupleDesc().getFieldType(0));
+        assertEquals(999 * 0.25 / 2, ((DoubleField) collect(avg).get(0).getField(0)).getValue(), 1e-9);
+
+        Aggregate count = new Aggregate(new SeqScan(tid, hf.getId()), 4, Aggregator.NO_GROUPING, Aggregator.Op.COUNT);
+        assertEquals(Type.INT_TYPE, count.getTupleDesc().getFieldType(0));
+        assertEquals(new IntField(1000), collect(count).get(0).getField(0));
+
+        // latest day per paid flag, and the biggest price per day
+        Map<Field, Field> maxDay = new HashMap<>();
+        for (Tuple t : collect(new Aggregate(new SeqScan(tid, hf.getId()), 3, 4, Aggregator.Op.MAX)))
+            maxDay.put(t.getField(0), t.getField(1));
+        assertEquals(2, maxDay.size());
+        assertEquals(new DateField(LocalDate.of(2021, 1, 9)), maxDay.get(new BooleanField(true)));
+        assertEquals(new DateField(LocalDate.of(2021, 1, 10)), maxDay.get(new BooleanField(false)));
+
+        Map<Field, Field> maxPrice = new HashMap<>();
+        for (Tuple t : collect(new Aggregate(new SeqScan(tid, hf.getId()), 2, 3, Aggregator.Op.MAX)))
+            maxPrice.put(t.getField(0), t.getField(1));
+        assertEquals(10, maxPrice.size());
+        assertEquals(new DoubleField(990 * 0.25), maxPrice.get(new DateField(LocalDate.of(2021, 1, 1))));
+
+        // a date has no sum
+        try {
+            new NumericAggregator(Aggregator.NO_GROUPING, null, 3, Type.DATE_TYPE, Aggregator.Op.SUM);
+            fail("summed dates");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        // and the int aggregators group by the new types too
+        TupleDesc groupDesc = new TupleDesc(new Type[]{Type.DATE_TYPE, Type.INT_TYPE});
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Tuple t = new Tuple(groupDesc);
+            t.setField(0, new DateField(i % 2));
+            t.setField(1, new IntField(i));
+            tuples.add(t);
+        }
+        Map<Field, Field> sums = new HashMap<>();
+        for (Tuple t : collect(new Aggregate(new TupleIterator(groupDesc, tuples), 1, 0, Aggregator.Op.SUM)))
+            sums.put(t.getField(0), t.getField(1));
+        assertEquals(new IntField(6), sums.get(new DateField(0)));
+        assertEquals(new IntField(9), sums.get(new DateField(1)));
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    /**
+     * The schema accepts the new type names, and slotted pages store the
+     * new types at their fixed widths.
+     */
+    @Test public void schemaAndSlottedPages() throws Exception {
+        File dir = File.createTempFile("types", ".dir").getParentFile();
+        String name = "types" + UUID.randomUUID().toString().replace("-", "");
+        File schema = new File(dir, name + ".schema");
+        schema.deleteOnExit();
+        HeapFile.deleteOnExit(new File(dir, name + ".dat"));
+        try (FileWriter w = new FileWriter(schema)) {
+            w.write(name + " (id int, ts long, price double, day date, paid boolean, name string) layout=slotted\n");
+        }
+        Database.getCatalog().loadSchema(schema.getAbsolutePath());
+        int tableId = Database.getCatalog().getTableId(name);
+        assertEquals(td, Database.getCatalog().getTupleDesc(tableId));
+
+        SlottedHeapPage page = new SlottedHeapPage(new HeapPageId(tableId, 0),
+                HeapPage.createEmptyPageData(BufferPool.getPageSize()));
+        Tuple t = new Tuple(td);
+        String[] values = row(7).split(",");
+        for (int i = 0; i < values.length; i++)
+            t.setField(i, td.getFieldType(i).fromString(values[i]));
+        page.insertTuple(t);
+        SlottedHeapPage reread = new SlottedHeapPage(page.getId(), page.getPageData());
+        for (int i = 0; i < values.length; i++)
+            assertEquals(t.getField(i), reread.getField(0, i));
+        assertEquals(PageLayout.SLOTTED, ((HeapFile) Database.getCatalog().getDatabaseFile(tableId)).getLayout());
+    }
+
+    /**
+     * INSERT takes dates and booleans as strings, but not numbers.
+     */
+    @Test public void insertConstants() throws Exception {
+        Database.getCatalog().addTable(new HeapFile(SystemTestUtil.createTempTableFile(), td), "typed");
+        TransactionId tid = new TransactionId();
+        Parser p = new Parser();
+        p.handleInsertStatement(insert("1, 2, 0.5, '2021-06-01', 'true', 'x'"), tid);
+        String[] quoted = {
+                "'1', 2, 0.5, '2021-06-01', 'true', 'x'",
+                "1, '2', 0.5, '2021-06-01', 'true', 'x'",
+                "1, 2, '0.5', '2021-06-01', 'true', 'x'"};
+        for (String values : quoted) {
+            try {
+                p.handleInsertStatement(insert(values), tid);
+                fail(values);
+            } catch (ParsingException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("is a string"));
+            }
+        }
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    private static ZInsert insert(String values) throws Exception {
+        String sql = "INSERT INTO typed VALUES (" + values + ");";
+        return (ZInsert) new ZqlParser(new ByteArrayInputStream(sql.getBytes())).readStatement();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(TypesTest.class);
+    }
+}
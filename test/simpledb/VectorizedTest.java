@@ -0,0 +1,254 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.Aggregate;
+import simpledb.execution.Aggregator;
+import simpledb.execution.Filter;
+import simpledb.execution.HashEquiJoin;
+import simpledb.execution.Join;
+import simpledb.execution.JoinPredicate;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.Project;
+import simpledb.execution.SeqScan;
+import simpledb.execution.Vectorized;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.NullField;
+import simpledb.storage.RecordId;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleBatch;
+import simpledb.storage.TupleDesc;
+import simpledb.storage.TupleIterator;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class VectorizedTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = SystemTestUtil.NULLABLE_VALUE_DESCRIPTOR;
+
+    //查询计划  每次运行都新建一个
+    private interface Plan {
+        OpIterator build(TransactionId tid) throws Exception;
+    }
+
+    //rows行  v在[0, range)里  每7行有一个NULL
+    private HeapFile table(int rows, int range, long seed) throws Exception {
+        HeapFile hf = new HeapFile(SystemTestUtil.createTempTableFile(), td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        Random random = new Random(seed);
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < rows; i++)
+            tuples.add(SystemTestUtil.createNullableValueTuple(i, i % 7 == 0 ? null : random.nextInt(range)));
+        SystemTestUtil.insertTuples(hf, tuples.iterator());
+        return hf;
+    }
+
+    private static List<String> rows(OpIterator it) throws Exception {
+        List<String> rows = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            rows.add(it.next().toString());
+        it.close();
+        Collections.sort(rows);
+        return rows;
+    }
+
+    //同一个计划逐个元组执行和按批执行  结果一样
+    private static List<String> check(Plan plan) throws Exception {
+        TransactionId tid = new TransactionId();
+        List<String> expected = rows(plan.build(tid));
+        List<String> actual = rows(new Vectorized(plan.build(tid)));
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(expected, actual);
+        return expected;
+    }
+
+    /**
+     * Scans, filters and projections give the same tuples batch at a time
+     * as tuple at a time, including NULLs, pages read from the file and
+     * tuples only in memory.
+     */
+    @Test public void scanFilterProject() throws Exception {
+        HeapFile hf = table(3000, 100, 1);
+        int id = hf.getId();
+        List<Predicate> predicates = new ArrayList<>();
+        for (Predicate.Op op : Predicate.Op.values()) {
+            if (op == Predicate.Op.IS_NULL || op == Predicate.Op.IS_NOT_NULL) {
+                predicates.add(new Predicate(1, op, null));
+                continue;
+            }
+            predicates.add(new Predicate(1, op, new IntField(50)));
+            predicates.add(new Predicate(1, op, NullField.of(Type.INT_TYPE)));
+        }
+        predicates.add(new Predicate(2, Predicate.Op.EQUALS, new StringField("name3", Type.STRING_LEN)));
+
+        for (int round = 0; round < 2; round++) {
+            assertEquals(3000, check(tid -> new SeqScan(tid, id, "t")).size());
+            for (Predicate p : predicates) {
+                check(tid -> new Filter(p, new SeqScan(tid, id, "t")));
+                // pushed into the scan, reading only two fields
+                check(tid -> new Project(Arrays.asList(1, 0), new Type[]{Type.INT_TYPE, Type.INT_TYPE},
+                        new SeqScan(tid, id, "t", new int[]{0, 1}, new Predicate[]{p})));
+            }
+            check(tid -> new Filter(predicates.get(0),
+                    new Filter(predicates.get(2), new SeqScan(tid, id, "t"))));
+            // now from the file
+            Database.getBufferPool().flushAllPages();
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        }
+
+        // a batch is a page, with the INT fields as ints and the RecordIds of the tuples
+        TransactionId tid = new TransactionId();
+        SeqScan scan = new SeqScan(tid, id, "t");
+        scan.open();
+        TupleBatch batch = scan.nextBatch();
+        assertTrue(batch.isInt(0) && batch.isInt(1) && !batch.isInt(2));
+        assertEquals("t.id", batch.getTupleDesc().getFieldName(0));
+        assertEquals(new RecordId(new HeapPageId(id, 0), 0), batch.getRecordId(0));
+        scan.close();
+        Predicate p = predicates.get(0);
+        assertEquals(recordIds(new Filter(p, new SeqScan(tid, id, "t"))),
+                recordIds(new Vectorized(new Filter(p, new SeqScan(tid, id, "t")))));
+        Database.getBufferPool().transactionComplete(tid);
+    }
+
+    private static List<RecordId> recordIds(OpIterator it) throws Exception {
+        List<RecordId> rids = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            rids.add(it.next().getRecordId());
+        it.close();
+        return rids;
+    }
+
+    /**
+     * Nested loops and hash joins give the same tuples batch at a time,
+     * NULL keys joining nothing.
+     */
+    @Test public void joins() throws Exception {
+        int a = table(2000, 300, 2).getId();
+        int b = table(500, 300, 3).getId();
+        assertTrue(check(tid -> new HashEquiJoin(new JoinPredicate(1, Predicate.Op.EQUALS, 1),
+                new SeqScan(tid, a, "a"), new SeqScan(tid, b, "b"))).size() > 0);
+        check(tid -> new Join(new JoinPredicate(1, Predicate.Op.EQUALS, 1),
+                new SeqScan(tid, a, "a"), new SeqScan(tid, b, "b")));
+        check(tid -> new Join(new JoinPredicate(1, Predicate.Op.LESS_THAN, 0),
+                new Filter(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(100)), new SeqScan(tid, a, "a")),
+                new Filter(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(150)), new SeqScan(tid, b, "b"))));
+        // string keys
+        check(tid -> new HashEquiJoin(new JoinPredicate(2, Predicate.Op.EQUALS, 2),
+                new Filter(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(50)), new SeqScan(tid, a, "a")),
+                new Filter(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(20)), new SeqScan(tid, b, "b"))));
+
+        // more tuples on the left than fit in one hash table
+        TupleDesc keys = new TupleDesc(new Type[]{Type.INT_TYPE});
+        List<Tuple> left = new ArrayList<>();
+        for (int i = 0; i < HashEquiJoin.MAP_SIZE * 2 + 100; i++) {
+            Tuple t = new Tuple(keys);
+            t.setField(0, new IntField(i % 1000));
+            left.add(t);
+        }
+        List<Tuple> right = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 97) {
+            Tuple t = new Tuple(keys);
+            t.setField(0, new IntField(i));
+            right.add(t);
+        }
+        List<String> rows = check(tid -> new HashEquiJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0),
+                new TupleIterator(keys, left), new TupleIterator(keys, right)));
+        int matches = 0;
+        for (Tuple l : left) {
+            for (Tuple r : right)
+                matches += l.getField(0).equals(r.getField(0)) ? 1 : 0;
+        }
+        assertEquals(matches, rows.size());
+    }
+
+    /**
+     * Aggregates over batches give the same groups and values, with NULL
+     * groups and values.
+     */
+    @Test public void aggregates() throws Exception {
+        int id = table(3000, 40, 4).getId();
+        for (Aggregator.Op op : new Aggregator.Op[]{Aggregator.Op.MIN, Aggregator.Op.MAX,
+                Aggregator.Op.SUM, Aggregator.Op.AVG, Aggregator.Op.COUNT}) {
+            // grouped by v, which has NULLs
+            check(tid -> new Aggregate(new SeqScan(tid, id, "t"), 0, 1, op));
+            // NULL values
+            check(tid -> new Aggregate(new SeqScan(tid, id, "t"), 1, 0, op));
+            check(tid -> new Aggregate(new SeqScan(tid, id, "t"), 1, Aggregator.NO_GROUPING, op));
+            // string groups
+            check(tid -> new Aggregate(new SeqScan(tid, id, "t"), 1, 2, op));
+            // only NULLs, and no tuples at all
+            check(tid -> new Aggregate(new Filter(new Predicate(1, Predicate.Op.IS_NULL, null),
+                    new SeqScan(tid, id, "t")), 1, 0, op));
+            check(tid -> new Aggregate(new Filter(new Predicate(1, Predicate.Op.GREATER_THAN, new IntField(1000)),
+                    new SeqScan(tid, id, "t")), 1, Aggregator.NO_GROUPING, op));
+        }
+        check(tid -> new Aggregate(new HashEquiJoin(new JoinPredicate(1, Predicate.Op.EQUALS, 0),
+                new SeqScan(tid, id, "a"), new SeqScan(tid, id, "b")), 4, 0, Aggregator.Op.COUNT));
+    }
+
+    /**
+     * A tuple fetched by hasNext() comes first in the next batch, and
+     * rewinding starts the batches over.
+     */
+    @Test public void mixedAndRewind() throws Exception {
+        int id = table(1000, 100, 5).getId();
+        TransactionId tid = new TransactionId();
+        Filter filter = new Filter(new Predicate(1, Predicate.Op.LESS_THAN, new IntField(50)),
+                new SeqScan(tid, id, "t"));
+        List<String> expected = rows(filter);
+        filter.open();
+        assertTrue(filter.hasNext());
+        List<String> actual = new ArrayList<>();
+        TupleBatch batch;
+        while ((batch = filter.nextBatch()) != null) {
+            assertTrue(batch.size() > 0);
+            for (int k = 0; k < batch.size(); k++)
+                actual.add(batch.getTuple(batch.getSelection()[k]).toString());
+        }
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+
+        Vectorized v = new Vectorized(filter);
+        assertEquals(expected, rows(v));
+        v.open();
+        v.next();
+        v.rewind();
+        int n = 0;
+        while (v.hasNext()) {
+            v.next();
+            n++;
+        }
+        v.close();
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(expected.size(), n);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(VectorizedTest.class);
+    }
+}
@@ -0,0 +1,245 @@
+package simpledb;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.BufferPoolMetrics;
+import simpledb.storage.Field;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapFileEncoder;
+import simpledb.storage.IntField;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.storage.ZoneMap;
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ZoneMapTest extends SimpleDbTestBase {
+
+    private final TupleDesc td = SystemTestUtil.NULLABLE_VALUE_DESCRIPTOR;
+
+    //id按插入顺序递增  每页的id区间互不重叠
+    private HeapFile fill(File f, int rows) throws Exception {
+        HeapFile hf = new HeapFile(f, td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < rows; i++)
+            tuples.add(SystemTestUtil.createNullableValueTuple(i, i % 5 == 0 ? null : i % 100));
+        SystemTestUtil.insertTuples(hf, tuples.iterator());
+        return hf;
+    }
+
+    private static List<String> rows(OpIterator it) throws Exception {
+        List<String> rows = new ArrayList<>();
+        it.open();
+        while (it.hasNext())
+            rows.add(it.next().toString());
+        it.close();
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static Predicate[] where(int field, Predicate.Op op, int value) {
+        return new Predicate[]{new Predicate(field, op, new IntField(value))};
+    }
+
+    private static List<String> filtered(HeapFile hf, Predicate[] predicates) throws Exception {
+        TransactionId tid = new TransactionId();
+        OpIterator it = new SeqScan(tid, hf.getId(), "t");
+        for (Predicate p : predicates)
+            it = new Filter(p, it);
+        List<String> rows = rows(it);
+        Database.getBufferPool().transactionComplete(tid);
+        return rows;
+    }
+
+    //返回满足谓词的行  并检查和Filter的结果相同
+    private static List<String> pushed(HeapFile hf, Predicate[] predicates) throws Exception {
+        TransactionId tid = new TransactionId();
+        List<String> rows = rows(new SeqScan(tid, hf.getId(), "t", null, predicates));
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(filtered(hf, predicates), rows);
+        return rows;
+    }
+
+    //带谓词扫描一次  经过缓冲池的页数
+    private static long pagesRead(HeapFile hf, Predicate[] predicates) throws Exception {
+        BufferPoolMetrics.TableMetrics m = Database.getBufferPool().getMetrics().getTable(hf.getId());
+        long before = m.getHits() + m.getMisses();
+        TransactionId tid = new TransactionId();
+        rows(new SeqScan(tid, hf.getId(), "t", null, predicates));
+        Database.getBufferPool().transactionComplete(tid);
+        return m.getHits() + m.getMisses() - before;
+    }
+
+    /**
+     * Zones rule out pages only when no value between min and max can
+     * satisfy the predicate.
+     */
+    @Test public void mayMatch() {
+        Field lo = new IntField(10);
+        Field hi = new IntField(20);
+        assertTrue(new Predicate(0, Predicate.Op.EQUALS, new IntField(10)).mayMatch(lo, hi));
+        assertTrue(new Predicate(0, Predicate.Op.EQUALS, new IntField(15)).mayMatch(lo, hi));
+        assertFalse(new Predicate(0, Predicate.Op.EQUALS, new IntField(9)).mayMatch(lo, hi));
+        assertFalse(new Predicate(0, Predicate.Op.EQUALS, new IntField(21)).mayMatch(lo, hi));
+        assertTrue(new Predicate(0, Predicate.Op.NOT_EQUALS, new IntField(10)).mayMatch(lo, hi));
+        assertFalse(new Predicate(0, Predicate.Op.NOT_EQUALS, new IntField(10)).mayMatch(lo, lo));
+        assertTrue(new Predicate(0, Predicate.Op.GREATER_THAN, new IntField(19)).mayMatch(lo, hi));
+        assertFalse(new Predicate(0, Predicate.Op.GREATER_THAN, new IntField(20)).mayMatch(lo, hi));
+        assertTrue(new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(20)).mayMatch(lo, hi));
+        assertFalse(new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(21)).mayMatch(lo, hi));
+        assertTrue(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(11)).mayMatch(lo, hi));
+        assertFalse(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(10)).mayMatch(lo, hi));
+        assertTrue(new Predicate(0, Predicate.Op.LESS_THAN_OR_EQ, new IntField(10)).mayMatch(lo, hi));
+        assertFalse(new Predicate(0, Predicate.Op.LESS_THAN_OR_EQ, new IntField(9)).mayMatch(lo, hi));
+
+        // a column holding only NULLs has no zone
+        assertFalse(new Predicate(0, Predicate.Op.EQUALS, new IntField(1)).mayMatch(null, null));
+        assertTrue(new Predicate(0, Predicate.Op.IS_NULL, null).mayMatch(null, null));
+        assertTrue(new Predicate(0, Predicate.Op.IS_NOT_NULL, null).mayMatch(lo, hi));
+    }
+
+    /**
+     * A range scan on an ordered column reads only the pages whose zone
+     * overlaps the range and returns the same rows as a Filter; zones follow
+     * inserts that are still only in the buffer pool.
+     */
+    @Test public void skipPages() throws Exception {
+        HeapFile hf = fill(SystemTestUtil.createTempTableFile(), 3000);
+        int pages = hf.numPages();
+        assertTrue(pages > 10);
+
+        assertEquals(10, pushed(hf, where(0, Predicate.Op.GREATER_THAN_OR_EQ, 2990)).size());
+        assertEquals(1, pagesRead(hf, where(0, Predicate.Op.GREATER_THAN_OR_EQ, 2990)));
+        assertEquals(1, pushed(hf, where(0, Predicate.Op.EQUALS, 1234)).size());
+        assertEquals(1, pagesRead(hf, where(0, Predicate.Op.EQUALS, 1234)));
+        assertEquals(0, pagesRead(hf, where(0, Predicate.Op.LESS_THAN, 0)));
+        // every page has a v >= 0, so nothing is skipped
+        assertEquals(pages, pagesRead(hf, where(1, Predicate.Op.GREATER_THAN_OR_EQ, 0)));
+        // each page holds a third of the cycle of v
+        assertTrue(pagesRead(hf, where(1, Predicate.Op.EQUALS, 42)) < pages);
+        assertEquals(30, pushed(hf, where(1, Predicate.Op.EQUALS, 42)).size());
+        // several predicates, nullable column
+        pushed(hf, new Predicate[]{new Predicate(0, Predicate.Op.LESS_THAN, new IntField(500)),
+                new Predicate(1, Predicate.Op.IS_NULL, null)});
+        pushed(hf, new Predicate[]{new Predicate(0, Predicate.Op.LESS_THAN, new IntField(500)),
+                new Predicate(1, Predicate.Op.GREATER_THAN, new IntField(90))});
+        // strings have no zone
+        pushed(hf, new Predicate[]{new Predicate(2, Predicate.Op.EQUALS, new StringField("name7", Type.STRING_LEN))});
+
+        // a new row far outside the page's zone, not yet written back
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), SystemTestUtil.createNullableValueTuple(1000000, 7));
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(1, pushed(hf, where(0, Predicate.Op.GREATER_THAN, 999999)).size());
+        assertEquals(1, pagesRead(hf, where(0, Predicate.Op.GREATER_THAN, 999999)));
+
+        // deleting does not narrow zones, the rows are still filtered
+        tid = new TransactionId();
+        SeqScan scan = new SeqScan(tid, hf.getId(), "t", null, where(0, Predicate.Op.EQUALS, 1000000));
+        scan.open();
+        Tuple last = scan.next();
+        scan.close();
+        Database.getBufferPool().deleteTuple(tid, last);
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(0, pushed(hf, where(0, Predicate.Op.GREATER_THAN, 999999)).size());
+    }
+
+    /**
+     * The zone map written by the encoder is read when the table is opened
+     * and then kept in memory only: closing a table writes no side file.
+     * Once the table has changed, the side file no longer matches it and
+     * scans skip nothing until they have read its pages through the buffer
+     * pool.
+     */
+    @Test public void persist() throws Exception {
+        HeapFile filled = fill(SystemTestUtil.createTempTableFile(), 3000);
+        pushed(filled, where(0, Predicate.Op.GREATER_THAN_OR_EQ, 2990));
+        Database.getBufferPool().flushAllPages();
+        Database.getCatalog().clear();
+        assertFalse(ZoneMap.sideFile(filled.getFile()).exists());
+
+        File f = encode(3000);
+        File side = ZoneMap.sideFile(f);
+        byte[] written = Files.readAllBytes(side.toPath());
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile hf = new HeapFile(f, td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        assertEquals(1, pagesRead(hf, where(0, Predicate.Op.GREATER_THAN_OR_EQ, 2990)));
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuple(tid, hf.getId(), SystemTestUtil.createNullableValueTuple(5000, 1));
+        Database.getBufferPool().transactionComplete(tid);
+        assertEquals(1, pagesRead(hf, where(0, Predicate.Op.EQUALS, 5000)));
+        Database.getBufferPool().flushAllPages();
+        Database.getCatalog().clear();
+        assertArrayEquals(written, Files.readAllBytes(side.toPath()));
+
+        // the side file is now older than the table
+        assertTrue(f.setLastModified(f.lastModified() + 1000));
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        HeapFile changed = new HeapFile(f, td);
+        Database.getCatalog().addTable(changed, UUID.randomUUID().toString());
+        assertEquals(changed.numPages(), pagesRead(changed, where(0, Predicate.Op.EQUALS, 5000)));
+        assertEquals(1, pushed(changed, where(0, Predicate.Op.EQUALS, 5000)).size());
+        assertEquals(1, pagesRead(changed, where(0, Predicate.Op.EQUALS, 5000)));
+        Database.getCatalog().clear();
+    }
+
+    //用HeapFileEncoder导入rows行  和fill的内容相同
+    private static File encode(int rows) throws Exception {
+        File csv = File.createTempFile("zones", ".txt");
+        csv.deleteOnExit();
+        try (Writer w = new FileWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                w.write(i + "," + (i % 5 == 0 ? "" : String.valueOf(i % 100)) + ",name" + i % 10 + "\n");
+        }
+        File f = SystemTestUtil.createTempTableFile();
+        HeapFileEncoder.convert(csv, f, BufferPool.getPageSize(), 3,
+                new Type[]{Type.INT_TYPE, Type.INT_TYPE, Type.STRING_TYPE}, new boolean[]{false, true, false}, ',');
+        return f;
+    }
+
+    /**
+     * Tables written by the encoder come with their zone map.
+     */
+    @Test public void encoder() throws Exception {
+        File f = encode(3000);
+        assertTrue(ZoneMap.sideFile(f).exists());
+
+        HeapFile hf = new HeapFile(f, td);
+        Database.getCatalog().addTable(hf, UUID.randomUUID().toString());
+        assertEquals(1, pagesRead(hf, where(0, Predicate.Op.GREATER_THAN_OR_EQ, 2990)));
+        assertEquals(10, pushed(hf, where(0, Predicate.Op.GREATER_THAN_OR_EQ, 2990)).size());
+        assertEquals(0, pagesRead(hf, where(1, Predicate.Op.GREATER_THAN, 99)));
+        assertEquals(filtered(hf, where(1, Predicate.Op.EQUALS, 42)), pushed(hf, where(1, Predicate.Op.EQUALS, 42)));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ZoneMapTest.class);
+    }
+}
@@ -0,0 +1,135 @@
+package simpledb.benchmark;
+
+import simpledb.storage.HeapPageId;
+import simpledb.storage.LRUCache;
+import simpledb.storage.Page;
+import simpledb.storage.PageId;
+import simpledb.storage.ShardedPageCache;
+import simpledb.transaction.TransactionId;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded hit-rate / throughput comparison of the single-lock
+ * LRUCache&lt;Integer,Page&gt; against ShardedPageCache.
+ * <p>
+ * Each thread draws page numbers from a skewed distribution (80% of the
+ * accesses go to 20% of the pages); a miss inserts a dummy page, evicting
+ * first when the cache is full, the same way BufferPool.getPage does.
+ * <p>
+ * Run with: ant runbench -Dbench=BufferPoolShardBenchmark
+ */
+public class BufferPoolShardBenchmark {
+
+    private static final int CAPACITY = 4096;
+    private static final int NUM_PAGES = 8192;
+    private static final long RUN_MILLIS = 2000;
+
+    /** The minimal cache surface both implementations are driven through. */
+    private interface Cache {
+        Page get(int key);
+        void put(int key, Page page);
+    }
+
+    private static class LRUCacheAdapter implements Cache {
+        private final LRUCache<Integer, Page> cache = new LRUCache<>(CAPACITY);
+        public Page get(int key) { return cache.get(key); }
+        // LRUCache evicts its own tail on put
+        public void put(int key, Page page) { cache.put(key, page); }
+    }
+
+    private static class ShardedAdapter implements Cache {
+        private final ShardedPageCache cache = new ShardedPageCache(CAPACITY);
+        public Page get(int key) { return cache.get(key); }
+        public void put(int key, Page page) {
+            while (cache.isFull())
+                cache.evict();
+            cache.putIfAbsent(key, page);
+        }
+    }
+
+    /** A page that carries nothing but its id. */
+    static class DummyPage implements Page {
+        private final PageId pid;
+        DummyPage(PageId pid) { this.pid = pid; }
+        public PageId getId() { return pid; }
+        public TransactionId isDirty() { return null; }
+        public void markDirty(boolean dirty, TransactionId tid) { }
+        public byte[] getPageData() { return new byte[0]; }
+        public Page getBeforeImage() { return this; }
+        public void setBeforeImage() { }
+    }
+
+    private static int nextPage(Random r) {
+        // 80% of accesses go to the hottest 20% of the pages
+        if (r.nextInt(10) < 8)
+            return r.nextInt(NUM_PAGES / 5);
+        return r.nextInt(NUM_PAGES);
+    }
+
+    private static void run(String name, Cache cache, int threads) throws InterruptedException {
+        final Page[] pages = new Page[NUM_PAGES];
+        for (int i = 0; i < NUM_PAGES; i++)
+            pages[i] = new DummyPage(new HeapPageId(1, i));
+        // warm up
+        Random warm = new Random(0);
+        for (int i = 0; i < NUM_PAGES * 4; i++) {
+            int p = nextPage(warm);
+            if (cache.get(p) == null)
+                cache.put(p, pages[p]);
+        }
+
+        final AtomicLong ops = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] deadline = new long[1];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            workers[t] = new Thread(() -> {
+                Random r = new Random(seed);
+                long n = 0, h = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (true) {
+                    // check the clock every 1024 operations
+                    if ((n & 1023) == 0 && System.currentTimeMillis() > deadline[0])
+                        break;
+                    int p = nextPage(r);
+                    if (cache.get(p) != null)
+                        h++;
+                    else
+                        cache.put(p, pages[p]);
+                    n++;
+                }
+                ops.addAndGet(n);
+                hits.addAndGet(h);
+            });
+            workers[t].start();
+        }
+        deadline[0] = System.currentTimeMillis() + RUN_MILLIS;
+        start.countDown();
+        for (Thread w : workers)
+            w.join();
+
+        double mops = ops.get() / (RUN_MILLIS * 1000.0);
+        double hitRate = ops.get() == 0 ? 0 : 100.0 * hits.get() / ops.get();
+        System.out.printf("%-10s threads=%-3d %8.2f Mops/s   hit rate %5.1f%%%n",
+                name, threads, mops, hitRate);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        System.out.println("capacity=" + CAPACITY + " pages=" + NUM_PAGES
+                + " shards=" + new ShardedPageCache(CAPACITY).numShards());
+        for (int threads = 1; threads <= Math.max(8, maxThreads); threads *= 2) {
+            run("LRUCache", new LRUCacheAdapter(), threads);
+            run("Sharded", new ShardedAdapter(), threads);
+        }
+    }
+}
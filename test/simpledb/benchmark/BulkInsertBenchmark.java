@@ -0,0 +1,89 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.Tuple;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Loads rows into an empty two-column table, once with one
+ * BufferPool.insertTuple call per row and once with BufferPool.insertTuples
+ * in batches of 4096 rows, the way the Insert operator does. Both commit
+ * every 4096 rows: the pages a transaction dirties stay in the buffer pool
+ * until it completes.
+ * <p>
+ * The default is 10M rows (about 20k pages, 80 MB). Change it with
+ * -Dsimpledb.bench.rows=N.
+ * <p>
+ * Run with: ant runbench -Dbench=BulkInsertBenchmark
+ */
+public class BulkInsertBenchmark {
+
+    private static final int ROWS = Integer.getInteger("simpledb.bench.rows", 10_000_000);
+    private static final int BATCH = 4096;
+
+    /** Generates rows (i, i) for i in [from, to) without keeping them around. */
+    private static Iterator<Tuple> rows(int from, int to) {
+        return new Iterator<Tuple>() {
+            int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public Tuple next() {
+                if (next >= to)
+                    throw new NoSuchElementException();
+                int i = next++;
+                return Utility.getHeapTuple(new int[]{i, i});
+            }
+        };
+    }
+
+    private static HeapFile emptyTable() throws Exception {
+        File f = File.createTempFile("bulk", ".dat");
+        HeapFile.deleteOnExit(f);
+        Database.reset();
+        HeapFile hf = new HeapFile(f, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(hf);
+        return hf;
+    }
+
+    private static void report(String name, HeapFile hf, long nanos) {
+        System.out.printf("%-12s %8.0f ms   %6.0f ns/row   %d pages%n",
+                name, nanos / 1e6, (double) nanos / ROWS, hf.numPages());
+    }
+
+    public static void main(String[] args) throws Exception {
+        HeapFile hf = emptyTable();
+        long start = System.nanoTime();
+        BufferPool bp = Database.getBufferPool();
+        for (int i = 0; i < ROWS; i += BATCH) {
+            TransactionId tid = new TransactionId();
+            for (Iterator<Tuple> it = rows(i, Math.min(ROWS, i + BATCH)); it.hasNext(); )
+                bp.insertTuple(tid, hf.getId(), it.next());
+            bp.transactionComplete(tid);
+        }
+        bp.flushAllPages();
+        report("per-row", hf, System.nanoTime() - start);
+
+        hf = emptyTable();
+        start = System.nanoTime();
+        bp = Database.getBufferPool();
+        for (int i = 0; i < ROWS; i += BATCH) {
+            TransactionId tid = new TransactionId();
+            bp.insertTuples(tid, hf.getId(), rows(i, Math.min(ROWS, i + BATCH)));
+            bp.transactionComplete(tid);
+        }
+        bp.flushAllPages();
+        report("batched", hf, System.nanoTime() - start);
+    }
+}
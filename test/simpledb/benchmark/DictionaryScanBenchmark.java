@@ -0,0 +1,106 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Type;
+import simpledb.execution.Aggregate;
+import simpledb.execution.Aggregator;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.StringField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An equality filter and a COUNT grouped by a string column with a few
+ * dozen distinct values, stored as plain strings and dictionary encoded.
+ * <p>
+ * The buffer pool holds the whole table after the warm-up run, so this
+ * measures the CPU cost of decoding and comparing the strings, not I/O.
+ * <p>
+ * Run with: ant runbench -Dbench=DictionaryScanBenchmark
+ */
+public class DictionaryScanBenchmark {
+
+    private static final int ROWS = 500000;
+    private static final int CITIES = 40;
+    private static final int ROUNDS = 10;
+
+    private static long run(OpIterator op) throws Exception {
+        op.open();
+        long n = 0;
+        while (op.hasNext()) {
+            op.next();
+            n++;
+        }
+        op.close();
+        return n;
+    }
+
+    private static void time(String name, HeapFile f, boolean filter) throws Exception {
+        long start = 0;
+        long rows = 0;
+        for (int i = -1; i < ROUNDS; i++) {
+            // round -1 warms up
+            if (i == 0)
+                start = System.nanoTime();
+            TransactionId tid = new TransactionId();
+            OpIterator scan = new SeqScan(tid, f.getId(), "t");
+            OpIterator op = filter
+                    ? new Filter(new Predicate(1, Predicate.Op.EQUALS, new StringField("city7", Type.STRING_LEN)), scan)
+                    : new Aggregate(scan, 1, 1, Aggregator.Op.COUNT);
+            rows = run(op);
+            Database.getBufferPool().transactionComplete(tid);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-6s %-8s %8.1f ms/run   %6.1f ns/row   (%d pages, %d rows out)%n",
+                name, filter ? "filter" : "group-by", nanos / 1e6 / ROUNDS,
+                (double) nanos / ROUNDS / ROWS, f.numPages(), rows);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Type[] types = {Type.INT_TYPE, Type.STRING_TYPE};
+        String[] names = {"id", "city"};
+        Random random = new Random(22);
+        String[] cities = new String[ROWS];
+        for (int i = 0; i < ROWS; i++)
+            cities[i] = "city" + random.nextInt(CITIES);
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES * 1000);
+        for (boolean encoded : new boolean[]{false, true}) {
+            TupleDesc td = new TupleDesc(types, names, null, new boolean[]{false, encoded});
+            File file = File.createTempFile("dict", ".dat");
+            HeapFile.deleteOnExit(file);
+            file.delete();
+            HeapFile f = new HeapFile(file, td);
+            Database.getCatalog().addTable(f);
+            List<Tuple> tuples = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                Tuple t = new Tuple(td);
+                t.setField(0, new IntField(i));
+                t.setField(1, new StringField(cities[i], Type.STRING_LEN));
+                tuples.add(t);
+            }
+            TransactionId tid = new TransactionId();
+            Database.getBufferPool().insertTuples(tid, f.getId(), tuples.iterator());
+            Database.getBufferPool().transactionComplete(tid);
+            // pages read back from the file, not the tuples just inserted
+            Database.getBufferPool().flushAllPages();
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES * 1000);
+
+            String name = encoded ? "dict" : "plain";
+            time(name, f, true);
+            time(name, f, false);
+        }
+    }
+}
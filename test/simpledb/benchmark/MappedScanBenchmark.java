@@ -0,0 +1,64 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.MappedHeapFile;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+
+/**
+ * Full scans of a table much larger than the buffer pool, read with HeapFile
+ * and with MappedHeapFile. Every page is a buffer pool miss, so the scan time
+ * is the cost of getting pages from the file.
+ * <p>
+ * The file stays in the OS page cache between runs, so this measures per-page
+ * overhead (syscall, copy, parsing), not disk latency.
+ * <p>
+ * Run with: ant runbench -Dbench=MappedScanBenchmark
+ */
+public class MappedScanBenchmark {
+
+    private static final int NUM_PAGES = 4000;
+    private static final int POOL_PAGES = 50;
+    private static final int ROUNDS = 5;
+
+    private static long scan(HeapFile f) throws Exception {
+        Database.resetBufferPool(POOL_PAGES);
+        TransactionId tid = new TransactionId();
+        DbFileIterator it = f.iterator(tid);
+        it.open();
+        long n = 0;
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        it.close();
+        return n;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 8 int columns: 126 tuples per page
+        File file = SystemTestUtil.createRandomHeapFileUnopened(8, 126 * NUM_PAGES, 1 << 16, null, null);
+        HeapFile plain = new HeapFile(file, Utility.getTupleDesc(8));
+        MappedHeapFile mapped = new MappedHeapFile(file, Utility.getTupleDesc(8));
+
+        for (HeapFile f : new HeapFile[]{plain, mapped}) {
+            Database.getCatalog().clear();
+            Database.getCatalog().addTable(f);
+            // warm up
+            scan(f);
+            long start = System.nanoTime();
+            long rows = 0;
+            for (int i = 0; i < ROUNDS; i++)
+                rows += scan(f);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-14s %8.1f ms/scan   %6.2f us/page   (%d rows)%n",
+                    f.getClass().getSimpleName(), nanos / 1e6 / ROUNDS,
+                    nanos / 1e3 / ROUNDS / NUM_PAGES, rows / ROUNDS);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.IntField;
+import simpledb.storage.ReplacementPolicy;
+import simpledb.storage.Tuple;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Caches a whole table in the buffer pool, once with pages on the Java heap
+ * and once in off-heap frames, and reports the heap the cached pages keep
+ * alive, the pause of a full GC with the pool populated, and the time of
+ * full scans served from the pool.
+ * <p>
+ * The default is 20k pages (80 MB). Change it with -Dsimpledb.bench.pages=N;
+ * the heap must hold the on-heap pool.
+ * <p>
+ * Run with: ant runbench -Dbench=OffHeapBenchmark
+ */
+public class OffHeapBenchmark {
+
+    private static final int PAGES = Integer.getInteger("simpledb.bench.pages", 20_000);
+    // 2 int columns: 504 tuples per page
+    private static final int ROWS_PER_PAGE = 504;
+
+    private static Iterator<Tuple> rows(int n) {
+        return new Iterator<Tuple>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < n;
+            }
+
+            @Override
+            public Tuple next() {
+                if (next >= n)
+                    throw new NoSuchElementException();
+                int i = next++;
+                return Utility.getHeapTuple(new int[]{i, i});
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long scan(HeapFile f, TransactionId tid) throws Exception {
+        DbFileIterator it = f.iterator(tid);
+        it.open();
+        long sum = 0;
+        while (it.hasNext())
+            sum += ((IntField) it.next().getField(0)).getValue();
+        it.close();
+        return sum;
+    }
+
+    private static void run(String name, HeapFile f, boolean offHeap) throws Exception {
+        long before = usedHeap();
+        BufferPool bp = Database.resetBufferPool(
+                new BufferPool(PAGES, Long.MAX_VALUE, ReplacementPolicy.Kind.TWO_Q, offHeap));
+        bp.getReadAhead().setWindow(0);
+        TransactionId tid = new TransactionId();
+        for (int pgNo = 0; pgNo < PAGES; pgNo++) {
+            HeapPageId pid = new HeapPageId(f.getId(), pgNo);
+            bp.getPage(tid, pid, Permissions.READ_ONLY);
+            bp.unpinPage(tid, pid);
+        }
+        long retained = usedHeap() - before;
+
+        // best of three, the pause is noisy
+        long pause = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            System.gc();
+            pause = Math.min(pause, System.nanoTime() - start);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++)
+            scan(f, tid);
+        long scanNanos = (System.nanoTime() - start) / 5;
+        bp.transactionComplete(tid);
+
+        System.out.printf("%-9s heap %7.1f MB   full GC %6.1f ms   scan %7.1f ms   off-heap %6.1f MB%n",
+                name, retained / 1e6, pause / 1e6, scanNanos / 1e6,
+                bp.getArena() == null ? 0 : bp.getArena().getOffHeapBytes() / 1e6);
+        Database.resetBufferPool(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("offheap", ".dat");
+        HeapFile.deleteOnExit(file);
+        HeapFile f = new HeapFile(file, Utility.getTupleDesc(2));
+        Database.getCatalog().addTable(f);
+        SystemTestUtil.insertTuples(f, rows(PAGES * ROWS_PER_PAGE));
+        Database.getBufferPool().flushAllPages();
+
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT
+            run("on-heap", f, false);
+            run("off-heap", f, true);
+        }
+    }
+}
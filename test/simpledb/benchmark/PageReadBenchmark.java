@@ -0,0 +1,63 @@
+package simpledb.benchmark;
+
+import simpledb.storage.BufferPool;
+import simpledb.storage.FileHandle;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.systemtest.SystemTestUtil;
+
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * Measures reading pages straight from a table file, bypassing the buffer
+ * pool. The file is small enough to stay in the OS page cache, so the time
+ * is dominated by per-call overhead rather than by the disk.
+ * <p>
+ * "open-per-page" opens, seeks, reads and closes a RandomAccessFile for every
+ * page; "channel" does a positional read on a long-lived FileHandle. Both read
+ * raw bytes only. "readPage" is HeapFile.readPage, which also parses the page.
+ * <p>
+ * Run with: ant runbench -Dbench=PageReadBenchmark
+ */
+public class PageReadBenchmark {
+
+    private static final int NUM_PAGES = 1000;
+    private static final int READS = 200_000;
+
+    private interface PageReader {
+        void read(int pgNo) throws Exception;
+    }
+
+    private static void run(String name, PageReader reader, int reads) throws Exception {
+        Random r = new Random(0);
+        // warm up
+        for (int i = 0; i < reads; i++)
+            reader.read(r.nextInt(NUM_PAGES));
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++)
+            reader.read(r.nextInt(NUM_PAGES));
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-14s %8.2f us/page%n", name, nanos / 1000.0 / reads);
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 1 int column: 992 tuples per page
+        HeapFile f = SystemTestUtil.createRandomHeapFile(1, 992 * NUM_PAGES, null, null);
+        int pageSize = BufferPool.getPageSize();
+        byte[] buf = new byte[pageSize];
+
+        run("open-per-page", pgNo -> {
+            try (RandomAccessFile raf = new RandomAccessFile(f.getFile(), "r")) {
+                raf.seek((long) pgNo * pageSize);
+                raf.readFully(buf);
+            }
+        }, READS);
+
+        FileHandle handle = new FileHandle(f.getFile());
+        run("channel", pgNo -> handle.read(buf, (long) pgNo * pageSize), READS);
+        handle.close();
+
+        run("readPage", pgNo -> f.readPage(new HeapPageId(f.getId(), pgNo)), READS / 10);
+    }
+}
@@ -0,0 +1,69 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Permissions;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.HeapPageId;
+import simpledb.storage.PageId;
+import simpledb.storage.ReplacementPolicy;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures heap allocation and latency of BufferPool.getPage on the hit path.
+ * <p>
+ * A table that fits in the pool is read once to warm the cache, then every
+ * page is looked up again and again. All lookups are hits, so every byte
+ * allocated is overhead of the page table itself (key boxing, hashing).
+ * Each lookup is followed by unpinPage, as an iterator does.
+ * <p>
+ * Run with: ant runbench -Dbench=PageTableAllocationBenchmark
+ */
+public class PageTableAllocationBenchmark {
+
+    private static final int NUM_PAGES = 400;
+    private static final int LOOKUPS = 4_000_000;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 1 int column: 992 tuples per page
+        HeapFile f = SystemTestUtil.createRandomHeapFile(1, 992 * NUM_PAGES, null, null);
+        PageId[] pids = new PageId[NUM_PAGES];
+        for (int i = 0; i < NUM_PAGES; i++)
+            pids[i] = new HeapPageId(f.getId(), i);
+
+        for (ReplacementPolicy.Kind kind : ReplacementPolicy.Kind.values()) {
+            BufferPool bp = Database.resetBufferPool(NUM_PAGES * 2, kind);
+            TransactionId tid = new TransactionId();
+            for (PageId pid : pids) {
+                bp.getPage(tid, pid, Permissions.READ_ONLY);
+                bp.unpinPage(tid, pid);
+            }
+
+            // warm up the JIT on the hit path
+            for (int i = 0; i < LOOKUPS; i++) {
+                bp.getPage(tid, pids[i % NUM_PAGES], Permissions.READ_ONLY);
+                bp.unpinPage(tid, pids[i % NUM_PAGES]);
+            }
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                bp.getPage(tid, pids[i % NUM_PAGES], Permissions.READ_ONLY);
+                bp.unpinPage(tid, pids[i % NUM_PAGES]);
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+
+            System.out.printf("%-10s %6.1f bytes/getPage   %6.1f ns/getPage%n",
+                    kind, (double) bytes / LOOKUPS, (double) nanos / LOOKUPS);
+        }
+    }
+}
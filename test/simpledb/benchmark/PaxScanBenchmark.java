@@ -0,0 +1,88 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.Aggregate;
+import simpledb.execution.Aggregator;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.PageCompression;
+import simpledb.storage.PageLayout;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SUM of one column of a wide table stored with the row (FIXED) and PAX
+ * layouts, scanning whole tuples and scanning only the summed column.
+ * <p>
+ * The buffer pool holds the whole table after the warm-up scan, so this
+ * measures the CPU cost of getting one field out of every tuple, not I/O.
+ * <p>
+ * Run with: ant runbench -Dbench=PaxScanBenchmark
+ */
+public class PaxScanBenchmark {
+
+    private static final int COLUMNS = 10;
+    private static final int ROWS = 500000;
+    private static final int ROUNDS = 10;
+
+    private static long sum(HeapFile f, int[] columns) throws Exception {
+        TransactionId tid = new TransactionId();
+        SeqScan scan = new SeqScan(tid, f.getId(), "t", columns);
+        // the scan returns only the columns it reads
+        Aggregate agg = new Aggregate(scan, columns == null ? 3 : 0, Aggregator.NO_GROUPING, Aggregator.Op.SUM);
+        agg.open();
+        long sum = ((IntField) agg.next().getField(0)).getValue();
+        agg.close();
+        Database.getBufferPool().transactionComplete(tid);
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        TupleDesc td = Utility.getTupleDesc(COLUMNS);
+        Random random = new Random(21);
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Tuple t = new Tuple(td);
+            for (int j = 0; j < COLUMNS; j++)
+                t.setField(j, new IntField(random.nextInt(1000)));
+            tuples.add(t);
+        }
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES * 100);
+        for (PageLayout layout : new PageLayout[]{PageLayout.FIXED, PageLayout.PAX}) {
+            File file = File.createTempFile("pax", ".dat");
+            HeapFile.deleteOnExit(file);
+            file.delete();
+            HeapFile f = new HeapFile(file, td, 0, layout, PageCompression.NONE);
+            Database.getCatalog().addTable(f);
+            SystemTestUtil.insertTuples(f, tuples.iterator());
+            // pages read back from the file, not the tuples just inserted
+            Database.getBufferPool().flushAllPages();
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES * 100);
+
+            for (int[] columns : new int[][]{null, {3}}) {
+                // warm up
+                long expected = sum(f, columns);
+                long start = System.nanoTime();
+                for (int i = 0; i < ROUNDS; i++) {
+                    if (sum(f, columns) != expected)
+                        throw new AssertionError("sum changed");
+                }
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%-6s %-12s %8.1f ms/scan   %6.1f ns/row   (%d pages)%n",
+                        layout, columns == null ? "all columns" : "column 3",
+                        nanos / 1e6 / ROUNDS, (double) nanos / ROUNDS / ROWS, f.numPages());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.storage.BufferPool;
+import simpledb.storage.DbFileIterator;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.Page;
+import simpledb.storage.PageId;
+import simpledb.storage.ReadAhead;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.systemtest.SystemTestUtil;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Full scans of a table with read-ahead off and with several window sizes.
+ * <p>
+ * The table file sits in the OS page cache, so each readPage is made to
+ * wait an extra fixed time to stand in for a cold disk read. Read-ahead can
+ * only help by overlapping that wait with the scan's own work, which here
+ * is summing every field.
+ * <p>
+ * Run with: ant runbench -Dbench=ReadAheadBenchmark
+ */
+public class ReadAheadBenchmark {
+
+    private static final int NUM_PAGES = 2000;
+    private static final int POOL_PAGES = 200;
+    private static final long READ_LATENCY_NANOS = 100_000;
+
+    /** A HeapFile whose page reads take READ_LATENCY_NANOS longer. */
+    private static class SlowHeapFile extends HeapFile {
+        SlowHeapFile(File f, TupleDesc td) {
+            super(f, td);
+        }
+
+        @Override
+        public Page readPage(PageId pid) {
+            LockSupport.parkNanos(READ_LATENCY_NANOS);
+            return super.readPage(pid);
+        }
+    }
+
+    /** Scans the table and sums every field, so the scan does some work of its own. */
+    private static long scan(HeapFile f) throws Exception {
+        DbFileIterator it = f.iterator(new TransactionId());
+        it.open();
+        long sum = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            for (int i = 0; i < t.getTupleDesc().numFields(); i++)
+                sum += ((IntField) t.getField(i)).getValue();
+        }
+        it.close();
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 8 int columns: 126 tuples per page
+        File file = SystemTestUtil.createRandomHeapFileUnopened(8, 126 * NUM_PAGES, 1 << 16, null, null);
+        HeapFile f = new SlowHeapFile(file, Utility.getTupleDesc(8));
+        Database.getCatalog().addTable(f);
+
+        for (int window : new int[]{0, 4, 16, 50}) {
+            for (int round = 0; round < 2; round++) {
+                // a fresh pool per scan, so every page is a miss
+                BufferPool bp = Database.resetBufferPool(POOL_PAGES);
+                ReadAhead ra = bp.getReadAhead();
+                ra.setWindow(window);
+                long start = System.nanoTime();
+                scan(f);
+                long nanos = System.nanoTime() - start;
+                // the first round warms up the JIT
+                if (round == 1)
+                    System.out.printf("window=%-3d %8.1f ms/scan   prefetched=%d hits=%d misses=%d%n",
+                            ra.getWindow(), nanos / 1e6, ra.getPrefetchedPages(), ra.getHits(), ra.getMisses());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.Aggregate;
+import simpledb.execution.Filter;
+import simpledb.execution.HashEquiJoin;
+import simpledb.execution.JoinPredicate;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.execution.Vectorized;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Queries over INT columns run tuple at a time and batch at a time
+ * (under {@link Vectorized}): a filter and a hash join. All pages stay
+ * in the buffer pool, so the times are those of the operators.
+ * Aggregates are left out: {@link Aggregate} reads its child in batches
+ * either way.
+ * <p>
+ * Run with: ant runbench -Dbench=VectorizedBenchmark
+ */
+public class VectorizedBenchmark {
+
+    private static final int COLUMNS = 4;
+    private static final int ROWS = 500000;
+    private static final int ROUNDS = 10;
+
+    private interface Plan {
+        OpIterator build(TransactionId tid);
+    }
+
+    private static int count(Plan plan, boolean vectorized) throws Exception {
+        TransactionId tid = new TransactionId();
+        OpIterator it = vectorized ? new Vectorized(plan.build(tid)) : plan.build(tid);
+        int n = 0;
+        it.open();
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        it.close();
+        Database.getBufferPool().transactionComplete(tid);
+        return n;
+    }
+
+    private static HeapFile table(TupleDesc td, int rows, int range, Random random) throws Exception {
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Tuple t = new Tuple(td);
+            for (int j = 0; j < COLUMNS; j++)
+                t.setField(j, new IntField(random.nextInt(range)));
+            tuples.add(t);
+        }
+        File file = File.createTempFile("vectorized", ".dat");
+        HeapFile.deleteOnExit(file);
+        file.delete();
+        HeapFile f = new HeapFile(file, td);
+        Database.getCatalog().addTable(f);
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuples(tid, f.getId(), tuples.iterator());
+        Database.getBufferPool().transactionComplete(tid);
+        return f;
+    }
+
+    public static void main(String[] args) throws Exception {
+        TupleDesc td = Utility.getTupleDesc(COLUMNS);
+        Random random = new Random(25);
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES * 100);
+        int big = table(td, ROWS, 1000, random).getId();
+        int small = table(td, ROWS / 100, 1000, random).getId();
+
+        String[] names = {"filter", "hash join"};
+        Plan[] plans = {
+                tid -> new Filter(new Predicate(1, Predicate.Op.LESS_THAN, new IntField(100)),
+                        new SeqScan(tid, big, "t")),
+                tid -> new HashEquiJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0),
+                        new SeqScan(tid, small, "s"), new SeqScan(tid, big, "t")),
+        };
+        for (int q = 0; q < plans.length; q++) {
+            for (boolean vectorized : new boolean[]{false, true}) {
+                // warm up
+                int expected = count(plans[q], vectorized);
+                long start = System.nanoTime();
+                for (int i = 0; i < ROUNDS; i++) {
+                    if (count(plans[q], vectorized) != expected)
+                        throw new AssertionError("count changed");
+                }
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%-16s %-7s %8.2f ms/query   (%d rows)%n", names[q],
+                        vectorized ? "batch" : "tuple", nanos / 1e6 / ROUNDS, expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package simpledb.benchmark;
+
+import simpledb.common.Database;
+import simpledb.common.Utility;
+import simpledb.execution.Filter;
+import simpledb.execution.OpIterator;
+import simpledb.execution.Predicate;
+import simpledb.execution.SeqScan;
+import simpledb.storage.BufferPool;
+import simpledb.storage.HeapFile;
+import simpledb.storage.IntField;
+import simpledb.storage.Tuple;
+import simpledb.storage.TupleDesc;
+import simpledb.transaction.TransactionId;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Selective range predicates on a table whose column 0 grows with the
+ * insertion order, evaluated by a Filter on top of a SeqScan and pushed
+ * into the SeqScan, where the zone map skips the pages outside the range.
+ * <p>
+ * The buffer pool is reset before every query, so each page a query does
+ * not skip is read from the file.
+ * <p>
+ * Run with: ant runbench -Dbench=ZoneMapScanBenchmark
+ */
+public class ZoneMapScanBenchmark {
+
+    private static final int COLUMNS = 4;
+    private static final int ROWS = 500000;
+    private static final int ROUNDS = 10;
+
+    private static int count(HeapFile f, Predicate p, boolean pushed) throws Exception {
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES * 100);
+        TransactionId tid = new TransactionId();
+        OpIterator it = pushed
+                ? new SeqScan(tid, f.getId(), "t", null, new Predicate[]{p})
+                : new Filter(p, new SeqScan(tid, f.getId(), "t"));
+        int n = 0;
+        it.open();
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        it.close();
+        Database.getBufferPool().transactionComplete(tid);
+        return n;
+    }
+
+    public static void main(String[] args) throws Exception {
+        TupleDesc td = Utility.getTupleDesc(COLUMNS);
+        Random random = new Random(23);
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(i));
+            for (int j = 1; j < COLUMNS; j++)
+                t.setField(j, new IntField(random.nextInt(1000)));
+            tuples.add(t);
+        }
+
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES * 100);
+        File file = File.createTempFile("zones", ".dat");
+        HeapFile.deleteOnExit(file);
+        file.delete();
+        HeapFile f = new HeapFile(file, td);
+        Database.getCatalog().addTable(f);
+        TransactionId tid = new TransactionId();
+        Database.getBufferPool().insertTuples(tid, f.getId(), tuples.iterator());
+        Database.getBufferPool().transactionComplete(tid);
+        Database.getBufferPool().flushAllPages();
+
+        for (double selectivity : new double[]{0.001, 0.01, 0.1, 1}) {
+            Predicate p = new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ,
+                    new IntField((int) (ROWS * (1 - selectivity))));
+            for (boolean pushed : new boolean[]{false, true}) {
+                // warm up
+                int expected = count(f, p, pushed);
+                long start = System.nanoTime();
+                for (int i = 0; i < ROUNDS; i++) {
+                    if (count(f, p, pushed) != expected)
+                        throw new AssertionError("count changed");
+                }
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%6.1f%% %-8s %8.2f ms/query   (%d rows of %d pages)%n",
+                        selectivity * 100, pushed ? "pushed" : "filter",
+                        nanos / 1e6 / ROUNDS, expected, f.numPages());
+            }
+        }
+    }
+}
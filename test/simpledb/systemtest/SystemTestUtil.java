@@ -3,6 +3,7 @@ package simpledb.systemtest;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -21,6 +22,11 @@ public class SystemTestUtil {
     public static final TupleDesc SINGLE_INT_DESCRIPTOR =
             new TupleDesc(new Type[]{Type.INT_TYPE});
 
+    /** (id int, v int NULL, name string), see {@link #createNullableValueTuple}. */
+    public static final TupleDesc NULLABLE_VALUE_DESCRIPTOR =
+            new TupleDesc(new Type[]{Type.INT_TYPE, Type.INT_TYPE, Type.STRING_TYPE},
+                    new String[]{"id", "v", "name"}, new boolean[]{false, true, false});
+
     private static final int MAX_RAND_VALUE = 1 << 16;
 
     /** @param columnSpecification Mapping between column index and value. */
@@ -90,6 +96,72 @@ public class SystemTestUtil {
         return temp;
     }
 
+    /**
+     * @return a path in the temporary directory for a new table file; the
+     *   file does not exist yet, and is deleted with its side files on exit
+     */
+    public static File createTempTableFile() throws IOException {
+        File f = File.createTempFile("table", ".dat");
+        HeapFile.deleteOnExit(f);
+        f.delete();
+        return f;
+    }
+
+    /**
+     * Builds a tuple of td from plain values: an Integer, Long, Double or
+     * String for the field of that type, or null for a NULL field.
+     */
+    public static Tuple createTuple(TupleDesc td, Object... values) {
+        Tuple t = new Tuple(td);
+        for (int i = 0; i < values.length; i++) {
+            Object v = values[i];
+            Field f;
+            if (v == null) {
+                f = NullField.of(td.getFieldType(i));
+            } else if (v instanceof Integer) {
+                f = new IntField((Integer) v);
+            } else if (v instanceof Long) {
+                f = new LongField((Long) v);
+            } else if (v instanceof Double) {
+                f = new DoubleField((Double) v);
+            } else if (v instanceof String) {
+                f = new StringField((String) v, Type.STRING_LEN);
+            } else {
+                throw new IllegalArgumentException("no field for " + v.getClass());
+            }
+            t.setField(i, f);
+        }
+        return t;
+    }
+
+    /**
+     * @return the tuple (id, v, "name" + id % 10) of
+     *   {@link #NULLABLE_VALUE_DESCRIPTOR}; a null v is NULL
+     */
+    public static Tuple createNullableValueTuple(int id, Integer v) {
+        return createTuple(NULLABLE_VALUE_DESCRIPTOR, id, v, "name" + id % 10);
+    }
+
+    /**
+     * Inserts tuples into f through the buffer pool, committing each time
+     * about half a default buffer pool of pages has been filled. Under NO
+     * STEAL every page a transaction dirties stays in the pool until it
+     * completes, so a single transaction cannot load a larger table.
+     */
+    public static void insertTuples(DbFile f, Iterator<Tuple> tuples)
+            throws DbException, IOException, TransactionAbortedException {
+        int perPage = f.getPageSize() * 8 / (f.getTupleDesc().getSize() * 8 + 1);
+        int perTransaction = Math.max(1, perPage * BufferPool.DEFAULT_PAGES / 2);
+        while (tuples.hasNext()) {
+            List<Tuple> chunk = new ArrayList<>();
+            while (tuples.hasNext() && chunk.size() < perTransaction)
+                chunk.add(tuples.next());
+            TransactionId tid = new TransactionId();
+            Database.getBufferPool().insertTuples(tid, f.getId(), chunk.iterator());
+            Database.getBufferPool().transactionComplete(tid);
+        }
+    }
+
     public static List<Integer> tupleToList(Tuple tuple) {
         List<Integer> list = new ArrayList<>();
         for (int i = 0; i < tuple.getTupleDesc().numFields(); ++i) {